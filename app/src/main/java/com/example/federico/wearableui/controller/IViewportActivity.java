@@ -24,6 +24,22 @@ public interface IViewportActivity {
      */
     boolean isInForeground();
 
+    /**
+     * Sets how long the {@link com.example.federico.wearableui.services.imu_handling.ImuHandlerService} is kept alive
+     * after the Activity has been stopped. During this period the sensors are sampled at a low rate, and if the Activity
+     * is resumed the orientation is available again at full rate, without a new calibration phase.
+     * @param milliseconds the retention period in milliseconds, 0 to release the Service as soon as the Activity is stopped.
+     * @throws IllegalArgumentException if the retention period is negative.
+     */
+    void setSensorRetentionPeriod(final long milliseconds);
+
+    /**
+     * Returns how long the {@link com.example.federico.wearableui.services.imu_handling.ImuHandlerService} is kept alive
+     * after the Activity has been stopped.
+     * @return the retention period in milliseconds.
+     */
+    long getSensorRetentionPeriod();
+
     /**
      * Starts the {@link com.example.federico.wearableui.services.connection.message_parser.MessageParserService}.
      */
@@ -9,10 +9,13 @@ import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
 import android.graphics.Point;
+import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
 import android.support.annotation.NonNull;
 import android.support.v4.app.ActivityCompat;
 import android.os.Bundle;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.Window;
@@ -20,7 +23,10 @@ import android.view.WindowManager;
 import android.widget.Toast;
 
 import com.example.federico.wearableui.intraprocess_messaging.IPMHCallbackInterface;
+import com.example.federico.wearableui.intraprocess_messaging.IntraProcessMessage;
 import com.example.federico.wearableui.intraprocess_messaging.IntraProcessMessageHandler;
+import com.example.federico.wearableui.metrics.LatencyTracer;
+import com.example.federico.wearableui.representation.OrientationSnapshot;
 import com.example.federico.wearableui.representation.Quaternion;
 import com.example.federico.wearableui.services.imu_handling.ImuHandlerService;
 import com.example.federico.wearableui.services.imu_handling.SensorFusionService;
@@ -54,6 +60,11 @@ public abstract class ViewportActivity extends IPMHCallbackInterface implements
      */
     private static final int REQUEST_COARSE_PERMISSION = 2;
 
+    /**
+     * Default time, in milliseconds, the Service that handles the Imu is kept alive after the Activity has been stopped.
+     */
+    private static final long DEFAULT_SENSOR_RETENTION_PERIOD = 10000;
+
     /**
      * Service Connection for the Service that handles the Imu of the device.
      */
@@ -61,6 +72,7 @@ public abstract class ViewportActivity extends IPMHCallbackInterface implements
         @Override
         public void onServiceConnected(final ComponentName name, final IBinder service) {
             mBinder = (ImuHandlerService.Binder) service;
+            mBinder.setRetained(!isInForeground);
         }
 
         @Override
@@ -74,6 +86,31 @@ public abstract class ViewportActivity extends IPMHCallbackInterface implements
      */
     private ImuHandlerService.Binder mBinder;
 
+    /**
+     * A flag indicating whether or not the Activity is bound to the Service that handles the Imu.
+     */
+    private boolean isBound;
+
+    /**
+     * Time, in milliseconds, the Service that handles the Imu is kept alive after the Activity has been stopped.
+     */
+    private long sensorRetentionPeriod = DEFAULT_SENSOR_RETENTION_PERIOD;
+
+    /**
+     * Handler used to release the Service that handles the Imu once the retention period has expired.
+     */
+    private final Handler retentionHandler = new Handler();
+
+    /**
+     * Task that releases the Service that handles the Imu.
+     */
+    private final Runnable releaseSensorService = new Runnable() {
+        @Override
+        public void run() {
+            unbindSensorService();
+        }
+    };
+
     /**
      * The Viewport of the Activity. This is also the ContentView of the Activity.
      */
@@ -99,6 +136,23 @@ public abstract class ViewportActivity extends IPMHCallbackInterface implements
      */
     private boolean isInForeground;
 
+    /**
+     * Callback that moves the cursor on every frame while the Finger is moving. It's only available on Jelly Bean and
+     * later versions, that have the {@link Choreographer}; on older ones it's null, and the cursor is moved every time a
+     * new Finger orientation is computed.
+     */
+    private Choreographer.FrameCallback cursorFrameCallback;
+
+    /**
+     * A flag indicating whether or not the cursorFrameCallback is waiting for the next frame.
+     */
+    private boolean isCursorFrameScheduled;
+
+    /**
+     * Buffer for the angles of the Finger displayed on a frame.
+     */
+    private final float[] fingerAngles = new float[2];
+
     /**
      * Asks for permissions.
      */
@@ -130,6 +184,16 @@ public abstract class ViewportActivity extends IPMHCallbackInterface implements
         this.finger = Finger.getInstance();
         this.gaze = Gaze.getInstance();
 
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            this.cursorFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(final long frameTimeNanos) {
+                    isCursorFrameScheduled = false;
+                    moveCursor(frameTimeNanos);
+                }
+            };
+        }
+
         this.checkForPermissions();
     }
 
@@ -137,21 +201,77 @@ public abstract class ViewportActivity extends IPMHCallbackInterface implements
     protected void onPause() {
         super.onPause();
         this.isInForeground = false;
+        // The frame can only have been scheduled on the versions that have the Choreographer
+        if (this.isCursorFrameScheduled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            Choreographer.getInstance().removeFrameCallback(this.cursorFrameCallback);
+            this.isCursorFrameScheduled = false;
+        }
     }
 
     @Override
     protected void onStop() {
         super.onStop();
-        this.unbindService(this.mServiceConnection);
+        // The Service is kept alive at a low rate for a while, so that it doesn't have to be calibrated again if the
+        // Activity is resumed soon
+        if (this.sensorRetentionPeriod > 0 && this.isBound) {
+            if (this.mBinder != null) {
+                this.mBinder.setRetained(true);
+            }
+            this.retentionHandler.postDelayed(this.releaseSensorService, this.sensorRetentionPeriod);
+        } else {
+            this.unbindSensorService();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        this.retentionHandler.removeCallbacks(this.releaseSensorService);
+        this.unbindSensorService();
     }
 
     @Override
     protected void onResume() {
         super.onResume();
         this.isInForeground = true;
-        IntraProcessMessageHandler.getInstance().removeCallbacksAndMessages(null);
-        final Intent bindSensorService = new Intent(this, SensorFusionService.class);
-        this.bindService(bindSensorService, this.mServiceConnection, BIND_AUTO_CREATE);
+        // Only the stale orientation updates and redraws are dropped: since the Service may have been retained while
+        // paused, a calibration message posted in the meantime must still be delivered
+        final IntraProcessMessageHandler handler = IntraProcessMessageHandler.getInstance();
+        handler.removeMessages(IntraProcessMessage.GAZE_ORIENTATION_UPDATE.getMessageCode());
+        handler.removeMessages(IntraProcessMessage.FINGER_ORIENTATION_UPDATE.getMessageCode());
+        handler.removeMessages(IntraProcessMessage.REDRAW_VIEWPORT.getMessageCode());
+        handler.removeMessages(IntraProcessMessage.REDRAW_CURSOR.getMessageCode());
+        this.retentionHandler.removeCallbacks(this.releaseSensorService);
+        if (this.isBound) {
+            // The Service has been retained, so it only has to go back to full rate
+            if (this.mBinder != null) {
+                this.mBinder.setRetained(false);
+            }
+        } else {
+            final Intent bindSensorService = new Intent(this, SensorFusionService.class);
+            this.isBound = this.bindService(bindSensorService, this.mServiceConnection, BIND_AUTO_CREATE);
+        }
+    }
+
+    /**
+     * Informs the Service that handles the Imu of whether the Viewport is locked, so that it can lower its sampling
+     * rate while the Gaze isn't followed.
+     */
+    private void updateSensorLockState() {
+        if (this.mBinder != null && this.viewport != null) {
+            this.mBinder.setViewportLocked(this.viewport.isLocked());
+        }
+    }
+
+    /**
+     * Unbinds the Activity from the Service that handles the Imu, if it's bound.
+     */
+    private void unbindSensorService() {
+        if (this.isBound) {
+            this.unbindService(this.mServiceConnection);
+            this.isBound = false;
+            this.mBinder = null;
+        }
     }
 
     @Override
@@ -210,7 +330,9 @@ public abstract class ViewportActivity extends IPMHCallbackInterface implements
     @Override
     protected void redrawViewport() {
         // The viewport is redrawn based on where the wearer's gaze is oriented
+        LatencyTracer.getInstance().onViewportRedraw();
         this.viewport.scrollAccordingly(this.gaze.getGazePitch(), this.gaze.getGazeYaw());
+        this.updateSensorLockState();
     }
 
     @Override
@@ -221,7 +343,36 @@ public abstract class ViewportActivity extends IPMHCallbackInterface implements
     @Override
     protected void redrawCursor() {
         // The cursor is redrawn based on where the wearer's finger is oriented
-        this.viewport.getCursor().moveAccordingly(this.finger.getFingerPitch(), this.finger.getFingerYaw());
+        LatencyTracer.getInstance().onCursorRedraw();
+        if (this.cursorFrameCallback == null) {
+            this.viewport.getCursor().moveAccordingly(this.finger.getFingerPitch(), this.finger.getFingerYaw());
+        } else if (!this.isCursorFrameScheduled) {
+            // The orientations arrive at the irregular rate of the ring, so the cursor follows the display frames instead
+            this.scheduleCursorFrame();
+        }
+    }
+
+    /**
+     * Moves the cursor to where the Finger points at on the frame displayed at the passed time, and keeps moving it on
+     * the following frames until the Finger angles settle.
+     * @param frameTime the time the frame is displayed at, in nanoseconds.
+     */
+    private void moveCursor(final long frameTime) {
+        if (this.finger.getFingerAnglesAt(frameTime, this.fingerAngles)) {
+            this.scheduleCursorFrame();
+        }
+        this.viewport.getCursor().moveAccordingly(this.fingerAngles[0], this.fingerAngles[1]);
+    }
+
+    /**
+     * Asks the {@link Choreographer} to move the cursor on the next frame. It does nothing on the versions before Jelly
+     * Bean, where the cursor is moved as soon as a new Finger orientation is computed.
+     */
+    private void scheduleCursorFrame() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            Choreographer.getInstance().postFrameCallback(this.cursorFrameCallback);
+            this.isCursorFrameScheduled = true;
+        }
     }
 
     @Override
@@ -250,13 +401,16 @@ public abstract class ViewportActivity extends IPMHCallbackInterface implements
 
     @Override
     protected void onGazeCalibrationFinished(final Quaternion calibration) {
-        this.monitor.drawText(new Point(-this.monitor.getViewportWidth() / 2 + 200, this.monitor.getViewportHeight() / 2 - 75),
-                "  done", 15, Color.GREEN, 255, true);
+        // After a warm start the calibration phase is skipped, so there's no monitor to update
+        if (this.monitor != null) {
+            this.monitor.drawText(new Point(-this.monitor.getViewportWidth() / 2 + 200, this.monitor.getViewportHeight() / 2 - 75),
+                    "  done", 15, Color.GREEN, 255, true);
 
-        this.monitor.drawText(new Point(-this.monitor.getViewportWidth() / 2 + 200, this.monitor.getViewportHeight() / 2 - 25),
-                "  done", 15, Color.GREEN, 255, true);
+            this.monitor.drawText(new Point(-this.monitor.getViewportWidth() / 2 + 200, this.monitor.getViewportHeight() / 2 - 25),
+                    "  done", 15, Color.GREEN, 255, true);
 
-        this.monitor.invalidate();
+            this.monitor.invalidate();
+        }
 
         this.gaze.calibrate(calibration);
 
@@ -267,12 +421,12 @@ public abstract class ViewportActivity extends IPMHCallbackInterface implements
     }
 
     @Override
-    protected void onGazeOrientationUpdate(final Quaternion orientationUpdate) {
+    protected void onGazeOrientationUpdate(final OrientationSnapshot orientationUpdate) {
         this.gaze.updateGazeOrientation(orientationUpdate);
     }
 
     @Override
-    protected void onFingerOrientationUpdate(final Quaternion orientationUpdate) {
+    protected void onFingerOrientationUpdate(final OrientationSnapshot orientationUpdate) {
         this.finger.updateOrientation(orientationUpdate);
     }
 
@@ -293,6 +447,20 @@ public abstract class ViewportActivity extends IPMHCallbackInterface implements
         } else {
             this.viewport.lock();
         }
+        this.updateSensorLockState();
+    }
+
+    @Override
+    public void setSensorRetentionPeriod(final long milliseconds) {
+        if (milliseconds < 0) {
+            throw new IllegalArgumentException("The retention period can not be negative");
+        }
+        this.sensorRetentionPeriod = milliseconds;
+    }
+
+    @Override
+    public long getSensorRetentionPeriod() {
+        return this.sensorRetentionPeriod;
     }
 
     @Override
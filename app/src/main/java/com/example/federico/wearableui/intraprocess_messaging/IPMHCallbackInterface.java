@@ -6,6 +6,7 @@ package com.example.federico.wearableui.intraprocess_messaging;
 
 import android.support.v7.app.AppCompatActivity;
 
+import com.example.federico.wearableui.representation.OrientationSnapshot;
 import com.example.federico.wearableui.representation.Quaternion;
 
 /**
@@ -52,16 +53,18 @@ public abstract class IPMHCallbackInterface extends AppCompatActivity {
     /**
      * Callback called each time the orientation of the device is recalculated by a {@link com.example.federico.wearableui.services.imu_handling.ImuHandlerService}
      * (or one of its subclasses).
-     * @param orientationUpdate a {@link Quaternion} representing the new orientation of the device, expressed according to the World Coordinate System.
+     * @param orientationUpdate an {@link OrientationSnapshot} representing the new orientation of the device, expressed according to the World Coordinate System.
+     *                          Its timestamp is the time at which the sensor sample the orientation comes from has been taken.
      */
-    protected abstract void onGazeOrientationUpdate(final Quaternion orientationUpdate);
+    protected abstract void onGazeOrientationUpdate(final OrientationSnapshot orientationUpdate);
 
     /**
      * Callback called each time a new {@link com.example.federico.wearableui.model.finger.Finger} orientation has been received by
      * the device.
-     * @param orientationUpdate a {@link Quaternion} representing the new Finger orientation.
+     * @param orientationUpdate an {@link OrientationSnapshot} representing the new Finger orientation. Its timestamp is the
+     *                          time at which the orientation has been received via Bluetooth.
      */
-    protected abstract void onFingerOrientationUpdate(final Quaternion orientationUpdate);
+    protected abstract void onFingerOrientationUpdate(final OrientationSnapshot orientationUpdate);
 
     /**
      * Callback called each time a new starting orientation for the {@link com.example.federico.wearableui.model.finger.Finger} has been received by the device.
@@ -22,6 +22,12 @@ public enum IntraProcessMessage {
     REDRAW_CURSOR(9, null),
     RESET_CURSOR_POSITION(10, null);
 
+    /**
+     * Key used to recover, from the orientation update messages, the time at which the message has been sent, as given by
+     * {@link com.example.federico.wearableui.metrics.LatencyTracer#now()}.
+     */
+    public static final String DISPATCH_TIMESTAMP_KEY = "Dispatch Timestamp";
+
     /**
      * An integer used to distinguish the content of a message. This flag is used as the "what" field of a
      * {@link android.os.Message}, since {@link android.os.Handler}s can't send customized message classes.
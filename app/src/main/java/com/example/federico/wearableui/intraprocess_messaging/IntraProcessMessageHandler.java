@@ -5,6 +5,9 @@ import android.os.Looper;
 import android.os.Message;
 import android.os.Parcelable;
 
+import com.example.federico.wearableui.metrics.ILatencyTracer;
+import com.example.federico.wearableui.metrics.LatencyTracer;
+import com.example.federico.wearableui.representation.OrientationSnapshot;
 import com.example.federico.wearableui.representation.Quaternion;
 
 /**
@@ -33,6 +36,11 @@ public class IntraProcessMessageHandler extends Handler {
      */
     private final IPMHCallbackInterface callbackInterface;
 
+    /**
+     * The {@link ILatencyTracer} used to trace how long the orientation updates wait before being handled.
+     */
+    private final ILatencyTracer latencyTracer = LatencyTracer.getInstance();
+
     /**
      * Initializes the Handler by setting its callback interface.
      * @param callbackInterface an {@link IPMHCallbackInterface}.
@@ -93,11 +101,13 @@ public class IntraProcessMessageHandler extends Handler {
         }
         else if(this.compare(msg, IntraProcessMessage.GAZE_ORIENTATION_UPDATE)) {
             final Parcelable gOrientationUpdate = this.retrieveParcelable(msg, IntraProcessMessage.GAZE_ORIENTATION_UPDATE);
-            this.callbackInterface.onGazeOrientationUpdate((Quaternion) gOrientationUpdate);
+            this.latencyTracer.recordSince(LatencyTracer.Stage.GAZE_DISPATCH, msg.getData().getLong(IntraProcessMessage.DISPATCH_TIMESTAMP_KEY));
+            this.callbackInterface.onGazeOrientationUpdate((OrientationSnapshot) gOrientationUpdate);
         }
         else if(this.compare(msg, IntraProcessMessage.FINGER_ORIENTATION_UPDATE)) {
             final Parcelable fOrientationUpdate = this.retrieveParcelable(msg, IntraProcessMessage.FINGER_ORIENTATION_UPDATE);
-            this.callbackInterface.onFingerOrientationUpdate((Quaternion) fOrientationUpdate);
+            this.latencyTracer.recordSince(LatencyTracer.Stage.FINGER_DISPATCH, msg.getData().getLong(IntraProcessMessage.DISPATCH_TIMESTAMP_KEY));
+            this.callbackInterface.onFingerOrientationUpdate((OrientationSnapshot) fOrientationUpdate);
         }
         else if(this.compare(msg, IntraProcessMessage.CURSOR_CLICK)) {
             this.callbackInterface.onCursorClickCommandReceived();
@@ -0,0 +1,95 @@
+package com.example.federico.wearableui.metrics;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Interface that defines the behaviour of the {@link LatencyTracer}.
+ */
+public interface ILatencyTracer {
+
+    /**
+     * Enables or disables the tracing. Tracing is disabled by default.
+     * @param enabled true to start recording latencies, false to stop.
+     */
+    void setEnabled(final boolean enabled);
+
+    /**
+     * Returns whether or not latencies are being recorded.
+     * @return true if latencies are being recorded, false otherwise.
+     */
+    boolean isEnabled();
+
+    /**
+     * Returns the current time in the time base used by the LatencyTracer for all of its timestamps.
+     * @return the current time in nanoseconds.
+     */
+    long now();
+
+    /**
+     * Records the latency of a stage of the pipeline.
+     * @param stage the {@link LatencyTracer.Stage} the latency refers to.
+     * @param latency the latency in nanoseconds.
+     */
+    void record(final LatencyTracer.Stage stage, final long latency);
+
+    /**
+     * Records the time elapsed from the passed timestamp to now as the latency of a stage of the pipeline.
+     * @param stage the {@link LatencyTracer.Stage} the latency refers to.
+     * @param since a timestamp obtained through now(), marking the beginning of the stage.
+     */
+    void recordSince(final LatencyTracer.Stage stage, final long since);
+
+    /**
+     * Signals that the pitch and yaw of the {@link com.example.federico.wearableui.model.gaze.Gaze} have been
+     * computed and that a redraw of the {@link com.example.federico.wearableui.viewport.Viewport} has been requested.
+     * @param origin the timestamp of the sensor sample the Gaze orientation comes from.
+     */
+    void onGazeComputed(final long origin);
+
+    /**
+     * Signals that the {@link com.example.federico.wearableui.model.finger.Finger} orientation has been computed and that
+     * a redraw of the {@link com.example.federico.wearableui.viewport.drawable_content.cursor.Cursor} has been requested.
+     * @param origin the time at which the Finger orientation was received via Bluetooth.
+     */
+    void onFingerComputed(final long origin);
+
+    /**
+     * Signals that the Viewport is being scrolled according to the last Gaze orientation computed.
+     */
+    void onViewportRedraw();
+
+    /**
+     * Signals that the Cursor is being moved according to the last Finger orientation computed.
+     */
+    void onCursorRedraw();
+
+    /**
+     * Signals that the Viewport has drawn a frame, which closes the traces of the orientations that have been displayed.
+     */
+    void onFrameDrawn();
+
+    /**
+     * Returns the latencies recorded for a stage of the pipeline.
+     * @param stage the {@link LatencyTracer.Stage}.
+     * @return a {@link RollingHistogram} of the latencies of the stage, in nanoseconds.
+     */
+    RollingHistogram getHistogram(final LatencyTracer.Stage stage);
+
+    /**
+     * Discards all the recorded latencies and the traces that are still in flight.
+     */
+    void reset();
+
+    /**
+     * Writes a summary of the recorded latencies (p50, p95, p99 and max of each stage) to the passed file.
+     * @param file the file to write the summary to. If it exists, it is overwritten.
+     * @throws IOException if the file can not be written.
+     */
+    void dump(final File file) throws IOException;
+
+}
@@ -0,0 +1,242 @@
+package com.example.federico.wearableui.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * This class traces the latency of the orientation updates from their origin to the moment they are displayed.
+ * A head movement goes from the {@link android.hardware.SensorEvent} to the
+ * {@link com.example.federico.wearableui.services.imu_handling.SensorFusionService}, then through the
+ * {@link com.example.federico.wearableui.intraprocess_messaging.IntraProcessMessageHandler} to the
+ * {@link com.example.federico.wearableui.model.gaze.Gaze} and back to the main thread, where the
+ * {@link com.example.federico.wearableui.viewport.Viewport} is scrolled and finally drawn. A finger movement follows
+ * the same path, starting from the moment the orientation is received via Bluetooth. The timestamp of the origin is
+ * carried through all of these stages and the latency of each of them is recorded in a {@link RollingHistogram}.
+ *
+ * All the timestamps are expressed in the {@link System#nanoTime()} time base.
+ *
+ * This class is also a Singleton, since there only has to be one instance of it.
+ */
+public class LatencyTracer implements ILatencyTracer {
+
+    /**
+     * Enumerator for the stages of the pipeline whose latency is traced.
+     */
+    public enum Stage {
+        /** From the sensor timestamp to the moment the sample is delivered to the fusion service. */
+        SENSOR_DELIVERY,
+        /** From the delivery of the sample to the moment the fused orientation is communicated. */
+        FUSION,
+        /** From the moment the Gaze orientation is communicated to the moment it's received on the main thread. */
+        GAZE_DISPATCH,
+        /** From the moment the Gaze orientation is received on the main thread to the moment its pitch and yaw are computed. */
+        GAZE_COMPUTATION,
+        /** From the moment the Gaze pitch and yaw are computed to the moment the Viewport is scrolled accordingly. */
+        VIEWPORT_REDRAW_DISPATCH,
+        /** From the moment the Viewport is scrolled to the moment the next frame has been drawn. */
+        DRAW,
+        /** From the sensor timestamp to the moment the frame displaying the orientation has been drawn. */
+        MOTION_TO_PHOTON,
+        /** From the moment the Finger orientation is received via Bluetooth to the moment it's received on the main thread. */
+        FINGER_DISPATCH,
+        /** From the moment the Finger orientation is received on the main thread to the moment its pitch and yaw are computed. */
+        FINGER_COMPUTATION,
+        /** From the moment the Finger pitch and yaw are computed to the moment the Cursor is moved accordingly. */
+        CURSOR_REDRAW_DISPATCH,
+        /** From the moment the Finger orientation is received via Bluetooth to the moment the frame displaying it has been drawn. */
+        FINGER_TO_PHOTON
+    }
+
+    /**
+     * Number of samples over which the percentiles of each stage are computed.
+     */
+    private static final int WINDOW = 512;
+
+    /**
+     * Constant specifying the factor between a nano-second and a milli-second.
+     */
+    private static final double NS2MS = 1.0 / 1000000.0;
+
+    /**
+     * The Singleton instance.
+     */
+    private static ILatencyTracer INSTANCE = null;
+
+    /**
+     * The latencies of each stage, indexed by the ordinal of the stage.
+     */
+    private final RollingHistogram[] histograms;
+
+    /**
+     * Flag indicating whether the latencies are being recorded.
+     */
+    private volatile boolean enabled;
+
+    /**
+     * Origin of the last Gaze orientation whose pitch and yaw have been computed, 0 if none is pending.
+     */
+    private long computedGazeOrigin;
+    /**
+     * Time at which the last Gaze pitch and yaw have been computed.
+     */
+    private long gazeComputedAt;
+    /**
+     * Origin of the Gaze orientation the Viewport has been scrolled to, 0 if it has already been drawn.
+     */
+    private long displayedGazeOrigin;
+    /**
+     * Time at which the Viewport has been scrolled.
+     */
+    private long viewportRedrawAt;
+
+    /**
+     * Origin of the last Finger orientation whose pitch and yaw have been computed, 0 if none is pending.
+     */
+    private long computedFingerOrigin;
+    /**
+     * Time at which the last Finger pitch and yaw have been computed.
+     */
+    private long fingerComputedAt;
+    /**
+     * Origin of the Finger orientation the Cursor has been moved to, 0 if it has already been drawn.
+     */
+    private long displayedFingerOrigin;
+
+    /**
+     * Returns the Singleton instance.
+     * @return the Singleton instance.
+     */
+    public static synchronized ILatencyTracer getInstance() {
+        if(INSTANCE == null) {
+            INSTANCE = new LatencyTracer();
+        }
+
+        return INSTANCE;
+    }
+
+    /**
+     * Constructor.
+     */
+    private LatencyTracer() {
+        final Stage[] stages = Stage.values();
+        this.histograms = new RollingHistogram[stages.length];
+        for(final Stage stage : stages) {
+            this.histograms[stage.ordinal()] = new RollingHistogram(WINDOW);
+        }
+    }
+
+    @Override
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @Override
+    public long now() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void record(final Stage stage, final long latency) {
+        if(this.enabled) {
+            this.histograms[stage.ordinal()].record(latency);
+        }
+    }
+
+    @Override
+    public void recordSince(final Stage stage, final long since) {
+        // A timestamp of 0 means the stage has never started (e.g. the message didn't carry a timestamp)
+        if(this.enabled && since != 0) {
+            this.histograms[stage.ordinal()].record(this.now() - since);
+        }
+    }
+
+    @Override
+    public synchronized void onGazeComputed(final long origin) {
+        this.computedGazeOrigin = origin;
+        this.gazeComputedAt = this.now();
+    }
+
+    @Override
+    public synchronized void onFingerComputed(final long origin) {
+        this.computedFingerOrigin = origin;
+        this.fingerComputedAt = this.now();
+    }
+
+    @Override
+    public synchronized void onViewportRedraw() {
+        if(this.computedGazeOrigin != 0) {
+            this.recordSince(Stage.VIEWPORT_REDRAW_DISPATCH, this.gazeComputedAt);
+            this.displayedGazeOrigin = this.computedGazeOrigin;
+            this.viewportRedrawAt = this.now();
+            this.computedGazeOrigin = 0;
+        }
+    }
+
+    @Override
+    public synchronized void onCursorRedraw() {
+        if(this.computedFingerOrigin != 0) {
+            this.recordSince(Stage.CURSOR_REDRAW_DISPATCH, this.fingerComputedAt);
+            this.displayedFingerOrigin = this.computedFingerOrigin;
+            this.computedFingerOrigin = 0;
+        }
+    }
+
+    @Override
+    public synchronized void onFrameDrawn() {
+        if(this.displayedGazeOrigin != 0) {
+            this.recordSince(Stage.DRAW, this.viewportRedrawAt);
+            this.recordSince(Stage.MOTION_TO_PHOTON, this.displayedGazeOrigin);
+            this.displayedGazeOrigin = 0;
+        }
+        if(this.displayedFingerOrigin != 0) {
+            this.recordSince(Stage.FINGER_TO_PHOTON, this.displayedFingerOrigin);
+            this.displayedFingerOrigin = 0;
+        }
+    }
+
+    @Override
+    public RollingHistogram getHistogram(final Stage stage) {
+        return this.histograms[stage.ordinal()];
+    }
+
+    @Override
+    public synchronized void reset() {
+        for(final RollingHistogram histogram : this.histograms) {
+            histogram.reset();
+        }
+        this.computedGazeOrigin = 0;
+        this.displayedGazeOrigin = 0;
+        this.computedFingerOrigin = 0;
+        this.displayedFingerOrigin = 0;
+    }
+
+    @Override
+    public void dump(final File file) throws IOException {
+        final Writer writer = new FileWriter(file);
+        try {
+            writer.write(String.format(Locale.US, "%-24s %10s %10s %10s %10s %8s%n", "stage (ms)", "p50", "p95", "p99", "max", "samples"));
+            for(final Stage stage : Stage.values()) {
+                final RollingHistogram histogram = this.histograms[stage.ordinal()];
+                writer.write(String.format(Locale.US, "%-24s %10.3f %10.3f %10.3f %10.3f %8d%n", stage.name(),
+                        histogram.getP50() * NS2MS, histogram.getP95() * NS2MS, histogram.getP99() * NS2MS,
+                        histogram.getMax() * NS2MS, histogram.getCount()));
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+package com.example.federico.wearableui.metrics;
+
+import java.util.Arrays;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * A RollingHistogram keeps the last N samples of a measure (such as a duration in nanoseconds or a count) and computes
+ * percentiles over them. Recording a sample is O(1) and never allocates, since the samples are stored in a ring buffer;
+ * all the work is done when a percentile is read, which sorts a copy of the window into a preallocated buffer.
+ *
+ * All the methods are synchronized, so samples can be recorded and read from different threads.
+ */
+public class RollingHistogram {
+
+    /**
+     * Ring buffer holding the samples in the window.
+     */
+    private final long[] samples;
+
+    /**
+     * Buffer in which the samples are copied and sorted to compute percentiles.
+     */
+    private final long[] sorted;
+
+    /**
+     * Index of the slot of the ring buffer that will hold the next sample.
+     */
+    private int next;
+
+    /**
+     * Number of samples currently in the window.
+     */
+    private int count;
+
+    /**
+     * Total number of samples recorded since the creation (or the last reset) of the RollingHistogram.
+     */
+    private long total;
+
+    /**
+     * Flag indicating whether the sorted buffer reflects the current window.
+     */
+    private boolean sortedValid;
+
+    /**
+     * Constructor.
+     * @param window how many of the most recent samples are kept to compute percentiles.
+     */
+    public RollingHistogram(final int window) {
+        if(window <= 0) {
+            throw new IllegalArgumentException("The window of a RollingHistogram has to contain at least one sample.");
+        }
+        this.samples = new long[window];
+        this.sorted = new long[window];
+    }
+
+    /**
+     * Records a new sample, discarding the oldest one if the window is full.
+     * @param value the value of the sample.
+     */
+    public synchronized void record(final long value) {
+        this.samples[this.next] = value;
+        this.next = (this.next + 1) % this.samples.length;
+        if(this.count < this.samples.length) {
+            this.count++;
+        }
+        this.total++;
+        this.sortedValid = false;
+    }
+
+    /**
+     * Returns the value below which the passed percentage of the samples in the window falls (nearest-rank method).
+     * @param percentile a percentage between 0 and 100, e.g. 95 for the 95th percentile.
+     * @return the value of the percentile, or 0 if no sample has been recorded.
+     */
+    public synchronized long getPercentile(final double percentile) {
+        if(percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("A percentile has to be between 0 and 100.");
+        }
+        if(this.count == 0) {
+            return 0;
+        }
+        if(!this.sortedValid) {
+            System.arraycopy(this.samples, 0, this.sorted, 0, this.count);
+            Arrays.sort(this.sorted, 0, this.count);
+            this.sortedValid = true;
+        }
+        final int rank = (int) Math.ceil(percentile / 100.0 * this.count);
+        return this.sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Returns the median of the samples in the window.
+     * @return the 50th percentile.
+     */
+    public long getP50() {
+        return this.getPercentile(50);
+    }
+
+    /**
+     * Returns the 95th percentile of the samples in the window.
+     * @return the 95th percentile.
+     */
+    public long getP95() {
+        return this.getPercentile(95);
+    }
+
+    /**
+     * Returns the 99th percentile of the samples in the window.
+     * @return the 99th percentile.
+     */
+    public long getP99() {
+        return this.getPercentile(99);
+    }
+
+    /**
+     * Returns the greatest sample in the window.
+     * @return the greatest sample, or 0 if no sample has been recorded.
+     */
+    public long getMax() {
+        return this.getPercentile(100);
+    }
+
+    /**
+     * Returns the number of samples currently in the window.
+     * @return how many samples percentiles are computed on.
+     */
+    public synchronized int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Returns the number of samples recorded, including the ones that have already left the window.
+     * @return how many samples have been recorded since the creation or the last reset.
+     */
+    public synchronized long getTotalCount() {
+        return this.total;
+    }
+
+    /**
+     * Discards all the samples.
+     */
+    public synchronized void reset() {
+        this.next = 0;
+        this.count = 0;
+        this.total = 0;
+        this.sortedValid = false;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "{p50: " + this.getP50() + ", p95: " + this.getP95() + ", p99: " + this.getP99() + ", max: " + this.getMax()
+                + ", samples: " + this.count + "}";
+    }
+
+}
@@ -5,6 +5,10 @@ import android.os.Message;
 
 import com.example.federico.wearableui.intraprocess_messaging.IntraProcessMessage;
 import com.example.federico.wearableui.intraprocess_messaging.IntraProcessMessageHandler;
+import com.example.federico.wearableui.metrics.ILatencyTracer;
+import com.example.federico.wearableui.metrics.LatencyTracer;
+import com.example.federico.wearableui.representation.FastMath;
+import com.example.federico.wearableui.representation.OrientationSnapshot;
 import com.example.federico.wearableui.representation.Quaternion;
 
 /**
@@ -25,50 +29,99 @@ public class Finger implements  IFinger {
      */
     private static IFinger INSTANCE = null;
 
+    /**
+     * The orientation of the Finger expressed in the user's coordinate system, along with its angles. They're published
+     * together, so that readers never mix the angles of two different orientations.
+     */
+    private static final class State {
+
+        /**
+         * The orientation of the Finger expressed in the user's coordinate system.
+         */
+        private final OrientationSnapshot orientation;
+        /**
+         * The pitch angle of the Finger relative to the user's coordinate system. The angle is referred to the starting
+         * orientation (calibration).
+         */
+        private final float pitch;
+        /**
+         * The yaw angle of the Finger relative to the user's coordinate system. The angle is referred to the starting
+         * orientation (calibration).
+         */
+        private final float yaw;
+
+        private State(final OrientationSnapshot orientation, final float pitch, final float yaw) {
+            this.orientation = orientation;
+            this.pitch = pitch;
+            this.yaw = yaw;
+        }
+
+    }
+
     /**
      * The orientation of the Finger supplied via Bluetooth communication. This is not relative to the user's coordinate system.
      */
-    private Quaternion suppliedOrientation;
+    private volatile OrientationSnapshot suppliedOrientation;
     /**
-     * The orientation of the Finger expressed in the user's coordinate system.
+     * The state computed from the most recent supplied orientation.
      */
-    private Quaternion orientation;
+    private volatile State state;
     /**
      * The orientation taken as the starting orientation of the Finger. This is not expressed in the user's coordinate system.
      * Since both this and the suppliedOrientations are expressed in the same coordinate system though, by calculating the difference
      * between the two, we can obtain an orientation that is relative to the user's coordinate system.
      */
-    private Quaternion calibration;
+    private volatile Quaternion calibration;
+    /**
+     * The inverse of the calibration, computed once in {@link #calibrate(Quaternion)}. A new instance is published for
+     * every calibration, and it's never modified afterwards.
+     */
+    private volatile Quaternion calibrationInverse;
+
+    /**
+     * The {@link ILatencyTracer} used to trace how long it takes to compute the orientation of the Finger.
+     */
+    private final ILatencyTracer latencyTracer = LatencyTracer.getInstance();
 
     /**
-     * The pitch angle of the Finger relative to the user's coordinate system. The angle is referred to the starting orientation
-     * (calibration).
+     * The {@link FingerInterpolator} that computes the angles of the Finger for every frame. It's only used by the
+     * thread that draws the cursor, which feeds it with the published states.
      */
-    private float fingerPitch;
+    private final FingerInterpolator interpolator = new FingerInterpolator();
     /**
-     * The yaw angle of the Finger relative to the user's coordinate system. The angle is referred to the starting orientation
-     * (calibration).
+     * The last state added to the interpolator.
      */
-    private float fingerYaw;
+    private State interpolatedState;
+    /**
+     * The inverse of the calibration the samples in the interpolator refer to.
+     */
+    private Quaternion interpolatedCalibrationInverse;
 
     /**
      * Computes, on an AsyncTask, the current Finger orientation relative to the user's coordinate system.
+     * @param supplied the supplied orientation, whose timestamp is the time at which it has been received via Bluetooth.
+     * @param receivedAt the time at which the supplied orientation has been received by the Finger.
      */
-    private void computeCurrentOrientation() {
+    private void computeCurrentOrientation(final OrientationSnapshot supplied, final long receivedAt) {
 
             new AsyncTask<Void, Void, Void>() {
 
                 @Override
                 protected Void doInBackground(Void... params) {
-                    final Quaternion startingDirection = calibration.clone();
-                    startingDirection.inverse();
-
-                    suppliedOrientation.multiplyByQuat(startingDirection, orientation);
+                    // The product is computed straight into the snapshot that is published
+                    final OrientationSnapshot orientation = supplied.multiplyByQuat(calibrationInverse);
 
-                    Finger.this.fingerPitch = (float) Math.toDegrees(orientation.getPitch());
+                    final float pitch = FastMath.toDegrees(orientation.getPitch());
                     //TODO: remove the (-1) in the future, it's needed right now for the Myo part.
-                    Finger.this.fingerYaw = (float) Math.toDegrees(orientation.getYaw()) * (-1);
+                    final float yaw = FastMath.toDegrees(orientation.getYaw()) * (-1);
 
+                    // The tasks run on a pool, so a task can finish after the one of a newer orientation
+                    if(!publishState(new State(orientation, pitch, yaw))) {
+                        return null;
+                    }
+
+                    latencyTracer.recordSince(LatencyTracer.Stage.FINGER_COMPUTATION, receivedAt);
+                    latencyTracer.onFingerComputed(supplied.getTimestamp());
                     Message.obtain(IntraProcessMessageHandler.getInstance(), IntraProcessMessage.REDRAW_CURSOR.getMessageCode()).sendToTarget();
 
                     return null;
@@ -78,6 +131,20 @@ public class Finger implements  IFinger {
 
     }
 
+    /**
+     * Publishes the passed state, unless the one of a newer orientation has already been published. Only the tasks
+     * computing the state synchronize, readers never block.
+     * @param computed the state that has just been computed.
+     * @return true if the state has been published, false if it was stale.
+     */
+    private synchronized boolean publishState(final State computed) {
+        if(!computed.orientation.isNewerThan(this.state.orientation)) {
+            return false;
+        }
+        this.state = computed;
+        return true;
+    }
+
     /**
      * Returns the Singleton instance.
      * @return the Singleton instance.
@@ -94,24 +161,38 @@ public class Finger implements  IFinger {
      * Constructor.
      */
     private Finger() {
-        this.suppliedOrientation = new Quaternion();
-        this.orientation = new Quaternion();
+        this.suppliedOrientation = new OrientationSnapshot(new Quaternion(), 0, 0);
+        this.state = new State(this.suppliedOrientation, 0, 0);
+        this.interpolatedState = this.state;
+        this.calibrationInverse = new Quaternion();
     }
 
     @Override
     public void updateOrientation(final Quaternion orientationUpdate) {
+        this.updateOrientation(new OrientationSnapshot(orientationUpdate, this.latencyTracer.now(),
+                OrientationSnapshot.nextSequence()));
+    }
+
+    @Override
+    public void updateOrientation(final OrientationSnapshot orientationUpdate) {
         this.suppliedOrientation = orientationUpdate;
-        this.computeCurrentOrientation();
+        this.computeCurrentOrientation(orientationUpdate, this.latencyTracer.now());
     }
 
     @Override
     public void calibrate(final Quaternion calibration) {
         this.calibration = calibration;
+        // The calibration doesn't change until the next one, so its inverse is only computed once
+        if(calibration != null) {
+            final Quaternion inverse = new Quaternion();
+            calibration.inverse(inverse);
+            this.calibrationInverse = inverse;
+        }
     }
 
     @Override
     public Quaternion getOrientation() {
-        return this.orientation;
+        return this.state.orientation.toQuaternion(new Quaternion());
     }
 
     @Override
@@ -121,12 +202,38 @@ public class Finger implements  IFinger {
 
     @Override
     public float getFingerPitch() {
-        return this.fingerPitch;
+        return this.state.pitch;
     }
 
     @Override
     public float getFingerYaw() {
-        return this.fingerYaw;
+        return this.state.yaw;
+    }
+
+    @Override
+    public boolean getFingerAnglesAt(final long frameTime, final float[] angles) {
+        // A new calibration changes the reference of the angles, so the previous samples can't be interpolated with the new ones
+        final Quaternion currentCalibrationInverse = this.calibrationInverse;
+        if(currentCalibrationInverse != this.interpolatedCalibrationInverse) {
+            this.interpolatedCalibrationInverse = currentCalibrationInverse;
+            this.interpolator.clear();
+        }
+        final State current = this.state;
+        if(current != this.interpolatedState) {
+            this.interpolatedState = current;
+            this.interpolator.addSample(current.orientation.getTimestamp(), current.pitch, current.yaw);
+        }
+        return this.interpolator.interpolate(frameTime, angles);
+    }
+
+    @Override
+    public void setJitterBufferDepth(final int depth) {
+        this.interpolator.setDepth(depth);
+    }
+
+    @Override
+    public int getJitterBufferDepth() {
+        return this.interpolator.getDepth();
     }
 
 }
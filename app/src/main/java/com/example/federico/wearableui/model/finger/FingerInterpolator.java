@@ -0,0 +1,243 @@
+package com.example.federico.wearableui.model.finger;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * This class turns the angles of the {@link Finger}, which arrive at the irregular rate the ring sends them at, into
+ * angles for every frame of the display. The samples are kept in a jitter buffer and played out with a delay of a
+ * configurable number of sample intervals: the angles shown on a frame are interpolated between the two samples around
+ * the playout time, so the cursor moves smoothly even when the samples arrive in bursts. When the playout time goes past
+ * the newest sample (a sample is late, or the delay is 0) the angles are extrapolated with the last measured angular
+ * velocity, for at most one sample interval, and then the newest sample is held.
+ *
+ * The ring doesn't send the time its samples have been taken at, so they're placed on the timeline by the time they're
+ * received at: the sample interval is estimated from those times, so the delay adapts to the rate of the ring, and each
+ * sample is played out close to where the previous ones and that interval expect it, so that the jitter of the link
+ * doesn't turn into jerks of the cursor. Instances are not thread safe and are meant to be used from the thread that draws the cursor.
+ */
+public class FingerInterpolator {
+
+    /**
+     * The default depth of the jitter buffer, in sample intervals.
+     */
+    public static final int DEFAULT_DEPTH = 1;
+
+    /**
+     * The number of samples kept in the buffer.
+     */
+    private static final int CAPACITY = 16;
+
+    /**
+     * The greatest depth of the jitter buffer. The buffer has to keep the two samples around the playout time, plus a
+     * spare one for the samples that arrive late.
+     */
+    public static final int MAX_DEPTH = CAPACITY - 3;
+
+    /**
+     * The sample interval (in nanoseconds) assumed before enough samples have been received to measure it.
+     */
+    private static final long DEFAULT_INTERVAL = 20000000L;
+
+    /**
+     * Gaps between two samples longer than this (in nanoseconds) mean that the ring stopped sending, and the samples
+     * received before it are discarded instead of interpolated.
+     */
+    private static final long MAX_GAP = 250000000L;
+
+    /**
+     * The weight given to the last measured interval by the estimate of the sample interval.
+     */
+    private static final float INTERVAL_SMOOTHING = 0.1f;
+
+    /**
+     * The weight given to the time a sample has been received at, against the one expected from the previous samples.
+     */
+    private static final float TIME_CORRECTION = 0.1f;
+
+    /**
+     * The times (in nanoseconds) the samples in the buffer are played out at, derived from the ones they have been
+     * received at.
+     */
+    private final long[] times = new long[CAPACITY];
+    /**
+     * The pitch angles (in degrees) of the samples in the buffer.
+     */
+    private final float[] pitches = new float[CAPACITY];
+    /**
+     * The yaw angles (in degrees) of the samples in the buffer.
+     */
+    private final float[] yaws = new float[CAPACITY];
+    /**
+     * The position of the oldest sample in the buffer.
+     */
+    private int oldest;
+    /**
+     * The number of samples in the buffer.
+     */
+    private int count;
+    /**
+     * The time (in nanoseconds) the newest sample has been received at.
+     */
+    private long lastReceived;
+
+    /**
+     * The estimate of the time (in nanoseconds) between two samples.
+     */
+    private float interval = DEFAULT_INTERVAL;
+    /**
+     * The delay of the playout, in sample intervals.
+     */
+    private int depth = DEFAULT_DEPTH;
+
+    /**
+     * Sets the depth of the jitter buffer. Deeper buffers absorb more jitter, but delay the cursor by one more sample
+     * interval each.
+     * @param depth the delay of the playout, in sample intervals. 0 disables the buffer, and the angles are only
+     *              extrapolated from the newest samples.
+     */
+    public void setDepth(final int depth) {
+        if(depth < 0 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("The depth must be between 0 and " + MAX_DEPTH + ", got " + depth);
+        }
+        this.depth = depth;
+    }
+
+    public int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * Returns the current estimate of the time between two samples.
+     * @return the sample interval in nanoseconds.
+     */
+    public long getSampleInterval() {
+        return (long) this.interval;
+    }
+
+    /**
+     * Adds a sample to the buffer. Samples that are not newer than the newest one in the buffer are ignored.
+     * @param time the time (in nanoseconds) the sample has been received at.
+     * @param pitch the pitch angle of the Finger in degrees.
+     * @param yaw the yaw angle of the Finger in degrees.
+     */
+    public void addSample(final long time, final float pitch, final float yaw) {
+        long smoothedTime = time;
+        if(this.count > 0) {
+            final long gap = time - this.lastReceived;
+            if(gap <= 0) {
+                return;
+            }
+            if(gap > MAX_GAP) {
+                // The ring has been idle, interpolating across the pause would drag the cursor
+                this.count = 0;
+            } else {
+                this.interval += INTERVAL_SMOOTHING * (gap - this.interval);
+                // The sample is placed where the regular sending rate of the ring expects it, corrected by a fraction of
+                // its delay, so that the jitter of the link doesn't turn into jerks of the cursor
+                final long expected = this.times[this.index(this.count - 1)] + (long) this.interval;
+                smoothedTime = expected + (long) (TIME_CORRECTION * (time - expected));
+            }
+        }
+        this.lastReceived = time;
+
+        if(this.count == CAPACITY) {
+            this.oldest = this.index(1);
+            this.count--;
+        }
+        final int newest = this.index(this.count);
+        this.times[newest] = smoothedTime;
+        this.pitches[newest] = pitch;
+        this.yaws[newest] = yaw;
+        this.count++;
+    }
+
+    /**
+     * Computes the angles of the Finger to display at the passed time.
+     * @param time the time (in nanoseconds) the frame is displayed at.
+     * @param output an array of at least two elements, where the pitch and the yaw (in degrees) are stored.
+     * @return true if the angles may still change on the following frames, false if they're held at the newest sample
+     * (or there are no samples yet, in which case the output is left untouched).
+     */
+    public boolean interpolate(final long time, final float[] output) {
+        if(this.count == 0) {
+            return false;
+        }
+
+        final int newest = this.index(this.count - 1);
+        if(this.count == 1) {
+            output[0] = this.pitches[newest];
+            output[1] = this.yaws[newest];
+            return false;
+        }
+
+        final long playout = time - (long) (this.depth * this.interval);
+        if(playout >= this.times[newest]) {
+            // Late sample: keep going with the last angular velocity, for at most one interval
+            final long elapsed = playout - this.times[newest];
+            if(elapsed >= this.interval) {
+                // The extrapolation is over: the cursor settles on the newest sample, instead of staying at the overshoot
+                output[0] = this.pitches[newest];
+                output[1] = this.yaws[newest];
+                return false;
+            }
+            final float fraction = elapsed / (float) (this.times[newest] - this.times[this.index(this.count - 2)]);
+            this.lerp(this.index(this.count - 2), newest, 1 + fraction, output);
+            return true;
+        }
+
+        int next = this.count - 1;
+        while(next > 0 && this.times[this.index(next - 1)] > playout) {
+            next--;
+        }
+        if(next == 0) {
+            // The buffer doesn't reach that far back yet
+            output[0] = this.pitches[this.oldest];
+            output[1] = this.yaws[this.oldest];
+            return true;
+        }
+
+        final int from = this.index(next - 1);
+        final int to = this.index(next);
+        this.lerp(from, to, (playout - this.times[from]) / (float) (this.times[to] - this.times[from]), output);
+        return true;
+    }
+
+    /**
+     * Discards all the samples, for instance after a calibration, which changes the reference of the angles.
+     */
+    public void clear() {
+        this.count = 0;
+    }
+
+    /**
+     * Interpolates (or extrapolates, for fractions greater than 1) the angles of two samples. The yaw goes the short way
+     * around, so that the cursor doesn't sweep the whole circle when the angle wraps.
+     */
+    private void lerp(final int from, final int to, final float fraction, final float[] output) {
+        output[0] = this.pitches[from] + (this.pitches[to] - this.pitches[from]) * fraction;
+
+        float deltaYaw = this.yaws[to] - this.yaws[from];
+        if(deltaYaw > 180) {
+            deltaYaw -= 360;
+        } else if(deltaYaw < -180) {
+            deltaYaw += 360;
+        }
+        float yaw = this.yaws[from] + deltaYaw * fraction;
+        if(yaw > 180) {
+            yaw -= 360;
+        } else if(yaw <= -180) {
+            yaw += 360;
+        }
+        output[1] = yaw;
+    }
+
+    /**
+     * Returns the position in the arrays of the sample that is the passed number of samples after the oldest one.
+     */
+    private int index(final int offset) {
+        return (this.oldest + offset) % CAPACITY;
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.example.federico.wearableui.model.finger;
 
+import com.example.federico.wearableui.representation.OrientationSnapshot;
 import com.example.federico.wearableui.representation.Quaternion;
 
 /**
@@ -19,6 +20,15 @@ public interface IFinger {
      */
     void updateOrientation(final Quaternion orientationUpdate);
 
+    /**
+     * Updates the Finger orientation, keeping track of when the orientation has been received so that its latency can be
+     * traced by the {@link com.example.federico.wearableui.metrics.LatencyTracer}.
+     * @param orientationUpdate an {@link OrientationSnapshot} that represents the new orientation of the Finger. Its timestamp
+     *                          is the time at which the orientation has been received via Bluetooth, and snapshots older than
+     *                          the last one whose angles have been computed are ignored.
+     */
+    void updateOrientation(final OrientationSnapshot orientationUpdate);
+
     /**
      * Sets the Finger calibration {@link Quaternion}.
      * @param calibration a Quaternion that represents the starting position of the Finger. This orientation isn't relative to the user's
@@ -29,7 +39,7 @@ public interface IFinger {
 
     /**
      * Returns the orientation of the Finger, expressed in the user's coordinate system.
-     * @return a {@link Quaternion} representing the Finger orientation.
+     * @return a copy of the {@link Quaternion} representing the Finger orientation.
      */
     Quaternion getOrientation();
 
@@ -52,4 +62,33 @@ public interface IFinger {
      */
     float getFingerYaw();
 
+    /**
+     * Returns the pitch and the yaw of the Finger to display on a frame. The orientations received via Bluetooth are
+     * kept in a jitter buffer and the angles are interpolated between them, so that the cursor moves smoothly even if
+     * the orientations arrive at an irregular rate. This has to be always called from the same thread, the one that
+     * draws the cursor.
+     * @param frameTime the time the frame is displayed at, in the time base of
+     *                  {@link com.example.federico.wearableui.metrics.LatencyTracer#now()}.
+     * @param angles an array of at least two elements, where the degrees of the pitch and the yaw angles are stored.
+     * @return true if the angles may still change on the following frames, false if they're held at the ones of the
+     * newest orientation.
+     */
+    boolean getFingerAnglesAt(final long frameTime, final float[] angles);
+
+    /**
+     * Sets the depth of the jitter buffer used by {@link #getFingerAnglesAt(long, float[])}. Deeper buffers absorb more
+     * jitter, but each level delays the cursor by the time between two orientations. It has to be called from the thread
+     * that draws the cursor.
+     * @param depth the number of orientations the displayed angles lag behind the newest one, between 0 and
+     *              {@link FingerInterpolator#MAX_DEPTH}. 0 disables the buffer, and the angles are extrapolated from
+     *              the newest orientations.
+     */
+    void setJitterBufferDepth(final int depth);
+
+    /**
+     * Returns the depth of the jitter buffer used by {@link #getFingerAnglesAt(long, float[])}.
+     * @return the number of orientations the displayed angles lag behind the newest one.
+     */
+    int getJitterBufferDepth();
+
 }
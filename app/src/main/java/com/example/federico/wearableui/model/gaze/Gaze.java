@@ -1,12 +1,14 @@
 package com.example.federico.wearableui.model.gaze;
 
-import android.hardware.SensorManager;
 import android.os.AsyncTask;
 import android.os.Message;
 
 import com.example.federico.wearableui.intraprocess_messaging.IntraProcessMessage;
 import com.example.federico.wearableui.intraprocess_messaging.IntraProcessMessageHandler;
-import com.example.federico.wearableui.representation.Matrixf4x4;
+import com.example.federico.wearableui.metrics.ILatencyTracer;
+import com.example.federico.wearableui.metrics.LatencyTracer;
+import com.example.federico.wearableui.representation.FastMath;
+import com.example.federico.wearableui.representation.OrientationSnapshot;
 import com.example.federico.wearableui.representation.Quaternion;
 
 /**
@@ -27,50 +29,92 @@ public class Gaze implements IGaze {
     private static IGaze INSTANCE = null;
 
     /**
-     * Quaternion representing the Gaze orientation based on the World Coordinate System.
+     * Pitch and yaw of the Gaze, from the orientation expressed by the calibration field. They're published together, so
+     * that readers never mix the angles of two different orientations.
      */
-    private Quaternion wcsBasedOrientation;
+    private static final class Angles {
+
+        private final float pitch;
+        private final float yaw;
+        /**
+         * The sequence number of the {@link OrientationSnapshot} the angles have been computed from.
+         */
+        private final long sequence;
+
+        private Angles(final float pitch, final float yaw, final long sequence) {
+            this.pitch = pitch;
+            this.yaw = yaw;
+            this.sequence = sequence;
+        }
+
+    }
+
+    /**
+     * Snapshot of the Gaze orientation based on the World Coordinate System.
+     */
+    private volatile OrientationSnapshot wcsBasedOrientation;
     /**
      * Quaternion representing the starting Gaze orientation based on the World Coordinate System.
      */
-    private Quaternion calibration;
+    private volatile Quaternion calibration;
+    /**
+     * The inverse of the calibration, computed once in {@link #calibrate(Quaternion)}. A new instance is published for
+     * every calibration, and it's never modified afterwards.
+     */
+    private volatile Quaternion calibrationInverse;
 
     /**
-     * Pitch angle of the Gaze from the orientation expressed by the calibration field.
+     * The angles of the Gaze computed from the most recent orientation.
      */
-    private float gazePitch;
+    private volatile Angles angles = new Angles(0, 0, 0);
+
     /**
-     * Yaw angle of the Gaze from the orientation expressed by the calibration field.
+     * The {@link ILatencyTracer} used to trace how long it takes to compute the pitch and yaw of the Gaze.
      */
-    private float gazeYaw;
+    private final ILatencyTracer latencyTracer = LatencyTracer.getInstance();
+
+    /**
+     * Pitch of the Gaze calibration, computed once in {@link #calibrate(Quaternion)}.
+     */
+    private volatile float calibrationPitch;
 
     /**
      * Helper function to obtain the device pitch from a given orientation, expressed relative to the world
-     * coordinate system. This is done by remapping such coordinate system to the device's coordinate system.
+     * coordinate system. This is the pitch that SensorManager.getOrientation() returns after the rotation matrix of the
+     * orientation has been remapped with remapCoordinateSystem(AXIS_MINUS_X, AXIS_Z), so that our pitch will be relative
+     * to the -x axis of the device (tangential to the screen and pointing left) - therefore a pitch > 0 will indicate a
+     * rotation towards the sky, a pitch < 0 will indicate a rotation towards the ground.
+     *
+     * The remapping moves the third column of the rotation matrix to the second one, so the pitch, which is
+     * asin(-R[2][1]) of the remapped matrix, is asin(-R[2][2]) of the original one, and is computed directly from the
+     * quaternion without building any matrix.
      *
      * @param orientation the orientation of the device expressed in the rotation vector coordinate system
-     * @return the pitch of the device
+     * @return the pitch of the device in radians
+     */
+    static float getDevicePitch(final Quaternion orientation) {
+        return getDevicePitch(orientation.getX(), orientation.getY());
+    }
+
+    /**
+     * Same as {@link #getDevicePitch(Quaternion)}, from the only two components of the orientation it depends on.
+     * @param x the x component of the orientation.
+     * @param y the y component of the orientation.
+     * @return the pitch of the device in radians
      */
-    private float getDevicePitch(final Quaternion orientation) {
-        final Matrixf4x4 rm = new Matrixf4x4();
-        // Get the rotation matrix from the given quaternion
-        SensorManager.getRotationMatrixFromVector(rm.getMatrix(), orientation.ToArray());
-        final Matrixf4x4 rmRemapped = new Matrixf4x4();
-        // Remap the axes to the following, so that our pitch will be relative to the -x axis of the device
-        // (tangential to the screen and pointing left) - therefore a pitch > 0 will indicate a rotation towards
-        // the sky, a pitch < 0 will indicate a rotation towards the ground.
-        // The y axis is remapped to the x axis so that the roll will be the angle around the z axis of the device
-        // (coming out of the screen towards the user) - this is not used for now.
-        SensorManager.remapCoordinateSystem(rm.getMatrix(), SensorManager.AXIS_MINUS_X, SensorManager.AXIS_Z,
-                rmRemapped.getMatrix());
-
-        float[] angles = new float[3];
-        SensorManager.getOrientation(rmRemapped.getMatrix(), angles);
-
-        return angles[1];
+    static float getDevicePitch(final float x, final float y) {
+        // -R[2][2] = 2 (x^2 + y^2) - 1, clamped against the rounding errors of non unit quaternions
+        final float sine = 2 * (x * x + y * y) - 1;
+        return FastMath.asin(Math.max(-1f, Math.min(1f, sine)));
     }
 
-    private void computeWearersPitchAndYaw() {
+    /**
+     * Computes the pitch and yaw of the Gaze in background and requests the Viewport to be redrawn once they're ready.
+     * @param snapshot the orientation to compute the angles of, whose timestamp is the time at which the sensor sample
+     *                 it comes from has been taken.
+     * @param receivedAt the time at which the current orientation has been received.
+     */
+    private void computeWearersPitchAndYaw(final OrientationSnapshot snapshot, final long receivedAt) {
 
         // This task computes the pitch and yaw of the device relative to the device frame of reference
         // (not the world coordinate system that Android uses) and then calls for the viewport to be
@@ -79,21 +123,23 @@ public class Gaze implements IGaze {
 
             @Override
             protected Void doInBackground(Void... params) {
-                // Calculate rotation by multiplying the new wcsBasedOrientation quaternion by the inverse of the starting orientation, which
-                // is our calibration quaternion
-                final Quaternion startingDirection = calibration.clone();
-                startingDirection.inverse();
-                final Quaternion finishingDirection = new Quaternion();
-                wcsBasedOrientation.multiplyByQuat(startingDirection, finishingDirection);
+                // The rotation is given by multiplying the new wcsBasedOrientation quaternion by the inverse of the starting orientation, which
+                // is our calibration quaternion: only its yaw is needed, so the product isn't stored. Both angles are
+                // computed from the components of the snapshot, without copying it in a Quaternion.
+                final float yaw = snapshot.getYawOfProduct(calibrationInverse);
 
                 // Now we need to calculate the pitch - this has to be computed relative to the device so that
                 // our zero is relative to the device position - to do this we have to remap the coordinate system
                 // or else we would be using the world coordinate system which is EAST(x) - NORTH(y) - UP(z) based
-                final float deltaPitch = getDevicePitch(wcsBasedOrientation) - getDevicePitch(calibration);
+                final float deltaPitch = getDevicePitch(snapshot.getX(), snapshot.getY()) - calibrationPitch;
 
-                gazePitch = (float) Math.toDegrees(deltaPitch);
-                gazeYaw = (float) Math.toDegrees(finishingDirection.getYaw());
+                // The tasks run on a pool, so a task can finish after the one of a newer orientation
+                if(!publishAngles(new Angles(FastMath.toDegrees(deltaPitch), FastMath.toDegrees(yaw), snapshot.getSequence()))) {
+                    return null;
+                }
 
+                latencyTracer.recordSince(LatencyTracer.Stage.GAZE_COMPUTATION, receivedAt);
+                latencyTracer.onGazeComputed(snapshot.getTimestamp());
                 Message.obtain(IntraProcessMessageHandler.getInstance(), IntraProcessMessage.REDRAW_VIEWPORT.getMessageCode()).sendToTarget();
 
                 return null;
@@ -103,6 +149,20 @@ public class Gaze implements IGaze {
 
     }
 
+    /**
+     * Publishes the passed angles, unless the ones of a newer orientation have already been published. Only the tasks
+     * computing the angles synchronize, readers never block.
+     * @param computed the angles that have just been computed.
+     * @return true if the angles have been published, false if they were stale.
+     */
+    private synchronized boolean publishAngles(final Angles computed) {
+        if(computed.sequence <= this.angles.sequence) {
+            return false;
+        }
+        this.angles = computed;
+        return true;
+    }
+
     /**
      * Returns the Singleton instance.
      * @return the Singleton instance.
@@ -119,28 +179,42 @@ public class Gaze implements IGaze {
      * Constructor.
      */
     private Gaze() {
-        this.wcsBasedOrientation = new Quaternion();
+        this.wcsBasedOrientation = new OrientationSnapshot(new Quaternion(), 0, 0);
+        this.calibrationInverse = new Quaternion();
     }
 
     @Override
     public void updateGazeOrientation(final Quaternion orientation) {
+        this.updateGazeOrientation(new OrientationSnapshot(orientation, this.latencyTracer.now(),
+                OrientationSnapshot.nextSequence()));
+    }
+
+    @Override
+    public void updateGazeOrientation(final OrientationSnapshot orientation) {
         // Every time a new wcsBasedOrientation is set for the user's gaze, this method also automatically
         // computes the user's gaze pitch and yaw angles in degrees relative to the device.
         // Pitch will be the angle around the device -x axis, while yaw will be the angle around the axis
         // that points to the ground, where the zero is given by the yaw calculated from the calibration
         // quaternion.
         this.wcsBasedOrientation = orientation;
-        this.computeWearersPitchAndYaw();
+        this.computeWearersPitchAndYaw(orientation, this.latencyTracer.now());
     }
 
     @Override
     public void calibrate(final Quaternion calibration) {
         this.calibration = calibration;
+        // The calibration doesn't change until the next one, so its pitch and inverse are only computed once
+        if(calibration != null) {
+            final Quaternion inverse = new Quaternion();
+            calibration.inverse(inverse);
+            this.calibrationPitch = getDevicePitch(calibration);
+            this.calibrationInverse = inverse;
+        }
     }
 
     @Override
     public Quaternion getOrientationRelativeToWCS() {
-        return this.wcsBasedOrientation;
+        return this.wcsBasedOrientation.toQuaternion(new Quaternion());
     }
 
     @Override
@@ -150,11 +224,11 @@ public class Gaze implements IGaze {
 
     @Override
     public float getGazePitch() {
-        return this.gazePitch;
+        return this.angles.pitch;
     }
 
     @Override
     public float getGazeYaw() {
-        return this.gazeYaw;
+        return this.angles.yaw;
     }
 }
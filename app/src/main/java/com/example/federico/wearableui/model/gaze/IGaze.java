@@ -1,5 +1,6 @@
 package com.example.federico.wearableui.model.gaze;
 
+import com.example.federico.wearableui.representation.OrientationSnapshot;
 import com.example.federico.wearableui.representation.Quaternion;
 
 /**
@@ -19,6 +20,15 @@ public interface IGaze {
      */
     void updateGazeOrientation(final Quaternion orientation);
 
+    /**
+     * Updates the Gaze orientation, keeping track of when the orientation originated so that its latency can be traced by
+     * the {@link com.example.federico.wearableui.metrics.LatencyTracer}.
+     * @param orientation an {@link OrientationSnapshot} that represents the new orientation of the Gaze expressed in the
+     *                    World Coordinate System. Its timestamp is the time at which the sensor sample the orientation comes
+     *                    from has been taken, and snapshots older than the last one whose angles have been computed are ignored.
+     */
+    void updateGazeOrientation(final OrientationSnapshot orientation);
+
     /**
      * Sets the Gaze calibration {@link Quaternion}.
      * @param calibration a Quaternion that represents the starting position of the Gaze, expressed in the World Coordinate System.
@@ -29,7 +39,7 @@ public interface IGaze {
 
     /**
      * This method returns the orientation of the Gaze expressed according to the World Coordinate System.
-     * @return a {@link Quaternion} representing the orientation of the Gaze according to the World Coordinate System.
+     * @return a copy of the {@link Quaternion} representing the orientation of the Gaze according to the World Coordinate System.
      */
     Quaternion getOrientationRelativeToWCS();
 
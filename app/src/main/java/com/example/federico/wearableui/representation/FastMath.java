@@ -0,0 +1,156 @@
+package com.example.federico.wearableui.representation;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Trigonometric functions for the orientation hot path, that either call the {@link Math} functions or, when the fast
+ * mode is enabled, evaluate cheaper polynomial approximations in single precision. The fast mode is disabled by default,
+ * so unless it's enabled every function returns exactly what the Math function would.
+ *
+ * The maximum absolute errors of the approximations are:
+ * <ul>
+ *     <li>atan2, asin and acos: 1e-5 rad (less than 0.001 degrees);</li>
+ *     <li>sin and cos: 1e-6 for arguments in [-4 PI, 4 PI].</li>
+ * </ul>
+ * The Viewport scrolls by its extra size over a range of motion of 90 degrees vertically and 120 degrees horizontally,
+ * that is less than 50 pixels per degree even on a very large viewport, so the error of the angles stays well below a
+ * twentieth of a pixel.
+ */
+public final class FastMath {
+
+    /**
+     * Flag indicating whether the approximations are used.
+     */
+    private static volatile boolean fast = false;
+
+    private static final float PI = (float) Math.PI;
+    private static final float HALF_PI = (float) (Math.PI / 2);
+    private static final float TWO_PI = (float) (Math.PI * 2);
+    private static final float RADIANS_TO_DEGREES = (float) (180.0 / Math.PI);
+
+    /**
+     * Coefficients of the minimax polynomial that approximates atan(x) / x on [-1, 1] as a polynomial in x^2.
+     */
+    private static final float A1 = 0.99997726f, A3 = -0.33262347f, A5 = 0.19354346f, A7 = -0.11643287f,
+            A9 = 0.05265332f, A11 = -0.01172120f;
+
+    /**
+     * Coefficients of the Taylor polynomial of sin(x) on [-PI/2, PI/2].
+     */
+    private static final float S3 = -1f / 6, S5 = 1f / 120, S7 = -1f / 5040, S9 = 1f / 362880, S11 = -1f / 39916800;
+
+    private FastMath() { }
+
+    /**
+     * Enables or disables the fast mode.
+     * @param enabled true to use the approximations, false to use the {@link Math} functions.
+     */
+    public static void setFastMode(final boolean enabled) {
+        fast = enabled;
+    }
+
+    /**
+     * Returns whether the fast mode is enabled.
+     * @return true if the approximations are used, false otherwise.
+     */
+    public static boolean isFastMode() {
+        return fast;
+    }
+
+    /**
+     * Returns the angle of the point (x, y), like {@link Math#atan2(double, double)}.
+     * @param y the ordinate.
+     * @param x the abscissa.
+     * @return the angle in radians, in [-PI, PI].
+     */
+    public static float atan2(final float y, final float x) {
+        return fast ? fastAtan2(y, x) : (float) Math.atan2(y, x);
+    }
+
+    /**
+     * Returns the arc sine of a value, like {@link Math#asin(double)}.
+     * @param value the sine, in [-1, 1].
+     * @return the angle in radians, in [-PI/2, PI/2].
+     */
+    public static float asin(final float value) {
+        return fast ? fastAtan2(value, (float) Math.sqrt((1 - value) * (1 + value))) : (float) Math.asin(value);
+    }
+
+    /**
+     * Returns the arc cosine of a value, like {@link Math#acos(double)}.
+     * @param value the cosine, in [-1, 1].
+     * @return the angle in radians, in [0, PI].
+     */
+    public static float acos(final float value) {
+        return fast ? fastAtan2((float) Math.sqrt((1 - value) * (1 + value)), value) : (float) Math.acos(value);
+    }
+
+    /**
+     * Returns the sine of an angle, like {@link Math#sin(double)}.
+     * @param angle the angle in radians.
+     * @return the sine of the angle.
+     */
+    public static float sin(final float angle) {
+        return fast ? fastSin(angle) : (float) Math.sin(angle);
+    }
+
+    /**
+     * Returns the cosine of an angle, like {@link Math#cos(double)}.
+     * @param angle the angle in radians.
+     * @return the cosine of the angle.
+     */
+    public static float cos(final float angle) {
+        return fast ? fastSin(angle + HALF_PI) : (float) Math.cos(angle);
+    }
+
+    /**
+     * Converts an angle from radians to degrees, like {@link Math#toDegrees(double)} but in single precision when the
+     * fast mode is enabled.
+     * @param angle the angle in radians.
+     * @return the angle in degrees.
+     */
+    public static float toDegrees(final float angle) {
+        return fast ? angle * RADIANS_TO_DEGREES : (float) Math.toDegrees(angle);
+    }
+
+    /**
+     * Approximates atan2 by reducing it to the arc tangent of a value in [-1, 1].
+     */
+    static float fastAtan2(final float y, final float x) {
+        final float absX = Math.abs(x), absY = Math.abs(y);
+        if(absX == 0 && absY == 0) {
+            return 0;
+        }
+        final boolean swapped = absY > absX;
+        final float ratio = swapped ? x / y : y / x;
+        final float r2 = ratio * ratio;
+        float angle = ratio * (A1 + r2 * (A3 + r2 * (A5 + r2 * (A7 + r2 * (A9 + r2 * A11)))));
+        if(swapped) {
+            angle = (y > 0 ? HALF_PI : -HALF_PI) - angle;
+        }
+        else if(x < 0) {
+            angle += y < 0 ? -PI : PI;
+        }
+        return angle;
+    }
+
+    /**
+     * Approximates sin by reducing the angle to [-PI/2, PI/2].
+     */
+    static float fastSin(final float angle) {
+        // Reduce to [-PI, PI]
+        float a = angle - TWO_PI * (float) Math.floor((angle + PI) / TWO_PI);
+        // Reduce to [-PI/2, PI/2], where sin(PI - a) = sin(a)
+        if(a > HALF_PI) {
+            a = PI - a;
+        }
+        else if(a < -HALF_PI) {
+            a = -PI - a;
+        }
+        final float a2 = a * a;
+        return a * (1 + a2 * (S3 + a2 * (S5 + a2 * (S7 + a2 * (S9 + a2 * S11)))));
+    }
+
+}
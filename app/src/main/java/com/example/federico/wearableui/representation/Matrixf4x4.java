@@ -23,6 +23,12 @@ import java.io.Serializable;
  */
 public class Matrixf4x4 implements Serializable {
 
+    /**
+     * ID for serialisation. It's the one computed for the original class, so that the Quaternions serialized by the
+     * earlier builds, which hold a Matrixf4x4, can still be read.
+     */
+    private static final long serialVersionUID = 2807798893058567431L;
+
     public static final int[] matIndCol9_3x3 = { 0, 1, 2, 3, 4, 5, 6, 7, 8 };
     public static final int[] matIndCol16_3x3 = { 0, 1, 2, 4, 5, 6, 8, 9, 10 };
     public static final int[] matIndRow9_3x3 = { 0, 3, 6, 1, 4, 7, 3, 5, 8 };
@@ -115,41 +121,7 @@ public class Matrixf4x4 implements Serializable {
      * @param vector A vector of length 4.
      */
     public void multiplyVector4fByMatrix(Vector4f vector) {
-
-        if (matrixValid && matrix.length == 16) {
-            float x = 0;
-            float y = 0;
-            float z = 0;
-            float w = 0;
-
-            float[] vectorArray = vector.ToArray();
-
-            if (colMaj) {
-                for (int i = 0; i < 4; i++) {
-
-                    int k = i * 4;
-
-                    x += this.matrix[k + 0] * vectorArray[i];
-                    y += this.matrix[k + 1] * vectorArray[i];
-                    z += this.matrix[k + 2] * vectorArray[i];
-                    w += this.matrix[k + 3] * vectorArray[i];
-                }
-            } else {
-                for (int i = 0; i < 4; i++) {
-
-                    x += this.matrix[0 + i] * vectorArray[i];
-                    y += this.matrix[4 + i] * vectorArray[i];
-                    z += this.matrix[8 + i] * vectorArray[i];
-                    w += this.matrix[12 + i] * vectorArray[i];
-                }
-            }
-
-            vector.setX(x);
-            vector.setY(y);
-            vector.setZ(z);
-            vector.setW(w);
-        } else
-            Log.e("matrix", "Matrix is invalid, is " + matrix.length + " long, this equation expects a 16 value matrix");
+        multiplyVector4fByMatrix(vector, vector);
     }
 
     /**
@@ -204,22 +176,9 @@ public class Matrixf4x4 implements Serializable {
      */
     public void multiplyMatrix4x4ByMatrix(Matrixf4x4 matrixf) {
 
-        // TODO implement Strassen Algorithm in place of this slower naive one.
         if (matrixValid && matrixf.isMatrixValid()) {
-            float[] bufferMatrix = { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
-            float[] matrix = matrixf.getMatrix();
-
-            /**
-             * for(int i = 0; i < 4; i++){ for(int j = 0; j < 4; j++){
-             *
-             * int k = i * 4; bufferMatrix[0 + j] += this.matrix[k + j] * matrix[0 * 4 + i]; bufferMatrix[1 * 4 + j] +=
-             * this.matrix[k + j] * matrix[1 * 4 + i]; bufferMatrix[2 * 4 + j] += this.matrix[k + j] * matrix[2 * 4 +
-             * i]; bufferMatrix[3 * 4 + j] += this.matrix[k + j] * matrix[3 * 4 + i]; } }
-             */
-
-            multiplyMatrix(matrix, 0, bufferMatrix, 0);
-
-            matrixf.setMatrix(bufferMatrix);
+            // The product is computed in place, the kernel reads the whole input before writing it
+            multiplyMM(matrixf.matrix, this.matrix, matrixf.matrix);
         } else
             Log.e("matrix", "Matrix is invalid, internal is " + matrix.length + " long" + " , input matrix is "
                     + matrixf.getMatrix().length + " long");
@@ -242,24 +201,153 @@ public class Matrixf4x4 implements Serializable {
         }
     }
 
+    /**
+     * Multiplies this matrix by the given one and stores the product in the output matrix, without allocating. Like
+     * {@link #multiplyMatrix4x4ByMatrix(Matrixf4x4)}, the matrices are read as column major. The output can be this
+     * matrix or the input one.
+     *
+     * @param matrixf the right hand side of the product.
+     * @param output the matrix to store the product in.
+     */
+    public void multiplyMatrix4x4ByMatrix(Matrixf4x4 matrixf, Matrixf4x4 output) {
+        if (matrixValid && matrix.length == 16 && matrixf.matrix.length == 16 && output.matrix.length == 16) {
+            multiplyMM(output.matrix, this.matrix, matrixf.matrix);
+        } else
+            Log.e("matrix", "Matrix is invalid, this function expects three matrices of size 16");
+    }
+
+    /**
+     * Multiplies the given vector by this matrix and stores the result in the output vector, without allocating. This
+     * should only be used if the matrix is of size 16, and the output can be the input vector.
+     *
+     * @param vector A vector of length 4.
+     * @param output The vector to store the result in.
+     */
+    public void multiplyVector4fByMatrix(Vector4f vector, Vector4f output) {
+        if (matrixValid && matrix.length == 16) {
+            if (colMaj)
+                multiplyMV(output.ToArray(), this.matrix, vector.ToArray());
+            else
+                multiplyTransposedMV(output.ToArray(), this.matrix, vector.ToArray());
+        } else
+            Log.e("matrix", "Matrix is invalid, is " + matrix.length + " long, this equation expects a 16 value matrix");
+    }
+
+    /**
+     * Stores the transpose of this matrix in the output matrix, without allocating. The output can be this matrix.
+     *
+     * @param output the matrix to store the transpose in, of size 16.
+     */
+    public void transpose(Matrixf4x4 output) {
+        if (matrixValid && matrix.length == 16 && output.matrix.length == 16) {
+            transposeM(output.matrix, this.matrix);
+        } else
+            Log.e("matrix", "Matrix is invalid, this function expects two matrices of size 16");
+    }
+
+    /**
+     * Stores the inverse of this matrix in the output matrix, without allocating. The output can be this matrix.
+     *
+     * @param output the matrix to store the inverse in, of size 16.
+     * @return true if the matrix could be inverted, false if it is singular, in which case the output is left untouched.
+     */
+    public boolean invert(Matrixf4x4 output) {
+        if (matrixValid && matrix.length == 16 && output.matrix.length == 16) {
+            // invertM is already unrolled and reads the whole input before writing the output
+            return Matrix.invertM(output.matrix, 0, this.matrix, 0);
+        }
+        Log.e("matrix", "Matrix is invalid, this function expects two matrices of size 16");
+        return false;
+    }
+
+    /**
+     * Column major 4x4 product, unrolled. Unlike {@link Matrix#multiplyMM(float[], float[], float[])}, the output can be
+     * one of the inputs: the left hand side is loaded in locals, and each column of the right hand side is read before
+     * the same column of the output is written.
+     */
+    private static void multiplyMM(float[] output, float[] lhs, float[] rhs) {
+        final float l0 = lhs[0], l1 = lhs[1], l2 = lhs[2], l3 = lhs[3];
+        final float l4 = lhs[4], l5 = lhs[5], l6 = lhs[6], l7 = lhs[7];
+        final float l8 = lhs[8], l9 = lhs[9], l10 = lhs[10], l11 = lhs[11];
+        final float l12 = lhs[12], l13 = lhs[13], l14 = lhs[14], l15 = lhs[15];
+
+        float r0 = rhs[0], r1 = rhs[1], r2 = rhs[2], r3 = rhs[3];
+        output[0] = l0 * r0 + l4 * r1 + l8 * r2 + l12 * r3;
+        output[1] = l1 * r0 + l5 * r1 + l9 * r2 + l13 * r3;
+        output[2] = l2 * r0 + l6 * r1 + l10 * r2 + l14 * r3;
+        output[3] = l3 * r0 + l7 * r1 + l11 * r2 + l15 * r3;
+
+        r0 = rhs[4]; r1 = rhs[5]; r2 = rhs[6]; r3 = rhs[7];
+        output[4] = l0 * r0 + l4 * r1 + l8 * r2 + l12 * r3;
+        output[5] = l1 * r0 + l5 * r1 + l9 * r2 + l13 * r3;
+        output[6] = l2 * r0 + l6 * r1 + l10 * r2 + l14 * r3;
+        output[7] = l3 * r0 + l7 * r1 + l11 * r2 + l15 * r3;
+
+        r0 = rhs[8]; r1 = rhs[9]; r2 = rhs[10]; r3 = rhs[11];
+        output[8] = l0 * r0 + l4 * r1 + l8 * r2 + l12 * r3;
+        output[9] = l1 * r0 + l5 * r1 + l9 * r2 + l13 * r3;
+        output[10] = l2 * r0 + l6 * r1 + l10 * r2 + l14 * r3;
+        output[11] = l3 * r0 + l7 * r1 + l11 * r2 + l15 * r3;
+
+        r0 = rhs[12]; r1 = rhs[13]; r2 = rhs[14]; r3 = rhs[15];
+        output[12] = l0 * r0 + l4 * r1 + l8 * r2 + l12 * r3;
+        output[13] = l1 * r0 + l5 * r1 + l9 * r2 + l13 * r3;
+        output[14] = l2 * r0 + l6 * r1 + l10 * r2 + l14 * r3;
+        output[15] = l3 * r0 + l7 * r1 + l11 * r2 + l15 * r3;
+    }
+
+    /**
+     * Column major matrix by vector product, unrolled. The output can be the input vector.
+     */
+    private static void multiplyMV(float[] output, float[] m, float[] vector) {
+        final float x = vector[0], y = vector[1], z = vector[2], w = vector[3];
+        output[0] = m[0] * x + m[4] * y + m[8] * z + m[12] * w;
+        output[1] = m[1] * x + m[5] * y + m[9] * z + m[13] * w;
+        output[2] = m[2] * x + m[6] * y + m[10] * z + m[14] * w;
+        output[3] = m[3] * x + m[7] * y + m[11] * z + m[15] * w;
+    }
+
+    /**
+     * Row major matrix by vector product, unrolled. The output can be the input vector.
+     */
+    private static void multiplyTransposedMV(float[] output, float[] m, float[] vector) {
+        final float x = vector[0], y = vector[1], z = vector[2], w = vector[3];
+        output[0] = m[0] * x + m[1] * y + m[2] * z + m[3] * w;
+        output[1] = m[4] * x + m[5] * y + m[6] * z + m[7] * w;
+        output[2] = m[8] * x + m[9] * y + m[10] * z + m[11] * w;
+        output[3] = m[12] * x + m[13] * y + m[14] * z + m[15] * w;
+    }
+
+    /**
+     * 4x4 transpose, unrolled. The output can be the input matrix.
+     */
+    private static void transposeM(float[] output, float[] m) {
+        final float m1 = m[1], m2 = m[2], m3 = m[3], m6 = m[6], m7 = m[7], m11 = m[11];
+        output[0] = m[0];
+        output[5] = m[5];
+        output[10] = m[10];
+        output[15] = m[15];
+        output[1] = m[4];
+        output[2] = m[8];
+        output[3] = m[12];
+        output[6] = m[9];
+        output[7] = m[13];
+        output[11] = m[14];
+        output[4] = m1;
+        output[8] = m2;
+        output[12] = m3;
+        output[9] = m6;
+        output[13] = m7;
+        output[14] = m11;
+    }
+
     /**
      * This will rearrange the internal structure of the matrix. Be careful though as this is an expensive operation.
      */
     public void transpose() {
         if (matrixValid) {
             if (this.matrix.length == 16) {
-                float[] newMatrix = new float[16];
-                for (int i = 0; i < 4; i++) {
-
-                    int k = i * 4;
-
-                    newMatrix[k] = matrix[i];
-                    newMatrix[k + 1] = matrix[4 + i];
-                    newMatrix[k + 2] = matrix[8 + i];
-                    newMatrix[k + 3] = matrix[12 + i];
-                }
-                matrix = newMatrix;
-
+                transposeM(this.matrix, this.matrix);
             } else {
                 float[] newMatrix = new float[9];
                 for (int i = 0; i < 3; i++) {
@@ -0,0 +1,210 @@
+package com.example.federico.wearableui.representation;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * An immutable orientation, made of the four components of a {@link Quaternion}, the time the orientation refers to and
+ * a sequence number that orders the snapshots.
+ *
+ * Orientations cross threads as snapshots: the producer creates a new one for every orientation and publishes it through
+ * a volatile reference, so readers never block, and since all the fields are final they never see a partially written
+ * orientation. A snapshot is a single small object, much cheaper to create than a {@link Quaternion} clone, which also
+ * allocates its rotation matrices.
+ */
+public final class OrientationSnapshot implements Parcelable {
+
+    /**
+     * Creator for the {@link Parcelable} interface.
+     */
+    public static final Creator<OrientationSnapshot> CREATOR = new Creator<OrientationSnapshot>() {
+        @Override
+        public OrientationSnapshot createFromParcel(final Parcel in) {
+            return new OrientationSnapshot(in);
+        }
+
+        @Override
+        public OrientationSnapshot[] newArray(final int size) {
+            return new OrientationSnapshot[size];
+        }
+    };
+
+    /**
+     * Source of the sequence numbers. It's shared by the whole process, so the numbers keep growing when a producer is
+     * recreated, while its consumers are still comparing them with the ones of the previous instance.
+     */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /**
+     * The components of the orientation, with the same meaning as the ones of a {@link Quaternion}.
+     */
+    private final float x, y, z, w;
+
+    /**
+     * The time the orientation refers to, as given by {@link com.example.federico.wearableui.metrics.LatencyTracer#now()}.
+     */
+    private final long timestamp;
+
+    /**
+     * The position of the snapshot among the ones published in the process.
+     */
+    private final long sequence;
+
+    /**
+     * Returns a new sequence number, greater than all the ones returned before.
+     * @return the sequence number to give to a new snapshot.
+     */
+    public static long nextSequence() {
+        return SEQUENCE.incrementAndGet();
+    }
+
+    /**
+     * Constructor.
+     * @param x the x component of the orientation.
+     * @param y the y component of the orientation.
+     * @param z the z component of the orientation.
+     * @param w the w component of the orientation.
+     * @param timestamp the time the orientation refers to, as given by
+     *                  {@link com.example.federico.wearableui.metrics.LatencyTracer#now()}; 0 if unknown.
+     * @param sequence the sequence number of the snapshot, as given by {@link #nextSequence()}, or the one of the
+     *                 snapshot this one is derived from.
+     */
+    public OrientationSnapshot(final float x, final float y, final float z, final float w, final long timestamp,
+                               final long sequence) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.w = w;
+        this.timestamp = timestamp;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Constructor that takes the components of the passed {@link Quaternion}, which can keep changing afterwards.
+     * @param orientation the orientation to take a snapshot of.
+     * @param timestamp the time the orientation refers to, as given by
+     *                  {@link com.example.federico.wearableui.metrics.LatencyTracer#now()}; 0 if unknown.
+     * @param sequence the sequence number of the snapshot, as given by {@link #nextSequence()}, or the one of the
+     *                 snapshot this one is derived from.
+     */
+    public OrientationSnapshot(final Quaternion orientation, final long timestamp, final long sequence) {
+        this(orientation.getX(), orientation.getY(), orientation.getZ(), orientation.getW(), timestamp, sequence);
+    }
+
+    private OrientationSnapshot(final Parcel in) {
+        this(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(), in.readLong(), in.readLong());
+    }
+
+    public float getX() {
+        return this.x;
+    }
+
+    public float getY() {
+        return this.y;
+    }
+
+    public float getZ() {
+        return this.z;
+    }
+
+    public float getW() {
+        return this.w;
+    }
+
+    /**
+     * Returns the time the orientation refers to.
+     * @return the time as given by {@link com.example.federico.wearableui.metrics.LatencyTracer#now()}, 0 if unknown.
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * Returns the position of the snapshot among the ones published in the process.
+     * @return the sequence number of the snapshot.
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * Tells whether this snapshot has been published after the passed one.
+     * @param other another snapshot, or null.
+     * @return true if the other snapshot is null or older than this one, false otherwise.
+     */
+    public boolean isNewerThan(final OrientationSnapshot other) {
+        return other == null || this.sequence > other.sequence;
+    }
+
+    /**
+     * Copies the orientation in the passed {@link Quaternion}.
+     * @param output the Quaternion to store the orientation in.
+     * @return the output Quaternion.
+     */
+    public Quaternion toQuaternion(final Quaternion output) {
+        output.setXYZW(this.x, this.y, this.z, this.w);
+        return output;
+    }
+
+    /**
+     * Multiplies this orientation by the input {@link Quaternion}, without copying the orientation in a Quaternion
+     * first nor storing the product in one.
+     * @param input the Quaternion that multiplies this orientation.
+     * @return a new snapshot holding the product, with the timestamp and the sequence number of this one.
+     */
+    public OrientationSnapshot multiplyByQuat(final Quaternion input) {
+        final float x2 = input.getX(), y2 = input.getY(), z2 = input.getZ(), w2 = input.getW();
+        return new OrientationSnapshot(this.w * x2 + this.x * w2 + this.y * z2 - this.z * y2,
+                this.w * y2 + this.y * w2 + this.z * x2 - this.x * z2,
+                this.w * z2 + this.z * w2 + this.x * y2 - this.y * x2,
+                this.w * w2 - this.x * x2 - this.y * y2 - this.z * z2, this.timestamp, this.sequence);
+    }
+
+    /**
+     * Returns the pitch angle of this orientation, as {@link Quaternion#getPitch()} does.
+     * @return the pitch angle in radians.
+     */
+    public float getPitch() {
+        return Quaternion.pitchOf(this.x, this.y, this.z, this.w);
+    }
+
+    /**
+     * Returns the yaw angle of this orientation, as {@link Quaternion#getYaw()} does.
+     * @return the yaw angle in radians.
+     */
+    public float getYaw() {
+        return Quaternion.yawOf(this.x, this.y, this.z, this.w);
+    }
+
+    /**
+     * Returns the yaw angle of the product between this orientation and the input {@link Quaternion}, as
+     * {@link Quaternion#getYawOfProduct(Quaternion)} does, without copying the orientation in a Quaternion first.
+     * @param input the Quaternion that multiplies this orientation.
+     * @return the yaw angle of the product in radians.
+     */
+    public float getYawOfProduct(final Quaternion input) {
+        return Quaternion.yawOfProduct(this.x, this.y, this.z, this.w, input);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(final Parcel dest, final int flags) {
+        dest.writeFloat(this.x);
+        dest.writeFloat(this.y);
+        dest.writeFloat(this.z);
+        dest.writeFloat(this.w);
+        dest.writeLong(this.timestamp);
+        dest.writeLong(this.sequence);
+    }
+
+}
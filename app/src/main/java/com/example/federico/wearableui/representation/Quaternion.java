@@ -62,7 +62,22 @@ public class Quaternion extends Vector4f implements Parcelable {
      */
     private boolean dirty = false;
 
+    /**
+     * Column major rotation matrix of the quaternion, shared by {@link #getMatrix4x4()} and {@link #getRotationMatrix}.
+     * It's allocated the first time it's needed, and it isn't serialized: it would make every Quaternion sent over a
+     * connection bigger, and the Quaternions serialized before it existed don't have it.
+     */
+    private transient float[] rotation;
+
+    /**
+     * Values of the quaternion the rotation matrix was computed from. The setters inherited from {@link Vector4f} and
+     * the operations that write the components directly don't raise the dirty flag, so the cache is also invalidated
+     * when these values differ from the current ones. They're only meaningful once the matrix has been allocated.
+     */
+    private transient float rotationX, rotationY, rotationZ, rotationW;
+
     private Quaternion(final Parcel in) {
+        this();
         this.w(in.readFloat());
         this.x(in.readFloat());
         this.y(in.readFloat());
@@ -222,31 +237,92 @@ public class Quaternion extends Vector4f implements Parcelable {
     }
 
     /**
-     * Converts this Quaternion into the Rotation-Matrix representation which can be accessed by
-     * {@link Quaternion#getMatrix4x4 getMatrix4x4}
+     * Brings the rotation matrix up to date with the quaternion. The matrix is only recomputed when the quaternion has
+     * changed since the last call, and it's then copied in the Matrixf4x4 returned by {@link #getMatrix4x4()}.
      */
-    private void convertQuatToMatrix() {
-        float x = points[0];
-        float y = points[1];
-        float z = points[2];
-        float w = points[3];
+    private void updateRotation() {
+        final float x = points[0];
+        final float y = points[1];
+        final float z = points[2];
+        final float w = points[3];
+        if (rotation == null) {
+            rotation = new float[16];
+        } else if (!dirty && x == rotationX && y == rotationY && z == rotationZ && w == rotationW) {
+            return;
+        }
+        rotationX = x;
+        rotationY = y;
+        rotationZ = z;
+        rotationW = w;
+        dirty = false;
+
+        final float[] r = rotation;
+        r[0] = 1 - 2 * (y * y) - 2 * (z * z); //1 - 2y2 - 2z2
+        r[1] = 2 * (x * y) + 2 * (w * z); // 2xy + 2wz
+        r[2] = 2 * (x * z) - 2 * (w * y); //2xz - 2wy
+        r[3] = 0;
+        r[4] = 2 * (x * y) - 2 * (w * z); //2xy - 2wz
+        r[5] = 1 - 2 * (x * x) - 2 * (z * z); //1 - 2x2 - 2z2
+        r[6] = 2 * (y * z) + 2 * (w * x); // 2yz + 2wx
+        r[7] = 0;
+        r[8] = 2 * (x * z) + 2 * (w * y); //2xz + 2wy
+        r[9] = 2 * (y * z) - 2 * (w * x); //2yz - 2wx
+        r[10] = 1 - 2 * (x * x) - 2 * (y * y); //1 - 2x2 - 2y2
+        r[11] = 0;
+        r[12] = 0;
+        r[13] = 0;
+        r[14] = 0;
+        r[15] = 1;
+
+        if (matrix.isMatrixValid()) {
+            copyRotation(matrix.getMatrix(), matrix.isColumnMajor());
+        }
+    }
 
-        matrix.setX0(1 - 2 * (y * y) - 2 * (z * z)); //1 - 2y2 - 2z2
-        matrix.setX1(2 * (x * y) + 2 * (w * z)); // 2xy - 2wz
-        matrix.setX2(2 * (x * z) - 2 * (w * y)); //2xz + 2wy
-        matrix.setX3(0);
-        matrix.setY0(2 * (x * y) - 2 * (w * z)); //2xy + 2wz
-        matrix.setY1(1 - 2 * (x * x) - 2 * (z * z)); //1 - 2x2 - 2z2
-        matrix.setY2(2 * (y * z) + 2 * (w * x)); // 2yz + 2wx
-        matrix.setY3(0);
-        matrix.setZ0(2 * (x * z) + 2 * (w * y)); //2xz + 2wy
-        matrix.setZ1(2 * (y * z) - 2 * (w * x)); //2yz - 2wx
-        matrix.setZ2(1 - 2 * (x * x) - 2 * (y * y)); //1 - 2x2 - 2y2
-        matrix.setZ3(0);
-        matrix.setW0(0);
-        matrix.setW1(0);
-        matrix.setW2(0);
-        matrix.setW3(1);
+    /**
+     * Copies the cached rotation matrix in the passed array, as a 3x3 matrix if it's 9 long and as a 4x4 homogenised
+     * matrix if it's 16 long.
+     */
+    private void copyRotation(final float[] output, final boolean columnMajor) {
+        final float[] r = rotation;
+        if (output.length == 16) {
+            if (columnMajor) {
+                System.arraycopy(r, 0, output, 0, 16);
+            } else {
+                output[0] = r[0]; output[1] = r[4]; output[2] = r[8]; output[3] = r[12];
+                output[4] = r[1]; output[5] = r[5]; output[6] = r[9]; output[7] = r[13];
+                output[8] = r[2]; output[9] = r[6]; output[10] = r[10]; output[11] = r[14];
+                output[12] = r[3]; output[13] = r[7]; output[14] = r[11]; output[15] = r[15];
+            }
+        } else if (output.length == 9) {
+            if (columnMajor) {
+                output[0] = r[0]; output[1] = r[1]; output[2] = r[2];
+                output[3] = r[4]; output[4] = r[5]; output[5] = r[6];
+                output[6] = r[8]; output[7] = r[9]; output[8] = r[10];
+            } else {
+                output[0] = r[0]; output[1] = r[4]; output[2] = r[8];
+                output[3] = r[1]; output[4] = r[5]; output[5] = r[9];
+                output[6] = r[2]; output[7] = r[6]; output[8] = r[10];
+            }
+        } else {
+            throw new IllegalArgumentException("The rotation matrix must be 9 or 16 long, not " + output.length);
+        }
+    }
+
+    /**
+     * Stores the rotation matrix of this quaternion in the passed array. The matrix is cached: it's only recomputed
+     * when the quaternion changes, so reading it several times for the same orientation only costs a copy.
+     *
+     * @param output an array of length 9 for a 3x3 matrix, or of length 16 for a 4x4 homogenised matrix.
+     * @param columnMajor true to store the matrix in column major order, false for row major order.
+     * @throws IllegalArgumentException if the array is neither 9 nor 16 long.
+     */
+    public void getRotationMatrix(final float[] output, final boolean columnMajor) {
+        if (output.length != 9 && output.length != 16) {
+            throw new IllegalArgumentException("The rotation matrix must be 9 or 16 long, not " + output.length);
+        }
+        updateRotation();
+        copyRotation(output, columnMajor);
     }
 
     /**
@@ -475,11 +551,7 @@ public class Quaternion extends Vector4f implements Parcelable {
      * @return Returns this Quaternion in the Rotation Matrix representation
      */
     public Matrixf4x4 getMatrix4x4() {
-        //toMatrixColMajor();
-        if (dirty) {
-            convertQuatToMatrix();
-            dirty = false;
-        }
+        updateRotation();
         return this.matrix;
     }
 
@@ -562,12 +634,86 @@ public class Quaternion extends Vector4f implements Parcelable {
         }
     }
 
+    /**
+     * Maximum deviation, in radians of half-angle, allowed between the result of {@link #interpolate} and the result of
+     * {@link #slerp} when the former takes the normalised linear interpolation path.
+     */
+    private static final float NLERP_MAX_ERROR = 1e-5f;
+
+    /**
+     * Get a normalised linear interpolation between this quaternion and the input quaternion, storing the result in the
+     * output quaternion. This takes the shortest path like {@link #slerp} does, but doesn't move along it at constant
+     * speed: it's cheaper, and close to slerp when the two quaternions are close to each other.
+     *
+     * @param input The quaternion to be interpolated with this quaternion.
+     * @param output The quaternion to store the result in. It can be this quaternion or the input one.
+     * @param t The ratio between the two quaternions where 0 <= t <= 1.0 .
+     */
+    public void nlerp(final Quaternion input, final Quaternion output, final float t) {
+        final float sign = this.dotProduct(input) < 0 ? -1 : 1;
+        this.lerpNormalised(input, output, t, sign);
+    }
+
+    /**
+     * Get an interpolation between this quaternion and the input quaternion, storing the result in the output quaternion.
+     * The result is the one of {@link #slerp}, within NLERP_MAX_ERROR radians, but when the two quaternions are close
+     * enough it's computed as a normalised linear interpolation, with no trigonometric function.
+     *
+     * For unit quaternions at a half-angle theta, the normalised linear interpolation lags behind slerp by about
+     * t (1 - t) (1 - 2t) theta^3 / 6 radians, so with the small weights used by the sensor fusion it's taken unless the
+     * two orientations are tens of degrees apart.
+     *
+     * @param input The quaternion to be interpolated with this quaternion.
+     * @param output The quaternion to store the result in. It can be this quaternion or the input one.
+     * @param t The ratio between the two quaternions where 0 <= t <= 1.0 .
+     */
+    public void interpolate(final Quaternion input, final Quaternion output, final float t) {
+        final float cosHalfTheta = this.dotProduct(input);
+        final float absCos = Math.abs(cosHalfTheta);
+        // The half-angle along the shortest path is at most PI/2, where theta^2 <= 2.5 (1 - cos(theta)), so the squared
+        // error is bounded without computing theta
+        final float thetaSquared = 2.5f * (1 - absCos);
+        final float k = t * (1 - t) * (1 - 2 * t) / 6;
+        if (k * k * thetaSquared * thetaSquared * thetaSquared <= NLERP_MAX_ERROR * NLERP_MAX_ERROR) {
+            this.lerpNormalised(input, output, t, cosHalfTheta < 0 ? -1 : 1);
+        } else {
+            this.slerp(input, output, t);
+        }
+    }
+
+    /**
+     * Stores in the output quaternion the normalised linear interpolation between this quaternion and the input one,
+     * whose sign is flipped by the passed factor.
+     */
+    private void lerpNormalised(final Quaternion input, final Quaternion output, final float t, final float sign) {
+        final float ratioA = 1 - t;
+        final float ratioB = t * sign;
+        final float x = points[0] * ratioA + input.points[0] * ratioB;
+        final float y = points[1] * ratioA + input.points[1] * ratioB;
+        final float z = points[2] * ratioA + input.points[2] * ratioB;
+        final float w = points[3] * ratioA + input.points[3] * ratioB;
+        final float mag = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+        output.points[0] = x / mag;
+        output.points[1] = y / mag;
+        output.points[2] = z / mag;
+        output.points[3] = w / mag;
+        output.dirty = true;
+    }
+
     /**
      * Returns the pitch angle relative to position represented by this Quaternion.
      * @return the pitch angle in radians.
      */
     public float getPitch() {
-        return (float) Math.asin(2.0f * (this.w() * this.y() - this.z() * this.x()));
+        return pitchOf(this.x(), this.y(), this.z(), this.w());
+    }
+
+    /**
+     * Returns the pitch angle of the quaternion (x, y, z, w), as {@link #getPitch()} does. Used by
+     * {@link OrientationSnapshot}, whose components aren't held by a Quaternion.
+     */
+    static float pitchOf(final float x, final float y, final float z, final float w) {
+        return FastMath.asin(2.0f * (w * y - z * x));
     }
 
     /**
@@ -575,7 +721,14 @@ public class Quaternion extends Vector4f implements Parcelable {
      * @return the yaw angle in radians.
      */
     public float getYaw() {
-        return (float) Math.atan2(2.0f * (this.w() * this.z() + this.x() * this.y()), 1.0f - 2.0f * (this.y() * this.y() + this.z() * this.z()));
+        return yawOf(this.x(), this.y(), this.z(), this.w());
+    }
+
+    /**
+     * Returns the yaw angle of the quaternion (x, y, z, w), as {@link #getYaw()} does.
+     */
+    static float yawOf(final float x, final float y, final float z, final float w) {
+        return FastMath.atan2(2.0f * (w * z + x * y), 1.0f - 2.0f * (y * y + z * z));
     }
 
     /**
@@ -583,7 +736,7 @@ public class Quaternion extends Vector4f implements Parcelable {
      * @return the roll angle in radians.
      */
     public float getRoll() {
-        return (float) Math.atan2(2.0f * (this.w() * this.x() + this.y() * this.z()), 1.0f - 2.0f * (this.x() * this.x() + this.y() * this.y()));
+        return FastMath.atan2(2.0f * (this.w() * this.x() + this.y() * this.z()), 1.0f - 2.0f * (this.x() * this.x() + this.y() * this.y()));
     }
 
     /**
@@ -597,6 +750,86 @@ public class Quaternion extends Vector4f implements Parcelable {
         this.z(-this.z() / f);
     }
 
+    /**
+     * Stores the inverse of this Quaternion in the output Quaternion, leaving this one untouched. Useful to compute once
+     * the inverse of a Quaternion that has to be applied many times.
+     *
+     * @param output The quaternion to store the inverse in.
+     */
+    public void inverse(final Quaternion output) {
+        final float f = points[3] * points[3] + points[0] * points[0] + points[1] * points[1] + points[2] * points[2];
+        output.points[0] = -points[0] / f;
+        output.points[1] = -points[1] / f;
+        output.points[2] = -points[2] / f;
+        output.points[3] = points[3] / f;
+        output.dirty = true;
+    }
+
+    /**
+     * Multiplies this quaternion by the conjugate of the input quaternion and stores the result in the output
+     * quaternion, without computing the conjugate first. For unit quaternions the conjugate is the inverse, so this is
+     * the rotation that brings the input orientation to this one. The output can be this quaternion or the input one.
+     *
+     * @param input The quaternion whose conjugate multiplies this quaternion.
+     * @param output The quaternion to store the result in.
+     */
+    public void multiplyByConjugate(final Quaternion input, final Quaternion output) {
+        this.multiplyByComponents(-input.points[0], -input.points[1], -input.points[2], input.points[3], output);
+    }
+
+    /**
+     * Computes the rotation of this quaternion relative to the reference one, that is this quaternion multiplied by the
+     * inverse of the reference, and stores it in the output quaternion. This gives the same result as cloning the
+     * reference, inverting it and multiplying this quaternion by it, without allocating anything. The output can be
+     * this quaternion or the reference one.
+     *
+     * @param reference The quaternion the rotation is relative to.
+     * @param output The quaternion to store the result in.
+     */
+    public void relativeTo(final Quaternion reference, final Quaternion output) {
+        final float f = reference.points[3] * reference.points[3] + reference.points[0] * reference.points[0]
+                + reference.points[1] * reference.points[1] + reference.points[2] * reference.points[2];
+        this.multiplyByComponents(-reference.points[0] / f, -reference.points[1] / f, -reference.points[2] / f,
+                reference.points[3] / f, output);
+    }
+
+    /**
+     * Returns the yaw angle of the product between this quaternion and the input one, without storing the product.
+     * Together with a cached inverse, this gives the yaw relative to a fixed orientation without allocating anything.
+     *
+     * @param input The quaternion that multiplies this quaternion.
+     * @return the yaw angle of the product in radians, as {@link #getYaw()} would return it.
+     */
+    public float getYawOfProduct(final Quaternion input) {
+        return yawOfProduct(points[0], points[1], points[2], points[3], input);
+    }
+
+    /**
+     * Returns the yaw angle of the product between the quaternion (x1, y1, z1, w1) and the input one, without storing
+     * the product. Used by {@link OrientationSnapshot}, whose components aren't held by a Quaternion.
+     */
+    static float yawOfProduct(final float x1, final float y1, final float z1, final float w1, final Quaternion input) {
+        final float x2 = input.points[0], y2 = input.points[1], z2 = input.points[2], w2 = input.points[3];
+        final float w = w1 * w2 - x1 * x2 - y1 * y2 - z1 * z2;
+        final float x = w1 * x2 + x1 * w2 + y1 * z2 - z1 * y2;
+        final float y = w1 * y2 + y1 * w2 + z1 * x2 - x1 * z2;
+        final float z = w1 * z2 + z1 * w2 + x1 * y2 - y1 * x2;
+        return yawOf(x, y, z, w);
+    }
+
+    /**
+     * Multiplies this quaternion by the quaternion (x, y, z, w) and stores the result in the output quaternion. All the
+     * operands are read before the output is written, so the output can be any of them.
+     */
+    private void multiplyByComponents(final float x2, final float y2, final float z2, final float w2, final Quaternion output) {
+        final float x1 = points[0], y1 = points[1], z1 = points[2], w1 = points[3];
+        output.points[3] = w1 * w2 - x1 * x2 - y1 * y2 - z1 * z2;
+        output.points[0] = w1 * x2 + x1 * w2 + y1 * z2 - z1 * y2;
+        output.points[1] = w1 * y2 + y1 * w2 + z1 * x2 - x1 * z2;
+        output.points[2] = w1 * z2 + z1 * w2 + x1 * y2 - y1 * x2;
+        output.dirty = true;
+    }
+
     @Override
     public int describeContents() {
         return 0;
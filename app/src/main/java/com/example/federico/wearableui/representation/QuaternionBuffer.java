@@ -0,0 +1,297 @@
+package com.example.federico.wearableui.representation;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * A growable sequence of quaternions stored as a structure of arrays: one primitive array per component, rather than
+ * one {@link Quaternion} object (with its own points array and rotation matrix) per element. This is meant for bulk
+ * orientation math, like processing a recorded trace, a batch of updates or a filter window: the bulk operations are
+ * plain counted loops over the arrays, with no calls and no allocations in their bodies, which the JIT can unroll and,
+ * where the hardware allows it, vectorize.
+ *
+ * All the operations follow the conventions of {@link Quaternion}, and give the same results as calling the
+ * corresponding Quaternion method on every element.
+ */
+public class QuaternionBuffer {
+
+    /**
+     * Default capacity of a new buffer.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The components of the quaternions.
+     */
+    private float[] x, y, z, w;
+
+    /**
+     * Number of quaternions in the buffer.
+     */
+    private int size;
+
+    /**
+     * Constructor.
+     */
+    public QuaternionBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     * @param capacity the number of quaternions the buffer can hold before growing.
+     * @throws IllegalArgumentException if the capacity is negative.
+     */
+    public QuaternionBuffer(final int capacity) {
+        if(capacity < 0) {
+            throw new IllegalArgumentException("The capacity can not be negative");
+        }
+        this.x = new float[capacity];
+        this.y = new float[capacity];
+        this.z = new float[capacity];
+        this.w = new float[capacity];
+    }
+
+    /**
+     * Returns the number of quaternions in the buffer.
+     * @return the size of the buffer.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Removes all the quaternions from the buffer, keeping its capacity.
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Makes sure the buffer can hold the passed number of quaternions without growing.
+     * @param capacity the number of quaternions.
+     */
+    public void ensureCapacity(final int capacity) {
+        if(capacity <= this.x.length) {
+            return;
+        }
+        final int newCapacity = Math.max(capacity, this.x.length * 2);
+        this.x = copyOf(this.x, newCapacity);
+        this.y = copyOf(this.y, newCapacity);
+        this.z = copyOf(this.z, newCapacity);
+        this.w = copyOf(this.w, newCapacity);
+    }
+
+    private float[] copyOf(final float[] array, final int length) {
+        final float[] copy = new float[length];
+        System.arraycopy(array, 0, copy, 0, this.size);
+        return copy;
+    }
+
+    /**
+     * Sets the number of quaternions in the buffer, growing it if needed. New elements have undefined values.
+     */
+    private void resize(final int size) {
+        this.ensureCapacity(size);
+        this.size = size;
+    }
+
+    /**
+     * Appends a quaternion to the buffer.
+     * @param x the x component.
+     * @param y the y component.
+     * @param z the z component.
+     * @param w the w component.
+     */
+    public void add(final float x, final float y, final float z, final float w) {
+        this.ensureCapacity(this.size + 1);
+        this.x[this.size] = x;
+        this.y[this.size] = y;
+        this.z[this.size] = z;
+        this.w[this.size] = w;
+        this.size++;
+    }
+
+    /**
+     * Appends a copy of a quaternion to the buffer.
+     * @param quaternion the {@link Quaternion} to append.
+     */
+    public void add(final Quaternion quaternion) {
+        this.add(quaternion.getX(), quaternion.getY(), quaternion.getZ(), quaternion.getW());
+    }
+
+    /**
+     * Copies a quaternion of the buffer in the output Quaternion.
+     * @param index the index of the quaternion.
+     * @param output the {@link Quaternion} to copy it to.
+     * @throws IndexOutOfBoundsException if the index is not in the buffer.
+     */
+    public void get(final int index, final Quaternion output) {
+        this.checkIndex(index);
+        output.setXYZW(this.x[index], this.y[index], this.z[index], this.w[index]);
+    }
+
+    /**
+     * Replaces a quaternion of the buffer.
+     * @param index the index of the quaternion.
+     * @param quaternion the {@link Quaternion} to copy in the buffer.
+     * @throws IndexOutOfBoundsException if the index is not in the buffer.
+     */
+    public void set(final int index, final Quaternion quaternion) {
+        this.checkIndex(index);
+        this.x[index] = quaternion.getX();
+        this.y[index] = quaternion.getY();
+        this.z[index] = quaternion.getZ();
+        this.w[index] = quaternion.getW();
+    }
+
+    private void checkIndex(final int index) {
+        if(index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of a buffer of size " + this.size);
+        }
+    }
+
+    private void checkSameSize(final QuaternionBuffer other) {
+        if(other.size != this.size) {
+            throw new IllegalArgumentException("The buffers have different sizes: " + this.size + " and " + other.size);
+        }
+    }
+
+    /**
+     * Normalises all the quaternions of the buffer, as {@link Quaternion#normalise()} does.
+     */
+    public void normalise() {
+        final float[] x = this.x, y = this.y, z = this.z, w = this.w;
+        for(int i = 0; i < this.size; i++) {
+            final float mag = (float) Math.sqrt(w[i] * w[i] + x[i] * x[i] + y[i] * y[i] + z[i] * z[i]);
+            x[i] /= mag;
+            y[i] /= mag;
+            z[i] /= mag;
+            w[i] /= mag;
+        }
+    }
+
+    /**
+     * Multiplies every quaternion of this buffer by the quaternion with the same index in the input buffer, as
+     * {@link Quaternion#multiplyByQuat(Quaternion, Quaternion)} does, and stores the results in the output buffer.
+     * @param input the {@link QuaternionBuffer} with the right-hand operands.
+     * @param output the QuaternionBuffer to store the results in, resized to the size of this one. It can be this buffer
+     *               or the input one.
+     * @throws IllegalArgumentException if the input buffer has a different size.
+     */
+    public void multiply(final QuaternionBuffer input, final QuaternionBuffer output) {
+        this.checkSameSize(input);
+        output.resize(this.size);
+        final float[] x1 = this.x, y1 = this.y, z1 = this.z, w1 = this.w;
+        final float[] x2 = input.x, y2 = input.y, z2 = input.z, w2 = input.w;
+        final float[] ox = output.x, oy = output.y, oz = output.z, ow = output.w;
+        for(int i = 0; i < this.size; i++) {
+            final float ax = x1[i], ay = y1[i], az = z1[i], aw = w1[i];
+            final float bx = x2[i], by = y2[i], bz = z2[i], bw = w2[i];
+            ow[i] = aw * bw - ax * bx - ay * by - az * bz;
+            ox[i] = aw * bx + ax * bw + ay * bz - az * by;
+            oy[i] = aw * by + ay * bw + az * bx - ax * bz;
+            oz[i] = aw * bz + az * bw + ax * by - ay * bx;
+        }
+    }
+
+    /**
+     * Multiplies every quaternion of this buffer by the same quaternion, as
+     * {@link Quaternion#multiplyByQuat(Quaternion, Quaternion)} does, and stores the results in the output buffer. With
+     * the inverse of a calibration, this gives all the orientations relative to it.
+     * @param input the {@link Quaternion} every element is multiplied by.
+     * @param output the QuaternionBuffer to store the results in, resized to the size of this one. It can be this buffer.
+     */
+    public void multiply(final Quaternion input, final QuaternionBuffer output) {
+        output.resize(this.size);
+        final float bx = input.getX(), by = input.getY(), bz = input.getZ(), bw = input.getW();
+        final float[] x1 = this.x, y1 = this.y, z1 = this.z, w1 = this.w;
+        final float[] ox = output.x, oy = output.y, oz = output.z, ow = output.w;
+        for(int i = 0; i < this.size; i++) {
+            final float ax = x1[i], ay = y1[i], az = z1[i], aw = w1[i];
+            ow[i] = aw * bw - ax * bx - ay * by - az * bz;
+            ox[i] = aw * bx + ax * bw + ay * bz - az * by;
+            oy[i] = aw * by + ay * bw + az * bx - ax * bz;
+            oz[i] = aw * bz + az * bw + ax * by - ay * bx;
+        }
+    }
+
+    /**
+     * Interpolates every quaternion of this buffer with the quaternion with the same index in the input buffer, as
+     * {@link Quaternion#slerp(Quaternion, Quaternion, float)} does, and stores the results in the output buffer.
+     * @param input the {@link QuaternionBuffer} with the quaternions to interpolate to.
+     * @param output the QuaternionBuffer to store the results in, resized to the size of this one. It can be this buffer
+     *               or the input one.
+     * @param t the ratio between the two quaternions, between 0 and 1.
+     * @throws IllegalArgumentException if the input buffer has a different size.
+     */
+    public void slerp(final QuaternionBuffer input, final QuaternionBuffer output, final float t) {
+        this.checkSameSize(input);
+        output.resize(this.size);
+        final float[] x1 = this.x, y1 = this.y, z1 = this.z, w1 = this.w;
+        final float[] x2 = input.x, y2 = input.y, z2 = input.z, w2 = input.w;
+        final float[] ox = output.x, oy = output.y, oz = output.z, ow = output.w;
+        for(int i = 0; i < this.size; i++) {
+            final float ax = x1[i], ay = y1[i], az = z1[i], aw = w1[i];
+            float bx = x2[i], by = y2[i], bz = z2[i], bw = w2[i];
+            float cosHalfTheta = ax * bx + ay * by + az * bz + aw * bw;
+            if(cosHalfTheta < 0) {
+                cosHalfTheta = -cosHalfTheta;
+                bx = -bx;
+                by = -by;
+                bz = -bz;
+                bw = -bw;
+            }
+            if(cosHalfTheta >= 1.0) {
+                ox[i] = ax;
+                oy[i] = ay;
+                oz[i] = az;
+                ow[i] = aw;
+            }
+            else {
+                final double sinHalfTheta = Math.sqrt(1.0 - cosHalfTheta * cosHalfTheta);
+                final double halfTheta = Math.acos(cosHalfTheta);
+                final double ratioA = Math.sin((1 - t) * halfTheta) / sinHalfTheta;
+                final double ratioB = Math.sin(t * halfTheta) / sinHalfTheta;
+                ox[i] = (float) (ax * ratioA + bx * ratioB);
+                oy[i] = (float) (ay * ratioA + by * ratioB);
+                oz[i] = (float) (az * ratioA + bz * ratioB);
+                ow[i] = (float) (aw * ratioA + bw * ratioB);
+            }
+        }
+    }
+
+    /**
+     * Computes the yaw of every quaternion of the buffer, as {@link Quaternion#getYaw()} does.
+     * @param output the array to store the yaw angles in, in radians. It must hold at least {@link #size()} elements.
+     * @throws IllegalArgumentException if the array is too short.
+     */
+    public void getYaws(final float[] output) {
+        this.checkOutput(output);
+        final float[] x = this.x, y = this.y, z = this.z, w = this.w;
+        for(int i = 0; i < this.size; i++) {
+            output[i] = (float) Math.atan2(2.0f * (w[i] * z[i] + x[i] * y[i]), 1.0f - 2.0f * (y[i] * y[i] + z[i] * z[i]));
+        }
+    }
+
+    /**
+     * Computes the pitch of every quaternion of the buffer, as {@link Quaternion#getPitch()} does.
+     * @param output the array to store the pitch angles in, in radians. It must hold at least {@link #size()} elements.
+     * @throws IllegalArgumentException if the array is too short.
+     */
+    public void getPitches(final float[] output) {
+        this.checkOutput(output);
+        final float[] x = this.x, y = this.y, z = this.z, w = this.w;
+        for(int i = 0; i < this.size; i++) {
+            output[i] = (float) Math.asin(2.0f * (w[i] * y[i] - z[i] * x[i]));
+        }
+    }
+
+    private void checkOutput(final float[] output) {
+        if(output.length < this.size) {
+            throw new IllegalArgumentException("The output array can not hold " + this.size + " angles");
+        }
+    }
+
+}
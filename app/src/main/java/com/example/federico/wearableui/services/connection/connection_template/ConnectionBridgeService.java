@@ -7,14 +7,20 @@ import android.content.Intent;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 
 import com.example.federico.wearableui.representation.Quaternion;
 import com.example.federico.wearableui.services.connection.messages.CalibrationMessage;
+import com.example.federico.wearableui.services.connection.messages.CompactOrientationMessage;
+import com.example.federico.wearableui.services.connection.messages.IOrientationEncodingMessage;
 import com.example.federico.wearableui.services.connection.messages.Message;
 import com.example.federico.wearableui.services.connection.messages.IMessage;
 import com.example.federico.wearableui.services.connection.messages.OrientationChangedMessage;
+import com.example.federico.wearableui.services.connection.messages.OrientationEncodingMessage;
 import com.example.federico.wearableui.services.connection.messages.content.Content;
+import com.example.federico.wearableui.services.connection.messages.content.OrientationEncoding;
+import com.example.federico.wearableui.viewport.drawable_content.cursor.Cursor;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
@@ -38,6 +44,13 @@ import java.io.ObjectOutputStream;
  * state as soon as such command is sent.
  *
  * To go back to the SUPPLYING_COMMANDS state, there's a specific method to be called.
+ *
+ * Orientation updates can be filtered through an {@link OrientationDeadBand}, so that the ones that wouldn't visibly move
+ * the {@link Cursor} aren't sent while the Finger is held still. The dead band is disabled until a threshold is set.
+ *
+ * Orientation updates are sent as serialized {@link Quaternion}s, unless a compact {@link OrientationEncoding} is
+ * requested: in that case the Service offers it to the server as soon as the connection is established, and uses it
+ * if the server accepts it.
  */
 public abstract class ConnectionBridgeService extends Service {
 
@@ -76,6 +89,24 @@ public abstract class ConnectionBridgeService extends Service {
      */
     protected Handler connectionHandler;
 
+    /**
+     * Dead band that suppresses the orientation updates the Finger doesn't perceptibly move in.
+     */
+    private final OrientationDeadBand deadBand = new OrientationDeadBand();
+
+    /**
+     * The encoding of the orientation updates offered to the server on the next connection.
+     */
+    private volatile OrientationEncoding requestedEncoding = OrientationEncoding.SERIALIZED_QUATERNION;
+    /**
+     * The encoding of the orientation updates the server has accepted on the current connection.
+     */
+    private volatile OrientationEncoding orientationEncoding = OrientationEncoding.SERIALIZED_QUATERNION;
+    /**
+     * The sequence number of the next compact orientation update.
+     */
+    private int orientationSequence;
+
     /**
      * Closes the buffers and socket, therefore terminating the connection.
      */
@@ -133,6 +164,7 @@ public abstract class ConnectionBridgeService extends Service {
     protected void sendFingerCalibrationMessage(final Quaternion calibration) {
         if(this.state.equals(State.SUPPLYING_COMMANDS)) {
             this.send(new CalibrationMessage(calibration));
+            this.deadBand.requestKeyframe();
             this.state = State.SUPPLYING_ORIENTATION_UPDATES;
         }
     }
@@ -158,16 +190,70 @@ public abstract class ConnectionBridgeService extends Service {
 
     /**
      * Sends a {@link com.example.federico.wearableui.model.finger.Finger} orientation update {@link Message} towards the server,
-     * but only if the Service is in its SUPPLYING_ORIENTATION_UPDATES state.
+     * but only if the Service is in its SUPPLYING_ORIENTATION_UPDATES state and the update isn't suppressed by the dead band.
+     * This has to be always called from the same thread.
      * @param orientationUpdate a {@link Quaternion} representing the new orientation of the Finger, expressed in a coordinate system
      *                          that is not the user's coordinate system.
      */
     protected void sendOrientationChangedMessage(final Quaternion orientationUpdate) {
-        if(this.state.equals(State.SUPPLYING_ORIENTATION_UPDATES)) {
-            this.send(new OrientationChangedMessage(orientationUpdate));
+        if(this.state.equals(State.SUPPLYING_ORIENTATION_UPDATES) && this.deadBand.accept(orientationUpdate, SystemClock.uptimeMillis())) {
+            final OrientationEncoding encoding = this.orientationEncoding;
+            if(encoding.isCompact()) {
+                this.send(new CompactOrientationMessage(encoding, this.orientationSequence++, orientationUpdate));
+            }
+            else {
+                this.send(new OrientationChangedMessage(orientationUpdate));
+            }
         }
     }
 
+    /**
+     * Sets the threshold below which orientation updates are not sent.
+     * @param degrees the smallest rotation, from the last orientation sent, that is sent to the server. 0 disables the
+     *                dead band, and every update is sent.
+     */
+    protected void setOrientationDeadBand(final float degrees) {
+        this.deadBand.setThreshold(degrees);
+    }
+
+    /**
+     * Sets the threshold below which orientation updates are not sent to the smallest rotation that moves the {@link Cursor}
+     * by a pixel on the screen of the HMD.
+     * @param screenWidth the width of the screen of the HMD in pixels.
+     * @param screenHeight the height of the screen of the HMD in pixels.
+     */
+    protected void setOrientationDeadBandForScreen(final int screenWidth, final int screenHeight) {
+        this.deadBand.setThreshold(Cursor.getDegreesPerPixel(screenWidth, screenHeight));
+    }
+
+    /**
+     * Sets the interval after which an orientation update is sent even if it's within the dead band.
+     * @param milliseconds the keyframe interval in milliseconds.
+     */
+    protected void setOrientationKeyframeInterval(final long milliseconds) {
+        this.deadBand.setKeyframeInterval(milliseconds);
+    }
+
+    /**
+     * Sets the encoding of the orientation updates, which is offered to the server the next time the Service connects.
+     * @param encoding the {@link OrientationEncoding} to request. The updates are sent as serialized {@link Quaternion}s
+     *                 if it's SERIALIZED_QUATERNION, or if the server doesn't accept it.
+     */
+    protected void setOrientationEncoding(final OrientationEncoding encoding) {
+        if(encoding == null) {
+            throw new IllegalArgumentException("The encoding can not be null");
+        }
+        this.requestedEncoding = encoding;
+    }
+
+    /**
+     * Returns the encoding the orientation updates are sent with on the current connection.
+     * @return the {@link OrientationEncoding} accepted by the server.
+     */
+    protected OrientationEncoding getOrientationEncoding() {
+        return this.orientationEncoding;
+    }
+
     /**
      * Brings the Service to its SUPPLYING_COMMANDS state.
      */
@@ -226,10 +312,39 @@ public abstract class ConnectionBridgeService extends Service {
                 toServer = new ObjectOutputStream(socket.getOutputStream());
                 toServer.flush(); //flush the header
                 fromServer = new ObjectInputStream(socket.getInputStream());
+                this.negotiateOrientationEncoding();
+                // The server doesn't know the current orientation yet
+                deadBand.requestKeyframe();
             }
             catch(final IOException e) {
                 closeConnection();
             }
+            catch(final ClassNotFoundException e) {
+                closeConnection();
+            }
+        }
+
+        /**
+         * Offers the requested encoding to the server, and waits for its answer. The serialized Quaternions are offered
+         * as well, since every server accepts them.
+         */
+        private void negotiateOrientationEncoding() throws IOException, ClassNotFoundException {
+            orientationEncoding = OrientationEncoding.SERIALIZED_QUATERNION;
+            final OrientationEncoding requested = requestedEncoding;
+            if(!requested.isCompact()) {
+                return;
+            }
+            toServer.writeObject(new OrientationEncodingMessage(requested, OrientationEncoding.SERIALIZED_QUATERNION));
+            toServer.flush();
+            final IMessage answer = (IMessage) fromServer.readObject();
+            if(answer != null && answer.getContent().equals(Content.ORIENTATION_ENCODING)) {
+                // Only an answer that picks the requested encoding switches to it: anything else, including an encoding
+                // that hasn't been offered, keeps the serialized Quaternions
+                final OrientationEncoding[] chosen = ((IOrientationEncodingMessage) answer).getEncodings();
+                if(chosen.length == 1 && chosen[0] == requested) {
+                    orientationEncoding = requested;
+                }
+            }
         }
 
     }
@@ -313,6 +428,42 @@ public abstract class ConnectionBridgeService extends Service {
             sendOrientationChangedMessage(orientationUpdate);
         }
 
+        /**
+         * Asks the Service to suppress the orientation updates that are rotated by less than the passed angle from the
+         * last one sent.
+         * @param degrees the threshold of the dead band in degrees, 0 to send every update.
+         */
+        public void askToSetOrientationDeadBand(final float degrees) {
+            setOrientationDeadBand(degrees);
+        }
+
+        /**
+         * Asks the Service to suppress the orientation updates that wouldn't move the {@link Cursor} by a pixel on the
+         * screen of the HMD.
+         * @param screenWidth the width of the screen of the HMD in pixels.
+         * @param screenHeight the height of the screen of the HMD in pixels.
+         */
+        public void askToSetOrientationDeadBandForScreen(final int screenWidth, final int screenHeight) {
+            setOrientationDeadBandForScreen(screenWidth, screenHeight);
+        }
+
+        /**
+         * Asks the Service to send an orientation update at least once every passed interval, even if it's within the
+         * dead band.
+         * @param milliseconds the keyframe interval in milliseconds.
+         */
+        public void askToSetOrientationKeyframeInterval(final long milliseconds) {
+            setOrientationKeyframeInterval(milliseconds);
+        }
+
+        /**
+         * Asks the Service to offer the passed encoding of the orientation updates the next time it connects to the server.
+         * @param encoding the {@link OrientationEncoding} to request.
+         */
+        public void askToSetOrientationEncoding(final OrientationEncoding encoding) {
+            setOrientationEncoding(encoding);
+        }
+
         /**
          * Asks the Service to transition over its SUPPLYING_COMMANDS state.
          */
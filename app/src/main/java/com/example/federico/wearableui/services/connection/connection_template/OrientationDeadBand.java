@@ -0,0 +1,127 @@
+package com.example.federico.wearableui.services.connection.connection_template;
+
+import com.example.federico.wearableui.representation.Quaternion;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * This class decides which {@link com.example.federico.wearableui.model.finger.Finger} orientation updates are worth
+ * sending to the HMD. While the Finger is held still, the ring keeps producing orientations that differ only by noise and
+ * would not move the {@link com.example.federico.wearableui.viewport.drawable_content.cursor.Cursor} by a single pixel:
+ * an update is only sent if it's rotated by more than a threshold from the last one sent, or if no update has been sent
+ * for a keyframe interval, so that the HMD never drifts too far from the actual orientation.
+ *
+ * The threshold and the keyframe interval can be changed from any thread, while the updates have to be filtered on a
+ * single one, the one that sends them.
+ */
+public class OrientationDeadBand {
+
+    /**
+     * Default interval, in milliseconds, after which an update is sent even if the Finger hasn't moved.
+     */
+    public static final long DEFAULT_KEYFRAME_INTERVAL = 500;
+
+    /**
+     * The threshold, in degrees, below which updates are suppressed. 0 disables the dead band.
+     */
+    private volatile float threshold;
+    /**
+     * The squared distance between two unit quaternions that are rotated by the threshold from each other. For an angle
+     * theta the distance is 2 sin(theta / 4): it's computed from the differences of the components, so unlike the dot
+     * product it stays accurate in float for thresholds of a fraction of a degree.
+     */
+    private volatile float thresholdDistance;
+    /**
+     * Interval, in milliseconds, after which an update is sent even if the Finger hasn't moved.
+     */
+    private volatile long keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+    /**
+     * A flag indicating whether the next update has to be sent regardless of the threshold.
+     */
+    private volatile boolean keyframeNeeded = true;
+
+    /**
+     * The components of the last orientation that has been sent.
+     */
+    private float lastX, lastY, lastZ, lastW;
+    /**
+     * The time, in milliseconds, the last orientation has been sent at.
+     */
+    private long lastSentTime;
+
+    /**
+     * Sets the threshold below which updates are suppressed.
+     * @param degrees the smallest rotation, from the last orientation sent, that is sent to the HMD. 0 disables the dead
+     *                band, and every update is sent.
+     */
+    public void setThreshold(final float degrees) {
+        if(degrees < 0 || degrees >= 180) {
+            throw new IllegalArgumentException("The threshold must be between 0 and 180 degrees, got " + degrees);
+        }
+        final double halfChord = Math.sin(Math.toRadians(degrees) / 4);
+        this.thresholdDistance = (float) (4 * halfChord * halfChord);
+        this.threshold = degrees;
+    }
+
+    public float getThreshold() {
+        return this.threshold;
+    }
+
+    /**
+     * Sets the interval after which an update is sent even if the Finger hasn't moved.
+     * @param milliseconds the keyframe interval in milliseconds.
+     */
+    public void setKeyframeInterval(final long milliseconds) {
+        if(milliseconds <= 0) {
+            throw new IllegalArgumentException("The keyframe interval must be positive, got " + milliseconds);
+        }
+        this.keyframeInterval = milliseconds;
+    }
+
+    public long getKeyframeInterval() {
+        return this.keyframeInterval;
+    }
+
+    /**
+     * Makes the next update be sent regardless of the threshold, for instance after a calibration or a new connection,
+     * when the HMD doesn't know the current orientation yet.
+     */
+    public void requestKeyframe() {
+        this.keyframeNeeded = true;
+    }
+
+    /**
+     * Tells whether an orientation update has to be sent, and if so records it as the last one sent.
+     * @param orientation the orientation update.
+     * @param time the current time in milliseconds.
+     * @return true if the update has to be sent, false if it has to be suppressed.
+     */
+    public boolean accept(final Quaternion orientation, final long time) {
+        if(this.threshold > 0 && !this.keyframeNeeded && time - this.lastSentTime < this.keyframeInterval
+                && this.distanceFromLastSent(orientation) < this.thresholdDistance) {
+            return false;
+        }
+        this.keyframeNeeded = false;
+        this.lastX = orientation.getX();
+        this.lastY = orientation.getY();
+        this.lastZ = orientation.getZ();
+        this.lastW = orientation.getW();
+        this.lastSentTime = time;
+        return true;
+    }
+
+    /**
+     * Returns the squared distance between the passed orientation and the last one sent. A quaternion and its opposite
+     * represent the same orientation, so the distance is the one from the closest of the two.
+     */
+    private float distanceFromLastSent(final Quaternion orientation) {
+        final float dx = orientation.getX() - this.lastX, sx = orientation.getX() + this.lastX;
+        final float dy = orientation.getY() - this.lastY, sy = orientation.getY() + this.lastY;
+        final float dz = orientation.getZ() - this.lastZ, sz = orientation.getZ() + this.lastZ;
+        final float dw = orientation.getW() - this.lastW, sw = orientation.getW() + this.lastW;
+        return Math.min(dx * dx + dy * dy + dz * dz + dw * dw, sx * sx + sy * sy + sz * sz + sw * sw);
+    }
+
+}
@@ -15,15 +15,25 @@ import android.util.Log;
 
 import com.example.federico.wearableui.intraprocess_messaging.IntraProcessMessage;
 import com.example.federico.wearableui.intraprocess_messaging.IntraProcessMessageHandler;
+import com.example.federico.wearableui.metrics.LatencyTracer;
+import com.example.federico.wearableui.representation.OrientationSnapshot;
 import com.example.federico.wearableui.representation.Quaternion;
+import com.example.federico.wearableui.services.connection.messages.CompactOrientationMessage;
 import com.example.federico.wearableui.services.connection.messages.ICalibrationMessage;
 import com.example.federico.wearableui.services.connection.messages.IMessage;
 import com.example.federico.wearableui.services.connection.messages.IOrientationChangedMessage;
+import com.example.federico.wearableui.services.connection.messages.IOrientationEncodingMessage;
+import com.example.federico.wearableui.services.connection.messages.OrientationEncodingMessage;
 import com.example.federico.wearableui.services.connection.messages.content.Content;
+import com.example.federico.wearableui.services.connection.messages.content.OrientationEncoding;
+import com.example.federico.wearableui.trace.ITraceRecorder;
+import com.example.federico.wearableui.trace.TraceRecorder;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * @author Federico Giannoni
@@ -34,6 +44,9 @@ import java.io.ObjectOutputStream;
  * calibrations and lock-unlock of the {@link com.example.federico.wearableui.viewport.Viewport}) and Finger
  * orientation updates. This service manages the connection and communication with such device, by receiving its messages
  * and parsing them.
+ *
+ * The orientation updates can be received either as serialized {@link Quaternion}s or, if the device asks for it when it
+ * connects, quantized with a compact {@link OrientationEncoding}.
  */
 public class MessageParserService extends Service {
 
@@ -42,6 +55,11 @@ public class MessageParserService extends Service {
      */
     private static final String UUID = "a99acd49-93b9-4d5b-b0ba-bb2171a7a9fd";
 
+    /**
+     * The {@link OrientationEncoding}s the orientation updates can be decoded from.
+     */
+    private static final Set<OrientationEncoding> SUPPORTED_ENCODINGS = EnumSet.allOf(OrientationEncoding.class);
+
     /**
      * Handler that operates over a HandlerThread delegated to host the connection code.
      */
@@ -73,16 +91,40 @@ public class MessageParserService extends Service {
         return Message.obtain(IntraProcessMessageHandler.getInstance(), message.getMessageCode());
     }
 
+    /**
+     * Records the passed message with the {@link TraceRecorder}, if a recording is in progress.
+     * @param received the {@link IMessage} that has just been received.
+     */
+    private void recordMessage(final IMessage received) {
+        final ITraceRecorder recorder = TraceRecorder.getInstance();
+        if(!recorder.isRecording()) {
+            return;
+        }
+        Quaternion payload = null;
+        if(received.getContent().equals(Content.NEW_ORIENTATION)) {
+            payload = ((IOrientationChangedMessage) received).getOrientationUpdate();
+        }
+        else if(received.getContent().equals(Content.CALIBRATION)) {
+            payload = ((ICalibrationMessage) received).getCalibration();
+        }
+        recorder.recordMessage(received.getContent(), payload);
+    }
+
     /**
      * Sends a {@link com.example.federico.wearableui.model.finger.Finger} orientation update {@link Message}
      * to the {@link IntraProcessMessageHandler}.
      * @param orientationUpdate the {@link Quaternion} representing the new Finger orientation expressed in a coordinate system that is
      *                          different from the user's coordinate system.
+     * @param receivedAt the time at which the orientation update has been received via Bluetooth, as given by
+     *                   {@link LatencyTracer#now()}.
      */
-    protected final void sendFingerOrientationUpdateMessage(final Quaternion orientationUpdate) {
+    protected final void sendFingerOrientationUpdateMessage(final Quaternion orientationUpdate, final long receivedAt) {
         final Message toDispatch = this.messageForIPMHandler(IntraProcessMessage.FINGER_ORIENTATION_UPDATE);
         final Bundle bundle = new Bundle();
-        bundle.putParcelable(IntraProcessMessage.FINGER_ORIENTATION_UPDATE.getValueKey(), orientationUpdate);
+        // The message received from the connection isn't modified afterwards, but the Finger only deals with snapshots
+        bundle.putParcelable(IntraProcessMessage.FINGER_ORIENTATION_UPDATE.getValueKey(),
+                new OrientationSnapshot(orientationUpdate, receivedAt, OrientationSnapshot.nextSequence()));
+        bundle.putLong(IntraProcessMessage.DISPATCH_TIMESTAMP_KEY, LatencyTracer.getInstance().now());
         toDispatch.setData(bundle);
         toDispatch.sendToTarget();
     }
@@ -229,6 +271,11 @@ public class MessageParserService extends Service {
          */
         private boolean connectionDropped;
 
+        /**
+         * The sequence number of the last compact orientation update received, -1 if none has been received yet.
+         */
+        private int lastSequence = -1;
+
         /**
          * Closes the buffers and the socket, therefore terminating the connection.
          */
@@ -268,13 +315,52 @@ public class MessageParserService extends Service {
             }
         }
 
+        /**
+         * Tells whether the passed compact orientation update comes after the last one received, and if so records its
+         * sequence number.
+         * @param update the orientation update.
+         * @return true if the update has to be dispatched, false if it's older than the last one received.
+         */
+        private boolean acceptSequence(final CompactOrientationMessage update) {
+            if(this.lastSequence >= 0 && !CompactOrientationMessage.isNewer(update.getSequence(), this.lastSequence)) {
+                return false;
+            }
+            this.lastSequence = update.getSequence();
+            return true;
+        }
+
+        /**
+         * Answers the encodings offered by the client with the first one that can be decoded, or with the serialized
+         * Quaternions if none can.
+         * @param offer the {@link IOrientationEncodingMessage} received from the client.
+         * @throws IOException if the offer is empty, which breaks the connection setup, or if the answer can't be sent.
+         */
+        private void answerEncodingOffer(final IOrientationEncodingMessage offer) throws IOException {
+            final OrientationEncoding[] offered = offer.getEncodings();
+            if(offered.length == 0) {
+                throw new IOException("The client offered no orientation encoding");
+            }
+            this.toClient.writeObject(new OrientationEncodingMessage(OrientationEncoding.choose(offered, SUPPORTED_ENCODINGS)));
+            this.toClient.flush();
+        }
+
         @Override
         public void run() {
             try {
                 final IMessage received = (IMessage) this.fromClient.readObject();
+                final long receivedAt = LatencyTracer.getInstance().now();
+                if(received.getContent().equals(Content.ORIENTATION_ENCODING)) {
+                    // Part of the connection setup, there's nothing to record or dispatch
+                    this.answerEncodingOffer((IOrientationEncodingMessage) received);
+                    return;
+                }
+                if(received instanceof CompactOrientationMessage && !this.acceptSequence((CompactOrientationMessage) received)) {
+                    return;
+                }
+                MessageParserService.this.recordMessage(received);
                 if(received.getContent().equals(Content.NEW_ORIENTATION)) {
                     final Quaternion q = ((IOrientationChangedMessage) received).getOrientationUpdate();
-                    MessageParserService.this.sendFingerOrientationUpdateMessage(q);
+                    MessageParserService.this.sendFingerOrientationUpdateMessage(q, receivedAt);
                 }
                 else if(received.getContent().equals(Content.CLICK)) {
                     MessageParserService.this.sendCursorClickMessage();
@@ -0,0 +1,126 @@
+package com.example.federico.wearableui.services.connection.messages;
+
+import com.example.federico.wearableui.representation.Quaternion;
+import com.example.federico.wearableui.services.connection.messages.content.Content;
+import com.example.federico.wearableui.services.connection.messages.content.OrientationEncoding;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * This class models the {@link Message}s that supply {@link com.example.federico.wearableui.model.finger.Finger}
+ * orientation updates quantized with one of the compact {@link OrientationEncoding}s. The Message writes itself: besides
+ * the few bytes of the serialization header, it only takes the encoding, a 16 bit sequence number and the quantized
+ * orientation, instead of the whole {@link Quaternion} object sent by an {@link OrientationChangedMessage}.
+ */
+public class CompactOrientationMessage extends Message implements IOrientationChangedMessage, Externalizable {
+
+    /**
+     * The values of the OrientationEncoding enumerator, indexed by the byte written on the connection.
+     */
+    private static final OrientationEncoding[] ENCODINGS = OrientationEncoding.values();
+
+    /**
+     * The encoding of the orientation.
+     */
+    private OrientationEncoding encoding;
+    /**
+     * The sequence number of the Message, between 0 and 65535. It wraps around, see {@link #isNewer(int, int)}.
+     */
+    private int sequence;
+    /**
+     * The quantized orientation.
+     */
+    private long bits;
+    /**
+     * The orientation, decoded the first time it's asked for.
+     */
+    private transient Quaternion orientationUpdate;
+
+    /**
+     * Constructor used by the deserialization, which then reads the content of the Message.
+     */
+    public CompactOrientationMessage() {
+        super(Content.NEW_ORIENTATION);
+    }
+
+    /**
+     * Constructor.
+     * @param encoding the compact {@link OrientationEncoding} used to quantize the orientation.
+     * @param sequence the sequence number of the Message. Only its lowest 16 bits are kept.
+     * @param orientationUpdate a {@link Quaternion} representing the {@link com.example.federico.wearableui.model.finger.Finger}
+     *                          orientation update to be provided by this Message. It's quantized right away, so it can
+     *                          keep changing afterwards.
+     */
+    public CompactOrientationMessage(final OrientationEncoding encoding, final int sequence, final Quaternion orientationUpdate) {
+        this();
+        if(!encoding.isCompact()) {
+            throw new IllegalArgumentException(encoding + " is not a compact encoding");
+        }
+        this.encoding = encoding;
+        this.sequence = sequence & 0xFFFF;
+        this.bits = encoding.encode(orientationUpdate);
+    }
+
+    /**
+     * Tells whether a sequence number comes after another one, taking into account that they wrap around after 65535.
+     * @param sequence a sequence number.
+     * @param previous the sequence number it's compared with.
+     * @return true if sequence is at most 32767 numbers after previous, false otherwise.
+     */
+    public static boolean isNewer(final int sequence, final int previous) {
+        return (short) (sequence - previous) > 0;
+    }
+
+    public OrientationEncoding getEncoding() {
+        return this.encoding;
+    }
+
+    public int getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * Returns the orientation update, as recovered from its quantized form. The quaternion may be the opposite of the one
+     * that has been sent, which represents the same rotation.
+     * @return the Quaternion representing the orientation update.
+     */
+    @Override
+    public Quaternion getOrientationUpdate() {
+        if(this.orientationUpdate == null) {
+            this.orientationUpdate = this.encoding.decode(this.bits, new Quaternion());
+        }
+        return this.orientationUpdate;
+    }
+
+    @Override
+    public void writeExternal(final ObjectOutput out) throws IOException {
+        out.writeByte(this.encoding.ordinal());
+        out.writeShort(this.sequence);
+        for(int i = this.encoding.getPayloadBytes() - 1; i >= 0; i--) {
+            out.writeByte((int) (this.bits >>> (8 * i)));
+        }
+    }
+
+    @Override
+    public void readExternal(final ObjectInput in) throws IOException {
+        final int ordinal = in.readUnsignedByte();
+        if(ordinal >= ENCODINGS.length || !ENCODINGS[ordinal].isCompact()) {
+            throw new InvalidObjectException("Unknown orientation encoding " + ordinal);
+        }
+        this.encoding = ENCODINGS[ordinal];
+        this.sequence = in.readUnsignedShort();
+        this.bits = 0;
+        for(int i = 0; i < this.encoding.getPayloadBytes(); i++) {
+            this.bits = (this.bits << 8) | in.readUnsignedByte();
+        }
+    }
+
+}
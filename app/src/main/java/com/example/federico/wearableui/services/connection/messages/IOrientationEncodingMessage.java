@@ -0,0 +1,20 @@
+package com.example.federico.wearableui.services.connection.messages;
+
+import com.example.federico.wearableui.services.connection.messages.content.OrientationEncoding;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Interface that defines the behaviour of a {@link OrientationEncodingMessage}.
+ */
+public interface IOrientationEncodingMessage extends IMessage {
+
+    /**
+     * Returns the {@link OrientationEncoding}s carried by the message.
+     * @return the encodings offered by the client in order of preference, or an array holding the one chosen by the server.
+     */
+    OrientationEncoding[] getEncodings();
+
+}
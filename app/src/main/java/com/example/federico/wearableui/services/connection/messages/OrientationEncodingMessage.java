@@ -0,0 +1,40 @@
+package com.example.federico.wearableui.services.connection.messages;
+
+import com.example.federico.wearableui.services.connection.messages.content.Content;
+import com.example.federico.wearableui.services.connection.messages.content.OrientationEncoding;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * This class models a specific kind of {@link Message}s, that are used to negotiate the {@link OrientationEncoding} of
+ * the {@link com.example.federico.wearableui.model.finger.Finger} orientation updates. Right after connecting, the client
+ * offers the encodings it can send, in order of preference, and the server answers with the one it has chosen.
+ */
+public class OrientationEncodingMessage extends Message implements IOrientationEncodingMessage {
+
+    /**
+     * The encodings offered, or the one chosen.
+     */
+    private final OrientationEncoding[] encodings;
+
+    /**
+     * Constructor.
+     * @param encodings the {@link OrientationEncoding}s offered by the client in order of preference, or the one chosen
+     *                  by the server.
+     */
+    public OrientationEncodingMessage(final OrientationEncoding... encodings) {
+        super(Content.ORIENTATION_ENCODING);
+        if(encodings.length == 0) {
+            throw new IllegalArgumentException("At least one encoding must be offered");
+        }
+        this.encodings = encodings.clone();
+    }
+
+    @Override
+    public OrientationEncoding[] getEncodings() {
+        return this.encodings.clone();
+    }
+
+}
@@ -7,4 +7,4 @@ package com.example.federico.wearableui.services.connection.messages.content;
 /**
  * Enumerator that defines the possible content of a {@link com.example.federico.wearableui.services.connection.messages.Message}.
  */
-public enum Content { CALIBRATION, CLICK, NEW_ORIENTATION, LOCK_UNLOCK, RESET_CURSOR_POSITION }
+public enum Content { CALIBRATION, CLICK, NEW_ORIENTATION, LOCK_UNLOCK, RESET_CURSOR_POSITION, ORIENTATION_ENCODING }
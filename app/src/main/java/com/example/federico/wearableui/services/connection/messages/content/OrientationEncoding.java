@@ -0,0 +1,172 @@
+package com.example.federico.wearableui.services.connection.messages.content;
+
+import com.example.federico.wearableui.representation.Quaternion;
+
+import java.util.Set;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Enumerator that defines how {@link com.example.federico.wearableui.model.finger.Finger} orientation updates are encoded
+ * on the Bluetooth connection.
+ *
+ * Besides the serialized {@link Quaternion}, orientations can be quantized with the "smallest three" scheme: since a
+ * rotation quaternion has unit length, only the three smallest components are sent, along with the index of the largest
+ * one, which is recovered from them. The largest component is made positive by negating the whole quaternion, which
+ * represents the same rotation. The three smallest components lie between -1/sqrt(2) and 1/sqrt(2), so that's the range
+ * they're quantized over.
+ */
+public enum OrientationEncoding {
+
+    /**
+     * The whole {@link Quaternion} object is serialized, as in {@link com.example.federico.wearableui.services.connection.messages.OrientationChangedMessage}.
+     */
+    SERIALIZED_QUATERNION(0),
+    /**
+     * 10 bits for each of the three smallest components, in 4 bytes. The error is below 0.25 degrees, a few pixels of
+     * the cursor.
+     */
+    SMALLEST_THREE_32(10),
+    /**
+     * 15 bits for each of the three smallest components, in 6 bytes. The error is below 0.01 degrees, a fraction of a
+     * pixel of the cursor.
+     */
+    SMALLEST_THREE_48(15);
+
+    /**
+     * The range the three smallest components of a unit quaternion lie in: [-RANGE, RANGE].
+     */
+    private static final float RANGE = (float) (1 / Math.sqrt(2));
+
+    /**
+     * The number of bits each of the three smallest components is quantized to, 0 if the encoding isn't quantized.
+     */
+    private final int bitsPerComponent;
+
+    /**
+     * Constructor.
+     * @param bitsPerComponent the number of bits each of the three smallest components is quantized to.
+     */
+    OrientationEncoding(final int bitsPerComponent) {
+        this.bitsPerComponent = bitsPerComponent;
+    }
+
+    /**
+     * Chooses the encoding to answer an offer with: the first offered one that the receiver supports, or the serialized
+     * {@link Quaternion}s, which every receiver understands, if none is.
+     * @param offered the encodings offered, in order of preference.
+     * @param supported the encodings the receiver can decode.
+     * @return the chosen encoding.
+     * @throws IllegalArgumentException if no encoding is offered.
+     */
+    public static OrientationEncoding choose(final OrientationEncoding[] offered, final Set<OrientationEncoding> supported) {
+        if(offered.length == 0) {
+            throw new IllegalArgumentException("At least one encoding must be offered");
+        }
+        for(final OrientationEncoding encoding : offered) {
+            if(encoding != null && supported.contains(encoding)) {
+                return encoding;
+            }
+        }
+        return SERIALIZED_QUATERNION;
+    }
+
+    /**
+     * Tells whether the orientations are quantized with the smallest three scheme.
+     * @return true if the encoding is compact, false if the Quaternion is serialized.
+     */
+    public boolean isCompact() {
+        return this.bitsPerComponent > 0;
+    }
+
+    /**
+     * Returns the number of bytes an encoded orientation takes.
+     * @return the number of bytes of the payload, 0 if the encoding isn't compact.
+     */
+    public int getPayloadBytes() {
+        if(!this.isCompact()) {
+            return 0;
+        }
+        return (2 + 3 * this.bitsPerComponent + 7) / 8;
+    }
+
+    /**
+     * Returns the number of steps the range of the components is divided into. It's even, so that 0 is exactly
+     * represented and the identity doesn't wobble.
+     * @return the greatest quantized value of a component.
+     */
+    private int getSteps() {
+        return (1 << this.bitsPerComponent) - 2;
+    }
+
+    /**
+     * Quantizes the passed orientation.
+     * @param orientation the orientation to encode. It doesn't need to be normalized.
+     * @return the encoded orientation, in the lowest {@link #getPayloadBytes()} bytes.
+     * @throws IllegalStateException if the encoding isn't compact.
+     */
+    public long encode(final Quaternion orientation) {
+        if(!this.isCompact()) {
+            throw new IllegalStateException(this + " doesn't quantize the orientations");
+        }
+        final float x = orientation.getX(), y = orientation.getY(), z = orientation.getZ(), w = orientation.getW();
+        final float[] components = { x, y, z, w };
+        int largest = 0;
+        for(int i = 1; i < 4; i++) {
+            if(Math.abs(components[i]) > Math.abs(components[largest])) {
+                largest = i;
+            }
+        }
+        final float length = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+        if(length == 0) {
+            throw new IllegalArgumentException("The orientation must not be a zero quaternion");
+        }
+        // The largest component is made positive, and isn't sent
+        final float scale = (components[largest] < 0 ? -1 : 1) / length;
+
+        final int max = this.getSteps();
+        long bits = largest;
+        for(int i = 0; i < 4; i++) {
+            if(i != largest) {
+                final float normalized = (components[i] * scale + RANGE) / (2 * RANGE);
+                final long quantized = Math.min(max, Math.max(0, Math.round(normalized * max)));
+                bits = (bits << this.bitsPerComponent) | quantized;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Recovers an orientation from its quantized form.
+     * @param bits the encoded orientation, as returned by {@link #encode(Quaternion)}.
+     * @param output the {@link Quaternion} where the orientation is stored.
+     * @return the output Quaternion.
+     * @throws IllegalStateException if the encoding isn't compact.
+     */
+    public Quaternion decode(final long bits, final Quaternion output) {
+        if(!this.isCompact()) {
+            throw new IllegalStateException(this + " doesn't quantize the orientations");
+        }
+        final int max = this.getSteps();
+        final int mask = (1 << this.bitsPerComponent) - 1;
+        final int largest = (int) (bits >>> (3 * this.bitsPerComponent)) & 3;
+        final float[] components = new float[4];
+        long remaining = bits;
+        float sum = 0;
+        // The components are decoded in the opposite order they've been encoded in
+        for(int i = 3; i >= 0; i--) {
+            if(i != largest) {
+                final float component = (remaining & mask) / (float) max * (2 * RANGE) - RANGE;
+                components[i] = component;
+                sum += component * component;
+                remaining >>>= this.bitsPerComponent;
+            }
+        }
+        components[largest] = (float) Math.sqrt(Math.max(0, 1 - sum));
+        output.setXYZW(components[0], components[1], components[2], components[3]);
+        return output;
+    }
+
+}
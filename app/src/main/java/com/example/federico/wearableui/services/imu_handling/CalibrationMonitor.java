@@ -0,0 +1,133 @@
+package com.example.federico.wearableui.services.imu_handling;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * This class monitors the calibration phase of an {@link ImuHandlerService}, to tell when the fused orientation has
+ * converged and the calibration can end, instead of always waiting for the whole calibration period.
+ *
+ * Over a window of the last samples it keeps track of the agreement between the gyroscope orientation and the rotation
+ * vector orientation (the absolute value of their dot-product), of the drift between the two (the angle that separates
+ * them) and of the angular velocity of the device. The fusion has converged when the two orientations agree and the drift
+ * between them is stable over the whole window, and the calibration can be taken when the device is also being held still.
+ */
+public class CalibrationMonitor {
+
+    /**
+     * Number of samples over which the convergence is evaluated. At the sampling rate of the ImuHandlerService this is
+     * roughly one second.
+     */
+    private static final int WINDOW = 30;
+
+    /**
+     * Minimum average agreement (dot-product) between the gyroscope and the rotation vector orientations.
+     */
+    private static final double AGREEMENT_THRESHOLD = 0.995;
+
+    /**
+     * Maximum variance of the drift angle (in rad^2) between the gyroscope and the rotation vector orientations. This is
+     * roughly a standard deviation of half a degree.
+     */
+    private static final double DRIFT_VARIANCE_THRESHOLD = 0.0000762;
+
+    /**
+     * Maximum angular velocity (in rad/s) the device can have over the window to be considered still.
+     */
+    private static final double STILLNESS_THRESHOLD = 0.1;
+
+    /**
+     * Agreements of the last samples.
+     */
+    private final double[] agreements = new double[WINDOW];
+
+    /**
+     * Drift angles of the last samples.
+     */
+    private final double[] drifts = new double[WINDOW];
+
+    /**
+     * Angular velocities of the last samples.
+     */
+    private final double[] velocities = new double[WINDOW];
+
+    /**
+     * Index at which the next sample will be stored.
+     */
+    private int next;
+
+    /**
+     * Number of samples stored in the window.
+     */
+    private int count;
+
+    /**
+     * Discards all the samples, so that a new calibration can be monitored.
+     */
+    public void reset() {
+        this.next = 0;
+        this.count = 0;
+    }
+
+    /**
+     * Adds a sample to the window.
+     * @param dotProduct the dot-product between the gyroscope and the rotation vector orientations.
+     * @param angularVelocity the angular velocity of the device in rad/s.
+     */
+    public void addSample(final float dotProduct, final double angularVelocity) {
+        final double agreement = Math.min(1.0, Math.abs(dotProduct));
+        this.agreements[this.next] = agreement;
+        this.drifts[this.next] = 2 * Math.acos(agreement);
+        this.velocities[this.next] = angularVelocity;
+        this.next = (this.next + 1) % WINDOW;
+        if(this.count < WINDOW) {
+            this.count++;
+        }
+    }
+
+    /**
+     * Returns whether the fusion has converged, that is the gyroscope and the rotation vector orientations have agreed
+     * and the drift between them has been stable over the whole window.
+     * @return true if the fusion has converged, false otherwise.
+     */
+    public boolean hasConverged() {
+        if(this.count < WINDOW) {
+            return false;
+        }
+
+        double agreementSum = 0;
+        double driftSum = 0;
+        for(int i = 0; i < WINDOW; i++) {
+            agreementSum += this.agreements[i];
+            driftSum += this.drifts[i];
+        }
+        final double driftMean = driftSum / WINDOW;
+        double driftVariance = 0;
+        for(int i = 0; i < WINDOW; i++) {
+            driftVariance += (this.drifts[i] - driftMean) * (this.drifts[i] - driftMean);
+        }
+        driftVariance /= WINDOW;
+
+        return agreementSum / WINDOW >= AGREEMENT_THRESHOLD && driftVariance <= DRIFT_VARIANCE_THRESHOLD;
+    }
+
+    /**
+     * Returns whether the device has been held still over the whole window.
+     * @return true if the device has been still, false otherwise.
+     */
+    public boolean isStill() {
+        if(this.count < WINDOW) {
+            return false;
+        }
+
+        for(int i = 0; i < WINDOW; i++) {
+            if(this.velocities[i] > STILLNESS_THRESHOLD) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.example.federico.wearableui.services.imu_handling;
+
+import com.example.federico.wearableui.representation.Quaternion;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * This class holds the state an {@link ImuHandlerService} needs to skip the calibration phase when it's created again:
+ * the calibration {@link Quaternion} that has been communicated to the {@link com.example.federico.wearableui.model.gaze.Gaze},
+ * the last fused orientation of the device and the time at which they have been saved.
+ *
+ * A snapshot can only be used for a warm start if it's recent and if the device hasn't been moved too much since it
+ * has been saved, which is checked against the first rotation vector sample received by the new service.
+ */
+public class CalibrationSnapshot {
+
+    /**
+     * Version of the format used to write the snapshot.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Maximum age, in milliseconds, a snapshot can have to be used for a warm start.
+     */
+    private static final long MAX_AGE = 30 * 60 * 1000;
+
+    /**
+     * Minimum agreement (dot-product) between the saved orientation and the current orientation of the device for the
+     * snapshot to be used for a warm start. This corresponds to a rotation of roughly 36 degrees.
+     */
+    private static final float MIN_AGREEMENT = 0.95f;
+
+    /**
+     * Tolerance on the norm of the saved Quaternions.
+     */
+    private static final float NORM_TOLERANCE = 0.01f;
+
+    /**
+     * The calibration Quaternion, as communicated to the Gaze.
+     */
+    private final Quaternion calibration;
+
+    /**
+     * The last fused orientation, as stored by the ImuHandlerService (with the w component inverted).
+     */
+    private final Quaternion orientation;
+
+    /**
+     * Time at which the snapshot has been taken, in milliseconds since the epoch.
+     */
+    private final long savedAt;
+
+    /**
+     * Constructor.
+     * @param calibration the calibration {@link Quaternion}, as communicated to the Gaze.
+     * @param orientation the last fused orientation of the device.
+     * @param savedAt the time at which the snapshot is taken, in milliseconds since the epoch.
+     */
+    public CalibrationSnapshot(final Quaternion calibration, final Quaternion orientation, final long savedAt) {
+        this.calibration = calibration.clone();
+        this.orientation = orientation.clone();
+        this.savedAt = savedAt;
+    }
+
+    /**
+     * Reads a snapshot from the passed stream.
+     * @param in the stream to read from. It's not closed by this method.
+     * @return the CalibrationSnapshot read.
+     * @throws IOException if the stream can't be read or it doesn't contain a snapshot in the expected format.
+     */
+    public static CalibrationSnapshot readFrom(final InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(in);
+        if(data.readInt() != VERSION) {
+            throw new IOException("Unsupported calibration snapshot version");
+        }
+        final long savedAt = data.readLong();
+        final Quaternion calibration = readQuaternion(data);
+        final Quaternion orientation = readQuaternion(data);
+        return new CalibrationSnapshot(calibration, orientation, savedAt);
+    }
+
+    private static Quaternion readQuaternion(final DataInputStream data) throws IOException {
+        final Quaternion quaternion = new Quaternion();
+        quaternion.setXYZW(data.readFloat(), data.readFloat(), data.readFloat(), data.readFloat());
+        return quaternion;
+    }
+
+    private static void writeQuaternion(final DataOutputStream data, final Quaternion quaternion) throws IOException {
+        data.writeFloat(quaternion.getX());
+        data.writeFloat(quaternion.getY());
+        data.writeFloat(quaternion.getZ());
+        data.writeFloat(quaternion.getW());
+    }
+
+    private static boolean isUnit(final Quaternion quaternion) {
+        final float norm = quaternion.dotProduct(quaternion);
+        // A NaN norm fails the comparison as well
+        return Math.abs(norm - 1) <= NORM_TOLERANCE;
+    }
+
+    /**
+     * Writes the snapshot to the passed stream.
+     * @param out the stream to write to. It's flushed, but not closed by this method.
+     * @throws IOException if the stream can't be written.
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(VERSION);
+        data.writeLong(this.savedAt);
+        writeQuaternion(data, this.calibration);
+        writeQuaternion(data, this.orientation);
+        data.flush();
+    }
+
+    /**
+     * Checks whether the snapshot can be used to skip the calibration phase.
+     * @param currentOrientation the current orientation of the device as given by the rotation vector (with the w
+     *                           component inverted, like the saved orientation).
+     * @param now the current time in milliseconds since the epoch.
+     * @return true if the snapshot is recent, well formed and the device hasn't moved too much since it has been saved.
+     */
+    public boolean isUsable(final Quaternion currentOrientation, final long now) {
+        final long age = now - this.savedAt;
+        if(age < 0 || age > MAX_AGE) {
+            return false;
+        }
+        if(!isUnit(this.calibration) || !isUnit(this.orientation)) {
+            return false;
+        }
+        return Math.abs(this.orientation.dotProduct(currentOrientation)) >= MIN_AGREEMENT;
+    }
+
+    /**
+     * Returns the saved calibration.
+     * @return a copy of the calibration {@link Quaternion}, as communicated to the Gaze.
+     */
+    public Quaternion getCalibration() {
+        return this.calibration.clone();
+    }
+
+    /**
+     * Returns the saved orientation.
+     * @return a copy of the last fused orientation of the device.
+     */
+    public Quaternion getOrientation() {
+        return this.orientation.clone();
+    }
+
+    /**
+     * Returns the time at which the snapshot has been taken.
+     * @return the time in milliseconds since the epoch.
+     */
+    public long getSavedAt() {
+        return this.savedAt;
+    }
+
+}
@@ -6,13 +6,17 @@ import android.content.Intent;
 import android.hardware.Sensor;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Build;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Process;
 import android.support.annotation.Nullable;
 
 
+import com.example.federico.wearableui.representation.OrientationSnapshot;
 import com.example.federico.wearableui.representation.Quaternion;
+import com.example.federico.wearableui.services.imu_handling.filter.OrientationFilterType;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -33,24 +37,111 @@ public abstract class ImuHandlerService extends Service implements SensorEventLi
      */
     protected static final float CALIBRATION_PERIOD = 15000000000.0f;
 
+    /**
+     * Constant specifying the factor between a nano-second and a milli-second.
+     */
+    protected static final float NS2MS = 1.0f / 1000000.0f;
+
     /**
      * Constant specifying the sampling rate of the sensors in microseconds. Since every time a new
      * orientation is calculated it is supplied to the viewport to be redrawn, this constant also
      * dictates the refresh rate of the viewport - a 33333us sampling rate a.k.a. a 33ms rate,
-     * coincides with a 30fps refresh rate of the viewport
+     * coincides with a 30fps refresh rate of the viewport.
+     * This is the rate the sensors start with; when the adaptive sampling is enabled, the {@link SamplingRateController}
+     * moves it between its tiers according to the motion of the device.
      */
     private static final int SAMPLE_RATE_US = 33333;
 
     /**
-     * Flag indicating if the calibration phase has ended.
+     * Constant specifying the sampling rate of the sensors in microseconds while the service is retained, that is while
+     * nobody is displaying its orientations but it's kept alive to avoid a new calibration. A 100000us rate is enough
+     * for the fusion to keep track of the orientation at a fraction of the cost.
      */
-    protected CalibrationState calibrationState = CalibrationState.WILL_START;
+    private static final int RETAINED_SAMPLE_RATE_US = 100000;
+
+    /**
+     * The sampling rate the sensors are currently registered with, in microseconds.
+     */
+    private int samplingPeriod = SAMPLE_RATE_US;
+
+    /**
+     * Flag indicating whether the service is retained. While retained, the sensors are sampled at a low rate and the
+     * orientation updates are not communicated.
+     */
+    protected volatile boolean retained = false;
+
+    /**
+     * Maximum time, in microseconds, the sensor events can be held in the hardware FIFO before being delivered. A value
+     * of 0 disables the batching, so that every sample is delivered as soon as it's taken.
+     */
+    protected volatile int maxReportLatency = 0;
+
+    /**
+     * Flag indicating whether at least one of the sensors is registered with the maximum report latency, that is whether
+     * its events are delivered in batches. It's updated every time the sensors are registered.
+     */
+    private volatile boolean batching = false;
+
+    /**
+     * Flag indicating whether the sampling rate follows the motion of the device and the lock state of the Viewport.
+     */
+    protected volatile boolean adaptiveSampling = true;
+
+    /**
+     * Flag indicating whether the {@link com.example.federico.wearableui.viewport.Viewport} is locked, in which case the
+     * orientation doesn't need to be sampled at a high rate.
+     */
+    protected volatile boolean viewportLocked = false;
+
+    /**
+     * Chooses the sampling rate when the adaptive sampling is enabled.
+     */
+    protected final SamplingRateController rateController = new SamplingRateController();
+
+    /**
+     * Constant specifying the factor between a milli-second and a second.
+     */
+    private static final float MS2S = 1.0f / 1000.0f;
+
+    /**
+     * How far in the future, in seconds, the published orientations are extrapolated to compensate for the time it
+     * takes them to be displayed. A value of 0 disables the prediction.
+     */
+    protected volatile float predictionHorizon = 0;
+
+    /**
+     * The type of the filter used to fuse the sensor samples.
+     */
+    protected volatile OrientationFilterType orientationFilterType = OrientationFilterType.COMPLEMENTARY;
+
+    /**
+     * Flag indicating whether the calibration phase ends as soon as the orientation has converged, rather than after
+     * the whole CALIBRATION_PERIOD, which is kept as an upper bound.
+     */
+    protected volatile boolean adaptiveCalibration = true;
+
+    /**
+     * Flag indicating whether the service resumes with the calibration saved by the previous instance, when it's still
+     * valid, instead of running the calibration phase again.
+     */
+    protected volatile boolean warmStart = true;
+
+    /**
+     * Name of the local file where the calibration is saved when the service is destroyed.
+     */
+    protected static final String CALIBRATION_FILE = "gaze_calibration";
+
+    /**
+     * How long, in milliseconds, the last calibration phase has lasted (or, after a warm start, how long it took the
+     * service to resume the saved calibration). Both are measured from the first rotation vector sample of the phase,
+     * on the clock of the sensor events, so they can be compared; -1 if it hasn't finished yet.
+     */
+    protected volatile long timeToReady = -1;
 
     /**
-     * Sync-token for syncing read/write to sensor-data from sensor manager and
-     * fusion algorithm
+     * Flag indicating if the calibration phase has ended.
      */
-    protected final Object syncToken = new Object();
+    protected CalibrationState calibrationState = CalibrationState.WILL_START;
 
     /**
      * The list of sensors used by this provider
@@ -58,14 +149,16 @@ public abstract class ImuHandlerService extends Service implements SensorEventLi
     protected List<Sensor> sensorList = new ArrayList<>();
 
     /**
-     * The list of handlers for each sensor
+     * The handler of the thread all the sensor events are delivered on. Using a single thread for all the sensors makes
+     * the fusion single-threaded, so its state never needs to be synchronized.
      */
-    protected List<Handler> handlers = new ArrayList<>();
+    protected Handler sensorHandler;
 
     /**
-     * The quaternion that holds the current rotation
+     * The current rotation, expressed according to the World Coordinate System. Snapshots are immutable and the fusion
+     * thread replaces the published one with a new one, so other threads can read it at any time without locking.
      */
-    protected Quaternion currentOrientationQuaternion;
+    protected volatile OrientationSnapshot currentOrientation;
 
     /**
      * The sensor manager for accessing android sensors
@@ -73,25 +166,166 @@ public abstract class ImuHandlerService extends Service implements SensorEventLi
     protected SensorManager sensorManager;
 
     protected void registerSensors() {
+        // Start a single thread for all the sensors, so that their events are processed one at a time and in the
+        // order in which they are delivered
+        final HandlerThread handlerThread = new HandlerThread("Imu Fusion", Process.THREAD_PRIORITY_DISPLAY);
+        handlerThread.start();
+        sensorHandler = new Handler(handlerThread.getLooper());
         for (final Sensor sensor : sensorList) {
-            // Start a new thread for this sensor
-            final HandlerThread handlerThread = new HandlerThread(sensor.getName());
-            handlerThread.start();
-            // Create a handler for the thread and attach it
-            final Handler handler = new Handler(handlerThread.getLooper());
-            handlers.add(handler);
-            // Register the sensor manager for this sensor - computations will be done on the new handler thread
+            // Register the sensor manager for this sensor - computations will be done on the handler thread
             // that we've just created
-            sensorManager.registerListener(this, sensor, SAMPLE_RATE_US, handler);
+            registerSensor(sensor, sensorHandler);
+        }
+        updateBatching();
+    }
+
+    /**
+     * Tells whether a sensor is registered with the maximum report latency. The batching has to be enabled, supported by
+     * the platform and by the sensor itself, which needs a hardware FIFO to hold the events in.
+     * @param sensor the {@link Sensor} to check.
+     * @return true if the events of the sensor are delivered in batches.
+     */
+    private boolean canBatch(final Sensor sensor) {
+        return maxReportLatency > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && sensor.getFifoMaxEventCount() > 0;
+    }
+
+    /**
+     * Updates the batching flag according to the sensors that are currently registered.
+     */
+    private void updateBatching() {
+        boolean batched = false;
+        for (final Sensor sensor : sensorList) {
+            batched |= canBatch(sensor);
+        }
+        batching = batched;
+    }
+
+    /**
+     * Registers this service as the listener of a sensor, with the current sampling rate and, if the batching is enabled
+     * and supported, the current maximum report latency.
+     * @param sensor the {@link Sensor} to listen to.
+     * @param handler the {@link Handler} of the thread the events are delivered on.
+     */
+    private void registerSensor(final Sensor sensor, final Handler handler) {
+        if (canBatch(sensor)) {
+            sensorManager.registerListener(this, sensor, samplingPeriod, maxReportLatency, handler);
+        } else {
+            sensorManager.registerListener(this, sensor, samplingPeriod, handler);
+        }
+    }
+
+    /**
+     * Tells whether the sensor events are currently being batched. Sensors without a hardware FIFO deliver their events
+     * one by one even if a maximum report latency has been set.
+     * @return true if the events are delivered in batches, false if they are delivered one by one.
+     */
+    protected boolean isBatching() {
+        return batching;
+    }
+
+    /**
+     * Changes the sampling rate of the sensors. The sensors are registered again with the new rate on the same thread,
+     * which is kept alive.
+     * @param samplingPeriodUs the new sampling rate in microseconds.
+     */
+    protected synchronized void setSamplingPeriod(final int samplingPeriodUs) {
+        if (samplingPeriodUs == samplingPeriod) {
+            return;
+        }
+        samplingPeriod = samplingPeriodUs;
+        reregisterSensors();
+    }
+
+    /**
+     * Changes the maximum report latency of the sensors. The sensors are registered again on the same thread.
+     * @param maxReportLatencyUs the new maximum report latency in microseconds, 0 to disable the batching.
+     */
+    protected synchronized void setMaxReportLatency(final int maxReportLatencyUs) {
+        if (maxReportLatencyUs == maxReportLatency) {
+            return;
+        }
+        maxReportLatency = maxReportLatencyUs;
+        reregisterSensors();
+    }
+
+    /**
+     * Registers the sensors again, so that the current sampling rate and maximum report latency are applied.
+     */
+    private void reregisterSensors() {
+        if (sensorHandler == null) {
+            return;
+        }
+        for (final Sensor sensor : sensorList) {
+            sensorManager.unregisterListener(this, sensor);
+            registerSensor(sensor, sensorHandler);
+        }
+        updateBatching();
+    }
+
+    /**
+     * Starts listening to one more sensor, on the thread all the sensor events are delivered on.
+     * @param sensor the {@link Sensor} to add, ignored if it's null or it's already being listened to.
+     */
+    protected synchronized void addSensor(final Sensor sensor) {
+        if (sensor == null || sensorList.contains(sensor)) {
+            return;
+        }
+        sensorList.add(sensor);
+        if (sensorHandler != null) {
+            registerSensor(sensor, sensorHandler);
+            updateBatching();
+        }
+    }
+
+    /**
+     * Stops listening to a sensor.
+     * @param sensor the {@link Sensor} to remove, ignored if it's not being listened to.
+     */
+    protected synchronized void removeSensor(final Sensor sensor) {
+        if (sensorList.remove(sensor)) {
+            sensorManager.unregisterListener(this, sensor);
+            updateBatching();
         }
     }
 
+    /**
+     * Called when a different orientation filter has been selected. Subclasses that fuse the sensor samples have to
+     * switch to it.
+     * @param type the {@link OrientationFilterType} that has been selected.
+     */
+    protected void onOrientationFilterChanged(final OrientationFilterType type) {
+        // Not doing anything
+    }
+
+    /**
+     * Publishes a new current orientation. This has to be called from the thread the sensor events are delivered on.
+     * @param orientation the new fused orientation, with the w component inverted as the fusion keeps it. Its components
+     *                    are copied, so the caller can keep modifying it.
+     * @param timestamp the time at which the sensor sample the orientation comes from has been taken, as given by
+     *                  {@link com.example.federico.wearableui.metrics.LatencyTracer#now()}.
+     * @return the published {@link OrientationSnapshot}.
+     */
+    protected OrientationSnapshot publishCurrentOrientation(final Quaternion orientation, final long timestamp) {
+        final OrientationSnapshot snapshot = new OrientationSnapshot(orientation.getX(), orientation.getY(),
+                orientation.getZ(), -orientation.getW(), timestamp, OrientationSnapshot.nextSequence());
+        currentOrientation = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Brings the sensors back to the default sampling rate and restarts the {@link SamplingRateController}.
+     */
+    protected void resetSamplingPeriod() {
+        rateController.restart();
+        setSamplingPeriod(SAMPLE_RATE_US);
+    }
+
     @Override
     public void onCreate() {
         super.onCreate();
         sensorManager = (SensorManager) this.getSystemService(Context.SENSOR_SERVICE);
         // Initialise with identity
-        currentOrientationQuaternion = new Quaternion();
+        currentOrientation = new OrientationSnapshot(new Quaternion(), 0, 0);
     }
 
     @Nullable
@@ -105,16 +339,15 @@ public abstract class ImuHandlerService extends Service implements SensorEventLi
         super.onDestroy();
         // Make sure to turn our sensors off when the activity is paused
         for (final Sensor sensor : sensorList) {
-            // Recover handlers
-            final Handler handler = handlers.get(sensorList.indexOf(sensor));
-            // Remove all callbacks and messages and close the thread
-            handler.removeCallbacksAndMessages(null);
-            handler.getLooper().quit();
             // Unregister this listener
             sensorManager.unregisterListener(this, sensor);
         }
-        // Clear the handlers list
-        handlers.clear();
+        // Remove all callbacks and messages and close the thread
+        if (sensorHandler != null) {
+            sensorHandler.removeCallbacksAndMessages(null);
+            sensorHandler.getLooper().quit();
+            sensorHandler = null;
+        }
     }
 
     @Override
@@ -134,6 +367,205 @@ public abstract class ImuHandlerService extends Service implements SensorEventLi
         public boolean askHasCalibrationPhaseFinished() {
             return calibrationState.equals(CalibrationState.FINISHED);
         }
+
+        /**
+         * Returns the current orientation of the device. This can be called from any thread and never blocks the fusion.
+         * @return a copy of the current orientation, expressed according to the World Coordinate System.
+         */
+        public Quaternion getCurrentOrientation() {
+            return currentOrientation.toQuaternion(new Quaternion());
+        }
+
+        /**
+         * Returns the current orientation of the device without copying it. This can be called from any thread and
+         * never blocks the fusion.
+         * @return the {@link OrientationSnapshot} of the current orientation, expressed according to the World
+         * Coordinate System.
+         */
+        public OrientationSnapshot getCurrentOrientationSnapshot() {
+            return currentOrientation;
+        }
+
+        /**
+         * Retains or releases the service. A retained service keeps fusing the sensors at a low rate without communicating
+         * the orientation, so that it can be resumed at full rate without going through the calibration phase again.
+         * This is meant to be used while the Activity that displays the orientations is paused.
+         * @param retain true to retain the service, false to resume it at full rate.
+         */
+        public void setRetained(final boolean retain) {
+            retained = retain;
+            if (retain) {
+                setSamplingPeriod(RETAINED_SAMPLE_RATE_US);
+            } else {
+                resetSamplingPeriod();
+            }
+        }
+
+        /**
+         * Returns whether the service is retained.
+         * @return true if the service is retained, false if it's running at full rate.
+         */
+        public boolean isRetained() {
+            return retained;
+        }
+
+        /**
+         * Sets the latency budget of the sensor batching. When the budget is greater than 0, the sensor events are held
+         * in the hardware FIFO for up to that time and delivered in batches, which lets the processor sleep in between,
+         * and only the last orientation of each batch is communicated. This trades latency for power, so it's best suited
+         * for when the orientation isn't displayed in real time. Batching requires API 19 and a sensor with a FIFO,
+         * otherwise the events keep being delivered one by one.
+         * @param milliseconds the maximum time an event can wait before being delivered, 0 to disable the batching.
+         * @throws IllegalArgumentException if the latency is negative.
+         */
+        public void setBatchingLatency(final long milliseconds) {
+            if (milliseconds < 0) {
+                throw new IllegalArgumentException("The batching latency can not be negative");
+            }
+            setMaxReportLatency((int) Math.min(Integer.MAX_VALUE, milliseconds * 1000));
+        }
+
+        /**
+         * Returns the latency budget of the sensor batching.
+         * @return the maximum time an event can wait before being delivered in milliseconds, 0 if batching is disabled.
+         */
+        public long getBatchingLatency() {
+            return maxReportLatency / 1000;
+        }
+
+        /**
+         * Enables or disables the adaptive sampling. When enabled, the sensors are sampled at a higher rate during fast
+         * head turns and at a lower rate when the head is still or the Viewport is locked.
+         * @param enabled true to enable the adaptive sampling, false to always sample at the default rate.
+         */
+        public void setAdaptiveSampling(final boolean enabled) {
+            adaptiveSampling = enabled;
+            if (!enabled && !retained) {
+                resetSamplingPeriod();
+            }
+        }
+
+        /**
+         * Returns whether the adaptive sampling is enabled.
+         * @return true if the sampling rate follows the motion of the device, false otherwise.
+         */
+        public boolean isAdaptiveSamplingEnabled() {
+            return adaptiveSampling;
+        }
+
+        /**
+         * Informs the service of whether the {@link com.example.federico.wearableui.viewport.Viewport} is locked.
+         * @param locked true if the Viewport is locked, false otherwise.
+         */
+        public void setViewportLocked(final boolean locked) {
+            viewportLocked = locked;
+        }
+
+        /**
+         * Returns the rate tier the sensors are being sampled at.
+         * @return the current {@link SamplingRateController.Tier}.
+         */
+        public SamplingRateController.Tier getSamplingRateTier() {
+            return rateController.getTier();
+        }
+
+        /**
+         * Returns how long the sensors have been sampled at the rate of a tier.
+         * @param tier the {@link SamplingRateController.Tier}.
+         * @return the time spent in the tier in milliseconds.
+         */
+        public long getTimeInSamplingRateTier(final SamplingRateController.Tier tier) {
+            return rateController.getTimeInTier(tier);
+        }
+
+        /**
+         * Enables or disables the adaptive calibration. When enabled, the calibration phase ends as soon as the
+         * orientation has converged and the device is held still, and lasts at most as long as the fixed one.
+         * @param enabled true to enable the adaptive calibration, false to always use the fixed calibration period.
+         */
+        public void setAdaptiveCalibration(final boolean enabled) {
+            adaptiveCalibration = enabled;
+        }
+
+        /**
+         * Returns whether the adaptive calibration is enabled.
+         * @return true if the calibration ends as soon as the orientation has converged, false otherwise.
+         */
+        public boolean isAdaptiveCalibrationEnabled() {
+            return adaptiveCalibration;
+        }
+
+        /**
+         * Enables or disables the warm start. When enabled, a newly created service skips the calibration phase if the
+         * calibration saved by the previous one is recent and the device hasn't been moved too much in between.
+         * @param enabled true to enable the warm start, false to always run the calibration phase.
+         */
+        public void setWarmStart(final boolean enabled) {
+            warmStart = enabled;
+        }
+
+        /**
+         * Returns whether the warm start is enabled.
+         * @return true if the saved calibration is resumed when possible, false otherwise.
+         */
+        public boolean isWarmStartEnabled() {
+            return warmStart;
+        }
+
+        /**
+         * Returns how long the last calibration phase has lasted.
+         * @return the duration of the last calibration phase in milliseconds (or, after a warm start, the time it took
+         * to resume the saved calibration), -1 if it hasn't finished yet.
+         */
+        public long getTimeToReady() {
+            return timeToReady;
+        }
+
+        /**
+         * Sets how far in the future the published orientations have to be extrapolated. This should roughly match the
+         * time it takes an orientation to be displayed, which can be measured through the
+         * {@link com.example.federico.wearableui.metrics.LatencyTracer}.
+         * @param milliseconds the prediction horizon in milliseconds, 0 to disable the prediction.
+         * @throws IllegalArgumentException if the horizon is negative.
+         */
+        public void setPredictionHorizon(final long milliseconds) {
+            if(milliseconds < 0) {
+                throw new IllegalArgumentException("The prediction horizon can not be negative");
+            }
+            predictionHorizon = milliseconds * MS2S;
+        }
+
+        /**
+         * Returns how far in the future the published orientations are extrapolated.
+         * @return the prediction horizon in milliseconds, 0 if the prediction is disabled.
+         */
+        public long getPredictionHorizon() {
+            return Math.round(predictionHorizon / MS2S);
+        }
+
+        /**
+         * Selects the filter used to fuse the sensor samples. The new filter starts from the current orientation, so the
+         * switch doesn't restart the calibration phase.
+         * @param type the {@link OrientationFilterType} to use.
+         * @throws IllegalArgumentException if the type is null.
+         */
+        public void setOrientationFilter(final OrientationFilterType type) {
+            if(type == null) {
+                throw new IllegalArgumentException("The orientation filter type can not be null");
+            }
+            if(type != orientationFilterType) {
+                orientationFilterType = type;
+                onOrientationFilterChanged(type);
+            }
+        }
+
+        /**
+         * Returns the filter used to fuse the sensor samples.
+         * @return the selected {@link OrientationFilterType}.
+         */
+        public OrientationFilterType getOrientationFilter() {
+            return orientationFilterType;
+        }
     }
 
 }
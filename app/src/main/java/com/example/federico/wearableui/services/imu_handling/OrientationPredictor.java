@@ -0,0 +1,62 @@
+package com.example.federico.wearableui.services.imu_handling;
+
+import com.example.federico.wearableui.representation.Quaternion;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * This class extrapolates an orientation to a moment in the future, assuming that the device keeps rotating with the
+ * angular velocity measured by the gyroscope. Since an orientation takes some time to go from the sensor to the screen,
+ * the {@link SensorFusionService} can use it to publish the orientation the head will have when the frame is displayed,
+ * rather than the one it had when the last sample was taken.
+ *
+ * The extrapolation integrates the angular velocity over the prediction horizon exactly like the SensorFusionService
+ * integrates it over the time between two samples. Instances are not thread safe and are meant to be used from the
+ * thread that handles the gyroscope events, since they reuse the same buffer for every prediction.
+ */
+public class OrientationPredictor {
+
+    /**
+     * Angular velocities (in rad/s) below this threshold are considered as noise, and the orientation is not extrapolated.
+     * This is the same threshold the SensorFusionService uses to filter the gyroscope measurements.
+     */
+    private static final double EPSILON = 0.1f;
+
+    /**
+     * Buffer for the rotation applied over the prediction horizon.
+     */
+    private final Quaternion deltaQuaternion = new Quaternion();
+
+    /**
+     * Extrapolates the passed orientation over the passed horizon.
+     * @param orientation the current orientation, expressed as the SensorFusionService does (with the w component inverted).
+     * @param angularVelocityX the angular velocity around the x axis of the device in rad/s.
+     * @param angularVelocityY the angular velocity around the y axis of the device in rad/s.
+     * @param angularVelocityZ the angular velocity around the z axis of the device in rad/s.
+     * @param horizon how far in the future, in seconds, the orientation has to be extrapolated.
+     * @param output the Quaternion where the predicted orientation is stored. It can not be the same instance as orientation.
+     */
+    public void predict(final Quaternion orientation, final float angularVelocityX, final float angularVelocityY,
+                        final float angularVelocityZ, final float horizon, final Quaternion output) {
+        final double velocity = Math.sqrt(angularVelocityX * angularVelocityX + angularVelocityY * angularVelocityY
+                + angularVelocityZ * angularVelocityZ);
+
+        // Extrapolating noise would only make the output shake, so slow rotations are not predicted
+        if(horizon <= 0 || velocity <= EPSILON) {
+            output.copyVec4(orientation);
+            return;
+        }
+
+        final double thetaOverTwo = velocity * horizon / 2.0f;
+        final double sinThetaOverTwo = Math.sin(thetaOverTwo) / velocity;
+        this.deltaQuaternion.setX((float) (sinThetaOverTwo * angularVelocityX));
+        this.deltaQuaternion.setY((float) (sinThetaOverTwo * angularVelocityY));
+        this.deltaQuaternion.setZ((float) (sinThetaOverTwo * angularVelocityZ));
+        this.deltaQuaternion.setW(-(float) Math.cos(thetaOverTwo));
+
+        this.deltaQuaternion.multiplyByQuat(orientation, output);
+    }
+
+}
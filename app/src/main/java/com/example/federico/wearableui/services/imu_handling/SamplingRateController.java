@@ -0,0 +1,171 @@
+package com.example.federico.wearableui.services.imu_handling;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * This class chooses the rate at which an {@link ImuHandlerService} samples its sensors, based on how fast the device
+ * is rotating and on whether the {@link com.example.federico.wearableui.viewport.Viewport} is locked. Fast head turns
+ * are sampled at a higher rate to keep the Viewport responsive, while a still head or a locked Viewport are sampled at a
+ * lower rate to save CPU and battery.
+ *
+ * Moving to a faster tier happens as soon as the angular velocity exceeds its threshold, while moving to a slower tier
+ * requires the velocity to stay below a lower threshold for a while, so that the rate doesn't oscillate. The controller
+ * also keeps track of how long has been spent in each tier.
+ */
+public class SamplingRateController {
+
+    /**
+     * Enumerator for the rate tiers.
+     */
+    public enum Tier {
+        /** Used when the head is still or the Viewport is locked. */
+        IDLE(66666),
+        /** The default rate. */
+        NORMAL(33333),
+        /** Used during fast head turns. */
+        FAST(16666);
+
+        /**
+         * The sampling period of the tier in microseconds.
+         */
+        private final int samplingPeriod;
+
+        /**
+         * Constructor.
+         * @param samplingPeriod the sampling period of the tier in microseconds.
+         */
+        Tier(final int samplingPeriod) {
+            this.samplingPeriod = samplingPeriod;
+        }
+
+        /**
+         * Returns the sampling period of the tier.
+         * @return the sampling period in microseconds.
+         */
+        public int getSamplingPeriod() {
+            return this.samplingPeriod;
+        }
+    }
+
+    /**
+     * Angular velocity (in rad/s) above which the FAST tier is entered.
+     */
+    private static final double FAST_THRESHOLD = 1.5;
+
+    /**
+     * Angular velocity (in rad/s) below which the FAST tier can be left.
+     */
+    private static final double FAST_RELEASE_THRESHOLD = 1.0;
+
+    /**
+     * Angular velocity (in rad/s) above which the IDLE tier is left. This is the same threshold the SensorFusionService
+     * uses to tell motion from noise.
+     */
+    private static final double IDLE_THRESHOLD = 0.1;
+
+    /**
+     * How long (in nanoseconds) the velocity has to stay below FAST_RELEASE_THRESHOLD to leave the FAST tier.
+     */
+    private static final long FAST_HOLD = 500000000L;
+
+    /**
+     * How long (in nanoseconds) the velocity has to stay below IDLE_THRESHOLD to enter the IDLE tier.
+     */
+    private static final long IDLE_HOLD = 2000000000L;
+
+    /**
+     * Constant specifying the factor between a nano-second and a milli-second.
+     */
+    private static final long NS2MS = 1000000L;
+
+    /**
+     * The current tier.
+     */
+    private Tier tier = Tier.NORMAL;
+
+    /**
+     * Time spent in each tier in nanoseconds, indexed by the ordinal of the tier.
+     */
+    private final long[] timeInTier = new long[Tier.values().length];
+
+    /**
+     * Timestamp of the last update, 0 if there hasn't been one.
+     */
+    private long lastTimestamp;
+
+    /**
+     * Timestamp since which the velocity has been below FAST_RELEASE_THRESHOLD, 0 if it's above.
+     */
+    private long slowSince;
+
+    /**
+     * Timestamp since which the velocity has been below IDLE_THRESHOLD, 0 if it's above.
+     */
+    private long stillSince;
+
+    /**
+     * Updates the controller with a new sample and returns the tier that should be used.
+     * @param angularVelocity the angular velocity of the device in rad/s.
+     * @param locked whether the Viewport is locked, in which case the head movements aren't displayed.
+     * @param timestamp the timestamp of the sample in nanoseconds.
+     * @return the {@link Tier} the sensors should be sampled at.
+     */
+    public synchronized Tier update(final double angularVelocity, final boolean locked, final long timestamp) {
+        if(this.lastTimestamp != 0 && timestamp > this.lastTimestamp) {
+            this.timeInTier[this.tier.ordinal()] += timestamp - this.lastTimestamp;
+        }
+        this.lastTimestamp = timestamp;
+
+        this.slowSince = angularVelocity < FAST_RELEASE_THRESHOLD ? (this.slowSince == 0 ? timestamp : this.slowSince) : 0;
+        this.stillSince = angularVelocity < IDLE_THRESHOLD ? (this.stillSince == 0 ? timestamp : this.stillSince) : 0;
+
+        if(locked) {
+            this.tier = Tier.IDLE;
+        }
+        else if(angularVelocity > FAST_THRESHOLD) {
+            this.tier = Tier.FAST;
+        }
+        else if(this.stillSince != 0 && timestamp - this.stillSince >= IDLE_HOLD) {
+            this.tier = Tier.IDLE;
+        }
+        else if(this.tier == Tier.IDLE && this.stillSince == 0) {
+            this.tier = Tier.NORMAL;
+        }
+        else if(this.tier == Tier.FAST && this.slowSince != 0 && timestamp - this.slowSince >= FAST_HOLD) {
+            this.tier = Tier.NORMAL;
+        }
+
+        return this.tier;
+    }
+
+    /**
+     * Returns the current tier.
+     * @return the {@link Tier} the sensors should be sampled at.
+     */
+    public synchronized Tier getTier() {
+        return this.tier;
+    }
+
+    /**
+     * Returns how long has been spent in a tier.
+     * @param tier the {@link Tier}.
+     * @return the time spent in the tier in milliseconds.
+     */
+    public synchronized long getTimeInTier(final Tier tier) {
+        return this.timeInTier[tier.ordinal()] / NS2MS;
+    }
+
+    /**
+     * Goes back to the NORMAL tier and forgets the motion history, keeping the time spent in each tier. This is needed
+     * when the samples stop being fed to the controller for a while.
+     */
+    public synchronized void restart() {
+        this.tier = Tier.NORMAL;
+        this.lastTimestamp = 0;
+        this.slowSince = 0;
+        this.stillSince = 0;
+    }
+
+}
@@ -0,0 +1,299 @@
+package com.example.federico.wearableui.services.imu_handling;
+
+import com.example.federico.wearableui.representation.Quaternion;
+import com.example.federico.wearableui.services.imu_handling.filter.IOrientationFilter;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * This class feeds the sensor samples to an {@link IOrientationFilter}, and is shared by the {@link SensorFusionService},
+ * which feeds it the live sensor events, and by the {@link com.example.federico.wearableui.trace.TraceReplayer}, which
+ * feeds it a recording, so that a replay fuses the samples exactly as the service does.
+ *
+ * The first rotation vector sample starts the fusion by resetting the filter. From then on:
+ * <ul>
+ *     <li>a rotation vector sample that is newer than the last gyroscope sample is held back until the gyroscope catches
+ *     up, so that the samples are fused in timestamp order;</li>
+ *     <li>a gyroscope sample that is not newer than the previous one is dropped, since integrating it would rotate the
+ *     orientation backwards;</li>
+ *     <li>every other gyroscope sample moves the orientation;</li>
+ *     <li>if the filter diverges, the fusion stops until the next rotation vector sample resets it (panic reset).</li>
+ * </ul>
+ * What happens around the fusion, such as the calibration, the choice of the sampling rate and the publication of the
+ * orientation, is left to a {@link Listener}.
+ *
+ * All the {@link Quaternion}s are expressed as the filters do, with the w component inverted. Instances are not thread
+ * safe and have to be used from the thread that handles the sensor events.
+ */
+public class SensorFusion {
+
+    /**
+     * Constant specifying the factor between a Nano-second and a second
+     */
+    private static final float NS2S = 1.0f / 1000000000.0f;
+
+    /**
+     * Receives the outcome of the fusion.
+     */
+    public interface Listener {
+
+        /**
+         * Called when the fusion starts, after the filter has been reset to the first rotation vector sample.
+         * @param rotationVector the rotation vector sample the filter has been reset to.
+         * @param timestamp the timestamp of the sample, in nanoseconds.
+         */
+        void onStarted(final Quaternion rotationVector, final long timestamp);
+
+        /**
+         * Called when a gyroscope sample has been accepted, before it's fused.
+         * @param timestamp the timestamp of the sample, in nanoseconds.
+         */
+        void onGyroscope(final long timestamp);
+
+        /**
+         * Called when the angular velocity of the device has been measured, before the orientation is moved. The
+         * sampling rate can be adapted to it here.
+         * @param angularSpeed the magnitude of the angular velocity, in rad/s.
+         * @param timestamp the timestamp of the gyroscope sample, in nanoseconds.
+         */
+        void onAngularSpeed(final double angularSpeed, final long timestamp);
+
+        /**
+         * Called every time a gyroscope sample has been fused.
+         * @param orientation the fused orientation. It's overwritten by the next one.
+         * @param timestamp the timestamp of the gyroscope sample, in nanoseconds.
+         */
+        void onOrientation(final Quaternion orientation, final long timestamp);
+
+        /**
+         * Called when the filter has diverged and the fusion has stopped. It starts again from the next rotation vector
+         * sample.
+         * @param timestamp the timestamp of the gyroscope sample the divergence has been detected at, in nanoseconds.
+         */
+        void onPanicReset(final long timestamp);
+
+    }
+
+    /**
+     * The {@link Listener} that receives the outcome of the fusion.
+     */
+    private final Listener listener;
+
+    /**
+     * The filter that fuses the samples.
+     */
+    private IOrientationFilter filter;
+
+    /**
+     * Buffer for the orientation estimated by the filter.
+     */
+    private final Quaternion orientation = new Quaternion();
+
+    /**
+     * The last rotation vector sample that has been fused.
+     */
+    private final Quaternion rotationVector = new Quaternion();
+
+    /**
+     * The last rotation vector sample, when it's newer than the last gyroscope sample and is waiting to be fused.
+     */
+    private final Quaternion pendingRotationVector = new Quaternion();
+
+    /**
+     * The time-stamp of the pending rotation vector sample, 0 if there's none.
+     */
+    private long pendingRotationVectorTimestamp = 0;
+
+    /**
+     * The time-stamp of the last gyroscope sample, 0 if there's none.
+     */
+    private long timestamp = 0;
+
+    /**
+     * Flag indicating whether the filter has been reset to a rotation vector sample, and the gyroscope samples are fused.
+     */
+    private boolean started = false;
+
+    /**
+     * The angular velocity around the x, y and z axes of the device (in rad/s) measured by the last gyroscope sample.
+     */
+    private float angularVelocityX, angularVelocityY, angularVelocityZ;
+
+    /**
+     * Constructor.
+     * @param filter the {@link IOrientationFilter} the samples are fed to.
+     * @param listener the {@link Listener} that receives the outcome of the fusion.
+     * @throws IllegalArgumentException if the filter or the listener are null.
+     */
+    public SensorFusion(final IOrientationFilter filter, final Listener listener) {
+        if(filter == null || listener == null) {
+            throw new IllegalArgumentException("The filter and the listener can not be null");
+        }
+        this.filter = filter;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts over, as if no sample had been fed yet.
+     */
+    public void restart() {
+        this.started = false;
+        this.timestamp = 0;
+        this.pendingRotationVectorTimestamp = 0;
+    }
+
+    /**
+     * Feeds a rotation vector sample.
+     * @param sample the orientation measured by the rotation vector sensor. It's copied.
+     * @param sampleTimestamp the timestamp of the sample, in nanoseconds.
+     */
+    public void onRotationVector(final Quaternion sample, final long sampleTimestamp) {
+        if(!this.started) {
+            this.rotationVector.copyVec4(sample);
+            this.filter.reset(this.rotationVector);
+            this.started = true;
+            this.listener.onStarted(this.rotationVector, sampleTimestamp);
+        }
+        else if(sampleTimestamp > this.timestamp) {
+            // The sample is held back until the gyroscope catches up. Only the newest sample is needed, so an older one
+            // that is still pending can be applied right away.
+            this.applyPendingRotationVector(Long.MAX_VALUE);
+            this.pendingRotationVector.copyVec4(sample);
+            this.pendingRotationVectorTimestamp = sampleTimestamp;
+        }
+        else {
+            this.rotationVector.copyVec4(sample);
+            this.filter.updateRotationVector(this.rotationVector);
+        }
+    }
+
+    /**
+     * Feeds an accelerometer sample.
+     * @param x the acceleration along the x axis of the device in m/s^2.
+     * @param y the acceleration along the y axis of the device in m/s^2.
+     * @param z the acceleration along the z axis of the device in m/s^2.
+     */
+    public void onAccelerometer(final float x, final float y, final float z) {
+        this.filter.updateAccelerometer(x, y, z);
+    }
+
+    /**
+     * Feeds a gyroscope sample, which moves the orientation.
+     * @param x the angular velocity around the x axis of the device in rad/s.
+     * @param y the angular velocity around the y axis of the device in rad/s.
+     * @param z the angular velocity around the z axis of the device in rad/s.
+     * @param sampleTimestamp the timestamp of the sample, in nanoseconds.
+     * @return true if a new orientation has been fused, false if the sample has been dropped or only sets the time base.
+     */
+    public boolean onGyroscope(final float x, final float y, final float z, final long sampleTimestamp) {
+        if(!this.started || sampleTimestamp <= this.timestamp) {
+            // Out of order or duplicated sample, integrating it would rotate the orientation backwards
+            return false;
+        }
+        this.applyPendingRotationVector(sampleTimestamp);
+        this.listener.onGyroscope(sampleTimestamp);
+
+        final long previous = this.timestamp;
+        this.timestamp = sampleTimestamp;
+        // The first sample only sets the time base
+        if(previous == 0) {
+            return false;
+        }
+        this.angularVelocityX = x;
+        this.angularVelocityY = y;
+        this.angularVelocityZ = z;
+        this.listener.onAngularSpeed(Math.sqrt(x * x + y * y + z * z), sampleTimestamp);
+
+        this.filter.updateGyroscope(x, y, z, (sampleTimestamp - previous) * NS2S);
+        this.filter.getOrientation(this.orientation);
+        this.listener.onOrientation(this.orientation, sampleTimestamp);
+
+        if(this.filter.hasDiverged()) {
+            // The time base is kept, so the first gyroscope sample after the reset is fused right away
+            this.started = false;
+            this.pendingRotationVectorTimestamp = 0;
+            this.listener.onPanicReset(sampleTimestamp);
+        }
+        return true;
+    }
+
+    /**
+     * Applies the pending rotation vector sample, if it's not newer than the passed timestamp.
+     * @param until the timestamp of the gyroscope sample that is about to be fused.
+     */
+    private void applyPendingRotationVector(final long until) {
+        if(this.pendingRotationVectorTimestamp != 0 && this.pendingRotationVectorTimestamp <= until) {
+            this.rotationVector.copyVec4(this.pendingRotationVector);
+            this.pendingRotationVectorTimestamp = 0;
+            this.filter.updateRotationVector(this.rotationVector);
+        }
+    }
+
+    /**
+     * Replaces the filter. If the fusion has started, the new filter starts from the current orientation.
+     * @param next the new {@link IOrientationFilter}.
+     * @throws IllegalArgumentException if the filter is null.
+     */
+    public void setFilter(final IOrientationFilter next) {
+        if(next == null) {
+            throw new IllegalArgumentException("The filter can not be null");
+        }
+        if(this.started) {
+            this.filter.getOrientation(this.orientation);
+            next.reset(this.orientation);
+            next.updateRotationVector(this.rotationVector);
+        }
+        this.filter = next;
+    }
+
+    /**
+     * Returns the filter that fuses the samples.
+     * @return the current {@link IOrientationFilter}.
+     */
+    public IOrientationFilter getFilter() {
+        return this.filter;
+    }
+
+    /**
+     * Tells whether the fusion has started, that is whether the filter has been reset to a rotation vector sample.
+     * @return true if the gyroscope samples are being fused, false otherwise.
+     */
+    public boolean isStarted() {
+        return this.started;
+    }
+
+    /**
+     * Returns the last rotation vector sample that has been fused.
+     * @return a {@link Quaternion} holding the sample. It's overwritten by the next one.
+     */
+    public Quaternion getRotationVector() {
+        return this.rotationVector;
+    }
+
+    /**
+     * Returns the angular velocity around the x axis of the device measured by the last fused gyroscope sample.
+     * @return the angular velocity in rad/s.
+     */
+    public float getAngularVelocityX() {
+        return this.angularVelocityX;
+    }
+
+    /**
+     * Returns the angular velocity around the y axis of the device measured by the last fused gyroscope sample.
+     * @return the angular velocity in rad/s.
+     */
+    public float getAngularVelocityY() {
+        return this.angularVelocityY;
+    }
+
+    /**
+     * Returns the angular velocity around the z axis of the device measured by the last fused gyroscope sample.
+     * @return the angular velocity in rad/s.
+     */
+    public float getAngularVelocityZ() {
+        return this.angularVelocityZ;
+    }
+
+}
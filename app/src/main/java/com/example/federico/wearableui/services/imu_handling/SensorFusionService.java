@@ -8,15 +8,29 @@ import android.content.Intent;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorManager;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
 import com.example.federico.wearableui.intraprocess_messaging.IntraProcessMessage;
 import com.example.federico.wearableui.intraprocess_messaging.IntraProcessMessageHandler;
+import com.example.federico.wearableui.metrics.ILatencyTracer;
+import com.example.federico.wearableui.metrics.LatencyTracer;
+import com.example.federico.wearableui.representation.OrientationSnapshot;
 import com.example.federico.wearableui.representation.Quaternion;
+import com.example.federico.wearableui.services.imu_handling.filter.IOrientationFilter;
+import com.example.federico.wearableui.services.imu_handling.filter.OrientationFilterType;
+import com.example.federico.wearableui.trace.ITraceRecorder;
+import com.example.federico.wearableui.trace.TraceRecorder;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 
 /**
  * @author Federico Giannoni
@@ -25,31 +39,23 @@ import com.example.federico.wearableui.representation.Quaternion;
 public class SensorFusionService extends ImuHandlerService {
 
     /**
-     * Constant specifying the factor between a Nano-second and a second
-     */
-    private static final float NS2S = 1.0f / 1000000000.0f;
-
-    /**
-     * The quaternion that stores the difference that is obtained by the gyroscope.
-     * Basically it contains a rotational difference encoded into a quaternion.
-     *
-     * To obtain the absolute orientation one must add this into an initial position by
-     * multiplying it with another quaternion
+     * Feeds the sensor samples to the filter that fuses them into the orientation. It's only ever used on the sensor
+     * thread.
      */
-    private final Quaternion deltaQuaternion = new Quaternion();
+    private SensorFusion fusion;
 
     /**
-     * The Quaternions that contain the current rotation (Angle and axis in Quaternion format) of the Gyroscope
+     * Buffer for the rotation vector samples converted to quaternions.
      */
-    private Quaternion quaternionGyroscope = new Quaternion();
+    private final float[] rotationVectorBuffer = new float[4];
 
     /**
-     * The quaternion that contains the absolute orientation as obtained by the rotationVector sensor.
+     * Buffer for the rotation vector samples, with the w component inverted as the filters expect.
      */
-    private Quaternion quaternionRotationVector = new Quaternion();
+    private final Quaternion rotationVectorSample = new Quaternion();
 
     /**
-     * The time-stamp being used to record the time when the last gyroscope event occurred.
+     * The time-stamp of the gyroscope event the last orientation has been fused from.
      */
     private long timestamp = 0;
 
@@ -59,80 +65,113 @@ public class SensorFusionService extends ImuHandlerService {
     private long calibrationTimestamp = 0;
 
     /**
-     * This is a filter-threshold for discarding Gyroscope measurements that are below a certain level and
-     * potentially are only noise and not real motion. Values from the gyroscope are usually between 0 (stop) and
-     * 10 (rapid rotation), so 0.1 seems to be a reasonable threshold to filter noise (usually smaller than 0.1) and
-     * real motion (usually > 0.1). Note that there is a chance of missing real motion, if the use is turning the
-     * device really slowly, so this value has to find a balance between accepting noise (threshold = 0) and missing
-     * slow user-action (threshold > 0.5). 0.1 seems to work fine for most applications.
-     *
+     * The time-stamp at which the user has been asked to fix at a point.
      */
-    private static final double EPSILON = 0.1f;
+    private long calibrationWillFinishTimestamp = 0;
 
     /**
-     * Value giving the total velocity of the gyroscope (will be high, when the device is moving fast and low when
-     * the device is standing still). This is usually a value between 0 and 10 for normal motion. Heavy shaking can
-     * increase it to about 25. Keep in mind, that these values are time-depended, so changing the sampling rate of
-     * the sensor will affect this value!
+     * Minimum time, in nanoseconds, the user is given to fix at a point before an adaptive calibration can finish.
      */
-    private double gyroscopeRotationVelocity = 0;
+    private static final long FIXATION_PERIOD = 1000000000L;
 
     /**
-     * Counter that sums the number of consecutive frames, where the rotationVector and the gyroscope were
-     * significantly different (and the dot-product was smaller than 0.7). This event can either happen when the
-     * angles of the rotation vector explode (e.g. during fast tilting) or when the device was shaken heavily and
-     * the gyroscope is now completely off.
+     * Monitors the convergence of the fusion during the calibration phase.
      */
-    private int panicCounter;
+    private final CalibrationMonitor calibrationMonitor = new CalibrationMonitor();
 
     /**
-     * This weight determines directly how much the rotation sensor will be used to correct (in
-     * Sensor-fusion-scenario 1 - SensorSelection.GyroscopeAndRotationVector). Must be a value between 0 and 1.
-     * 0 means that the system entirely relies on the gyroscope, whereas 1 means that the system relies entirely on
-     * the rotationVector.
+     * The calibration saved by the previous instance of the service, null if there's none or it has already been evaluated.
      */
-    private static final float DIRECT_INTERPOLATION_WEIGHT = 0.005f;
+    private CalibrationSnapshot savedCalibration;
 
     /**
-     * The threshold that indicates an outlier of the rotation vector. If the dot-product between the two vectors
-     * (gyroscope orientation and rotationVector orientation) falls below this threshold (ideally it should be 1,
-     * if they are exactly the same) the system falls back to the gyroscope values only and just ignores the
-     * rotation vector.
-     *
-     * This value should be quite high (> 0.7) to filter even the slightest discrepancies that causes jumps when
-     * tiling the device. Possible values are between 0 and 1, where a value close to 1 means that even a very small
-     * difference between the two sensors will be treated as outlier, whereas a value close to zero means that the
-     * almost any discrepancy between the two sensors is tolerated.
+     * The calibration Quaternion that has been communicated to the Gaze, null if the calibration phase hasn't finished.
      */
-    private static final float OUTLIER_THRESHOLD = 0.85f;
+    private Quaternion calibration;
 
     /**
-     * The threshold that indicates a massive discrepancy between the rotation vector and the gyroscope orientation.
-     * If the dot-product between the two vectors
-     * (gyroscope orientation and rotationVector orientation) falls below this threshold (ideally it should be 1, if
-     * they are exactly the same), the system will start increasing the panic counter (that probably indicates a
-     * gyroscope failure).
-     *
-     * This value should be lower than OUTLIER_THRESHOLD (0.5 - 0.7) to only start increasing the panic counter,
-     * when there is a
-     * huge discrepancy between the two fused sensors.
+     * The last orientation fused from a batch of events, waiting to be communicated.
      */
-    private static final float OUTLIER_PANIC_THRESHOLD = 0.65f;
+    private final Quaternion pendingOrientation = new Quaternion();
 
     /**
-     * The threshold that indicates that a chaos state has been established rather than just a temporary peak in the
-     * rotation vector (caused by exploding angled during fast tilting).
-     *
-     * If the chaosCounter is bigger than this threshold, the current position will be reset to whatever the
-     * rotation vector indicates.
+     * The snapshot of the pendingOrientation, as it has been published.
+     */
+    private OrientationSnapshot pendingSnapshot;
+
+    /**
+     * Flag indicating whether the publication of the pendingOrientation has been scheduled.
+     */
+    private boolean publicationPending = false;
+
+    /**
+     * Task that communicates the last orientation fused from a batch of events.
+     */
+    private final Runnable publishPendingOrientation = new Runnable() {
+        @Override
+        public void run() {
+            publicationPending = false;
+            if(retained) {
+                return;
+            }
+            publishOrientation(pendingOrientation, pendingSnapshot);
+        }
+    };
+
+    /**
+     * Sensor-to-delivery latencies above this threshold (in nanoseconds) are considered as coming from a sensor whose
+     * timestamps are not expressed in the elapsed real-time base, and are therefore ignored.
+     */
+    private static final long MAX_DELIVERY_LATENCY = 1000000000L;
+
+    /**
+     * The {@link ILatencyTracer} used to trace the latency of the orientation updates.
+     */
+    private final ILatencyTracer latencyTracer = LatencyTracer.getInstance();
+
+    /**
+     * The {@link ITraceRecorder} the raw sensor events are recorded with.
+     */
+    private final ITraceRecorder traceRecorder = TraceRecorder.getInstance();
+
+    /**
+     * The time at which the last gyroscope event has been delivered to this service, in the LatencyTracer time base.
      */
-    private static final int PANIC_THRESHOLD = 60;
+    private long sampleReceivedAt;
+
+    /**
+     * The time at which the last gyroscope event has been sampled by the sensor, in the LatencyTracer time base.
+     */
+    private long sampleOrigin;
+
+    /**
+     * Value giving the total velocity of the gyroscope (will be high, when the device is moving fast and low when
+     * the device is standing still). This is usually a value between 0 and 10 for normal motion. Heavy shaking can
+     * increase it to about 25. Keep in mind, that these values are time-depended, so changing the sampling rate of
+     * the sensor will affect this value!
+     */
+    private double gyroscopeRotationVelocity = 0;
+
+    /**
+     * Extrapolates the published orientation over the prediction horizon.
+     */
+    private final OrientationPredictor predictor = new OrientationPredictor();
+
+    /**
+     * Buffer for the predicted orientation.
+     */
+    private final Quaternion predictedQuaternion = new Quaternion();
 
     @Override
     public void onCreate() {
         super.onCreate();
+        savedCalibration = this.loadCalibration();
         sensorList.add(sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE));
         sensorList.add(sensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR));
+        fusion = new SensorFusion(orientationFilterType.create(), fusionListener);
+        if (fusion.getFilter().usesAccelerometer()) {
+            sensorList.add(sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER));
+        }
         this.registerSensors();
         Log.i("Sensor Fusion Service", "created");
     }
@@ -146,6 +185,9 @@ public class SensorFusionService extends ImuHandlerService {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        if (calibrationState.equals(CalibrationState.FINISHED)) {
+            this.saveCalibration();
+        }
         // Resetting calibration phase indicator, just to be sure
         calibrationState = CalibrationState.WILL_START;
         Log.i("Sensor Fusion Service", "destroyed");
@@ -153,158 +195,317 @@ public class SensorFusionService extends ImuHandlerService {
 
     @Override
     public void onSensorChanged(SensorEvent event) {
+        traceRecorder.recordSensorEvent(event.sensor.getType(), event.timestamp, event.values);
 
         if (event.sensor.getType() == Sensor.TYPE_ROTATION_VECTOR) {
-            // Process rotation vector (just safe it)
-
-            float[] q = new float[4];
+            final float[] q = rotationVectorBuffer;
             // Calculate angle. Starting with API_18, Android will provide this value as event.values[3], but if not, we have to calculate it manually.
             SensorManager.getQuaternionFromVector(q, event.values);
+            rotationVectorSample.setXYZW(q[1], q[2], q[3], -q[0]);
+            fusion.onRotationVector(rotationVectorSample, event.timestamp);
+
+        } else if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
+            fusion.onAccelerometer(event.values[0], event.values[1], event.values[2]);
 
-            // Store in quaternion
-            quaternionRotationVector.setXYZW(q[1], q[2], q[3], -q[0]);
-            if (calibrationState.equals(CalibrationState.WILL_START)) {
-                // Position initialised
-                quaternionGyroscope.set(quaternionRotationVector);
+        } else if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
+            fusion.onGyroscope(event.values[0], event.values[1], event.values[2], event.timestamp);
+        }
+    }
+
+    /**
+     * Receives the outcome of the fusion, and handles the calibration, the sampling rate and the publication of the
+     * orientation around it.
+     */
+    private final SensorFusion.Listener fusionListener = new SensorFusion.Listener() {
+        @Override
+        public void onStarted(final Quaternion rotationVector, final long sampleTimestamp) {
+            // Position initialised
+            calibrationTimestamp = sampleTimestamp;
+            // The saved calibration is only evaluated once, a panic reset always goes through the calibration phase
+            final CalibrationSnapshot snapshot = savedCalibration;
+            savedCalibration = null;
+            if (warmStart && snapshot != null && snapshot.isUsable(rotationVector, System.currentTimeMillis())) {
+                resumeCalibration(snapshot, sampleTimestamp);
+            } else {
                 calibrationState = CalibrationState.STARTED;
-                calibrationTimestamp = event.timestamp;
+                calibrationMonitor.reset();
                 messageForIPMHandler(IntraProcessMessage.GAZE_CALIBRATION_STARTED).sendToTarget();
             }
+        }
 
-        } else if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE && !calibrationState.equals(CalibrationState.WILL_START)) {
-            // Process Gyroscope and perform fusion
-
-            // This timestep's delta rotation to be multiplied by the current rotation
-            // after computing it from the gyro sample data.
-            if (timestamp != 0) {
-                final float dT = (event.timestamp - timestamp) * NS2S;
-                // Axis of the rotation sample, not normalized yet.
-                float axisX = event.values[0];
-                float axisY = event.values[1];
-                float axisZ = event.values[2];
-
-                // Calculate the angular speed of the sample
-                gyroscopeRotationVelocity = Math.sqrt(axisX * axisX + axisY * axisY + axisZ * axisZ);
-
-                // Normalize the rotation vector if it's big enough to get the axis
-                if (gyroscopeRotationVelocity > EPSILON) {
-                    axisX /= gyroscopeRotationVelocity;
-                    axisY /= gyroscopeRotationVelocity;
-                    axisZ /= gyroscopeRotationVelocity;
-                }
-
-                // Integrate around this axis with the angular speed by the timestep
-                // in order to get a delta rotation from this sample over the timestep
-                // We will convert this axis-angle representation of the delta rotation
-                // into a quaternion before turning it into the rotation matrix.
-                double thetaOverTwo = gyroscopeRotationVelocity * dT / 2.0f;
-                double sinThetaOverTwo = Math.sin(thetaOverTwo);
-                double cosThetaOverTwo = Math.cos(thetaOverTwo);
-                deltaQuaternion.setX((float) (sinThetaOverTwo * axisX));
-                deltaQuaternion.setY((float) (sinThetaOverTwo * axisY));
-                deltaQuaternion.setZ((float) (sinThetaOverTwo * axisZ));
-                deltaQuaternion.setW(-(float) cosThetaOverTwo);
-
-                // Move current gyro orientation
-                deltaQuaternion.multiplyByQuat(quaternionGyroscope, quaternionGyroscope);
-
-                // Calculate dot-product to calculate whether the two orientation sensors have diverged
-                // (if the dot-product is closer to 0 than to 1), because it should be close to 1 if both are the same.
-                float dotProd = quaternionGyroscope.dotProduct(quaternionRotationVector);
-
-                // If they have diverged, rely on gyroscope only (this happens on some devices when the rotation vector "jumps").
-                if (Math.abs(dotProd) < OUTLIER_THRESHOLD) {
-                    // Increase panic counter
-                    if (Math.abs(dotProd) < OUTLIER_PANIC_THRESHOLD) {
-                        panicCounter++;
-                    }
-
-                    // Directly use Gyro
-                    setOrientationQuaternion(quaternionGyroscope);
-
-                } else {
-                    // Both are nearly saying the same. Perform normal fusion.
-
-                    // Interpolate with a fixed weight between the two absolute quaternions obtained from gyro and rotation vector sensors
-                    // The weight should be quite low, so the rotation vector corrects the gyro only slowly, and the output keeps responsive.
-                    Quaternion interpolate = new Quaternion();
-                    quaternionGyroscope.slerp(quaternionRotationVector, interpolate, DIRECT_INTERPOLATION_WEIGHT);
-
-                    // Use the interpolated value between gyro and rotationVector
-                    setOrientationQuaternion(interpolate);
-                    // Override current gyroscope-orientation
-                    quaternionGyroscope.copyVec4(interpolate);
-
-                    // Reset the panic counter because both sensors are saying the same again
-                    panicCounter = 0;
-                }
-
-                if (panicCounter > PANIC_THRESHOLD) {
-                    Log.d("Rotation Vector",
-                            "Panic counter is bigger than threshold; this indicates a Gyroscope failure. Panic reset is imminent.");
+        @Override
+        public void onGyroscope(final long sampleTimestamp) {
+            traceSample(sampleTimestamp);
+        }
 
-                    if (gyroscopeRotationVelocity < 3) {
-                        Log.d("Rotation Vector",
-                                "Performing Panic-reset. Resetting orientation to rotation-vector value.");
+        @Override
+        public void onAngularSpeed(final double angularSpeed, final long sampleTimestamp) {
+            gyroscopeRotationVelocity = angularSpeed;
+            // Adapt the sampling rate to the motion, once the calibration is over and somebody is displaying it
+            if (adaptiveSampling && !retained && calibrationState.equals(CalibrationState.FINISHED)) {
+                setSamplingPeriod(rateController.update(angularSpeed, viewportLocked, sampleTimestamp).getSamplingPeriod());
+            }
+        }
 
-                        // Restart calibration phase
-                        calibrationState = CalibrationState.WILL_START;
-                        calibrationTimestamp = event.timestamp;
+        @Override
+        public void onOrientation(final Quaternion orientation, final long sampleTimestamp) {
+            timestamp = sampleTimestamp;
+            // Calculate dot-product to calculate whether the fused orientation has converged to the rotation vector
+            // (it should be close to 1 if both are the same).
+            if (!calibrationState.equals(CalibrationState.FINISHED)) {
+                calibrationMonitor.addSample(orientation.dotProduct(fusion.getRotationVector()), gyroscopeRotationVelocity);
+            }
+            setOrientationQuaternion(orientation);
+        }
 
-                        panicCounter = 0;
+        @Override
+        public void onPanicReset(final long sampleTimestamp) {
+            Log.d("Rotation Vector", "Performing Panic-reset. Resetting orientation to rotation-vector value.");
+            // Restart calibration phase
+            calibrationState = CalibrationState.WILL_START;
+            calibrationTimestamp = sampleTimestamp;
+            // The calibration phase runs at the default rate
+            resetSamplingPeriod();
+        }
+    };
 
-                    } else {
-                        Log.d("Rotation Vector",
-                                String.format(
-                                        "Panic reset delayed due to ongoing motion (user is still shaking the device). Gyroscope Velocity: %.2f > 3",
-                                        gyroscopeRotationVelocity));
-                    }
-                }
+    @Override
+    protected void onOrientationFilterChanged(final OrientationFilterType type) {
+        final Handler handler = sensorHandler;
+        if (handler == null) {
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                switchFilter(type);
             }
-            timestamp = event.timestamp;
+        });
+    }
+
+    /**
+     * Replaces the filter with a new one of the passed type, which starts from the current orientation. This has to be
+     * called on the sensor thread.
+     * @param type the {@link OrientationFilterType} of the new filter.
+     */
+    private void switchFilter(final OrientationFilterType type) {
+        final IOrientationFilter previous = fusion.getFilter();
+        final IOrientationFilter next = type.create();
+        fusion.setFilter(next);
+        if (next.usesAccelerometer() && !previous.usesAccelerometer()) {
+            this.addSensor(sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER));
+        } else if (!next.usesAccelerometer() && previous.usesAccelerometer()) {
+            this.removeSensor(sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER));
         }
+        Log.i("Sensor Fusion Service", "switched to the " + type + " filter");
     }
 
     /**
-     * Sets the output quaternion and matrix with the provided quaternion and synchronises the setting
+     * Publishes the provided quaternion as the current orientation, without locking
      *
      * @param quaternion The Quaternion to set (the result of the sensor fusion)
      */
     private void setOrientationQuaternion(Quaternion quaternion) {
-        synchronized (syncToken) {
-            // Use gyro only
-            currentOrientationQuaternion.copyVec4(quaternion);
-        }
+        final OrientationSnapshot snapshot = this.publishCurrentOrientation(quaternion, this.sampleOrigin);
         // Every time we set the current orientation, we communicate it
-        this.communicateChanges(quaternion);
+        this.communicateChanges(quaternion, snapshot);
     }
 
-    private void communicateChanges(final Quaternion quaternion) {
-        final Quaternion correctedQuat = quaternion.clone();
-        // We inverted w in the deltaQuaternion, because currentOrientationQuaternion required it.
-        // Before converting it back to matrix representation, we need to revert this process
-        correctedQuat.w(-correctedQuat.w());
+    /**
+     * Stores the time at which a gyroscope event has been delivered and the time at which it has been sampled, so that
+     * they can be carried along with the orientation it produces.
+     * @param eventTimestamp the timestamp of the gyroscope {@link SensorEvent} that has just been delivered.
+     */
+    private void traceSample(final long eventTimestamp) {
+        this.sampleReceivedAt = this.latencyTracer.now();
+        this.sampleOrigin = this.sampleReceivedAt;
+        // Event timestamps can only be compared with the elapsed real-time clock, whose nanosecond version needs API 17
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            final long deliveryLatency = SystemClock.elapsedRealtimeNanos() - eventTimestamp;
+            if(deliveryLatency >= 0 && deliveryLatency < MAX_DELIVERY_LATENCY) {
+                this.latencyTracer.record(LatencyTracer.Stage.SENSOR_DELIVERY, deliveryLatency);
+                this.sampleOrigin -= deliveryLatency;
+            }
+        }
+    }
+
+    /**
+     * Extrapolates the passed orientation over the prediction horizon, so that the published orientation is the one the
+     * device will have by the time it's displayed.
+     * @param quaternion the fused orientation (with the w component inverted).
+     * @param snapshot the published snapshot of the fused orientation, returned if the prediction is disabled.
+     * @return the snapshot of the orientation to publish, expressed according to the World Coordinate System.
+     */
+    private OrientationSnapshot predict(final Quaternion quaternion, final OrientationSnapshot snapshot) {
+        final float horizon = this.predictionHorizon;
+        if(horizon <= 0) {
+            return snapshot;
+        }
+        this.predictor.predict(quaternion, this.fusion.getAngularVelocityX(), this.fusion.getAngularVelocityY(),
+                this.fusion.getAngularVelocityZ(), horizon, this.predictedQuaternion);
+        final Quaternion predicted = this.predictedQuaternion;
+        return new OrientationSnapshot(predicted.getX(), predicted.getY(), predicted.getZ(), -predicted.getW(),
+                snapshot.getTimestamp(), snapshot.getSequence());
+    }
+
+    private void communicateChanges(final Quaternion quaternion, final OrientationSnapshot snapshot) {
+        final long elapsed = timestamp - calibrationTimestamp;
         // If the calibration phase is over we communicate so
-        if(timestamp - calibrationTimestamp >= CALIBRATION_PERIOD) {
+        if(calibrationState.equals(CalibrationState.FINISHED) || this.isCalibrationOver(elapsed)) {
             if(!calibrationState.equals(CalibrationState.FINISHED)) {
-                // We take the current orientation as our zero
+                // We take the current orientation as our zero. The filters invert w, the snapshot has it reverted
+                final Quaternion correctedQuat = snapshot.toQuaternion(new Quaternion());
                 final Message calibrationMessage = this.messageForIPMHandler(IntraProcessMessage.GAZE_CALIBRATION_FINISHED);
                 final Bundle bundle = new Bundle();
                 bundle.putParcelable(IntraProcessMessage.GAZE_CALIBRATION_FINISHED.getValueKey(), correctedQuat);
                 calibrationMessage.setData(bundle);
                 calibrationMessage.sendToTarget();
                 calibrationState = CalibrationState.FINISHED;
+                calibration = correctedQuat.clone();
+                timeToReady = Math.round(elapsed * NS2MS);
+                Log.i("Sensor Fusion Service", "calibration finished in " + timeToReady + "ms");
+            }
+            // While retained the fusion keeps running, but nobody is displaying its output
+            if(this.retained) {
+                return;
+            }
+            if(this.isBatching()) {
+                // The events of a batch are delivered one after the other, only the last orientation is communicated
+                this.deferPublication(quaternion, snapshot);
+            }
+            else {
+                this.publishOrientation(quaternion, snapshot);
             }
-            final Message orientationMessage = this.messageForIPMHandler(IntraProcessMessage.GAZE_ORIENTATION_UPDATE);
-            final Bundle bundle = new Bundle();
-            bundle.putParcelable(IntraProcessMessage.GAZE_ORIENTATION_UPDATE.getValueKey(), correctedQuat);
-            orientationMessage.setData(bundle);
-            orientationMessage.sendToTarget();
         }
-        // Else, if the calibration phase one is over, we communicate that the calibration is about to end
-        else if(timestamp - calibrationTimestamp >= CALIBRATION_PERIOD * 0.8 && calibrationState.equals(CalibrationState.STARTED)) {
+        // Else, if the calibration phase is about to end, we communicate so, so that the user can fix at a point
+        else if(calibrationState.equals(CalibrationState.STARTED) && this.isCalibrationAboutToEnd(elapsed)) {
             this.messageForIPMHandler(IntraProcessMessage.GAZE_CALIBRATION_WILL_FINISH).sendToTarget();
             calibrationState = CalibrationState.WILL_FINISH;
+            calibrationWillFinishTimestamp = timestamp;
+        }
+    }
+
+    /**
+     * Communicates the orientation to the {@link IntraProcessMessageHandler}.
+     * @param quaternion the fused orientation (with the w component inverted).
+     * @param snapshot the published snapshot of the fused orientation, whose timestamp is the time the sensor sample
+     *                 has been taken.
+     */
+    private void publishOrientation(final Quaternion quaternion, final OrientationSnapshot snapshot) {
+        final Message orientationMessage = this.messageForIPMHandler(IntraProcessMessage.GAZE_ORIENTATION_UPDATE);
+        final Bundle bundle = new Bundle();
+        bundle.putParcelable(IntraProcessMessage.GAZE_ORIENTATION_UPDATE.getValueKey(), this.predict(quaternion, snapshot));
+        this.latencyTracer.recordSince(LatencyTracer.Stage.FUSION, this.sampleReceivedAt);
+        bundle.putLong(IntraProcessMessage.DISPATCH_TIMESTAMP_KEY, this.latencyTracer.now());
+        orientationMessage.setData(bundle);
+        orientationMessage.sendToTarget();
+    }
+
+    /**
+     * Stores the orientation and schedules its publication after the events that are being delivered. A batch of events
+     * is delivered in a single pass of the sensor thread's loop, so the publication runs once the whole batch has been
+     * fused, and communicates only its last orientation.
+     * @param quaternion the fused orientation (with the w component inverted).
+     * @param snapshot the published snapshot of the fused orientation.
+     */
+    private void deferPublication(final Quaternion quaternion, final OrientationSnapshot snapshot) {
+        this.pendingOrientation.copyVec4(quaternion);
+        this.pendingSnapshot = snapshot;
+        if(!this.publicationPending) {
+            this.publicationPending = true;
+            this.sensorHandler.post(this.publishPendingOrientation);
+        }
+    }
+
+    /**
+     * Tells whether the calibration phase has to end, either because the whole calibration period has passed or because,
+     * in adaptive mode, the user has been fixing at a point for long enough.
+     * @param elapsed the time elapsed since the beginning of the calibration phase in nanoseconds.
+     * @return true if the calibration phase has to end, false otherwise.
+     */
+    private boolean isCalibrationOver(final long elapsed) {
+        if(elapsed >= CALIBRATION_PERIOD) {
+            return true;
+        }
+        return this.adaptiveCalibration && calibrationState.equals(CalibrationState.WILL_FINISH)
+                && timestamp - calibrationWillFinishTimestamp >= FIXATION_PERIOD && calibrationMonitor.isStill();
+    }
+
+    /**
+     * Tells whether the user has to be asked to fix at a point, either because 80% of the calibration period has passed
+     * or because, in adaptive mode, the fusion has converged.
+     * @param elapsed the time elapsed since the beginning of the calibration phase in nanoseconds.
+     * @return true if the calibration phase is about to end, false otherwise.
+     */
+    private boolean isCalibrationAboutToEnd(final long elapsed) {
+        return elapsed >= CALIBRATION_PERIOD * 0.8 || (this.adaptiveCalibration && calibrationMonitor.hasConverged());
+    }
+
+    /**
+     * Skips the calibration phase by communicating the calibration saved by the previous instance of the service.
+     * @param snapshot the {@link CalibrationSnapshot} saved by the previous instance.
+     * @param sampleTimestamp the timestamp of the sample the calibration is resumed at, in nanoseconds.
+     */
+    private void resumeCalibration(final CalibrationSnapshot snapshot, final long sampleTimestamp) {
+        calibration = snapshot.getCalibration();
+        final Message calibrationMessage = this.messageForIPMHandler(IntraProcessMessage.GAZE_CALIBRATION_FINISHED);
+        final Bundle bundle = new Bundle();
+        bundle.putParcelable(IntraProcessMessage.GAZE_CALIBRATION_FINISHED.getValueKey(), snapshot.getCalibration());
+        calibrationMessage.setData(bundle);
+        calibrationMessage.sendToTarget();
+        calibrationState = CalibrationState.FINISHED;
+        // Measured as the calibration phase is, from the first rotation vector sample and on the clock of the sensor events
+        timeToReady = Math.round((sampleTimestamp - calibrationTimestamp) * NS2MS);
+        Log.i("Sensor Fusion Service", "calibration resumed in " + timeToReady + "ms");
+    }
+
+    /**
+     * Loads the calibration saved by the previous instance of the service.
+     * @return the saved {@link CalibrationSnapshot}, or null if there's none or it can't be read.
+     */
+    private CalibrationSnapshot loadCalibration() {
+        FileInputStream in = null;
+        try {
+            in = this.openFileInput(CALIBRATION_FILE);
+            return CalibrationSnapshot.readFrom(in);
+        }
+        catch(final IOException e) {
+            // No calibration has been saved yet, or it's not readable: the calibration phase will run as usual
+            return null;
+        }
+        finally {
+            if(in != null) {
+                try {
+                    in.close();
+                }
+                catch(final IOException e) { /**/ }
+            }
+        }
+    }
+
+    /**
+     * Saves the current calibration and orientation, so that the next instance of the service can resume them.
+     */
+    private void saveCalibration() {
+        // The calibration snapshot keeps the w component inverted, as the fusion does
+        final Quaternion orientation = currentOrientation.toQuaternion(new Quaternion());
+        orientation.w(-orientation.w());
+        FileOutputStream out = null;
+        try {
+            out = this.openFileOutput(CALIBRATION_FILE, MODE_PRIVATE);
+            new CalibrationSnapshot(calibration, orientation, System.currentTimeMillis()).writeTo(out);
+        }
+        catch(final IOException e) {
+            Log.d("IOException", " " + e.getMessage());
+            this.deleteFile(CALIBRATION_FILE);
+        }
+        finally {
+            if(out != null) {
+                try {
+                    out.close();
+                }
+                catch(final IOException e) { /**/ }
+            }
         }
     }
 
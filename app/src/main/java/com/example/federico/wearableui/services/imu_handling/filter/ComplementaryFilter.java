@@ -0,0 +1,213 @@
+package com.example.federico.wearableui.services.imu_handling.filter;
+
+import com.example.federico.wearableui.representation.Quaternion;
+
+/**
+ * @author Federico Giannoni
+ * @author A. Pacha
+ */
+
+/**
+ * The default {@link IOrientationFilter}. The gyroscope samples are integrated into an absolute orientation, which is
+ * slowly corrected towards the orientation measured by the rotation vector sensor with a fixed weight, so that the output
+ * stays responsive while the gyroscope drift is compensated. When the two orientations diverge (which happens on some
+ * devices when the rotation vector "jumps" during fast tilting) the filter relies on the gyroscope only, and if they keep
+ * diverging for too long the filter asks to be reset.
+ */
+public class ComplementaryFilter implements IOrientationFilter {
+
+    /**
+     * This is a filter-threshold for discarding Gyroscope measurements that are below a certain level and
+     * potentially are only noise and not real motion. Values from the gyroscope are usually between 0 (stop) and
+     * 10 (rapid rotation), so 0.1 seems to be a reasonable threshold to filter noise (usually smaller than 0.1) and
+     * real motion (usually > 0.1). Note that there is a chance of missing real motion, if the use is turning the
+     * device really slowly, so this value has to find a balance between accepting noise (threshold = 0) and missing
+     * slow user-action (threshold > 0.5). 0.1 seems to work fine for most applications.
+     *
+     */
+    private static final double EPSILON = 0.1f;
+
+    /**
+     * This rate determines directly how much the rotation sensor will be used to correct (in
+     * Sensor-fusion-scenario 1 - SensorSelection.GyroscopeAndRotationVector), per second. The weight of each sample is
+     * this rate multiplied by the time elapsed since the previous one, so that the correction takes the same time
+     * whatever the sampling rate is: it's 0.005 at the default rate of 30Hz. 0 means that the system entirely relies on
+     * the gyroscope, whereas a weight of 1 means that the system relies entirely on the rotationVector.
+     */
+    private static final float DIRECT_INTERPOLATION_RATE = 0.15f;
+
+    /**
+     * The threshold that indicates an outlier of the rotation vector. If the dot-product between the two vectors
+     * (gyroscope orientation and rotationVector orientation) falls below this threshold (ideally it should be 1,
+     * if they are exactly the same) the system falls back to the gyroscope values only and just ignores the
+     * rotation vector.
+     *
+     * This value should be quite high (> 0.7) to filter even the slightest discrepancies that causes jumps when
+     * tiling the device. Possible values are between 0 and 1, where a value close to 1 means that even a very small
+     * difference between the two sensors will be treated as outlier, whereas a value close to zero means that the
+     * almost any discrepancy between the two sensors is tolerated.
+     */
+    private static final float OUTLIER_THRESHOLD = 0.85f;
+
+    /**
+     * The threshold that indicates a massive discrepancy between the rotation vector and the gyroscope orientation.
+     * If the dot-product between the two vectors
+     * (gyroscope orientation and rotationVector orientation) falls below this threshold (ideally it should be 1, if
+     * they are exactly the same), the system will start increasing the panic counter (that probably indicates a
+     * gyroscope failure).
+     *
+     * This value should be lower than OUTLIER_THRESHOLD (0.5 - 0.7) to only start increasing the panic time,
+     * when there is a
+     * huge discrepancy between the two fused sensors.
+     */
+    private static final float OUTLIER_PANIC_THRESHOLD = 0.65f;
+
+    /**
+     * The time (in seconds) that indicates that a chaos state has been established rather than just a temporary peak
+     * in the rotation vector (caused by exploding angled during fast tilting). It's measured in time rather than in
+     * samples, so that it doesn't depend on the sampling rate: it's 60 samples at the default rate of 30Hz.
+     *
+     * If the panicTime is longer than this threshold, the current position will be reset to whatever the
+     * rotation vector indicates.
+     */
+    private static final float PANIC_THRESHOLD = 2f;
+
+    /**
+     * Angular velocity (in rad/s) above which a reset is delayed, since the user is still shaking the device.
+     */
+    private static final double PANIC_RESET_MAX_VELOCITY = 3;
+
+    /**
+     * The quaternion that stores the difference that is obtained by the gyroscope.
+     * Basically it contains a rotational difference encoded into a quaternion.
+     *
+     * To obtain the absolute orientation one must add this into an initial position by
+     * multiplying it with another quaternion
+     */
+    private final Quaternion deltaQuaternion = new Quaternion();
+
+    /**
+     * The Quaternions that contain the current rotation (Angle and axis in Quaternion format) of the Gyroscope
+     */
+    private final Quaternion quaternionGyroscope = new Quaternion();
+
+    /**
+     * The quaternion that contains the absolute orientation as obtained by the rotationVector sensor.
+     */
+    private final Quaternion quaternionRotationVector = new Quaternion();
+
+    /**
+     * Buffer for the interpolation between the gyroscope and the rotation vector orientations.
+     */
+    private final Quaternion interpolate = new Quaternion();
+
+    /**
+     * Value giving the total velocity of the gyroscope during the last sample.
+     */
+    private double gyroscopeRotationVelocity = 0;
+
+    /**
+     * Time (in seconds) spent in consecutive frames where the rotationVector and the gyroscope were
+     * significantly different (and the dot-product was smaller than 0.7). This event can either happen when the
+     * angles of the rotation vector explode (e.g. during fast tilting) or when the device was shaken heavily and
+     * the gyroscope is now completely off.
+     */
+    private float panicTime;
+
+    @Override
+    public void reset(final Quaternion orientation) {
+        this.quaternionGyroscope.set(orientation);
+        this.quaternionRotationVector.set(orientation);
+        this.panicTime = 0;
+    }
+
+    @Override
+    public void updateGyroscope(final float x, final float y, final float z, final float dT) {
+        // Axis of the rotation sample, not normalized yet.
+        float axisX = x;
+        float axisY = y;
+        float axisZ = z;
+
+        // Calculate the angular speed of the sample
+        this.gyroscopeRotationVelocity = Math.sqrt(axisX * axisX + axisY * axisY + axisZ * axisZ);
+
+        // Normalize the rotation vector if it's big enough to get the axis
+        if (this.gyroscopeRotationVelocity > EPSILON) {
+            axisX /= this.gyroscopeRotationVelocity;
+            axisY /= this.gyroscopeRotationVelocity;
+            axisZ /= this.gyroscopeRotationVelocity;
+        }
+
+        // Integrate around this axis with the angular speed by the timestep
+        // in order to get a delta rotation from this sample over the timestep
+        // We will convert this axis-angle representation of the delta rotation
+        // into a quaternion before turning it into the rotation matrix.
+        final double thetaOverTwo = this.gyroscopeRotationVelocity * dT / 2.0f;
+        final double sinThetaOverTwo = Math.sin(thetaOverTwo);
+        final double cosThetaOverTwo = Math.cos(thetaOverTwo);
+        this.deltaQuaternion.setX((float) (sinThetaOverTwo * axisX));
+        this.deltaQuaternion.setY((float) (sinThetaOverTwo * axisY));
+        this.deltaQuaternion.setZ((float) (sinThetaOverTwo * axisZ));
+        this.deltaQuaternion.setW(-(float) cosThetaOverTwo);
+
+        // Move current gyro orientation
+        this.deltaQuaternion.multiplyByQuat(this.quaternionGyroscope, this.quaternionGyroscope);
+
+        // Calculate dot-product to calculate whether the two orientation sensors have diverged
+        // (if the dot-product is closer to 0 than to 1), because it should be close to 1 if both are the same.
+        final float dotProd = this.quaternionGyroscope.dotProduct(this.quaternionRotationVector);
+
+        // If they have diverged, rely on gyroscope only (this happens on some devices when the rotation vector "jumps").
+        if (Math.abs(dotProd) < OUTLIER_THRESHOLD) {
+            // Increase panic time
+            if (Math.abs(dotProd) < OUTLIER_PANIC_THRESHOLD) {
+                this.panicTime += dT;
+            }
+        } else {
+            // Both are nearly saying the same. Perform normal fusion.
+
+            // Interpolate with a weight proportional to the sample period between the two absolute quaternions obtained from gyro and rotation vector sensors
+            // The weight should be quite low, so the rotation vector corrects the gyro only slowly, and the output keeps responsive.
+            final float weight = Math.min(1, DIRECT_INTERPOLATION_RATE * dT);
+            this.quaternionGyroscope.interpolate(this.quaternionRotationVector, this.interpolate, weight);
+
+            // Override current gyroscope-orientation
+            this.quaternionGyroscope.copyVec4(this.interpolate);
+
+            // Reset the panic time because both sensors are saying the same again
+            this.panicTime = 0;
+        }
+    }
+
+    @Override
+    public void updateAccelerometer(final float x, final float y, final float z) {
+        // The rotation vector already fuses the accelerometer
+    }
+
+    @Override
+    public void updateRotationVector(final Quaternion rotationVector) {
+        this.quaternionRotationVector.set(rotationVector);
+    }
+
+    @Override
+    public void getOrientation(final Quaternion output) {
+        output.copyVec4(this.quaternionGyroscope);
+    }
+
+    @Override
+    public boolean usesAccelerometer() {
+        return false;
+    }
+
+    @Override
+    public boolean usesRotationVector() {
+        return true;
+    }
+
+    @Override
+    public boolean hasDiverged() {
+        // A reset is delayed while the user is still shaking the device
+        return this.panicTime > PANIC_THRESHOLD && this.gyroscopeRotationVelocity < PANIC_RESET_MAX_VELOCITY;
+    }
+
+}
@@ -0,0 +1,287 @@
+package com.example.federico.wearableui.services.imu_handling.filter;
+
+import com.example.federico.wearableui.representation.FastMath;
+import com.example.federico.wearableui.representation.Quaternion;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * An error-state (indirect) Kalman filter that fuses the gyroscope with the rotation vector. The nominal state is the
+ * orientation quaternion and the gyroscope bias; the gyroscope samples, corrected by the bias, propagate the nominal
+ * orientation, while the filter tracks the covariance of the small error state (a 3D rotation error and a 3D bias error).
+ * Every rotation vector sample is a measurement of the orientation: the error it reveals is weighted by the Kalman gain,
+ * injected into the nominal state and reset to zero. Measurements that are too far from the prediction (like the "jumps"
+ * of the rotation vector during fast tilting) are rejected, and when they keep being rejected the filter asks to be reset.
+ *
+ * The covariance is kept in plain arrays and all the steps are allocation free.
+ *
+ * See J. Sola, "Quaternion kinematics for the error-state Kalman filter", 2017.
+ */
+public class ErrorStateKalmanFilter extends HamiltonFilter {
+
+    /**
+     * Size of the error state: three components of rotation error and three of gyroscope bias error.
+     */
+    private static final int N = 6;
+
+    /**
+     * Variance of the gyroscope noise, in (rad/s)^2 * s.
+     */
+    private static final float GYROSCOPE_NOISE = 0.0001f;
+
+    /**
+     * Variance of the gyroscope bias random walk, in (rad/s^2)^2 * s.
+     */
+    private static final float BIAS_NOISE = 0.000001f;
+
+    /**
+     * Variance of the rotation vector measurement noise, in rad^2. This corresponds to roughly 3 degrees.
+     */
+    private static final float ROTATION_VECTOR_NOISE = 0.0025f;
+
+    /**
+     * Initial variance of the gyroscope bias, in (rad/s)^2.
+     */
+    private static final float INITIAL_BIAS_VARIANCE = 0.0004f;
+
+    /**
+     * Squared Mahalanobis distance above which a measurement is rejected as an outlier. This is the 99.9% quantile of
+     * the chi-square distribution with three degrees of freedom.
+     */
+    private static final float OUTLIER_GATE = 16.27f;
+
+    /**
+     * Time (in seconds) the measurements have to keep being rejected for the filter to be considered diverged. It's
+     * measured in time rather than in measurements, so that it doesn't depend on the sampling rate: it's 60 measurements
+     * at the default rate of 30Hz.
+     */
+    private static final float DIVERGENCE_THRESHOLD = 2f;
+
+    /**
+     * Estimated gyroscope bias, in rad/s.
+     */
+    private float biasX, biasY, biasZ;
+
+    /**
+     * Covariance of the error state, row major.
+     */
+    private final float[] p = new float[N * N];
+
+    /**
+     * Buffer for the propagated covariance.
+     */
+    private final float[] buffer = new float[N * N];
+
+    /**
+     * Buffer for the Kalman gain, a 6x3 matrix, row major.
+     */
+    private final float[] gain = new float[N * 3];
+
+    /**
+     * Buffer for the inverse of the innovation covariance, a 3x3 matrix, row major.
+     */
+    private final float[] inverse = new float[9];
+
+    /**
+     * Flag indicating whether the last measurement has been rejected.
+     */
+    private boolean rejecting;
+
+    /**
+     * Time (in seconds) elapsed since the first of the consecutive rejected measurements.
+     */
+    private float rejectedTime;
+
+    /**
+     * Constructor.
+     */
+    public ErrorStateKalmanFilter() {
+        this.resetCovariance();
+    }
+
+    /**
+     * Resets the covariance to the initial uncertainty.
+     */
+    private void resetCovariance() {
+        for(int i = 0; i < N * N; i++) {
+            this.p[i] = 0;
+        }
+        for(int i = 0; i < 3; i++) {
+            this.p[i * N + i] = ROTATION_VECTOR_NOISE;
+            this.p[(i + 3) * N + i + 3] = INITIAL_BIAS_VARIANCE;
+        }
+    }
+
+    @Override
+    public void reset(final Quaternion orientation) {
+        super.reset(orientation);
+        this.biasX = 0;
+        this.biasY = 0;
+        this.biasZ = 0;
+        this.rejecting = false;
+        this.rejectedTime = 0;
+        this.resetCovariance();
+    }
+
+    @Override
+    public void updateGyroscope(final float x, final float y, final float z, final float dT) {
+        if(this.rejecting) {
+            this.rejectedTime += dT;
+        }
+        final float wx = x - this.biasX, wy = y - this.biasY, wz = z - this.biasZ;
+
+        // Nominal state: q = q * Exp(w dT)
+        final float angle = (float) Math.sqrt(wx * wx + wy * wy + wz * wz) * dT;
+        final float halfAngle = angle / 2;
+        final float c = FastMath.cos(halfAngle);
+        // sin(a/2)/|w| computed so that it stays finite for small angles
+        final float s = angle > 1e-6f ? FastMath.sin(halfAngle) * dT / angle : dT / 2;
+        final float dx = wx * s, dy = wy * s, dz = wz * s;
+        final float q0 = this.q0, q1 = this.q1, q2 = this.q2, q3 = this.q3;
+        this.q0 = q0 * c - q1 * dx - q2 * dy - q3 * dz;
+        this.q1 = q0 * dx + q1 * c + q2 * dz - q3 * dy;
+        this.q2 = q0 * dy - q1 * dz + q2 * c + q3 * dx;
+        this.q3 = q0 * dz + q1 * dy - q2 * dx + q3 * c;
+        this.normalise();
+
+        // Error state: F = [[I - [w]x dT, -I dT], [0, I]], P = F P F' + Q
+        // A = I - [w]x dT
+        final float a00 = 1, a01 = wz * dT, a02 = -wy * dT;
+        final float a10 = -wz * dT, a11 = 1, a12 = wx * dT;
+        final float a20 = wy * dT, a21 = -wx * dT, a22 = 1;
+        final float[] p = this.p;
+        final float[] fp = this.buffer;
+        // F P: the rotation rows are A * P_top - dT * P_bottom, the bias rows are unchanged
+        for(int col = 0; col < N; col++) {
+            final float p0 = p[col], p1 = p[N + col], p2 = p[2 * N + col];
+            fp[col] = a00 * p0 + a01 * p1 + a02 * p2 - dT * p[3 * N + col];
+            fp[N + col] = a10 * p0 + a11 * p1 + a12 * p2 - dT * p[4 * N + col];
+            fp[2 * N + col] = a20 * p0 + a21 * p1 + a22 * p2 - dT * p[5 * N + col];
+            fp[3 * N + col] = p[3 * N + col];
+            fp[4 * N + col] = p[4 * N + col];
+            fp[5 * N + col] = p[5 * N + col];
+        }
+        // (F P) F': same operation on the columns
+        for(int row = 0; row < N; row++) {
+            final int r = row * N;
+            final float p0 = fp[r], p1 = fp[r + 1], p2 = fp[r + 2];
+            p[r] = a00 * p0 + a01 * p1 + a02 * p2 - dT * fp[r + 3];
+            p[r + 1] = a10 * p0 + a11 * p1 + a12 * p2 - dT * fp[r + 4];
+            p[r + 2] = a20 * p0 + a21 * p1 + a22 * p2 - dT * fp[r + 5];
+            p[r + 3] = fp[r + 3];
+            p[r + 4] = fp[r + 4];
+            p[r + 5] = fp[r + 5];
+        }
+        for(int i = 0; i < 3; i++) {
+            p[i * N + i] += GYROSCOPE_NOISE * dT;
+            p[(i + 3) * N + i + 3] += BIAS_NOISE * dT;
+        }
+    }
+
+    @Override
+    public void updateRotationVector(final Quaternion rotationVector) {
+        // Measured orientation in the Hamilton convention
+        float m0 = -rotationVector.getW(), m1 = rotationVector.getX(), m2 = rotationVector.getY(), m3 = rotationVector.getZ();
+
+        // Error quaternion: conjugate(q) * m, taken on the same hemisphere
+        float e0 = this.q0 * m0 + this.q1 * m1 + this.q2 * m2 + this.q3 * m3;
+        float e1 = this.q0 * m1 - this.q1 * m0 - this.q2 * m3 + this.q3 * m2;
+        float e2 = this.q0 * m2 + this.q1 * m3 - this.q2 * m0 - this.q3 * m1;
+        float e3 = this.q0 * m3 - this.q1 * m2 + this.q2 * m1 - this.q3 * m0;
+        if(e0 < 0) {
+            e0 = -e0;
+            e1 = -e1;
+            e2 = -e2;
+            e3 = -e3;
+        }
+        // Small angle residual
+        final float r0 = 2 * e1, r1 = 2 * e2, r2 = 2 * e3;
+
+        // Innovation covariance S = P_top_left + R, and its inverse
+        final float[] p = this.p;
+        final float s00 = p[0] + ROTATION_VECTOR_NOISE, s01 = p[1], s02 = p[2];
+        final float s10 = p[N], s11 = p[N + 1] + ROTATION_VECTOR_NOISE, s12 = p[N + 2];
+        final float s20 = p[2 * N], s21 = p[2 * N + 1], s22 = p[2 * N + 2] + ROTATION_VECTOR_NOISE;
+        final float c00 = s11 * s22 - s12 * s21, c01 = s02 * s21 - s01 * s22, c02 = s01 * s12 - s02 * s11;
+        final float det = s00 * c00 + s10 * c01 + s20 * c02;
+        if(det <= 0) {
+            return;
+        }
+        final float[] si = this.inverse;
+        si[0] = c00 / det;
+        si[1] = c01 / det;
+        si[2] = c02 / det;
+        si[3] = (s12 * s20 - s10 * s22) / det;
+        si[4] = (s00 * s22 - s02 * s20) / det;
+        si[5] = (s02 * s10 - s00 * s12) / det;
+        si[6] = (s10 * s21 - s11 * s20) / det;
+        si[7] = (s01 * s20 - s00 * s21) / det;
+        si[8] = (s00 * s11 - s01 * s10) / det;
+
+        // Outlier gating on the Mahalanobis distance of the residual
+        final float t0 = si[0] * r0 + si[1] * r1 + si[2] * r2;
+        final float t1 = si[3] * r0 + si[4] * r1 + si[5] * r2;
+        final float t2 = si[6] * r0 + si[7] * r1 + si[8] * r2;
+        if(r0 * t0 + r1 * t1 + r2 * t2 > OUTLIER_GATE) {
+            this.rejecting = true;
+            return;
+        }
+        this.rejecting = false;
+        this.rejectedTime = 0;
+
+        // Kalman gain K = P H' S^-1, where P H' are the first three columns of P
+        final float[] k = this.gain;
+        for(int row = 0; row < N; row++) {
+            final float h0 = p[row * N], h1 = p[row * N + 1], h2 = p[row * N + 2];
+            k[row * 3] = h0 * si[0] + h1 * si[3] + h2 * si[6];
+            k[row * 3 + 1] = h0 * si[1] + h1 * si[4] + h2 * si[7];
+            k[row * 3 + 2] = h0 * si[2] + h1 * si[5] + h2 * si[8];
+        }
+
+        // Error state estimate and injection into the nominal state
+        final float dTheta0 = k[0] * r0 + k[1] * r1 + k[2] * r2;
+        final float dTheta1 = k[3] * r0 + k[4] * r1 + k[5] * r2;
+        final float dTheta2 = k[6] * r0 + k[7] * r1 + k[8] * r2;
+        this.biasX += k[9] * r0 + k[10] * r1 + k[11] * r2;
+        this.biasY += k[12] * r0 + k[13] * r1 + k[14] * r2;
+        this.biasZ += k[15] * r0 + k[16] * r1 + k[17] * r2;
+
+        final float dx = dTheta0 / 2, dy = dTheta1 / 2, dz = dTheta2 / 2;
+        final float q0 = this.q0, q1 = this.q1, q2 = this.q2, q3 = this.q3;
+        this.q0 = q0 - q1 * dx - q2 * dy - q3 * dz;
+        this.q1 = q0 * dx + q1 + q2 * dz - q3 * dy;
+        this.q2 = q0 * dy - q1 * dz + q2 + q3 * dx;
+        this.q3 = q0 * dz + q1 * dy - q2 * dx + q3;
+        this.normalise();
+
+        // Covariance update P = (I - K H) P = P - K P_top
+        final float[] updated = this.buffer;
+        for(int row = 0; row < N; row++) {
+            for(int col = 0; col < N; col++) {
+                updated[row * N + col] = p[row * N + col] - (k[row * 3] * p[col] + k[row * 3 + 1] * p[N + col]
+                        + k[row * 3 + 2] * p[2 * N + col]);
+            }
+        }
+        // Keep it symmetric against the rounding errors
+        for(int row = 0; row < N; row++) {
+            for(int col = row; col < N; col++) {
+                final float value = (updated[row * N + col] + updated[col * N + row]) / 2;
+                p[row * N + col] = value;
+                p[col * N + row] = value;
+            }
+        }
+    }
+
+    @Override
+    public boolean usesRotationVector() {
+        return true;
+    }
+
+    @Override
+    public boolean hasDiverged() {
+        return this.rejectedTime > DIVERGENCE_THRESHOLD;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.example.federico.wearableui.services.imu_handling.filter;
+
+import com.example.federico.wearableui.representation.Quaternion;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Base class for the {@link IOrientationFilter}s that keep their orientation as a standard (Hamilton) unit quaternion
+ * q0 + q1 i + q2 j + q3 k, rotating the device coordinates into the World Coordinate System, which is the convention the
+ * textbook formulations of these filters use. This class converts it from and to the convention used by the
+ * {@link com.example.federico.wearableui.services.imu_handling.SensorFusionService}, where the w component is inverted.
+ */
+abstract class HamiltonFilter implements IOrientationFilter {
+
+    /**
+     * Components of the orientation quaternion: q0 is the scalar part, q1, q2 and q3 the vector part.
+     */
+    protected float q0 = 1, q1, q2, q3;
+
+    @Override
+    public void reset(final Quaternion orientation) {
+        this.q0 = -orientation.getW();
+        this.q1 = orientation.getX();
+        this.q2 = orientation.getY();
+        this.q3 = orientation.getZ();
+        this.normalise();
+    }
+
+    @Override
+    public void getOrientation(final Quaternion output) {
+        output.setXYZW(this.q1, this.q2, this.q3, -this.q0);
+    }
+
+    @Override
+    public void updateAccelerometer(final float x, final float y, final float z) {
+        // Not used by default
+    }
+
+    @Override
+    public void updateRotationVector(final Quaternion rotationVector) {
+        // Not used by default
+    }
+
+    @Override
+    public boolean usesAccelerometer() {
+        return false;
+    }
+
+    @Override
+    public boolean usesRotationVector() {
+        return false;
+    }
+
+    @Override
+    public boolean hasDiverged() {
+        return false;
+    }
+
+    /**
+     * Normalises the orientation quaternion.
+     */
+    protected void normalise() {
+        final float norm = (float) Math.sqrt(this.q0 * this.q0 + this.q1 * this.q1 + this.q2 * this.q2 + this.q3 * this.q3);
+        if(norm > 0) {
+            this.q0 /= norm;
+            this.q1 /= norm;
+            this.q2 /= norm;
+            this.q3 /= norm;
+        }
+        else {
+            this.q0 = 1;
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.example.federico.wearableui.services.imu_handling.filter;
+
+import com.example.federico.wearableui.representation.Quaternion;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Interface that defines the behaviour of an orientation filter, that is the algorithm the
+ * {@link com.example.federico.wearableui.services.imu_handling.SensorFusionService} uses to fuse the sensor samples
+ * into the orientation of the device.
+ *
+ * All the {@link Quaternion}s exchanged with a filter are expressed as the SensorFusionService does: they represent the
+ * orientation of the device according to the World Coordinate System, with the w component inverted. Filters are not
+ * thread safe and are only ever used from the thread that handles the sensor events.
+ */
+public interface IOrientationFilter {
+
+    /**
+     * Resets the filter to the passed orientation, discarding its state.
+     * @param orientation a {@link Quaternion} representing the orientation to start from, usually the rotation vector.
+     */
+    void reset(final Quaternion orientation);
+
+    /**
+     * Feeds a gyroscope sample to the filter, which moves its orientation accordingly.
+     * @param x the angular velocity around the x axis of the device in rad/s.
+     * @param y the angular velocity around the y axis of the device in rad/s.
+     * @param z the angular velocity around the z axis of the device in rad/s.
+     * @param dT the time elapsed since the previous gyroscope sample in seconds.
+     */
+    void updateGyroscope(final float x, final float y, final float z, final float dT);
+
+    /**
+     * Feeds an accelerometer sample to the filter. Filters that don't use the accelerometer ignore it.
+     * @param x the acceleration along the x axis of the device in m/s^2.
+     * @param y the acceleration along the y axis of the device in m/s^2.
+     * @param z the acceleration along the z axis of the device in m/s^2.
+     */
+    void updateAccelerometer(final float x, final float y, final float z);
+
+    /**
+     * Feeds a rotation vector sample to the filter. Filters that don't use the rotation vector ignore it.
+     * @param rotationVector a {@link Quaternion} representing the orientation measured by the rotation vector sensor.
+     */
+    void updateRotationVector(final Quaternion rotationVector);
+
+    /**
+     * Copies the current orientation estimated by the filter in the passed {@link Quaternion}.
+     * @param output the Quaternion where the orientation is stored.
+     */
+    void getOrientation(final Quaternion output);
+
+    /**
+     * Returns whether the filter needs the accelerometer samples.
+     * @return true if the accelerometer has to be sampled, false otherwise.
+     */
+    boolean usesAccelerometer();
+
+    /**
+     * Returns whether the filter needs the rotation vector samples.
+     * @return true if the rotation vector samples are fused, false otherwise.
+     */
+    boolean usesRotationVector();
+
+    /**
+     * Returns whether the filter has diverged from its measurements for so long that it can't be trusted anymore, in
+     * which case it has to be reset.
+     * @return true if the filter has to be reset, false otherwise.
+     */
+    boolean hasDiverged();
+
+}
@@ -0,0 +1,85 @@
+package com.example.federico.wearableui.services.imu_handling.filter;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Madgwick's gradient descent orientation filter, in its gyroscope and accelerometer version. The gyroscope samples are
+ * integrated and, at every step, the orientation is moved along the gradient that aligns the gravity it predicts with the
+ * gravity measured by the accelerometer. Pitch and roll are therefore drift free, while the yaw is only given by the
+ * gyroscope (no magnetometer is used), starting from the orientation the filter has been reset to.
+ *
+ * See S. Madgwick, "An efficient orientation filter for inertial and inertial/magnetic sensor arrays", 2010.
+ */
+public class MadgwickFilter extends HamiltonFilter {
+
+    /**
+     * Gain of the gradient descent step, in rad/s. Higher values correct the gyroscope drift faster, but let more of the
+     * accelerometer noise (and of the linear accelerations of the head) through.
+     */
+    private static final float BETA = 0.041f;
+
+    /**
+     * The last accelerometer sample, normalised. All zeros if there's none.
+     */
+    private float ax, ay, az;
+
+    @Override
+    public void updateAccelerometer(final float x, final float y, final float z) {
+        final float norm = (float) Math.sqrt(x * x + y * y + z * z);
+        if(norm > 0) {
+            this.ax = x / norm;
+            this.ay = y / norm;
+            this.az = z / norm;
+        }
+    }
+
+    @Override
+    public void updateGyroscope(final float gx, final float gy, final float gz, final float dT) {
+        final float q0 = this.q0, q1 = this.q1, q2 = this.q2, q3 = this.q3;
+
+        // Rate of change of the quaternion from the gyroscope
+        float qDot0 = 0.5f * (-q1 * gx - q2 * gy - q3 * gz);
+        float qDot1 = 0.5f * (q0 * gx + q2 * gz - q3 * gy);
+        float qDot2 = 0.5f * (q0 * gy - q1 * gz + q3 * gx);
+        float qDot3 = 0.5f * (q0 * gz + q1 * gy - q2 * gx);
+
+        if(this.ax != 0 || this.ay != 0 || this.az != 0) {
+            // Gradient of the objective function that compares the predicted and the measured gravity
+            final float _2q0 = 2f * q0, _2q1 = 2f * q1, _2q2 = 2f * q2, _2q3 = 2f * q3;
+            final float _4q0 = 4f * q0, _4q1 = 4f * q1, _4q2 = 4f * q2;
+            final float _8q1 = 8f * q1, _8q2 = 8f * q2;
+            final float q0q0 = q0 * q0, q1q1 = q1 * q1, q2q2 = q2 * q2, q3q3 = q3 * q3;
+
+            float s0 = _4q0 * q2q2 + _2q2 * this.ax + _4q0 * q1q1 - _2q1 * this.ay;
+            float s1 = _4q1 * q3q3 - _2q3 * this.ax + 4f * q0q0 * q1 - _2q0 * this.ay - _4q1 + _8q1 * q1q1 + _8q1 * q2q2 + _4q1 * this.az;
+            float s2 = 4f * q0q0 * q2 + _2q0 * this.ax + _4q2 * q3q3 - _2q3 * this.ay - _4q2 + _8q2 * q1q1 + _8q2 * q2q2 + _4q2 * this.az;
+            float s3 = 4f * q1q1 * q3 - _2q1 * this.ax + 4f * q2q2 * q3 - _2q2 * this.ay;
+            final float norm = (float) Math.sqrt(s0 * s0 + s1 * s1 + s2 * s2 + s3 * s3);
+            if(norm > 0) {
+                s0 /= norm;
+                s1 /= norm;
+                s2 /= norm;
+                s3 /= norm;
+
+                qDot0 -= BETA * s0;
+                qDot1 -= BETA * s1;
+                qDot2 -= BETA * s2;
+                qDot3 -= BETA * s3;
+            }
+        }
+
+        this.q0 = q0 + qDot0 * dT;
+        this.q1 = q1 + qDot1 * dT;
+        this.q2 = q2 + qDot2 * dT;
+        this.q3 = q3 + qDot3 * dT;
+        this.normalise();
+    }
+
+    @Override
+    public boolean usesAccelerometer() {
+        return true;
+    }
+
+}
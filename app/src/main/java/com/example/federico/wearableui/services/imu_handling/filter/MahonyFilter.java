@@ -0,0 +1,97 @@
+package com.example.federico.wearableui.services.imu_handling.filter;
+
+import com.example.federico.wearableui.representation.Quaternion;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Mahony's nonlinear complementary filter, in its gyroscope and accelerometer version. The error between the gravity the
+ * orientation predicts and the gravity measured by the accelerometer is fed back to the gyroscope through a
+ * proportional-integral controller, whose integral term estimates the gyroscope bias. Like the {@link MadgwickFilter},
+ * pitch and roll are drift free, while the yaw is only given by the gyroscope.
+ *
+ * See R. Mahony, T. Hamel, J. Pflimlin, "Nonlinear complementary filters on the special orthogonal group", 2008.
+ */
+public class MahonyFilter extends HamiltonFilter {
+
+    /**
+     * Proportional gain, multiplied by two.
+     */
+    private static final float TWO_KP = 2f * 0.5f;
+
+    /**
+     * Integral gain, multiplied by two.
+     */
+    private static final float TWO_KI = 2f * 0.01f;
+
+    /**
+     * The last accelerometer sample, normalised. All zeros if there's none.
+     */
+    private float ax, ay, az;
+
+    /**
+     * Integral of the error, which estimates the gyroscope bias (with opposite sign).
+     */
+    private float integralX, integralY, integralZ;
+
+    @Override
+    public void reset(final Quaternion orientation) {
+        super.reset(orientation);
+        this.integralX = 0;
+        this.integralY = 0;
+        this.integralZ = 0;
+    }
+
+    @Override
+    public void updateAccelerometer(final float x, final float y, final float z) {
+        final float norm = (float) Math.sqrt(x * x + y * y + z * z);
+        if(norm > 0) {
+            this.ax = x / norm;
+            this.ay = y / norm;
+            this.az = z / norm;
+        }
+    }
+
+    @Override
+    public void updateGyroscope(float gx, float gy, float gz, final float dT) {
+        final float q0 = this.q0, q1 = this.q1, q2 = this.q2, q3 = this.q3;
+
+        if(this.ax != 0 || this.ay != 0 || this.az != 0) {
+            // Half of the gravity direction predicted by the orientation, in the device coordinates
+            final float halfVx = q1 * q3 - q0 * q2;
+            final float halfVy = q0 * q1 + q2 * q3;
+            final float halfVz = q0 * q0 - 0.5f + q3 * q3;
+
+            // The error is the cross product between the measured and the predicted gravity
+            final float halfEx = this.ay * halfVz - this.az * halfVy;
+            final float halfEy = this.az * halfVx - this.ax * halfVz;
+            final float halfEz = this.ax * halfVy - this.ay * halfVx;
+
+            this.integralX += TWO_KI * halfEx * dT;
+            this.integralY += TWO_KI * halfEy * dT;
+            this.integralZ += TWO_KI * halfEz * dT;
+
+            gx += this.integralX + TWO_KP * halfEx;
+            gy += this.integralY + TWO_KP * halfEy;
+            gz += this.integralZ + TWO_KP * halfEz;
+        }
+
+        // Integrate the corrected rate of change of the quaternion
+        gx *= 0.5f * dT;
+        gy *= 0.5f * dT;
+        gz *= 0.5f * dT;
+        this.q0 = q0 + (-q1 * gx - q2 * gy - q3 * gz);
+        this.q1 = q1 + (q0 * gx + q2 * gz - q3 * gy);
+        this.q2 = q2 + (q0 * gy - q1 * gz + q3 * gx);
+        this.q3 = q3 + (q0 * gz + q1 * gy - q2 * gx);
+        this.normalise();
+    }
+
+    @Override
+    public boolean usesAccelerometer() {
+        return true;
+    }
+
+}
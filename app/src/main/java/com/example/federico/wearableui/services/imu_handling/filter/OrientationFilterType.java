@@ -0,0 +1,38 @@
+package com.example.federico.wearableui.services.imu_handling.filter;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Enumerator for the {@link IOrientationFilter}s that can be selected at runtime.
+ */
+public enum OrientationFilterType {
+
+    /** Gyroscope integration slowly corrected towards the rotation vector. See {@link ComplementaryFilter}. */
+    COMPLEMENTARY,
+    /** Gyroscope and accelerometer gradient descent filter. See {@link MadgwickFilter}. */
+    MADGWICK,
+    /** Gyroscope and accelerometer proportional-integral filter. See {@link MahonyFilter}. */
+    MAHONY,
+    /** Error-state Kalman filter with gyroscope bias estimation. See {@link ErrorStateKalmanFilter}. */
+    ERROR_STATE_KALMAN;
+
+    /**
+     * Creates a new filter of this type.
+     * @return a new {@link IOrientationFilter}.
+     */
+    public IOrientationFilter create() {
+        switch(this) {
+            case MADGWICK:
+                return new MadgwickFilter();
+            case MAHONY:
+                return new MahonyFilter();
+            case ERROR_STATE_KALMAN:
+                return new ErrorStateKalmanFilter();
+            default:
+                return new ComplementaryFilter();
+        }
+    }
+
+}
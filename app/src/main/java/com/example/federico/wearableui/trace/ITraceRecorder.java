@@ -0,0 +1,52 @@
+package com.example.federico.wearableui.trace;
+
+import com.example.federico.wearableui.representation.Quaternion;
+import com.example.federico.wearableui.services.connection.messages.content.Content;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Interface for the {@link TraceRecorder}.
+ */
+public interface ITraceRecorder {
+
+    /**
+     * Starts recording on the passed stream. If a recording is already in progress, it's stopped first. Since the records
+     * are only ever appended, the stream can also be a file opened in append mode: every recording starts a new session.
+     * @param out the {@link OutputStream} the records are written to. It's closed when the recording stops.
+     * @throws IOException if the session header can't be written.
+     */
+    void start(final OutputStream out) throws IOException;
+
+    /**
+     * Stops the recording in progress, if any, flushing and closing its stream.
+     */
+    void stop();
+
+    /**
+     * Returns whether a recording is in progress.
+     * @return true if the records are being written, false otherwise.
+     */
+    boolean isRecording();
+
+    /**
+     * Records a raw sensor event. Does nothing if no recording is in progress.
+     * @param sensorType the type of the sensor, as given by {@link android.hardware.Sensor#getType()}.
+     * @param timestamp the timestamp of the event in nanoseconds.
+     * @param values the values of the event.
+     */
+    void recordSensorEvent(final int sensorType, final long timestamp, final float[] values);
+
+    /**
+     * Records a message received from the ring. Does nothing if no recording is in progress.
+     * @param content the {@link Content} of the message.
+     * @param payload the {@link Quaternion} carried by the message, or null if it carries none.
+     */
+    void recordMessage(final Content content, final Quaternion payload);
+
+}
@@ -0,0 +1,56 @@
+package com.example.federico.wearableui.trace;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Constants that define the binary format of the traces written by the {@link TraceRecorder} and read by the
+ * {@link TraceReader}.
+ *
+ * A trace is a sequence of records, all in big-endian order. Every record starts with a one byte kind and the time at
+ * which it has been recorded, in the {@link System#nanoTime()} time base (8 bytes), followed by:
+ * <ul>
+ *     <li>SESSION: the magic number (4 bytes) and the format version (2 bytes);</li>
+ *     <li>SENSOR_EVENT: the sensor type (4 bytes), the event timestamp (8 bytes), the number of values (1 byte) and the
+ *     values (4 bytes each);</li>
+ *     <li>MESSAGE: the ordinal of the message content (1 byte), whether it carries a quaternion (1 byte) and, if so,
+ *     its x, y, z and w components (4 bytes each).</li>
+ * </ul>
+ * A trace always starts with a SESSION record; a new one is appended every time a recording starts.
+ */
+final class TraceFormat {
+
+    /**
+     * Magic number that identifies a trace.
+     */
+    static final int MAGIC = 0x57554954;
+
+    /**
+     * Version of the format.
+     */
+    static final short VERSION = 1;
+
+    /**
+     * Kind of the record that starts a recording session.
+     */
+    static final byte SESSION = 0;
+
+    /**
+     * Kind of the records that hold a sensor event.
+     */
+    static final byte SENSOR_EVENT = 1;
+
+    /**
+     * Kind of the records that hold a message received from the ring.
+     */
+    static final byte MESSAGE = 2;
+
+    /**
+     * Maximum number of values of a sensor event.
+     */
+    static final int MAX_VALUES = 255;
+
+    private TraceFormat() { }
+
+}
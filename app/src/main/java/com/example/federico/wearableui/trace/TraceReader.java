@@ -0,0 +1,240 @@
+package com.example.federico.wearableui.trace;
+
+import com.example.federico.wearableui.representation.Quaternion;
+import com.example.federico.wearableui.services.connection.messages.content.Content;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Reads a trace written by the {@link TraceRecorder}, one record at a time. The current record is kept in the reader
+ * itself, which never allocates while reading, so that a trace can be replayed as fast as possible. A record truncated by
+ * the end of the stream (e.g. because the application has been killed while recording) is treated as the end of the
+ * trace.
+ */
+public class TraceReader implements Closeable {
+
+    /**
+     * The kinds of records.
+     */
+    public enum Kind { SESSION, SENSOR_EVENT, MESSAGE }
+
+    /**
+     * The contents of the messages, indexed by their ordinal.
+     */
+    private static final Content[] CONTENTS = Content.values();
+
+    /**
+     * The stream the records are read from.
+     */
+    private final DataInputStream in;
+
+    /**
+     * Kind of the current record.
+     */
+    private Kind kind;
+
+    /**
+     * Time at which the current record has been recorded, in the {@link System#nanoTime()} time base.
+     */
+    private long recordedAt;
+
+    /**
+     * Type of the sensor of the current record.
+     */
+    private int sensorType;
+
+    /**
+     * Timestamp of the sensor event of the current record.
+     */
+    private long timestamp;
+
+    /**
+     * Values of the sensor event of the current record.
+     */
+    private final float[] values = new float[TraceFormat.MAX_VALUES];
+
+    /**
+     * Number of values of the sensor event of the current record.
+     */
+    private int valueCount;
+
+    /**
+     * Content of the message of the current record.
+     */
+    private Content content;
+
+    /**
+     * Quaternion carried by the message of the current record, null if it carries none.
+     */
+    private Quaternion payload;
+
+    /**
+     * Buffer for the quaternion carried by the messages.
+     */
+    private final Quaternion payloadBuffer = new Quaternion();
+
+    /**
+     * Constructor. The trace must start with a session record, which is read right away.
+     * @param in the {@link InputStream} to read the trace from.
+     * @throws IOException if the stream can't be read or doesn't contain a trace.
+     */
+    public TraceReader(final InputStream in) throws IOException {
+        if(in == null) {
+            throw new IllegalArgumentException("The input stream can not be null");
+        }
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        if(!this.next() || this.kind != Kind.SESSION) {
+            throw new IOException("Not a trace");
+        }
+    }
+
+    /**
+     * Moves to the next record.
+     * @return true if there is a next record, false if the trace is over.
+     * @throws IOException if the stream can't be read or the record is not valid.
+     */
+    public boolean next() throws IOException {
+        final int kind = this.in.read();
+        if(kind < 0) {
+            return false;
+        }
+        try {
+            this.recordedAt = this.in.readLong();
+            switch(kind) {
+                case TraceFormat.SESSION:
+                    this.readSession();
+                    break;
+                case TraceFormat.SENSOR_EVENT:
+                    this.readSensorEvent();
+                    break;
+                case TraceFormat.MESSAGE:
+                    this.readMessage();
+                    break;
+                default:
+                    throw new IOException("Unknown record kind " + kind);
+            }
+            return true;
+        }
+        catch(final EOFException e) {
+            return false;
+        }
+    }
+
+    private void readSession() throws IOException {
+        if(this.in.readInt() != TraceFormat.MAGIC) {
+            throw new IOException("Not a trace");
+        }
+        final short version = this.in.readShort();
+        if(version != TraceFormat.VERSION) {
+            throw new IOException("Unsupported trace version " + version);
+        }
+        this.kind = Kind.SESSION;
+    }
+
+    private void readSensorEvent() throws IOException {
+        this.sensorType = this.in.readInt();
+        this.timestamp = this.in.readLong();
+        this.valueCount = this.in.readUnsignedByte();
+        for(int i = 0; i < this.valueCount; i++) {
+            this.values[i] = this.in.readFloat();
+        }
+        this.kind = Kind.SENSOR_EVENT;
+    }
+
+    private void readMessage() throws IOException {
+        final int ordinal = this.in.readUnsignedByte();
+        if(ordinal >= CONTENTS.length) {
+            throw new IOException("Unknown message content " + ordinal);
+        }
+        this.content = CONTENTS[ordinal];
+        if(this.in.readBoolean()) {
+            this.payloadBuffer.setXYZW(this.in.readFloat(), this.in.readFloat(), this.in.readFloat(), this.in.readFloat());
+            this.payload = this.payloadBuffer;
+        }
+        else {
+            this.payload = null;
+        }
+        this.kind = Kind.MESSAGE;
+    }
+
+    /**
+     * Returns the kind of the current record.
+     * @return the {@link Kind} of the current record.
+     */
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Returns the time at which the current record has been recorded.
+     * @return the time of the record in nanoseconds, in the {@link System#nanoTime()} time base of the recording device.
+     */
+    public long getRecordedAt() {
+        return this.recordedAt;
+    }
+
+    /**
+     * Returns the type of the sensor of the current record, if it's a sensor event.
+     * @return the type of the sensor, as given by {@link android.hardware.Sensor#getType()}.
+     */
+    public int getSensorType() {
+        return this.sensorType;
+    }
+
+    /**
+     * Returns the timestamp of the current record, if it's a sensor event.
+     * @return the timestamp of the event in nanoseconds.
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * Returns the values of the current record, if it's a sensor event. Only the first {@link #getValueCount()} values
+     * are valid, and the array is overwritten by the next record.
+     * @return the values of the event.
+     */
+    public float[] getValues() {
+        return this.values;
+    }
+
+    /**
+     * Returns the number of values of the current record, if it's a sensor event.
+     * @return the number of values of the event.
+     */
+    public int getValueCount() {
+        return this.valueCount;
+    }
+
+    /**
+     * Returns the content of the current record, if it's a message.
+     * @return the {@link Content} of the message.
+     */
+    public Content getContent() {
+        return this.content;
+    }
+
+    /**
+     * Returns the quaternion carried by the current record, if it's a message. The Quaternion is overwritten by the
+     * next record.
+     * @return the {@link Quaternion} carried by the message, null if it carries none.
+     */
+    public Quaternion getPayload() {
+        return this.payload;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.example.federico.wearableui.trace;
+
+import com.example.federico.wearableui.representation.Quaternion;
+import com.example.federico.wearableui.services.connection.messages.content.Content;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * This class records the raw inputs of the application, that is the {@link android.hardware.SensorEvent}s delivered to
+ * the {@link com.example.federico.wearableui.services.imu_handling.SensorFusionService} and the messages received from
+ * the ring by the {@link com.example.federico.wearableui.services.connection.message_parser.MessageParserService}, in a
+ * compact binary trace (see {@link TraceFormat}). The trace can then be read by the {@link TraceReader} and fed to the
+ * fusion again by the {@link TraceReplayer}, to reproduce a problem offline.
+ *
+ * The recording is disabled by default, and while disabled recording an input only costs a volatile read. Inputs come
+ * from the sensor thread and from the connection thread, so writing them is synchronized; if a write fails, the
+ * recording is stopped.
+ *
+ * This class is also a Singleton, since there only has to be one instance of it.
+ */
+public class TraceRecorder implements ITraceRecorder {
+
+    /**
+     * The Singleton instance.
+     */
+    private static ITraceRecorder INSTANCE = null;
+
+    /**
+     * The stream the records are written to, null if no recording is in progress.
+     */
+    private volatile DataOutputStream out;
+
+    /**
+     * Returns the Singleton instance.
+     * @return the Singleton instance.
+     */
+    public static synchronized ITraceRecorder getInstance() {
+        if(INSTANCE == null) {
+            INSTANCE = new TraceRecorder();
+        }
+
+        return INSTANCE;
+    }
+
+    /**
+     * Constructor. Use {@link #getInstance()} in the application; new instances are only meant for tests.
+     */
+    TraceRecorder() { }
+
+    @Override
+    public synchronized void start(final OutputStream out) throws IOException {
+        if(out == null) {
+            throw new IllegalArgumentException("The output stream can not be null");
+        }
+        this.stop();
+        final DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(out));
+        stream.writeByte(TraceFormat.SESSION);
+        stream.writeLong(System.nanoTime());
+        stream.writeInt(TraceFormat.MAGIC);
+        stream.writeShort(TraceFormat.VERSION);
+        this.out = stream;
+    }
+
+    @Override
+    public synchronized void stop() {
+        final DataOutputStream stream = this.out;
+        if(stream == null) {
+            return;
+        }
+        this.out = null;
+        try {
+            stream.close();
+        }
+        catch(final IOException e) { /**/ }
+    }
+
+    @Override
+    public boolean isRecording() {
+        return this.out != null;
+    }
+
+    @Override
+    public void recordSensorEvent(final int sensorType, final long timestamp, final float[] values) {
+        if(this.out == null) {
+            return;
+        }
+        synchronized(this) {
+            final DataOutputStream stream = this.out;
+            if(stream == null) {
+                return;
+            }
+            try {
+                final int count = Math.min(values.length, TraceFormat.MAX_VALUES);
+                stream.writeByte(TraceFormat.SENSOR_EVENT);
+                stream.writeLong(System.nanoTime());
+                stream.writeInt(sensorType);
+                stream.writeLong(timestamp);
+                stream.writeByte(count);
+                for(int i = 0; i < count; i++) {
+                    stream.writeFloat(values[i]);
+                }
+            }
+            catch(final IOException e) {
+                this.stop();
+            }
+        }
+    }
+
+    @Override
+    public void recordMessage(final Content content, final Quaternion payload) {
+        if(this.out == null) {
+            return;
+        }
+        synchronized(this) {
+            final DataOutputStream stream = this.out;
+            if(stream == null) {
+                return;
+            }
+            try {
+                stream.writeByte(TraceFormat.MESSAGE);
+                stream.writeLong(System.nanoTime());
+                stream.writeByte(content.ordinal());
+                stream.writeBoolean(payload != null);
+                if(payload != null) {
+                    stream.writeFloat(payload.getX());
+                    stream.writeFloat(payload.getY());
+                    stream.writeFloat(payload.getZ());
+                    stream.writeFloat(payload.getW());
+                }
+            }
+            catch(final IOException e) {
+                this.stop();
+            }
+        }
+    }
+
+}
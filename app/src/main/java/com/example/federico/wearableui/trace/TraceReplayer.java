@@ -0,0 +1,169 @@
+package com.example.federico.wearableui.trace;
+
+import android.hardware.Sensor;
+
+import com.example.federico.wearableui.representation.Quaternion;
+import com.example.federico.wearableui.services.connection.messages.content.Content;
+import com.example.federico.wearableui.services.imu_handling.SensorFusion;
+import com.example.federico.wearableui.services.imu_handling.filter.IOrientationFilter;
+
+import java.io.IOException;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Feeds a trace recorded by the {@link TraceRecorder} to an {@link IOrientationFilter} through the same
+ * {@link SensorFusion} the {@link com.example.federico.wearableui.services.imu_handling.SensorFusionService} feeds the
+ * live sensor events to, so that the samples are ordered, dropped and reset exactly as on the device. Every fused
+ * orientation is handed to a {@link Listener} together with the messages received from the ring. The Listener can then drive the {@link com.example.federico.wearableui.model.gaze.Gaze},
+ * the {@link com.example.federico.wearableui.model.finger.Finger} and the Viewport, or just check the orientations.
+ *
+ * The replay doesn't depend on the Android runtime and runs as fast as possible, so that the same trace always gives
+ * the same orientations and can be used for benchmarks and regression tests on a plain JVM.
+ */
+public class TraceReplayer {
+
+    /**
+     * Receives the output of a replay.
+     */
+    public interface Listener {
+
+        /**
+         * Called every time the filter has fused a gyroscope sample.
+         * @param orientation a {@link Quaternion} representing the fused orientation, expressed as the SensorFusionService
+         *                    publishes it (with the w component reverted). It's overwritten by the next orientation.
+         * @param timestamp the timestamp of the gyroscope sample, in nanoseconds.
+         */
+        void onOrientation(final Quaternion orientation, final long timestamp);
+
+        /**
+         * Called for every message received from the ring.
+         * @param content the {@link Content} of the message.
+         * @param payload the {@link Quaternion} carried by the message, null if it carries none. It's overwritten by the
+         *                next message.
+         * @param recordedAt the time at which the message has been received, in the {@link System#nanoTime()} time base
+         *                   of the recording device.
+         */
+        void onMessage(final Content content, final Quaternion payload, final long recordedAt);
+
+    }
+
+    /**
+     * Feeds the sensor samples to the filter.
+     */
+    private final SensorFusion fusion;
+
+    /**
+     * Buffer for the rotation vector samples.
+     */
+    private final Quaternion rotationVector = new Quaternion();
+
+    /**
+     * Buffer for the fused orientation, with the w component reverted.
+     */
+    private final Quaternion orientation = new Quaternion();
+
+    /**
+     * Timestamp of the last fused gyroscope sample.
+     */
+    private long timestamp;
+
+    /**
+     * Receives the fused orientations. The replay doesn't calibrate nor adapt the sampling rate of a recording, so only
+     * the orientations are kept.
+     */
+    private final SensorFusion.Listener fusionListener = new SensorFusion.Listener() {
+        @Override
+        public void onStarted(final Quaternion rotationVector, final long sampleTimestamp) { }
+
+        @Override
+        public void onGyroscope(final long sampleTimestamp) { }
+
+        @Override
+        public void onAngularSpeed(final double angularSpeed, final long sampleTimestamp) { }
+
+        @Override
+        public void onOrientation(final Quaternion fused, final long sampleTimestamp) {
+            orientation.copyVec4(fused);
+            orientation.w(-orientation.w());
+            timestamp = sampleTimestamp;
+        }
+
+        @Override
+        public void onPanicReset(final long sampleTimestamp) { }
+    };
+
+    /**
+     * Constructor.
+     * @param filter the {@link IOrientationFilter} to feed the trace to.
+     * @throws IllegalArgumentException if the filter is null.
+     */
+    public TraceReplayer(final IOrientationFilter filter) {
+        if(filter == null) {
+            throw new IllegalArgumentException("The filter can not be null");
+        }
+        this.fusion = new SensorFusion(filter, this.fusionListener);
+    }
+
+    /**
+     * Replays the remaining records of a trace.
+     * @param reader the {@link TraceReader} positioned on the trace. The session record it has already read starts the
+     *               replay.
+     * @param listener the {@link Listener} that receives the output of the replay.
+     * @return the number of orientations handed to the Listener.
+     * @throws IOException if the trace can't be read.
+     */
+    public int replay(final TraceReader reader, final Listener listener) throws IOException {
+        int orientations = 0;
+        this.fusion.restart();
+        while(reader.next()) {
+            switch(reader.getKind()) {
+                case SESSION:
+                    // Starts over, as a newly created service would
+                    this.fusion.restart();
+                    break;
+                case SENSOR_EVENT:
+                    if(this.onSensorEvent(reader.getSensorType(), reader.getTimestamp(), reader.getValues(),
+                            reader.getValueCount())) {
+                        listener.onOrientation(this.orientation, this.timestamp);
+                        orientations++;
+                    }
+                    break;
+                case MESSAGE:
+                    listener.onMessage(reader.getContent(), reader.getPayload(), reader.getRecordedAt());
+                    break;
+            }
+        }
+        return orientations;
+    }
+
+    /**
+     * Feeds a sensor event to the fusion.
+     * @return true if a new orientation has been fused, false otherwise.
+     */
+    private boolean onSensorEvent(final int type, final long eventTimestamp, final float[] values, final int count) {
+        if(type == Sensor.TYPE_ROTATION_VECTOR && count >= 3) {
+            // Same conversion as SensorManager.getQuaternionFromVector, which isn't available outside of Android
+            final float w;
+            if(count >= 4) {
+                w = values[3];
+            }
+            else {
+                final float squared = 1 - values[0] * values[0] - values[1] * values[1] - values[2] * values[2];
+                w = squared > 0 ? (float) Math.sqrt(squared) : 0;
+            }
+            this.rotationVector.setXYZW(values[0], values[1], values[2], -w);
+            this.fusion.onRotationVector(this.rotationVector, eventTimestamp);
+        }
+        else if(type == Sensor.TYPE_ACCELEROMETER && count >= 3) {
+            this.fusion.onAccelerometer(values[0], values[1], values[2]);
+        }
+        else if(type == Sensor.TYPE_GYROSCOPE && count >= 3) {
+            return this.fusion.onGyroscope(values[0], values[1], values[2], eventTimestamp);
+        }
+        return false;
+    }
+
+}
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Point;
 
+import com.example.federico.wearableui.viewport.drawable_content.DrawableContent;
 import com.example.federico.wearableui.viewport.drawable_content.IDrawableContent;
 
 /**
@@ -86,14 +87,21 @@ public class ContinuousViewport extends Viewport implements IContinuousViewport
 
     @Override
     protected void onDraw(final Canvas canvas) {
+        this.frameMetrics.beginFrame();
         for(final IDrawableContent child : this.children) {
             // Draw only if the coordinates are acceptable. This is necessary to avoid rendering errors
             // in a ContinuousViewport, however there's no need to do this on a regular Viewport
             if(child.getViewportCoordinates().x >= -this.width / 2 && child.getViewportCoordinates().x < this.width / 2) {
                 child.drawOnContinuousCanvas(canvas);
+                this.frameMetrics.countChild(child.getVisibility().equals(DrawableContent.Visibility.VISIBLE));
+            }
+            else {
+                this.frameMetrics.countChild(false);
             }
         }
         this.cursor.drawOnCanvas(canvas);
+        this.frameMetrics.endFrame();
+        this.latencyTracer.onFrameDrawn();
     }
 
     @Override
@@ -125,12 +133,13 @@ public class ContinuousViewport extends Viewport implements IContinuousViewport
             this.params.topMargin = (int) ((-this.extraHeight / 2) + (pitch * this.extraHeight / Y_SCROLLING_ROM));
             this.params.leftMargin = (int) ((-this.extraWidth / 2 - this.width) + (yaw * this.width / X_SCROLLING_ROM));
             // Scroll the viewport by setting the margins
-            this.setLayoutParams(this.params);
+            this.applyLayoutParams();
             // Scroll the cursor accordingly, so that it's always inside the field of view
             final Point cursorCoordinates = this.cursor.getViewportCoordinates();
             cursorCoordinates.x -= (this.params.leftMargin - oldLeftMargin);
             cursorCoordinates.y += (this.params.topMargin - oldTopMargin);
             this.cursor.moveTo(cursorCoordinates);
+            this.cursor.updateHover();
         }
         this.invalidate();
     }
@@ -0,0 +1,197 @@
+package com.example.federico.wearableui.viewport;
+
+import com.example.federico.wearableui.metrics.RollingHistogram;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * This class records the rendering metrics of a {@link Viewport}: how long each frame takes to be drawn, how many
+ * children are drawn and culled and how many times the layout parameters are set in between frames. The metrics are
+ * kept in {@link RollingHistogram}s over the last frames, so that an application can read their percentiles or dump them
+ * to a file to understand why frames are dropped.
+ *
+ * The Viewport calls this class from the main thread while it draws, so recording a frame never allocates.
+ */
+public class FrameMetrics implements IFrameMetrics {
+
+    /**
+     * Number of frames over which the percentiles are computed.
+     */
+    private static final int WINDOW = 512;
+
+    /**
+     * Constant specifying the factor between a nano-second and a milli-second.
+     */
+    private static final double NS2MS = 1.0 / 1000000.0;
+
+    /**
+     * Flag indicating whether the metrics are being recorded.
+     */
+    private volatile boolean enabled;
+
+    /**
+     * Durations of the last frames in nanoseconds.
+     */
+    private final RollingHistogram drawDurations = new RollingHistogram(WINDOW);
+
+    /**
+     * Number of children drawn in the last frames.
+     */
+    private final RollingHistogram childrenDrawn = new RollingHistogram(WINDOW);
+
+    /**
+     * Number of children culled in the last frames.
+     */
+    private final RollingHistogram childrenCulled = new RollingHistogram(WINDOW);
+
+    /**
+     * Number of setLayoutParams() calls in between the last frames.
+     */
+    private final RollingHistogram layoutParamsCalls = new RollingHistogram(WINDOW);
+
+    /**
+     * Time at which the frame that is being drawn has started.
+     */
+    private long frameStart;
+
+    /**
+     * Children drawn in the frame that is being drawn.
+     */
+    private int drawn;
+
+    /**
+     * Children culled in the frame that is being drawn.
+     */
+    private int culled;
+
+    /**
+     * setLayoutParams() calls since the last frame.
+     */
+    private int layoutParamsSet;
+
+    /**
+     * Signals that the {@link Viewport} has started drawing a frame.
+     */
+    void beginFrame() {
+        if(this.enabled) {
+            this.drawn = 0;
+            this.culled = 0;
+            this.frameStart = System.nanoTime();
+        }
+    }
+
+    /**
+     * Signals that the {@link Viewport} has gone through one of its children while drawing a frame.
+     * @param drawn true if the child has been drawn, false if it has been culled.
+     */
+    void countChild(final boolean drawn) {
+        if(drawn) {
+            this.drawn++;
+        }
+        else {
+            this.culled++;
+        }
+    }
+
+    /**
+     * Signals that the {@link Viewport} has set its layout parameters.
+     */
+    void countLayoutParamsSet() {
+        this.layoutParamsSet++;
+    }
+
+    /**
+     * Signals that the {@link Viewport} has finished drawing a frame, recording its metrics.
+     */
+    void endFrame() {
+        if(this.enabled) {
+            this.drawDurations.record(System.nanoTime() - this.frameStart);
+            this.childrenDrawn.record(this.drawn);
+            this.childrenCulled.record(this.culled);
+            this.layoutParamsCalls.record(this.layoutParamsSet);
+        }
+        this.layoutParamsSet = 0;
+    }
+
+    /**
+     * Writes a line of the summary for the passed {@link RollingHistogram}.
+     * @param writer the Writer to write the line to.
+     * @param name the name of the metric.
+     * @param histogram the RollingHistogram of the metric.
+     * @param scale the factor each value is multiplied by before being written.
+     * @throws IOException if the line can not be written.
+     */
+    private void writeLine(final Writer writer, final String name, final RollingHistogram histogram, final double scale)
+            throws IOException {
+        writer.write(String.format(Locale.US, "%-22s %10.3f %10.3f %10.3f %10.3f%n", name, histogram.getP50() * scale,
+                histogram.getP95() * scale, histogram.getP99() * scale, histogram.getMax() * scale));
+    }
+
+    @Override
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @Override
+    public RollingHistogram getDrawDurations() {
+        return this.drawDurations;
+    }
+
+    @Override
+    public RollingHistogram getChildrenDrawn() {
+        return this.childrenDrawn;
+    }
+
+    @Override
+    public RollingHistogram getChildrenCulled() {
+        return this.childrenCulled;
+    }
+
+    @Override
+    public RollingHistogram getLayoutParamsCalls() {
+        return this.layoutParamsCalls;
+    }
+
+    @Override
+    public long getFrameCount() {
+        return this.drawDurations.getTotalCount();
+    }
+
+    @Override
+    public void reset() {
+        this.drawDurations.reset();
+        this.childrenDrawn.reset();
+        this.childrenCulled.reset();
+        this.layoutParamsCalls.reset();
+    }
+
+    @Override
+    public void dump(final File file) throws IOException {
+        final Writer writer = new FileWriter(file);
+        try {
+            writer.write("frames: " + this.getFrameCount() + ", window: " + this.drawDurations.getCount() + "\n");
+            writer.write(String.format(Locale.US, "%-22s %10s %10s %10s %10s%n", "metric", "p50", "p95", "p99", "max"));
+            this.writeLine(writer, "draw duration (ms)", this.drawDurations, NS2MS);
+            this.writeLine(writer, "children drawn", this.childrenDrawn, 1);
+            this.writeLine(writer, "children culled", this.childrenCulled, 1);
+            this.writeLine(writer, "setLayoutParams calls", this.layoutParamsCalls, 1);
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+}
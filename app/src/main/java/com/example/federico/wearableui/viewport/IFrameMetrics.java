@@ -0,0 +1,72 @@
+package com.example.federico.wearableui.viewport;
+
+import com.example.federico.wearableui.metrics.RollingHistogram;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Interface that defines the behaviour of the {@link FrameMetrics} of a {@link Viewport}.
+ */
+public interface IFrameMetrics {
+
+    /**
+     * Enables or disables the recording of the metrics. Metrics are disabled by default.
+     * @param enabled true to start recording the metrics of each frame, false to stop.
+     */
+    void setEnabled(final boolean enabled);
+
+    /**
+     * Returns whether or not the metrics are being recorded.
+     * @return true if the metrics are being recorded, false otherwise.
+     */
+    boolean isEnabled();
+
+    /**
+     * Returns the durations of the last frames drawn by the {@link Viewport}.
+     * @return a {@link RollingHistogram} of the time spent in onDraw() for each frame, in nanoseconds.
+     */
+    RollingHistogram getDrawDurations();
+
+    /**
+     * Returns how many children were drawn in the last frames.
+     * @return a {@link RollingHistogram} of the number of children drawn for each frame.
+     */
+    RollingHistogram getChildrenDrawn();
+
+    /**
+     * Returns how many children were skipped (because hidden or out of the drawable area) in the last frames.
+     * @return a {@link RollingHistogram} of the number of children culled for each frame.
+     */
+    RollingHistogram getChildrenCulled();
+
+    /**
+     * Returns how many times the layout parameters of the {@link Viewport} were set (which means a new layout pass)
+     * between each of the last frames.
+     * @return a {@link RollingHistogram} of the number of setLayoutParams() calls for each frame.
+     */
+    RollingHistogram getLayoutParamsCalls();
+
+    /**
+     * Returns how many frames have been recorded.
+     * @return the number of frames drawn since the metrics were enabled or reset.
+     */
+    long getFrameCount();
+
+    /**
+     * Discards all the recorded metrics.
+     */
+    void reset();
+
+    /**
+     * Writes a summary of the recorded metrics (p50, p95, p99 and max of each of them) to the passed file.
+     * @param file the file to write the summary to. If it exists, it is overwritten.
+     * @throws IOException if the file can not be written.
+     */
+    void dump(final File file) throws IOException;
+
+}
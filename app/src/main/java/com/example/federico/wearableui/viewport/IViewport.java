@@ -28,6 +28,13 @@ public interface IViewport {
      */
     Viewport.FieldOfView getFOV();
 
+    /**
+     * Returns the rendering metrics of the Viewport, which can be enabled to record the duration of each frame, how
+     * many children are drawn and culled and how many times the Viewport is laid out again.
+     * @return the {@link IFrameMetrics} of this Viewport.
+     */
+    IFrameMetrics getFrameMetrics();
+
     /**
      * Returns the {@link com.example.federico.wearableui.viewport.drawable_content.cursor.Cursor} for this
      * Viewport.
@@ -148,6 +155,24 @@ public interface IViewport {
      */
     boolean removeContent(final DrawableContent toRemove);
 
+    /**
+     * Returns the topmost {@link DrawableContent} whose bounds contain the passed {@link Point}. The Point has to be
+     * expressed in the Viewport coordinate system. This method doesn't allocate and has to be called on the main thread.
+     * @param point the Point to look for, relative to the Viewport coordinates.
+     * @return the DrawableContent with the greatest Z coordinate that contains the Point, or null if there's none.
+     */
+    DrawableContent findContentAt(final Point point);
+
+    /**
+     * Synchronously fires an event on the topmost {@link DrawableContent} whose bounds contain the passed {@link Point}.
+     * The Point has to be expressed in the Viewport coordinate system. If the event is handled, the Viewport is invalidated.
+     * This method doesn't allocate and has to be called on the main thread.
+     * @param point the Point where the event happened, relative to the Viewport coordinates.
+     * @return true if the event has been handled by a {@link com.example.federico.wearableui.viewport.drawable_content.interaction_listener.EventListener},
+     * false otherwise.
+     */
+    boolean fireEventAt(final Point point);
+
     /**
      * Scrolls the Viewport by modifying the value of its margins based upon the angles passed as argument.
      * A call to this method also refreshes the Viewport by forcing it to redraw itself.
@@ -9,7 +9,6 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Point;
 import android.graphics.Rect;
-import android.os.AsyncTask;
 import android.util.TypedValue;
 import android.view.KeyEvent;
 import android.view.MotionEvent;
@@ -18,6 +17,8 @@ import android.view.WindowManager;
 import android.widget.FrameLayout;
 
 import com.example.federico.wearableui.controller.ViewportActivity;
+import com.example.federico.wearableui.metrics.ILatencyTracer;
+import com.example.federico.wearableui.metrics.LatencyTracer;
 import com.example.federico.wearableui.viewport.drawable_content.DrawableBitmap;
 import com.example.federico.wearableui.viewport.drawable_content.DrawableCircle;
 import com.example.federico.wearableui.viewport.drawable_content.DrawableContent;
@@ -99,11 +100,26 @@ public class Viewport extends View implements IViewport, View.OnTouchListener {
      */
     protected final FrameLayout.LayoutParams params;
 
+    /**
+     * Rendering metrics of the Viewport.
+     */
+    protected final FrameMetrics frameMetrics = new FrameMetrics();
+
+    /**
+     * The {@link ILatencyTracer} that is informed every time a frame has been drawn.
+     */
+    protected final ILatencyTracer latencyTracer = LatencyTracer.getInstance();
+
     /**
      * Flag indicating whether or not the Viewport can be scrolled.
      */
     private boolean locked;
 
+    /**
+     * Buffer used to remap the coordinates of touch events, so that dispatching them doesn't allocate.
+     */
+    private final Point touchPoint = new Point();
+
     /**
      * Remaps a {@link Point} expressed in the Android coordinate system to a Point expressed in the Viewport coordinate system.
      * @param androidCoordinate a Point expressed in the Android coordinate system.
@@ -129,6 +145,15 @@ public class Viewport extends View implements IViewport, View.OnTouchListener {
         return paint;
     }
 
+    /**
+     * Sets the layout parameters of the Viewport, which is how the Viewport is scrolled, keeping track of it in the
+     * {@link FrameMetrics}.
+     */
+    protected void applyLayoutParams() {
+        this.frameMetrics.countLayoutParamsSet();
+        this.setLayoutParams(this.params);
+    }
+
     /**
      * Constructs a Viewport with the dimensions of the device screen.
      * @param context the {@link Context}.
@@ -212,13 +237,17 @@ public class Viewport extends View implements IViewport, View.OnTouchListener {
     @Override
     protected void onDraw(final Canvas canvas) {
         super.onDraw(canvas);
+        this.frameMetrics.beginFrame();
         // Every time the Viewport is invalidated and redraws itself, it also informs its children to redraw themselves.
         // The children know how to draw themselves given the Canvas of the parent
         for(final DrawableContent child : this.children) {
             child.drawOnCanvas(canvas);
+            this.frameMetrics.countChild(child.getVisibility().equals(DrawableContent.Visibility.VISIBLE));
         }
         // The Cursor is redrawn as well, since it's a DrawableContent
         this.cursor.drawOnCanvas(canvas);
+        this.frameMetrics.endFrame();
+        this.latencyTracer.onFrameDrawn();
     }
 
     @Override
@@ -226,6 +255,11 @@ public class Viewport extends View implements IViewport, View.OnTouchListener {
         return new FieldOfView(this.toViewportCoordinates(new Point(-this.params.leftMargin, -this.params.topMargin)));
     }
 
+    @Override
+    public IFrameMetrics getFrameMetrics() {
+        return this.frameMetrics;
+    }
+
     @Override
     public ICursor getCursor() {
         return this.cursor;
@@ -314,81 +348,72 @@ public class Viewport extends View implements IViewport, View.OnTouchListener {
     @Override
     public void addContent(final DrawableContent toAdd) {
         this.children.add(toAdd);
+        // The new content might be drawn over the one under the Cursor
+        this.cursor.invalidateHover();
     }
 
     @Override
     public boolean removeContent(final DrawableContent toRemove) {
-        return this.children.remove(toRemove);
+        final boolean removed = this.children.remove(toRemove);
+        if(removed) {
+            this.cursor.invalidateHover();
+        }
+        return removed;
+    }
+
+    @Override
+    public DrawableContent findContentAt(final Point point) {
+        // The list of children is cycled backwards and the cycle stops as soon as one child whose bounds
+        // contain the point is found. This means that if there are more children whose bounds overlap,
+        // only the one with the greatest Z coordinate will be returned.
+        // An indexed loop is used so that no Iterator is allocated.
+        for(int i = this.children.size() - 1; i >= 0; i--) {
+            final DrawableContent child = this.children.get(i);
+            if(child.isInBounds(point)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean fireEventAt(final Point point) {
+        final DrawableContent hit = this.findContentAt(point);
+        // If a child whose bounds contain the point is found and that child had an active listener
+        // to handle the event, the Viewport is invalidated and, therefore, so are all of its children
+        if(hit != null && hit.fireEvent()) {
+            this.invalidate();
+            return true;
+        }
+        return false;
     }
 
     @Override
     public boolean onTouch(final View v, final MotionEvent event) {
 
         if(event.getAction() == MotionEvent.ACTION_DOWN) {
-            // Whenever a touch event is registered on the Viewport, an event dispatcher task is executed.
-            // Notice how the task works on a copy of the children list to avoid concurrent modification exceptions.
-            // This is not the best solution - the best solution would be to synchronize code
-            final AsyncTask<Void, DrawableContent, Void> eventDispatcher = new AsyncTask<Void, DrawableContent, Void>() {
-
-                private List<DrawableContent> safeCopy = new ArrayList<>();
-
-                @Override
-                protected void onPreExecute() {
-                    super.onPreExecute();
-                    this.safeCopy.addAll(Viewport.this.children);
-                }
-
-                @Override
-                protected Void doInBackground(Void... params) {
-                    // The touch event coordinates are stored in a variable, then are remapped to the
-                    // Viewport coordinate system. However, if the touch event was dispatched by an
-                    // actual touch event, the coordinate that are passed here are relative to the screen
-                    // of the device and not to the actual View in which the event happened. If that's
-                    // the case we have to remap those coordinates and making them relative to the View,
-                    // by adding the current margins to it. If the touch event was dispatched
-                    // programmatically instead (which means it comes from the Cursor), there is no
-                    // need to do that as the coordinates are already relative to the View itself.
-                    // Once we have the event coordinates relative to the View, we can remap those
-                    // coordinates to the Viewport coordinate system. Once that is done, the thread
-                    // checks if that event happened inside the bounds of a child of the Viewport and,
-                    // if that's the case, it informs the child by calling its fireEvent() method.
-                    // Notice how the list of children is cycled backwards and how the cycle stops as
-                    // soon as one child whose bounds contain the event is found.
-                    // This means that if there are more children whose bounds overlap and the event is
-                    // fired between those children's bounds, only the one with the greatest Z coordinate
-                    // will be registering the event.
-                    for(int i = this.safeCopy.size() - 1; i >= 0; i--) {
-                        final Point point = new Point((int) event.getX(), (int) event.getY());
-                        // The click made by the Cursor, is taken as a shift+click and doesn't need
-                        // the following mapping
-                        if(event.getMetaState() != KeyEvent.META_SHIFT_ON) {
-                            point.x -= Viewport.this.params.leftMargin;
-                            point.y -= Viewport.this.params.topMargin;
-                        }
-                        point.x -= Viewport.this.width / 2;
-                        point.y = Viewport.this.height / 2 - point.y;
-                        if(this.safeCopy.get(i).isInBounds(point)) {
-                            this.publishProgress(this.safeCopy.get(i));
-                            return null;
-                        }
-                    }
-                    return null;
-                }
-
-                // If a child whose bounds contain the event is found and that child had an active listener
-                // to handle the event, the Viewport is invalidated and, therefore, so are all of its children
-                @Override
-                protected void onProgressUpdate(DrawableContent... values) {
-                    super.onProgressUpdate(values);
-                    // The event is fired on the main thread just in case it has to update the view
-                    if(values[0].fireEvent()) {
-                        Viewport.this.invalidate();
-                    }
-                }
-            };
-
-            eventDispatcher.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
-
+            // The touch event coordinates are stored in a variable, then are remapped to the
+            // Viewport coordinate system. However, if the touch event was dispatched by an
+            // actual touch event, the coordinate that are passed here are relative to the screen
+            // of the device and not to the actual View in which the event happened. If that's
+            // the case we have to remap those coordinates and making them relative to the View,
+            // by adding the current margins to it. If the touch event was dispatched
+            // programmatically instead (as a shift+click), there is no need to do that as the
+            // coordinates are already relative to the View itself.
+            // Once we have the event coordinates relative to the View, we can remap those
+            // coordinates to the Viewport coordinate system and fire the event on the child
+            // that contains them. Touch events are delivered on the main thread, which is the
+            // same thread that modifies the children, so the hit test can be done synchronously.
+            final Point point = this.touchPoint;
+            point.x = (int) event.getX();
+            point.y = (int) event.getY();
+            if(event.getMetaState() != KeyEvent.META_SHIFT_ON) {
+                point.x -= this.params.leftMargin;
+                point.y -= this.params.topMargin;
+            }
+            point.x -= this.width / 2;
+            point.y = this.height / 2 - point.y;
+            this.fireEventAt(point);
         }
 
         return true;
@@ -410,12 +435,13 @@ public class Viewport extends View implements IViewport, View.OnTouchListener {
             this.params.topMargin = (int) ((-this.extraHeight / 2) + (pitch * this.extraHeight / Y_SCROLLING_ROM));
             this.params.leftMargin = (int) ((-this.extraWidth / 2) + (yaw * this.extraWidth / X_SCROLLING_ROM));
             // Scroll the viewport by setting the margins
-            this.setLayoutParams(this.params);
+            this.applyLayoutParams();
             // Scroll the Cursor accordingly, so that it's always inside the field of view
             final Point cursorCoordinates = this.cursor.getViewportCoordinates();
             cursorCoordinates.x -= (this.params.leftMargin - oldLeftMargin);
             cursorCoordinates.y += (this.params.topMargin - oldTopMargin);
             this.cursor.moveTo(cursorCoordinates);
+            this.cursor.updateHover();
         }
         this.invalidate();
     }
@@ -42,8 +42,16 @@ public class DrawableBitmap extends DrawableContent implements IDrawableBitmap {
 
     @Override
     protected Point computeUpperBound() {
+        final Point upperBound = new Point();
+        this.computeUpperBound(upperBound);
+        return upperBound;
+    }
+
+    @Override
+    protected void computeUpperBound(final Point upperBound) {
         final Point lowerBound = this.getViewportCoordinates();
-        return new Point(lowerBound.x + this.bitmap.getWidth(), lowerBound.y + this.bitmap.getHeight());
+        upperBound.x = lowerBound.x + this.bitmap.getWidth();
+        upperBound.y = lowerBound.y + this.bitmap.getHeight();
     }
 
     @Override
@@ -20,16 +20,6 @@ public class DrawableCircle extends DrawableContent implements IDrawableCircle {
      */
     private int radius;
 
-    /**
-     * Returns the center of the DrawableCircle.
-     * @return a {@link Point} representing the coordinate of the {@link Viewport} on which the center of the
-     * DrawableCircle is located.
-     */
-    private Point getCenter() {
-        final Point viewportCoordinates = this.getViewportCoordinates();
-        return new Point(viewportCoordinates.x + this.radius, viewportCoordinates.y + this.radius);
-    }
-
     /**
      * Constructor.
      * @param viewportCoordinates the {@link Point} representing the coordinate of the {@link Viewport} on which the
@@ -52,8 +42,17 @@ public class DrawableCircle extends DrawableContent implements IDrawableCircle {
 
     @Override
     protected Point computeUpperBound() {
-        final Point center = this.getCenter();
-        return new Point(center.x + this.radius, center.y + this.radius);
+        final Point upperBound = new Point();
+        this.computeUpperBound(upperBound);
+        return upperBound;
+    }
+
+    @Override
+    protected void computeUpperBound(final Point upperBound) {
+        // The center lies one radius away from the bottom left corner, the upper bound one more radius away
+        final Point viewportCoordinates = this.getViewportCoordinates();
+        upperBound.x = viewportCoordinates.x + 2 * this.radius;
+        upperBound.y = viewportCoordinates.y + 2 * this.radius;
     }
 
     @Override
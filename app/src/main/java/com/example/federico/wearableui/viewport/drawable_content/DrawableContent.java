@@ -8,6 +8,7 @@ import android.graphics.Rect;
 import com.example.federico.wearableui.viewport.ContinuousViewport;
 import com.example.federico.wearableui.viewport.Viewport;
 import com.example.federico.wearableui.viewport.drawable_content.interaction_listener.EventListener;
+import com.example.federico.wearableui.viewport.drawable_content.interaction_listener.HoverListener;
 
 
 /**
@@ -37,6 +38,11 @@ public abstract class DrawableContent implements IDrawableContent {
      */
     private EventListener listener;
 
+    /**
+     * HoverListener for the DrawableContent.
+     */
+    private HoverListener hoverListener;
+
     /**
      * Viewport in which the DrawableContent is contained.
      */
@@ -52,6 +58,17 @@ public abstract class DrawableContent implements IDrawableContent {
      */
     private Visibility visibility;
 
+    /**
+     * Buffer holding the upper bound of the DrawableContent while it is being hit-tested. It's reused so that
+     * checking the bounds of the DrawableContent never allocates.
+     */
+    private final Point upperBound = new Point();
+
+    /**
+     * Buffer holding the hitbox of the DrawableContent while it is being hit-tested.
+     */
+    private final Rect hitbox = new Rect();
+
     /**
      * This method maps the passed coordinates relative to the {@link Viewport} coordinate system to the drawing coordinates
      * relative to the Android coordinate system.
@@ -68,17 +85,20 @@ public abstract class DrawableContent implements IDrawableContent {
     }
 
     /**
-     * Returns a {@link Rect} representing the bounds of the DrawableContent. It's important to know that the coordinates
-     * of the vertices of the returned rectangle are relative to the {@link Viewport} coordinate system.
-     * @return a Rectangle representing the bounds of the DrawableContent, expressed in the Viewport coordinate system.
+     * Computes the bounds of the DrawableContent and stores them in the passed {@link Rect}. It's important to know that
+     * the coordinates of the vertices of the rectangle are relative to the {@link Viewport} coordinate system.
+     * @param bounds a Rectangle that will hold the bounds of the DrawableContent, expressed in the Viewport coordinate system.
      */
-    private Rect getBounds() {
+    private void computeBounds(final Rect bounds) {
         final Point lowerBound = this.viewportCoordinates;
-        // The upper bound has to be calculated, and it's done through an abstract method, since it depends on the
+        // The upper bound has to be calculated, and it's done through an overridable method, since it depends on the
         // structure of the drawable content (i.e. a drawable content representing text will compute its upper bound
         // differently from a drawable content representing a rectangle)
-        final Point upperBound = this.computeUpperBound();
-        return new Rect(lowerBound.x, upperBound.y, upperBound.x, lowerBound.y);
+        this.computeUpperBound(this.upperBound);
+        bounds.left = lowerBound.x;
+        bounds.top = this.upperBound.y;
+        bounds.right = this.upperBound.x;
+        bounds.bottom = lowerBound.y;
     }
 
     /**
@@ -110,6 +130,19 @@ public abstract class DrawableContent implements IDrawableContent {
      */
     abstract protected Point computeUpperBound();
 
+    /**
+     * Computes the top right {@link Point} of the DrawableContent and stores it in the passed Point. The coordinates
+     * are relative to the {@link Viewport} coordinate system. This is the variant used when hit-testing, so subclasses
+     * should override it to compute their upper bound without allocating; by default it relies on computeUpperBound().
+     * @param upperBound a Point that will hold the coordinate of the top right corner of the DrawableContent, expressed
+     *                   in the Viewport coordinate system.
+     */
+    protected void computeUpperBound(final Point upperBound) {
+        final Point computed = this.computeUpperBound();
+        upperBound.x = computed.x;
+        upperBound.y = computed.y;
+    }
+
     /**
      * Constructor.
      * @param viewportCoordinates a {@link Point} representing the coordinate of the bottom left point of
@@ -153,21 +186,27 @@ public abstract class DrawableContent implements IDrawableContent {
             return false;
         }
 
-        final Rect dHitbox = this.getBounds();
+        final Rect hitbox = this.hitbox;
+        this.computeBounds(hitbox);
+        if(this.isPointInsideHitbox(point, hitbox)) {
+            return true;
+        }
         if(this.viewport instanceof ContinuousViewport) {
-            final Rect wHitbox = new Rect(dHitbox);
-            // Wrap around of bounds in case the Viewport is a ContinuousViewport
-            if(this.computeUpperBound().x > this.viewport.getViewportWidth() / 2 && this.viewportCoordinates.x < this.viewport.getViewportWidth() / 2) {
-                wHitbox.left -= this.viewport.getViewportWidth();
-                wHitbox.right -= this.viewport.getViewportWidth();
+            // Wrap around of bounds in case the Viewport is a ContinuousViewport. The hitbox buffer is shifted
+            // in place, since the direct hitbox has already been checked
+            final int viewportWidth = this.viewport.getViewportWidth();
+            if(hitbox.right > viewportWidth / 2 && hitbox.left < viewportWidth / 2) {
+                hitbox.left -= viewportWidth;
+                hitbox.right -= viewportWidth;
+                return this.isPointInsideHitbox(point, hitbox);
             }
-            else if(this.viewportCoordinates.x < -this.viewport.getViewportWidth() / 2 && this.computeUpperBound().x > -this.viewport.getViewportWidth() / 2) {
-                wHitbox.left += this.viewport.getViewportWidth();
-                wHitbox.right += this.viewport.getViewportWidth();
+            else if(hitbox.left < -viewportWidth / 2 && hitbox.right > -viewportWidth / 2) {
+                hitbox.left += viewportWidth;
+                hitbox.right += viewportWidth;
+                return this.isPointInsideHitbox(point, hitbox);
             }
-            return((this.isPointInsideHitbox(point, dHitbox) || this.isPointInsideHitbox(point, wHitbox)));
         }
-        return this.isPointInsideHitbox(point, dHitbox);
+        return false;
     }
 
 
@@ -188,6 +227,44 @@ public abstract class DrawableContent implements IDrawableContent {
         }
     }
 
+    @Override
+    public boolean hasEventListener() {
+        return this.listener != null;
+    }
+
+    @Override
+    public boolean fireHoverEnter() {
+        if(this.hoverListener == null) {
+            return false;
+        }
+        else {
+            this.hoverListener.onHoverEnter(this);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean fireHoverDwell(final long dwellTime) {
+        if(this.hoverListener == null) {
+            return false;
+        }
+        else {
+            this.hoverListener.onHoverDwell(this, dwellTime);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean fireHoverExit() {
+        if(this.hoverListener == null) {
+            return false;
+        }
+        else {
+            this.hoverListener.onHoverExit(this);
+            return true;
+        }
+    }
+
     @Override
     public Paint getPaint() {
         return this.paint;
@@ -213,6 +290,11 @@ public abstract class DrawableContent implements IDrawableContent {
         this.listener = listener;
     }
 
+    @Override
+    public void setHoverListener(final HoverListener listener) {
+        this.hoverListener = listener;
+    }
+
     @Override
     public void setColor(final int color) {
         this.paint.setColor(color);
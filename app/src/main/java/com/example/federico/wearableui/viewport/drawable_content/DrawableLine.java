@@ -45,8 +45,16 @@ public class DrawableLine extends DrawableContent implements IDrawableLine {
 
     @Override
     protected Point computeUpperBound() {
+        final Point upperBound = new Point();
+        this.computeUpperBound(upperBound);
+        return upperBound;
+    }
+
+    @Override
+    protected void computeUpperBound(final Point upperBound) {
         final Point viewportCoordinates = this.getViewportCoordinates();
-        return new Point(viewportCoordinates.x + this.deltaX, viewportCoordinates.y + this.deltaY);
+        upperBound.x = viewportCoordinates.x + this.deltaX;
+        upperBound.y = viewportCoordinates.y + this.deltaY;
     }
 
     @Override
@@ -36,4 +36,11 @@ public class DrawablePoint extends DrawableContent {
     protected Point computeUpperBound() {
         return this.getViewportCoordinates();
     }
+
+    @Override
+    protected void computeUpperBound(final Point upperBound) {
+        final Point viewportCoordinates = this.getViewportCoordinates();
+        upperBound.x = viewportCoordinates.x;
+        upperBound.y = viewportCoordinates.y;
+    }
 }
@@ -48,8 +48,16 @@ public class DrawableRectangle extends DrawableContent implements IDrawableRecta
 
     @Override
     protected Point computeUpperBound() {
+        final Point upperBound = new Point();
+        this.computeUpperBound(upperBound);
+        return upperBound;
+    }
+
+    @Override
+    protected void computeUpperBound(final Point upperBound) {
         final Point viewportCoordinates = this.getViewportCoordinates();
-        return new Point(viewportCoordinates.x + this.width, viewportCoordinates.y + this.height);
+        upperBound.x = viewportCoordinates.x + this.width;
+        upperBound.y = viewportCoordinates.y + this.height;
     }
 
     @Override
@@ -42,10 +42,15 @@ public class DrawableText extends DrawableContent implements IDrawableText {
     @Override
     protected Point computeUpperBound() {
         final Point upperBound = new Point();
+        this.computeUpperBound(upperBound);
+        return upperBound;
+    }
+
+    @Override
+    protected void computeUpperBound(final Point upperBound) {
         final float size = this.getPaint().getTextSize();
         upperBound.y = (int) (this.getViewportCoordinates().y + size);
         upperBound.x = (int) (this.getViewportCoordinates().x + this.getPaint().measureText(this.content));
-        return upperBound;
     }
 
     @Override
@@ -6,6 +6,7 @@ import android.graphics.Point;
 
 import com.example.federico.wearableui.viewport.Viewport;
 import com.example.federico.wearableui.viewport.drawable_content.interaction_listener.EventListener;
+import com.example.federico.wearableui.viewport.drawable_content.interaction_listener.HoverListener;
 
 
 /**
@@ -51,6 +52,35 @@ public interface IDrawableContent {
      */
     boolean fireEvent();
 
+    /**
+     * Tells whether an {@link EventListener} is set for this DrawableContent, which means that this DrawableContent
+     * reacts to clicks.
+     * @return true if an EventListener is set, false otherwise.
+     */
+    boolean hasEventListener();
+
+    /**
+     * Notifies the {@link HoverListener} of this DrawableContent, if any, that the
+     * {@link com.example.federico.wearableui.viewport.drawable_content.cursor.Cursor} has entered its bounds.
+     * @return true if the event has been handled by a HoverListener, false otherwise.
+     */
+    boolean fireHoverEnter();
+
+    /**
+     * Notifies the {@link HoverListener} of this DrawableContent, if any, that the
+     * {@link com.example.federico.wearableui.viewport.drawable_content.cursor.Cursor} is still inside its bounds.
+     * @param dwellTime how many milliseconds have passed since the Cursor entered this DrawableContent.
+     * @return true if the event has been handled by a HoverListener, false otherwise.
+     */
+    boolean fireHoverDwell(final long dwellTime);
+
+    /**
+     * Notifies the {@link HoverListener} of this DrawableContent, if any, that the
+     * {@link com.example.federico.wearableui.viewport.drawable_content.cursor.Cursor} has left its bounds.
+     * @return true if the event has been handled by a HoverListener, false otherwise.
+     */
+    boolean fireHoverExit();
+
     /**
      * Returns the {@link Paint} used by this DrawableContent to draw itself.
      * @return the Paint used by this DrawableContent to draw itself.
@@ -81,6 +111,12 @@ public interface IDrawableContent {
      */
     void setEventListener(final EventListener listener);
 
+    /**
+     * Sets the passed {@link HoverListener} for this DrawableContent.
+     * @param listener a HoverListener for this DrawableContent.
+     */
+    void setHoverListener(final HoverListener listener);
+
     /**
      * Sets the color used by this DrawableContent to draw itself.
      * @param color an int representing a color.
@@ -4,11 +4,7 @@ import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Point;
 import android.os.SystemClock;
-import android.view.KeyEvent;
-import android.view.MotionEvent;
 
-import com.example.federico.wearableui.viewport.ContinuousViewport;
-import com.example.federico.wearableui.viewport.IContinuousViewport;
 import com.example.federico.wearableui.viewport.Viewport;
 import com.example.federico.wearableui.viewport.drawable_content.DrawableContent;
 
@@ -45,12 +41,61 @@ public class Cursor extends DrawableContent implements ICursor {
     private final Point screen;
 
     /**
-     * Returns the coordinate of the center of the Cursor expressed in the {@link Viewport} coordinate system.
-     * @return a {@link Point} representing the coordinates of the center of the Cursor expressed in the Viewport coordinate system.
+     * Buffer holding the center of the Cursor, reused on every click so that clicking doesn't allocate.
      */
-    private Point getCenter() {
+    private final Point center = new Point();
+
+    /**
+     * Time in nanoseconds that the last click took to reach the {@link com.example.federico.wearableui.viewport.drawable_content.interaction_listener.EventListener}
+     * of the clicked content.
+     */
+    private long lastClickLatency;
+
+    /**
+     * The {@link DrawableContent} that is currently under the Cursor, or null if there's none.
+     */
+    private DrawableContent hovered;
+
+    /**
+     * Flag indicating that the content of the {@link Viewport} has changed, so the hovered {@link DrawableContent}
+     * has to be looked up again among all the contents.
+     */
+    private boolean hoverInvalidated;
+
+    /**
+     * Measures the dwell on the hovered {@link DrawableContent} and clicks it once the dwell time has elapsed. A content
+     * is clicked only once per hover; the Cursor has to leave it and enter it again to click it again.
+     */
+    private final DwellTimer dwellTimer;
+
+    /**
+     * Clicks the hovered {@link DrawableContent}, once the Cursor has dwelled on it for the dwell time.
+     */
+    private void clickHovered() {
+        final DrawableContent content = this.hovered;
+        // The event is fired through the same path used by clicks
+        if(content != null && content.hasEventListener() && content.fireEvent()) {
+            this.getContainer().invalidate();
+        }
+    }
+
+    /**
+     * Notifies the hovered {@link DrawableContent} that the Cursor is still over it. The click that ends a dwell isn't
+     * fired from here, since a Cursor held still isn't moved at all: the {@link DwellTimer} schedules it.
+     * @param content the hovered DrawableContent.
+     */
+    private void dwellOn(final DrawableContent content) {
+        content.fireHoverDwell(this.dwellTimer.getDwell());
+    }
+
+    /**
+     * Computes the coordinate of the center of the Cursor expressed in the {@link Viewport} coordinate system.
+     * @param center a {@link Point} that will hold the coordinates of the center of the Cursor expressed in the Viewport coordinate system.
+     */
+    private void computeCenter(final Point center) {
         final Point viewportCoordinates = this.getViewportCoordinates();
-        return new Point(viewportCoordinates.x + CROSSHAIR_LENGTH / 2, viewportCoordinates.y + CROSSHAIR_HEIGHT / 2);
+        center.x = viewportCoordinates.x + CROSSHAIR_LENGTH / 2;
+        center.y = viewportCoordinates.y + CROSSHAIR_HEIGHT / 2;
     }
 
     /**
@@ -62,6 +107,27 @@ public class Cursor extends DrawableContent implements ICursor {
     public Cursor(final Viewport viewport, final Paint paint, final Point screen) {
         super(new Point(0, 0), viewport, paint);
         this.screen = screen;
+        this.dwellTimer = new DwellTimer(new DwellTimer.Scheduler() {
+            @Override
+            public boolean postDelayed(final Runnable action, final long delayMillis) {
+                return getContainer().postDelayed(action, delayMillis);
+            }
+
+            @Override
+            public boolean removeCallbacks(final Runnable action) {
+                return getContainer().removeCallbacks(action);
+            }
+
+            @Override
+            public long uptimeMillis() {
+                return SystemClock.uptimeMillis();
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                clickHovered();
+            }
+        });
     }
 
     @Override
@@ -79,23 +145,118 @@ public class Cursor extends DrawableContent implements ICursor {
 
     @Override
     protected Point computeUpperBound() {
+        final Point upperBound = new Point();
+        this.computeUpperBound(upperBound);
+        return upperBound;
+    }
+
+    @Override
+    protected void computeUpperBound(final Point upperBound) {
         final Point viewportCoordinates = this.getViewportCoordinates();
-        return new Point(viewportCoordinates.x + CROSSHAIR_LENGTH, viewportCoordinates.y + CROSSHAIR_HEIGHT);
+        upperBound.x = viewportCoordinates.x + CROSSHAIR_LENGTH;
+        upperBound.y = viewportCoordinates.y + CROSSHAIR_HEIGHT;
+    }
+
+    @Override
+    public boolean click() {
+        final long clickStart = System.nanoTime();
+        // The center of the crosshair is already expressed in the Viewport coordinate system, so the event
+        // is fired directly on the content below it, without going through a MotionEvent
+        this.computeCenter(this.center);
+        final boolean handled = this.getContainer().fireEventAt(this.center);
+        this.lastClickLatency = System.nanoTime() - clickStart;
+        return handled;
+    }
+
+    @Override
+    public long getLastClickLatency() {
+        return this.lastClickLatency;
     }
 
     @Override
-    public void click() {
-        final Point remappedCenter = this.getCenter();
+    public void updateHover() {
+        this.computeCenter(this.center);
+        final DrawableContent current = this.hovered;
+        // In the common case the Cursor is still inside the content it was hovering, so only that content
+        // is tested and the others aren't looked at. Keep in mind that this means a content that is still
+        // hovered keeps the hover even if the Cursor is also over another content drawn on top of it.
+        if(current != null && !this.hoverInvalidated && current.isInBounds(this.center)) {
+            this.dwellOn(current);
+            return;
+        }
+        // Otherwise all the contents of the Viewport are tested to find the new hovered one
+        this.hoverInvalidated = false;
         final Viewport viewport = this.getContainer();
-        // Check for the continuous viewport
-        remappedCenter.x += (viewport instanceof ContinuousViewport ?
-                ((IContinuousViewport) viewport).getActualWidth() / 2 : viewport.getViewportWidth() / 2);
-        remappedCenter.y = -remappedCenter.y + viewport.getViewportHeight() / 2;
-        // Dispatch the click event in the center of the crosshair
-        final MotionEvent toDispatch = MotionEvent.obtain(SystemClock.uptimeMillis(),
-                SystemClock.uptimeMillis() + 20, MotionEvent.ACTION_DOWN, remappedCenter.x, remappedCenter.y, KeyEvent.META_SHIFT_ON);
+        final DrawableContent next = viewport.findContentAt(this.center);
+        if(next == current) {
+            if(current != null) {
+                this.dwellOn(current);
+            }
+            return;
+        }
+        boolean handled = false;
+        if(current != null) {
+            handled = current.fireHoverExit();
+        }
+        this.hovered = next;
+        this.dwellTimer.stop();
+        if(next != null) {
+            this.dwellTimer.start();
+            handled |= next.fireHoverEnter();
+        }
+        // If the hover change has been handled by a listener, the Viewport is invalidated so that any
+        // feedback given by the listener is displayed
+        if(handled) {
+            viewport.invalidate();
+        }
+    }
+
+    @Override
+    public void invalidateHover() {
+        this.hoverInvalidated = true;
+    }
+
+    @Override
+    public DrawableContent getHoveredContent() {
+        return this.hovered;
+    }
+
+    @Override
+    public void setDwellTime(final long dwellTime) {
+        this.dwellTimer.setDwellTime(dwellTime);
+    }
+
+    @Override
+    public long getDwellTime() {
+        return this.dwellTimer.getDwellTime();
+    }
 
-        this.getContainer().dispatchTouchEvent(toDispatch);
+    @Override
+    public float getDwellProgress() {
+        if(this.hovered == null || !this.hovered.hasEventListener()) {
+            return 0f;
+        }
+        // The progress is computed from the current time, so that an indicator drawn every frame advances
+        // smoothly even if the Cursor isn't being moved
+        return this.dwellTimer.getProgress();
+    }
+
+    /**
+     * Returns the smallest rotation of the Finger that moves the Cursor on a screen of the passed size, that is the angle
+     * covered by one pixel of the range of motion. Finger orientations that differ by less than this are indistinguishable
+     * on that screen.
+     * @param screenWidth the width of the screen in pixels.
+     * @param screenHeight the height of the screen in pixels.
+     * @return the degrees of the smallest perceptible rotation of the Finger.
+     */
+    public static float getDegreesPerPixel(final int screenWidth, final int screenHeight) {
+        if(screenWidth <= 0 || screenHeight <= 0) {
+            throw new IllegalArgumentException("The screen dimensions must be positive, got " + screenWidth + "x" + screenHeight);
+        }
+        // Same pixels per degree used by moveAccordingly, which truncates them to an integer
+        final int xPixelsPerDegree = Math.max(1, screenWidth / X_SCROLLING_ROM);
+        final int yPixelsPerDegree = Math.max(1, screenHeight / Y_SCROLLING_ROM);
+        return 1f / Math.max(xPixelsPerDegree, yPixelsPerDegree);
     }
 
     @Override
@@ -108,6 +269,7 @@ public class Cursor extends DrawableContent implements ICursor {
             final int y = (int) (zero.y + (deltaPitch * (this.screen.y / Y_SCROLLING_ROM)));
             final int x = (int) (zero.x + (deltaYaw * (this.screen.x / X_SCROLLING_ROM)));
             this.moveTo(new Point(x, y));
+            this.updateHover();
         }
     }
 
@@ -0,0 +1,187 @@
+package com.example.federico.wearableui.viewport.drawable_content.cursor;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * This class measures how long the {@link Cursor} has been dwelling on a
+ * {@link com.example.federico.wearableui.viewport.drawable_content.DrawableContent}, and runs a task once the dwell time
+ * has elapsed. The check is scheduled through a {@link Scheduler} rather than done when the Cursor moves, since a Cursor
+ * that is held still over a content doesn't move at all: no orientation arrives while the Finger is inside the dead band
+ * of the ring, and the Cursor isn't redrawn once its angles have settled.
+ *
+ * Instances are not thread safe and are meant to be used from the thread the Scheduler runs its tasks on.
+ */
+public class DwellTimer {
+
+    /**
+     * Interface of the object that runs the dwell checks, usually the {@link com.example.federico.wearableui.viewport.Viewport},
+     * whose Handler runs them on the Main Thread.
+     */
+    public interface Scheduler {
+
+        /**
+         * Runs the passed task after the passed delay.
+         * @param action the task to run.
+         * @param delayMillis the delay in milliseconds.
+         * @return true if the task has been scheduled.
+         */
+        boolean postDelayed(final Runnable action, final long delayMillis);
+
+        /**
+         * Removes the passed task, if it's waiting to be run.
+         * @param action the task to remove.
+         * @return true if the task has been removed.
+         */
+        boolean removeCallbacks(final Runnable action);
+
+        /**
+         * Returns the current time on the clock the delays are measured with.
+         * @return the current time in milliseconds.
+         */
+        long uptimeMillis();
+
+    }
+
+    /**
+     * The Scheduler that runs the dwell checks.
+     */
+    private final Scheduler scheduler;
+    /**
+     * The task run once the dwell time has elapsed.
+     */
+    private final Runnable onDwell;
+    /**
+     * The task that checks whether the dwell time has elapsed.
+     */
+    private final Runnable check = new Runnable() {
+        @Override
+        public void run() {
+            checkDwell();
+        }
+    };
+
+    /**
+     * How many milliseconds the Cursor has to dwell on a content before onDwell is run, 0 to never run it.
+     */
+    private long dwellTime;
+    /**
+     * The time, in milliseconds, the current dwell started at.
+     */
+    private long start;
+    /**
+     * A flag indicating whether a dwell is in progress.
+     */
+    private boolean running;
+    /**
+     * A flag indicating whether onDwell has already been run for the current dwell.
+     */
+    private boolean elapsed;
+
+    /**
+     * Constructor.
+     * @param scheduler the {@link Scheduler} that runs the dwell checks.
+     * @param onDwell the task run once the dwell time has elapsed. It's run once per dwell.
+     */
+    public DwellTimer(final Scheduler scheduler, final Runnable onDwell) {
+        this.scheduler = scheduler;
+        this.onDwell = onDwell;
+    }
+
+    /**
+     * Checks whether the dwell time has elapsed, and if so runs onDwell. Otherwise it schedules itself again, since
+     * the dwell time may have been made longer after the check had been scheduled.
+     */
+    private void checkDwell() {
+        if(!this.running || this.elapsed || this.dwellTime == 0) {
+            return;
+        }
+        final long remaining = this.dwellTime - this.getDwell();
+        if(remaining > 0) {
+            this.scheduler.postDelayed(this.check, remaining);
+            return;
+        }
+        this.elapsed = true;
+        this.onDwell.run();
+    }
+
+    /**
+     * Schedules the next check of the current dwell, replacing the one already scheduled.
+     */
+    private void scheduleCheck() {
+        this.scheduler.removeCallbacks(this.check);
+        if(this.running && !this.elapsed && this.dwellTime > 0) {
+            this.scheduler.postDelayed(this.check, Math.max(0, this.dwellTime - this.getDwell()));
+        }
+    }
+
+    /**
+     * Sets the dwell time. A dwell in progress is checked against the new time.
+     * @param dwellTime how many milliseconds the Cursor has to dwell on a content before onDwell is run, 0 to never run it.
+     */
+    public void setDwellTime(final long dwellTime) {
+        if(dwellTime < 0) {
+            throw new IllegalArgumentException("The dwell time can not be negative.");
+        }
+        this.dwellTime = dwellTime;
+        this.scheduleCheck();
+    }
+
+    /**
+     * Returns the dwell time.
+     * @return how many milliseconds the Cursor has to dwell on a content before onDwell is run, 0 if it's never run.
+     */
+    public long getDwellTime() {
+        return this.dwellTime;
+    }
+
+    /**
+     * Starts a new dwell, stopping the one in progress.
+     */
+    public void start() {
+        this.start = this.scheduler.uptimeMillis();
+        this.running = true;
+        this.elapsed = false;
+        this.scheduleCheck();
+    }
+
+    /**
+     * Stops the dwell in progress, if any.
+     */
+    public void stop() {
+        this.running = false;
+        this.scheduler.removeCallbacks(this.check);
+    }
+
+    /**
+     * Returns how long the current dwell has lasted.
+     * @return the duration of the dwell in milliseconds, 0 if no dwell is in progress.
+     */
+    public long getDwell() {
+        return this.running ? this.scheduler.uptimeMillis() - this.start : 0;
+    }
+
+    /**
+     * Tells whether onDwell has been run for the current dwell.
+     * @return true if the dwell time of the current dwell has elapsed, false otherwise.
+     */
+    public boolean hasElapsed() {
+        return this.running && this.elapsed;
+    }
+
+    /**
+     * Returns the progress of the current dwell.
+     * @return a value from 0 (the dwell just started, none is in progress or the dwell time is 0) to 1 (onDwell has been run).
+     */
+    public float getProgress() {
+        if(!this.running || this.dwellTime == 0) {
+            return 0f;
+        }
+        if(this.elapsed) {
+            return 1f;
+        }
+        return Math.min(1f, (float) this.getDwell() / this.dwellTime);
+    }
+
+}
@@ -4,6 +4,7 @@ import android.graphics.Point;
 
 import com.example.federico.wearableui.representation.EulerAngles;
 import com.example.federico.wearableui.representation.Quaternion;
+import com.example.federico.wearableui.viewport.drawable_content.DrawableContent;
 import com.example.federico.wearableui.viewport.drawable_content.IDrawableContent;
 
 /**
@@ -16,9 +17,60 @@ import com.example.federico.wearableui.viewport.drawable_content.IDrawableConten
 public interface ICursor extends IDrawableContent {
 
     /**
-     * Dispatches a {@link android.view.MotionEvent} (click) in the center of the Cursor.
+     * Clicks in the center of the Cursor, by synchronously firing an event on the topmost
+     * {@link com.example.federico.wearableui.viewport.drawable_content.DrawableContent} below it.
+     * @return true if the click has been handled by a {@link com.example.federico.wearableui.viewport.drawable_content.interaction_listener.EventListener},
+     * false otherwise.
      */
-    void click();
+    boolean click();
+
+    /**
+     * Returns how long the last click took to go from the Cursor to the
+     * {@link com.example.federico.wearableui.viewport.drawable_content.interaction_listener.EventListener} of the clicked content.
+     * @return the latency of the last click in nanoseconds (0 if no click has happened yet).
+     */
+    long getLastClickLatency();
+
+    /**
+     * Updates the {@link DrawableContent} that is under the Cursor, notifying the hover listeners of the contents
+     * that the Cursor has entered, is dwelling on or has left. As long as the Cursor stays inside the content it is
+     * hovering, only that content is tested, so an update costs O(1). This is called every time the Cursor moves.
+     */
+    void updateHover();
+
+    /**
+     * Forces the next call to updateHover() to look for the hovered {@link DrawableContent} among all the contents of
+     * the {@link com.example.federico.wearableui.viewport.Viewport}. This has to be called when contents are added or removed.
+     */
+    void invalidateHover();
+
+    /**
+     * Returns the {@link DrawableContent} that is currently under the Cursor.
+     * @return the hovered DrawableContent, or null if the Cursor isn't over any content.
+     */
+    DrawableContent getHoveredContent();
+
+    /**
+     * Enables hands-free selection: when the Cursor dwells on a {@link DrawableContent} that has an
+     * {@link com.example.federico.wearableui.viewport.drawable_content.interaction_listener.EventListener} for the
+     * passed amount of time, an event is fired on such content, as if it was clicked. The content is clicked only
+     * once per hover.
+     * @param dwellTime how many milliseconds the Cursor has to dwell on a content to click it, 0 to disable dwell-to-click.
+     */
+    void setDwellTime(final long dwellTime);
+
+    /**
+     * Returns how long the Cursor has to dwell on a {@link DrawableContent} to click it.
+     * @return the dwell time in milliseconds, 0 if dwell-to-click is disabled.
+     */
+    long getDwellTime();
+
+    /**
+     * Returns the progress of the dwell on the hovered {@link DrawableContent}, which can be used to draw a dwell indicator.
+     * @return a value from 0 (the dwell just started, or there's nothing to click under the Cursor) to 1 (the content
+     * has been clicked).
+     */
+    float getDwellProgress();
 
     /**
      * Moves the Cursor according to the angles passed as parameters.
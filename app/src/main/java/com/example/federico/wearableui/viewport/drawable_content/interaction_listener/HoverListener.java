@@ -0,0 +1,37 @@
+package com.example.federico.wearableui.viewport.drawable_content.interaction_listener;
+
+
+import com.example.federico.wearableui.viewport.drawable_content.DrawableContent;
+
+/**
+ * {@author Federico Giannoni}
+ */
+
+/**
+ * Interface that defines the behaviour of a generic HoverListener for a {@link DrawableContent}. A HoverListener is
+ * notified as the {@link com.example.federico.wearableui.viewport.drawable_content.cursor.Cursor} enters, stays over
+ * and exits the DrawableContent to which it is associated.
+ */
+public interface HoverListener {
+
+    /**
+     * Callback called when the Cursor enters the bounds of the {@link DrawableContent} to which this listener is associated.
+     * @param content the DrawableContent that is now under the Cursor.
+     */
+    void onHoverEnter(final DrawableContent content);
+
+    /**
+     * Callback called each time the Cursor is updated while it stays inside the bounds of the {@link DrawableContent}
+     * to which this listener is associated.
+     * @param content the DrawableContent that is under the Cursor.
+     * @param dwellTime how many milliseconds have passed since the Cursor entered the DrawableContent.
+     */
+    void onHoverDwell(final DrawableContent content, final long dwellTime);
+
+    /**
+     * Callback called when the Cursor leaves the bounds of the {@link DrawableContent} to which this listener is associated.
+     * @param content the DrawableContent that is no longer under the Cursor.
+     */
+    void onHoverExit(final DrawableContent content);
+
+}
@@ -0,0 +1,69 @@
+package com.example.federico.wearableui;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Times the kernels compared by the benchmarks that live with the unit tests. The benchmarks are not unit tests: each
+ * one has a main method and has to be run on its own, as a unit test run is too short and too noisy to time anything.
+ */
+public final class Benchmark {
+
+    /**
+     * A piece of code whose cost is measured.
+     */
+    public interface Kernel {
+
+        /**
+         * Runs the measured code a number of times.
+         * @param iterations how many times the code has to run.
+         * @return any value computed by the code, so that the computations can't be optimized away.
+         */
+        float run(int iterations);
+
+    }
+
+    /**
+     * Collects the values returned by the kernels. Being volatile, the JIT can't prove that they are never used.
+     */
+    private static volatile float sink;
+
+    private Benchmark() {}
+
+    /**
+     * Times some kernels. The kernels take turns in every round, so that they all run in the same conditions, and run
+     * for twice the passed rounds: the first half warms up the code, the second half is measured.
+     * @param rounds the number of measured rounds.
+     * @param iterations the number of iterations of every kernel in a round.
+     * @param kernels the {@link Kernel}s to compare.
+     * @return the average time per iteration of every kernel, in nanoseconds, in the same order as the kernels.
+     * @throws IllegalArgumentException if the rounds or the iterations are not positive, or if no kernel is passed.
+     */
+    public static double[] compare(final int rounds, final int iterations, final Kernel... kernels) {
+        if(rounds <= 0 || iterations <= 0) {
+            throw new IllegalArgumentException("The rounds and the iterations of a benchmark must be positive");
+        }
+        if(kernels.length == 0) {
+            throw new IllegalArgumentException("A benchmark needs at least one kernel");
+        }
+        final long[] elapsed = new long[kernels.length];
+        float values = 0;
+        for(int round = 0; round < rounds * 2; round++) {
+            for(int k = 0; k < kernels.length; k++) {
+                final long start = System.nanoTime();
+                values += kernels[k].run(iterations);
+                if(round >= rounds) {
+                    elapsed[k] += System.nanoTime() - start;
+                }
+            }
+        }
+        sink = values;
+        final double[] nanos = new double[kernels.length];
+        for(int k = 0; k < kernels.length; k++) {
+            nanos[k] = (double) elapsed[k] / rounds / iterations;
+        }
+        return nanos;
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.example.federico.wearableui.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LatencyTracer}.
+ */
+public class LatencyTracerTest {
+
+    private ILatencyTracer tracer;
+
+    @Before
+    public void setUp() throws Exception {
+        this.tracer = LatencyTracer.getInstance();
+        this.tracer.setEnabled(true);
+        this.tracer.reset();
+    }
+
+    @Test
+    public void gazeTrace_recordsMotionToPhotonOnce() throws Exception {
+        final long origin = this.tracer.now() - 5000000L;
+        this.tracer.onGazeComputed(origin);
+        this.tracer.onViewportRedraw();
+        this.tracer.onFrameDrawn();
+        // A second frame without new orientations must not close the trace again
+        this.tracer.onFrameDrawn();
+
+        final RollingHistogram motionToPhoton = this.tracer.getHistogram(LatencyTracer.Stage.MOTION_TO_PHOTON);
+        assertEquals(1, motionToPhoton.getCount());
+        assertTrue(motionToPhoton.getMax() >= 5000000L);
+        assertEquals(1, this.tracer.getHistogram(LatencyTracer.Stage.VIEWPORT_REDRAW_DISPATCH).getCount());
+        assertEquals(1, this.tracer.getHistogram(LatencyTracer.Stage.DRAW).getCount());
+        assertEquals(0, this.tracer.getHistogram(LatencyTracer.Stage.FINGER_TO_PHOTON).getCount());
+    }
+
+    @Test
+    public void fingerTrace_isIndependentFromGaze() throws Exception {
+        this.tracer.onFingerComputed(this.tracer.now());
+        this.tracer.onCursorRedraw();
+        this.tracer.onFrameDrawn();
+
+        assertEquals(1, this.tracer.getHistogram(LatencyTracer.Stage.FINGER_TO_PHOTON).getCount());
+        assertEquals(0, this.tracer.getHistogram(LatencyTracer.Stage.MOTION_TO_PHOTON).getCount());
+    }
+
+    @Test
+    public void disabled_recordsNothing() throws Exception {
+        this.tracer.setEnabled(false);
+        this.tracer.record(LatencyTracer.Stage.FUSION, 10);
+        this.tracer.recordSince(LatencyTracer.Stage.FUSION, this.tracer.now());
+        assertEquals(0, this.tracer.getHistogram(LatencyTracer.Stage.FUSION).getCount());
+    }
+
+    @Test
+    public void recordSince_ignoresMissingTimestamps() throws Exception {
+        this.tracer.recordSince(LatencyTracer.Stage.GAZE_DISPATCH, 0);
+        assertEquals(0, this.tracer.getHistogram(LatencyTracer.Stage.GAZE_DISPATCH).getCount());
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.example.federico.wearableui.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link RollingHistogram}.
+ */
+public class RollingHistogramTest {
+
+    @Test
+    public void percentiles_useNearestRank() throws Exception {
+        final RollingHistogram histogram = new RollingHistogram(100);
+        for(int i = 100; i >= 1; i--) {
+            histogram.record(i);
+        }
+        assertEquals(50, histogram.getP50());
+        assertEquals(95, histogram.getP95());
+        assertEquals(99, histogram.getP99());
+        assertEquals(100, histogram.getMax());
+        assertEquals(1, histogram.getPercentile(0));
+    }
+
+    @Test
+    public void window_dropsOldestSamples() throws Exception {
+        final RollingHistogram histogram = new RollingHistogram(4);
+        for(int i = 1; i <= 10; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(4, histogram.getCount());
+        assertEquals(10, histogram.getTotalCount());
+        // Only 7000, 8000, 9000 and 10000 are left in the window
+        assertEquals(8000, histogram.getP50());
+        assertEquals(10000, histogram.getMax());
+    }
+
+    @Test
+    public void empty_returnsZero() throws Exception {
+        final RollingHistogram histogram = new RollingHistogram(8);
+        assertEquals(0, histogram.getP99());
+        histogram.record(42);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPercentile_isRejected() throws Exception {
+        new RollingHistogram(8).getPercentile(101);
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.example.federico.wearableui.model.finger;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link FingerInterpolator}.
+ */
+public class FingerInterpolatorTest {
+
+    /**
+     * Milliseconds to nanoseconds.
+     */
+    private static final long MS = 1000000L;
+
+    @Test
+    public void holdsTheOnlySample() {
+        final FingerInterpolator interpolator = new FingerInterpolator();
+        final float[] angles = new float[2];
+        assertFalse(interpolator.interpolate(0, angles));
+
+        interpolator.addSample(100 * MS, 10, 20);
+        assertFalse(interpolator.interpolate(500 * MS, angles));
+        assertEquals(10, angles[0], 0);
+        assertEquals(20, angles[1], 0);
+    }
+
+    @Test
+    public void interpolatesBetweenTheSamplesAroundThePlayoutTime() {
+        final FingerInterpolator interpolator = new FingerInterpolator();
+        final float[] angles = new float[2];
+        // Regular samples every 20ms, moving by one degree each
+        for(int i = 0; i <= 10; i++) {
+            interpolator.addSample(i * 20 * MS, i, -i);
+        }
+        assertEquals(20 * MS, interpolator.getSampleInterval());
+
+        // With a depth of 1, the frame at 210ms shows the Finger as it was at 190ms
+        assertTrue(interpolator.interpolate(210 * MS, angles));
+        assertEquals(9.5f, angles[0], 1e-4f);
+        assertEquals(-9.5f, angles[1], 1e-4f);
+
+        interpolator.setDepth(3);
+        assertTrue(interpolator.interpolate(210 * MS, angles));
+        assertEquals(7.5f, angles[0], 1e-4f);
+    }
+
+    @Test
+    public void extrapolatesLateSamplesForOneInterval() {
+        final FingerInterpolator interpolator = new FingerInterpolator();
+        interpolator.setDepth(0);
+        final float[] angles = new float[2];
+        interpolator.addSample(0, 0, 0);
+        interpolator.addSample(20 * MS, 2, 4);
+
+        assertTrue(interpolator.interpolate(30 * MS, angles));
+        assertEquals(3, angles[0], 1e-4f);
+        assertEquals(6, angles[1], 1e-4f);
+
+        // After one interval the angles settle on the newest sample instead of running away
+        assertFalse(interpolator.interpolate(100 * MS, angles));
+        assertEquals(2, angles[0], 1e-4f);
+        assertEquals(4, angles[1], 1e-4f);
+    }
+
+    @Test
+    public void settlesOnTheNewestSampleWhenTheExtrapolationEnds() {
+        final FingerInterpolator interpolator = new FingerInterpolator();
+        final float[] angles = new float[2];
+        for(int i = 0; i <= 5; i++) {
+            interpolator.addSample(i * 20 * MS, i, -i);
+        }
+
+        // With a depth of 1, the playout passes the newest sample at 120ms and the extrapolation ends at 140ms
+        assertTrue(interpolator.interpolate(139 * MS, angles));
+        assertEquals(5.95f, angles[0], 1e-4f);
+        assertEquals(-5.95f, angles[1], 1e-4f);
+
+        // The frame that ends it shows the newest sample, not the overshoot of the previous one, so the cursor doesn't
+        // stay where no sample has ever put it
+        assertFalse(interpolator.interpolate(140 * MS, angles));
+        assertEquals(5, angles[0], 0);
+        assertEquals(-5, angles[1], 0);
+    }
+
+    @Test
+    public void yawTakesTheShortWayAround() {
+        final FingerInterpolator interpolator = new FingerInterpolator();
+        interpolator.setDepth(0);
+        final float[] angles = new float[2];
+        interpolator.addSample(0, 0, 170);
+        interpolator.addSample(20 * MS, 0, -170);
+        interpolator.setDepth(1);
+
+        interpolator.interpolate(30 * MS, angles);
+        assertEquals(180, Math.abs(angles[1]), 1e-3f);
+    }
+
+    @Test
+    public void discardsTheSamplesBeforeAPause() {
+        final FingerInterpolator interpolator = new FingerInterpolator();
+        final float[] angles = new float[2];
+        interpolator.addSample(0, 0, 0);
+        interpolator.addSample(20 * MS, 1, 1);
+        // The ring stops sending for a second
+        interpolator.addSample(1020 * MS, 50, 50);
+
+        assertFalse(interpolator.interpolate(1030 * MS, angles));
+        assertEquals(50, angles[0], 0);
+    }
+
+    @Test
+    public void ignoresOutOfOrderSamples() {
+        final FingerInterpolator interpolator = new FingerInterpolator();
+        interpolator.setDepth(0);
+        final float[] angles = new float[2];
+        interpolator.addSample(0, 0, 0);
+        interpolator.addSample(20 * MS, 2, 2);
+        interpolator.addSample(10 * MS, 100, 100);
+
+        interpolator.interpolate(20 * MS, angles);
+        assertEquals(2, angles[0], 1e-4f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeDepths() {
+        new FingerInterpolator().setDepth(-1);
+    }
+
+    @Test
+    public void smoothsJitteredSamples() {
+        // The Finger turns at a constant speed, but the samples arrive with up to 15ms of jitter on a 20ms period
+        final Random random = new Random(7);
+        final float speed = 90f / 1000;
+        final FingerInterpolator interpolator = new FingerInterpolator();
+        final float[] angles = new float[2];
+
+        long sent = 0;
+        long received = 0;
+        float lastHeld = 0;
+        double interpolatedSteps = 0, heldSteps = 0;
+        float previousInterpolated = Float.NaN, previousHeld = Float.NaN;
+        int frames = 0;
+        for(long frame = 0; frame < 2000 * MS; frame += 16 * MS) {
+            while(received <= frame) {
+                interpolator.addSample(received, sent / (float) MS * speed, 0);
+                lastHeld = sent / (float) MS * speed;
+                sent += 20 * MS;
+                received = sent + (long) (random.nextFloat() * 15 * MS);
+            }
+            interpolator.interpolate(frame, angles);
+            if(frame > 200 * MS) {
+                // How far each frame moves the cursor compared to the constant step it should move by
+                final float expectedStep = 16 * speed;
+                interpolatedSteps += Math.abs(angles[0] - previousInterpolated - expectedStep);
+                heldSteps += Math.abs(lastHeld - previousHeld - expectedStep);
+                frames++;
+            }
+            previousInterpolated = angles[0];
+            previousHeld = lastHeld;
+        }
+
+        // The mean step error per frame of the interpolation is less than half the one of sample and hold
+        assertTrue(interpolatedSteps < heldSteps / 2);
+    }
+
+}
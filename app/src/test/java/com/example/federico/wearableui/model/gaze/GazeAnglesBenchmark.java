@@ -0,0 +1,63 @@
+package com.example.federico.wearableui.model.gaze;
+
+import com.example.federico.wearableui.Benchmark;
+import com.example.federico.wearableui.representation.Quaternion;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Compares the cost of the closed-form pitch of the {@link Gaze} with the matrix path reproduced by {@link GazeAnglesTest}.
+ */
+public class GazeAnglesBenchmark {
+
+    /**
+     * Number of measured rounds, preceded by as many warm-up rounds.
+     */
+    private static final int ROUNDS = 10;
+
+    /**
+     * Number of pitches computed by each path in a round.
+     */
+    private static final int ITERATIONS = 20000;
+
+    /**
+     * Runs the benchmark and prints the time per pitch of both paths.
+     * @param args not used.
+     */
+    public static void main(final String[] args) {
+        final Random random = new Random(3);
+        final Quaternion[] orientations = new Quaternion[1024];
+        for(int i = 0; i < orientations.length; i++) {
+            orientations[i] = GazeAnglesTest.randomOrientation(random);
+        }
+        final Benchmark.Kernel matrix = new Benchmark.Kernel() {
+            @Override
+            public float run(final int iterations) {
+                float sum = 0;
+                for(int i = 0; i < iterations; i++) {
+                    sum += GazeAnglesTest.matrixPath(orientations[i & 1023])[1];
+                }
+                return sum;
+            }
+        };
+        final Benchmark.Kernel closedForm = new Benchmark.Kernel() {
+            @Override
+            public float run(final int iterations) {
+                float sum = 0;
+                for(int i = 0; i < iterations; i++) {
+                    sum += Gaze.getDevicePitch(orientations[i & 1023]);
+                }
+                return sum;
+            }
+        };
+        final double[] nanos = Benchmark.compare(ROUNDS, ITERATIONS, matrix, closedForm);
+        System.out.println(String.format(Locale.US, "Gaze pitch: matrix path %.1f ns, closed form %.1f ns", nanos[0],
+                nanos[1]));
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.example.federico.wearableui.model.gaze;
+
+import com.example.federico.wearableui.representation.Quaternion;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the closed-form pitch of the {@link Gaze}. It's compared with the matrix path the Gaze used before: SensorManager.getRotationMatrixFromVector, remapCoordinateSystem(AXIS_MINUS_X, AXIS_Z) and getOrientation,
+ * which are reproduced here as the Android framework implements them, since the framework isn't available in unit tests.
+ */
+public class GazeAnglesTest {
+
+    /** Number of random orientations compared. */
+    private static final int SAMPLES = 10000;
+
+    /**
+     * SensorManager.getRotationMatrixFromVector, for a 4x4 matrix.
+     */
+    private static void rotationMatrixFromVector(final float[] r, final float[] rotationVector) {
+        final float q1 = rotationVector[0], q2 = rotationVector[1], q3 = rotationVector[2], q0 = rotationVector[3];
+        final float sq_q1 = 2 * q1 * q1, sq_q2 = 2 * q2 * q2, sq_q3 = 2 * q3 * q3;
+        final float q1_q2 = 2 * q1 * q2, q3_q0 = 2 * q3 * q0, q1_q3 = 2 * q1 * q3;
+        final float q2_q0 = 2 * q2 * q0, q2_q3 = 2 * q2 * q3, q1_q0 = 2 * q1 * q0;
+        r[0] = 1 - sq_q2 - sq_q3;
+        r[1] = q1_q2 - q3_q0;
+        r[2] = q1_q3 + q2_q0;
+        r[3] = 0;
+        r[4] = q1_q2 + q3_q0;
+        r[5] = 1 - sq_q1 - sq_q3;
+        r[6] = q2_q3 - q1_q0;
+        r[7] = 0;
+        r[8] = q1_q3 - q2_q0;
+        r[9] = q2_q3 + q1_q0;
+        r[10] = 1 - sq_q1 - sq_q2;
+        r[11] = 0;
+        r[12] = r[13] = r[14] = 0;
+        r[15] = 1;
+    }
+
+    /**
+     * SensorManager.remapCoordinateSystem(in, AXIS_MINUS_X, AXIS_Z, out), for a 4x4 matrix: the x axis is inverted and
+     * the y and z axes are swapped.
+     */
+    private static void remapMinusXZ(final float[] in, final float[] out) {
+        for(int row = 0; row < 3; row++) {
+            out[row * 4] = -in[row * 4];
+            out[row * 4 + 1] = in[row * 4 + 2];
+            out[row * 4 + 2] = in[row * 4 + 1];
+        }
+    }
+
+    /**
+     * The azimuth and pitch given by the matrix path, in radians.
+     */
+    static float[] matrixPath(final Quaternion orientation) {
+        final float[] rm = new float[16];
+        final float[] remapped = new float[16];
+        rotationMatrixFromVector(rm, orientation.ToArray());
+        remapMinusXZ(rm, remapped);
+        // SensorManager.getOrientation: azimuth, pitch
+        return new float[] { (float) Math.atan2(remapped[1], remapped[5]), (float) Math.asin(-remapped[9]) };
+    }
+
+    static Quaternion randomOrientation(final Random random) {
+        final Quaternion q = new Quaternion();
+        q.setXYZW((float) random.nextGaussian(), (float) random.nextGaussian(), (float) random.nextGaussian(),
+                (float) random.nextGaussian());
+        q.normalise();
+        return q;
+    }
+
+    @Test
+    public void pitchMatchesTheMatrixPath() {
+        final Random random = new Random(7);
+        for(int i = 0; i < SAMPLES; i++) {
+            final Quaternion q = randomOrientation(random);
+            assertEquals(q.toString(), matrixPath(q)[1], Gaze.getDevicePitch(q), 1e-4f);
+        }
+    }
+
+    @Test
+    public void pitchIsClampedForDenormalisedQuaternions() {
+        final Quaternion q = new Quaternion();
+        q.setXYZW(0.75f, 0.75f, 0, 0);
+        assertEquals(Math.PI / 2, Gaze.getDevicePitch(q), 1e-6);
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.example.federico.wearableui.representation;
+
+import com.example.federico.wearableui.Benchmark;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Compares the cost of the {@link FastMath} approximations with the {@link Math} functions used by the default mode.
+ */
+public class FastMathBenchmark {
+
+    /**
+     * Number of measured rounds, preceded by as many warm-up rounds.
+     */
+    private static final int ROUNDS = 5;
+
+    /**
+     * Number of atan2 and asin pairs computed by each round.
+     */
+    private static final int ITERATIONS = 200000;
+
+    /**
+     * Returns a kernel that computes atan2 and asin pairs in one of the modes.
+     */
+    private static Benchmark.Kernel kernel(final float[] values, final boolean fast) {
+        return new Benchmark.Kernel() {
+            @Override
+            public float run(final int iterations) {
+                FastMath.setFastMode(fast);
+                float sum = 0;
+                for(int i = 0; i < iterations; i++) {
+                    final float v = values[i & 1023];
+                    sum += FastMath.atan2(v, values[(i + 1) & 1023]) + FastMath.asin(v);
+                }
+                return sum;
+            }
+        };
+    }
+
+    /**
+     * Runs the benchmark and prints the time per atan2 and asin pair in both modes.
+     * @param args not used.
+     */
+    public static void main(final String[] args) {
+        final float[] values = new float[1024];
+        final Random random = new Random(2);
+        for(int i = 0; i < values.length; i++) {
+            values[i] = random.nextFloat() * 2 - 1;
+        }
+        final double[] nanos = Benchmark.compare(ROUNDS, ITERATIONS, kernel(values, false), kernel(values, true));
+        FastMath.setFastMode(false);
+        System.out.println(String.format(Locale.US, "atan2 + asin: Math %.1f ns, fast %.1f ns", nanos[0], nanos[1]));
+    }
+
+}
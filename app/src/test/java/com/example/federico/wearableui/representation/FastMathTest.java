@@ -0,0 +1,83 @@
+package com.example.federico.wearableui.representation;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link FastMath}: the approximations are checked against their documented error bounds, and the
+ * default mode against the {@link Math} functions. Their cost is compared by {@link FastMathBenchmark}.
+ */
+public class FastMathTest {
+
+    /** Documented maximum error of the inverse functions, in radians. */
+    private static final double ANGLE_ERROR = 1e-5;
+    /** Documented maximum error of sin and cos. */
+    private static final double SINE_ERROR = 1e-6;
+
+    @After
+    public void restoreMode() {
+        FastMath.setFastMode(false);
+    }
+
+    @Test
+    public void defaultModeMatchesMath() {
+        assertFalse(FastMath.isFastMode());
+        final Random random = new Random(1);
+        for(int i = 0; i < 10000; i++) {
+            final float a = (float) random.nextGaussian(), b = (float) random.nextGaussian();
+            final float unit = random.nextFloat() * 2 - 1;
+            assertEquals((float) Math.atan2(a, b), FastMath.atan2(a, b), 0);
+            assertEquals((float) Math.asin(unit), FastMath.asin(unit), 0);
+            assertEquals((float) Math.acos(unit), FastMath.acos(unit), 0);
+            assertEquals((float) Math.sin(a), FastMath.sin(a), 0);
+            assertEquals((float) Math.toDegrees(a), FastMath.toDegrees(a), 0);
+        }
+    }
+
+    @Test
+    public void atan2IsWithinTheErrorBound() {
+        FastMath.setFastMode(true);
+        double maxError = 0;
+        // All the directions, at different distances from the origin
+        for(int i = 0; i <= 100000; i++) {
+            final double angle = -Math.PI + 2 * Math.PI * i / 100000;
+            final float scale = 0.001f + i % 7;
+            final float y = (float) (Math.sin(angle) * scale), x = (float) (Math.cos(angle) * scale);
+            maxError = Math.max(maxError, Math.abs(FastMath.atan2(y, x) - Math.atan2(y, x)));
+        }
+        assertTrue(String.valueOf(maxError), maxError < ANGLE_ERROR);
+        assertEquals(0, FastMath.atan2(0, 0), 0);
+        assertEquals(Math.PI / 2, FastMath.atan2(1, 0), ANGLE_ERROR);
+        assertEquals(-Math.PI / 2, FastMath.atan2(-1, 0), ANGLE_ERROR);
+        assertEquals(Math.PI, FastMath.atan2(0, -1), ANGLE_ERROR);
+    }
+
+    @Test
+    public void inverseSineAndCosineAreWithinTheErrorBound() {
+        FastMath.setFastMode(true);
+        double maxError = 0;
+        for(int i = 0; i <= 100000; i++) {
+            final float value = -1 + 2f * i / 100000;
+            maxError = Math.max(maxError, Math.abs(FastMath.asin(value) - Math.asin(value)));
+            maxError = Math.max(maxError, Math.abs(FastMath.acos(value) - Math.acos(value)));
+        }
+        assertTrue(String.valueOf(maxError), maxError < ANGLE_ERROR);
+    }
+
+    @Test
+    public void sineAndCosineAreWithinTheErrorBound() {
+        FastMath.setFastMode(true);
+        double maxError = 0;
+        for(int i = 0; i <= 100000; i++) {
+            final float angle = (float) (-4 * Math.PI + 8 * Math.PI * i / 100000);
+            maxError = Math.max(maxError, Math.abs(FastMath.sin(angle) - Math.sin(angle)));
+            maxError = Math.max(maxError, Math.abs(FastMath.cos(angle) - Math.cos(angle)));
+        }
+        assertTrue(String.valueOf(maxError), maxError < SINE_ERROR);
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.example.federico.wearableui.representation;
+
+import com.example.federico.wearableui.Benchmark;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Compares the cost of the unrolled product of {@link Matrixf4x4} with the nested loop it replaced.
+ */
+public class Matrixf4x4Benchmark {
+
+    /**
+     * Number of measured rounds, preceded by as many warm-up rounds.
+     */
+    private static final int ROUNDS = 200;
+
+    /**
+     * Number of products computed by each round.
+     */
+    private static final int ITERATIONS = 10000;
+
+    /**
+     * The nested loop of the original implementation, with its per-call buffer.
+     */
+    private static void multiplyWithLoops(final float[] lhs, final float[] rhs, final float[] output) {
+        final float[] buffer = new float[16];
+        for(int i = 0; i < 4; i++) {
+            for(int j = 0; j < 4; j++) {
+                final int k = i * 4;
+                buffer[j] += lhs[k + j] * rhs[i];
+                buffer[4 + j] += lhs[k + j] * rhs[4 + i];
+                buffer[8 + j] += lhs[k + j] * rhs[8 + i];
+                buffer[12 + j] += lhs[k + j] * rhs[12 + i];
+            }
+        }
+        System.arraycopy(buffer, 0, output, 0, 16);
+    }
+
+    /**
+     * Runs the benchmark and prints the time per product of both kernels.
+     * @param args not used.
+     */
+    public static void main(final String[] args) {
+        final Random random = new Random(6);
+        final Matrixf4x4 lhs = Matrixf4x4Test.randomMatrix(random);
+        final Matrixf4x4 rhs = Matrixf4x4Test.randomMatrix(random);
+        final Matrixf4x4 output = new Matrixf4x4();
+        final Benchmark.Kernel loops = new Benchmark.Kernel() {
+            @Override
+            public float run(final int iterations) {
+                float sum = 0;
+                for(int i = 0; i < iterations; i++) {
+                    multiplyWithLoops(lhs.matrix, rhs.matrix, output.matrix);
+                    sum += output.matrix[i & 15];
+                }
+                return sum;
+            }
+        };
+        final Benchmark.Kernel unrolled = new Benchmark.Kernel() {
+            @Override
+            public float run(final int iterations) {
+                float sum = 0;
+                for(int i = 0; i < iterations; i++) {
+                    lhs.multiplyMatrix4x4ByMatrix(rhs, output);
+                    sum += output.matrix[i & 15];
+                }
+                return sum;
+            }
+        };
+        final double[] nanos = Benchmark.compare(ROUNDS, ITERATIONS, loops, unrolled);
+        System.out.println(String.format(Locale.US, "4x4 product: loops %.1f ns, unrolled %.1f ns", nanos[0],
+                nanos[1]));
+    }
+
+}
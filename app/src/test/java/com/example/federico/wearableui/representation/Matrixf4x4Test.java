@@ -0,0 +1,147 @@
+package com.example.federico.wearableui.representation;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the allocation-free kernels of {@link Matrixf4x4}. Every kernel is checked on random matrices against
+ * the corresponding method of {@link Matrix}, including when the output aliases one of the inputs. Their cost is
+ * measured by {@link Matrixf4x4Benchmark}.
+ */
+public class Matrixf4x4Test {
+
+    /** Number of random matrices every property is checked on. */
+    private static final int SAMPLES = 1000;
+
+    static Matrixf4x4 randomMatrix(final Random random) {
+        final Matrixf4x4 matrix = new Matrixf4x4();
+        for(int i = 0; i < 16; i++) {
+            matrix.matrix[i] = (float) random.nextGaussian();
+        }
+        return matrix;
+    }
+
+    private static Matrixf4x4 copyOf(final Matrixf4x4 matrix) {
+        final Matrixf4x4 copy = new Matrixf4x4();
+        copy.setMatrixValues(matrix.matrix);
+        return copy;
+    }
+
+    @Test
+    public void multiplyMatchesMultiplyMM() {
+        final Random random = new Random(1);
+        final float[] expected = new float[16];
+        for(int i = 0; i < SAMPLES; i++) {
+            final Matrixf4x4 lhs = randomMatrix(random);
+            final Matrixf4x4 rhs = randomMatrix(random);
+            Matrix.multiplyMM(expected, 0, lhs.matrix, 0, rhs.matrix, 0);
+
+            final Matrixf4x4 output = new Matrixf4x4();
+            lhs.multiplyMatrix4x4ByMatrix(rhs, output);
+            assertArrayEquals(expected, output.matrix, 0);
+
+            // The output can be either of the inputs
+            final Matrixf4x4 inPlaceLeft = copyOf(lhs);
+            inPlaceLeft.multiplyMatrix4x4ByMatrix(rhs, inPlaceLeft);
+            assertArrayEquals(expected, inPlaceLeft.matrix, 0);
+            final Matrixf4x4 inPlaceRight = copyOf(rhs);
+            lhs.multiplyMatrix4x4ByMatrix(inPlaceRight, inPlaceRight);
+            assertArrayEquals(expected, inPlaceRight.matrix, 0);
+
+            // The original method still stores the product in its argument
+            final Matrixf4x4 argument = copyOf(rhs);
+            final float[] array = argument.matrix;
+            lhs.multiplyMatrix4x4ByMatrix(argument);
+            assertArrayEquals(expected, argument.matrix, 0);
+            assertSame(array, argument.matrix);
+        }
+    }
+
+    @Test
+    public void squaringInPlaceMatchesMultiplyMM() {
+        final Random random = new Random(2);
+        final float[] expected = new float[16];
+        for(int i = 0; i < SAMPLES; i++) {
+            final Matrixf4x4 matrix = randomMatrix(random);
+            Matrix.multiplyMM(expected, 0, matrix.matrix, 0, matrix.matrix, 0);
+            matrix.multiplyMatrix4x4ByMatrix(matrix, matrix);
+            assertArrayEquals(expected, matrix.matrix, 0);
+        }
+    }
+
+    @Test
+    public void multiplyVectorMatchesMultiplyMV() {
+        final Random random = new Random(3);
+        final float[] expected = new float[4];
+        final float[] transposed = new float[16];
+        for(int i = 0; i < SAMPLES; i++) {
+            final Matrixf4x4 matrix = randomMatrix(random);
+            final Vector4f vector = new Vector4f((float) random.nextGaussian(), (float) random.nextGaussian(),
+                    (float) random.nextGaussian(), (float) random.nextGaussian());
+
+            Matrix.multiplyMV(expected, 0, matrix.matrix, 0, vector.ToArray(), 0);
+            final Vector4f output = new Vector4f();
+            matrix.multiplyVector4fByMatrix(vector, output);
+            assertArrayEquals(expected, output.ToArray(), 0);
+
+            // A row major matrix is the transpose of the same array read as column major
+            Matrix.transposeM(transposed, 0, matrix.matrix, 0);
+            Matrix.multiplyMV(expected, 0, transposed, 0, vector.ToArray(), 0);
+            matrix.setColumnMajor(false);
+            matrix.multiplyVector4fByMatrix(vector);
+            assertArrayEquals(expected, vector.ToArray(), 0);
+        }
+    }
+
+    @Test
+    public void transposeMatchesTransposeM() {
+        final Random random = new Random(4);
+        final float[] expected = new float[16];
+        for(int i = 0; i < SAMPLES; i++) {
+            final Matrixf4x4 matrix = randomMatrix(random);
+            Matrix.transposeM(expected, 0, matrix.matrix, 0);
+            final Matrixf4x4 output = new Matrixf4x4();
+            matrix.transpose(output);
+            assertArrayEquals(expected, output.matrix, 0);
+            matrix.transpose();
+            assertArrayEquals(expected, matrix.matrix, 0);
+        }
+    }
+
+    @Test
+    public void invertGivesTheIdentity() {
+        final Random random = new Random(5);
+        final float[] identity = new float[16];
+        Matrix.setIdentityM(identity, 0);
+        for(int i = 0; i < SAMPLES; i++) {
+            final Matrixf4x4 matrix = randomMatrix(random);
+            final Matrixf4x4 inverse = copyOf(matrix);
+            assertTrue(inverse.invert(inverse));
+            final Matrixf4x4 product = new Matrixf4x4();
+            matrix.multiplyMatrix4x4ByMatrix(inverse, product);
+            // Random gaussian matrices can be badly conditioned, so the tolerance scales with the inverse
+            float scale = 0;
+            for(final float value : inverse.matrix) {
+                scale = Math.max(scale, Math.abs(value));
+            }
+            for(int j = 0; j < 16; j++) {
+                assertEquals(identity[j], product.matrix[j], 1e-5f * Math.max(1, scale));
+            }
+        }
+    }
+
+    @Test
+    public void singularMatricesAreNotInverted() {
+        final Matrixf4x4 singular = new Matrixf4x4();
+        singular.setMatrixValues(new float[] { 1, 2, 3, 4, 2, 4, 6, 8, 0, 1, 0, 1, 1, 0, 1, 0 });
+        final Matrixf4x4 output = new Matrixf4x4();
+        assertFalse(singular.invert(output));
+        final float[] identity = new float[16];
+        Matrix.setIdentityM(identity, 0);
+        assertArrayEquals(identity, output.matrix, 0);
+    }
+
+}
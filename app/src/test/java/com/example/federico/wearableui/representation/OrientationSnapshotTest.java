@@ -0,0 +1,114 @@
+package com.example.federico.wearableui.representation;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link OrientationSnapshot}, including its publication from one thread to others.
+ */
+public class OrientationSnapshotTest {
+
+    /**
+     * The snapshot published by the writer of the concurrency test.
+     */
+    private volatile OrientationSnapshot published;
+
+    @Test
+    public void copiesTheQuaternion() {
+        final Quaternion q = new Quaternion();
+        q.setXYZW(0.1f, 0.2f, 0.3f, 0.9f);
+        final OrientationSnapshot snapshot = new OrientationSnapshot(q, 42, OrientationSnapshot.nextSequence());
+        // Changing the quaternion doesn't change the snapshot
+        q.setXYZW(1, 0, 0, 0);
+        final Quaternion copy = snapshot.toQuaternion(new Quaternion());
+        assertEquals(0.1f, copy.getX(), 0);
+        assertEquals(0.2f, copy.getY(), 0);
+        assertEquals(0.3f, copy.getZ(), 0);
+        assertEquals(0.9f, copy.getW(), 0);
+        assertEquals(42, snapshot.getTimestamp());
+    }
+
+    @Test
+    public void productsMatchTheCopiedQuaternion() {
+        final Random random = new Random(14);
+        final Quaternion inverse = QuaternionTest.randomQuaternion(random, true);
+        for(int i = 0; i < 100; i++) {
+            final Quaternion q = QuaternionTest.randomQuaternion(random, true);
+            final OrientationSnapshot snapshot = new OrientationSnapshot(q, 0, 0);
+            final Quaternion expected = new Quaternion();
+            q.multiplyByQuat(inverse, expected);
+            final OrientationSnapshot actual = snapshot.multiplyByQuat(inverse);
+            assertEquals(expected.getX(), actual.getX(), 0);
+            assertEquals(expected.getY(), actual.getY(), 0);
+            assertEquals(expected.getZ(), actual.getZ(), 0);
+            assertEquals(expected.getW(), actual.getW(), 0);
+            assertEquals(expected.getPitch(), actual.getPitch(), 0);
+            assertEquals(expected.getYaw(), actual.getYaw(), 0);
+            assertEquals(snapshot.getSequence(), actual.getSequence());
+            assertEquals(q.getYawOfProduct(inverse), snapshot.getYawOfProduct(inverse), 0);
+        }
+    }
+
+    @Test
+    public void sequenceNumbersOrderTheSnapshots() {
+        final OrientationSnapshot first = new OrientationSnapshot(new Quaternion(), 0, OrientationSnapshot.nextSequence());
+        final OrientationSnapshot second = new OrientationSnapshot(new Quaternion(), 0, OrientationSnapshot.nextSequence());
+        assertTrue(second.isNewerThan(first));
+        assertFalse(first.isNewerThan(second));
+        assertFalse(first.isNewerThan(first));
+        assertTrue(first.isNewerThan(null));
+    }
+
+    @Test
+    public void readersNeverSeeTornSnapshots() throws InterruptedException {
+        final int updates = 200000;
+        this.published = new OrientationSnapshot(0, 0, 0, 0, 0, OrientationSnapshot.nextSequence());
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 1; i <= updates; i++) {
+                    published = new OrientationSnapshot(i, i, i, i, i, OrientationSnapshot.nextSequence());
+                }
+            }
+        });
+        final Thread[] readers = new Thread[2];
+        for(int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long lastSequence = 0;
+                    OrientationSnapshot snapshot;
+                    do {
+                        snapshot = published;
+                        final float value = snapshot.getX();
+                        if(snapshot.getY() != value || snapshot.getZ() != value || snapshot.getW() != value
+                                || snapshot.getTimestamp() != (long) value) {
+                            failure.compareAndSet(null, "torn snapshot at " + value);
+                            return;
+                        }
+                        if(snapshot.getSequence() < lastSequence) {
+                            failure.compareAndSet(null, "sequence going backwards at " + value);
+                            return;
+                        }
+                        lastSequence = snapshot.getSequence();
+                    } while(snapshot.getTimestamp() < updates);
+                }
+            });
+        }
+        for(final Thread reader : readers) {
+            reader.start();
+        }
+        writer.start();
+        writer.join();
+        for(final Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.example.federico.wearableui.representation;
+
+import com.example.federico.wearableui.Benchmark;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Measures the cost of the {@link Quaternion} operations on the hot paths against the code they replace.
+ */
+public class QuaternionBenchmark {
+
+    /**
+     * Compares {@link Quaternion#slerp} with {@link Quaternion#interpolate} on the weight used by the sensor fusion,
+     * between orientations a few degrees apart.
+     */
+    private static void interpolation() {
+        final Random random = new Random(10);
+        final Quaternion[] from = new Quaternion[1024];
+        final Quaternion[] to = new Quaternion[1024];
+        for(int i = 0; i < from.length; i++) {
+            from[i] = QuaternionTest.randomQuaternion(random, true);
+            to[i] = QuaternionTest.near(from[i], random, random.nextFloat() * 0.1f);
+        }
+        final Quaternion output = new Quaternion();
+        final Benchmark.Kernel slerp = new Benchmark.Kernel() {
+            @Override
+            public float run(final int iterations) {
+                float sum = 0;
+                for(int i = 0; i < iterations; i++) {
+                    from[i & 1023].slerp(to[i & 1023], output, 0.005f);
+                    sum += output.getW();
+                }
+                return sum;
+            }
+        };
+        final Benchmark.Kernel adaptive = new Benchmark.Kernel() {
+            @Override
+            public float run(final int iterations) {
+                float sum = 0;
+                for(int i = 0; i < iterations; i++) {
+                    from[i & 1023].interpolate(to[i & 1023], output, 0.005f);
+                    sum += output.getW();
+                }
+                return sum;
+            }
+        };
+        final double[] nanos = Benchmark.compare(5, 200000, slerp, adaptive);
+        System.out.println(String.format(Locale.US, "Fusion interpolation: slerp %.1f ns, adaptive %.1f ns", nanos[0],
+                nanos[1]));
+    }
+
+    /**
+     * Compares the cached rotation matrix of {@link Quaternion#getRotationMatrix} with the conversion every consumer used
+     * to do on its own, with several consumers reading the matrix of the same orientation, as the samples arrive at a
+     * lower rate than the matrix is read.
+     */
+    private static void rotationMatrix() {
+        final Random random = new Random(13);
+        final Quaternion[] orientations = new Quaternion[64];
+        for(int i = 0; i < orientations.length; i++) {
+            orientations[i] = QuaternionTest.randomQuaternion(random, true);
+        }
+        final Quaternion q = new Quaternion();
+        final float[] matrix = new float[16];
+        final int reads = 4;
+        final Benchmark.Kernel rebuilt = new Benchmark.Kernel() {
+            @Override
+            public float run(final int iterations) {
+                float sum = 0;
+                for(int i = 0; i < iterations; i++) {
+                    if(i % reads == 0) {
+                        q.copyVec4(orientations[(i / reads) & 63]);
+                    }
+                    // What every consumer did before: its own conversion
+                    final float x = q.getX(), y = q.getY(), z = q.getZ(), w = q.getW();
+                    final Matrixf4x4 m = new Matrixf4x4();
+                    m.setX0(1 - 2 * (y * y) - 2 * (z * z));
+                    m.setX1(2 * (x * y) + 2 * (w * z));
+                    m.setX2(2 * (x * z) - 2 * (w * y));
+                    m.setY0(2 * (x * y) - 2 * (w * z));
+                    m.setY1(1 - 2 * (x * x) - 2 * (z * z));
+                    m.setY2(2 * (y * z) + 2 * (w * x));
+                    m.setZ0(2 * (x * z) + 2 * (w * y));
+                    m.setZ1(2 * (y * z) - 2 * (w * x));
+                    m.setZ2(1 - 2 * (x * x) - 2 * (y * y));
+                    System.arraycopy(m.getMatrix(), 0, matrix, 0, 16);
+                    sum += matrix[i & 15];
+                }
+                return sum;
+            }
+        };
+        final Benchmark.Kernel cached = new Benchmark.Kernel() {
+            @Override
+            public float run(final int iterations) {
+                float sum = 0;
+                for(int i = 0; i < iterations; i++) {
+                    if(i % reads == 0) {
+                        q.copyVec4(orientations[(i / reads) & 63]);
+                    }
+                    q.getRotationMatrix(matrix, true);
+                    sum += matrix[i & 15];
+                }
+                return sum;
+            }
+        };
+        final double[] nanos = Benchmark.compare(5, 400000, rebuilt, cached);
+        System.out.println(String.format(Locale.US,
+                "Rotation matrix, %d reads per change: rebuilt %.1f ns, cached %.1f ns", reads, nanos[0], nanos[1]));
+    }
+
+    /**
+     * Runs the benchmarks and prints their results.
+     * @param args not used.
+     */
+    public static void main(final String[] args) {
+        interpolation();
+        rotationMatrix();
+    }
+
+}
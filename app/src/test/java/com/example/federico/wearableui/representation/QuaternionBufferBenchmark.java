@@ -0,0 +1,73 @@
+package com.example.federico.wearableui.representation;
+
+import com.example.federico.wearableui.Benchmark;
+
+import java.util.Locale;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Compares the cost of computing the yaw of many orientations relative to a calibration, with a {@link Quaternion} per
+ * element and with a {@link QuaternionBuffer}.
+ */
+public class QuaternionBufferBenchmark {
+
+    /**
+     * Number of quaternions in the buffers.
+     */
+    private static final int SIZE = 1000;
+
+    /**
+     * Number of measured rounds, preceded by as many warm-up rounds.
+     */
+    private static final int ROUNDS = 300;
+
+    /**
+     * Runs the benchmark and prints the time per round of both versions.
+     * @param args not used.
+     */
+    public static void main(final String[] args) {
+        final Quaternion[] orientations = QuaternionBufferTest.randomQuaternions(7, SIZE);
+        final Quaternion calibration = QuaternionBufferTest.randomQuaternions(8, 1)[0];
+        final Quaternion inverse = new Quaternion();
+        calibration.inverse(inverse);
+        final QuaternionBuffer buffer = QuaternionBufferTest.bufferOf(orientations);
+        final QuaternionBuffer relative = new QuaternionBuffer(SIZE);
+        final float[] yaws = new float[SIZE];
+        final Benchmark.Kernel objects = new Benchmark.Kernel() {
+            @Override
+            public float run(final int iterations) {
+                float sum = 0;
+                for(int round = 0; round < iterations; round++) {
+                    for(int i = 0; i < SIZE; i++) {
+                        final Quaternion q = new Quaternion();
+                        orientations[i].multiplyByQuat(inverse, q);
+                        q.normalise();
+                        sum += q.getYaw();
+                    }
+                }
+                return sum;
+            }
+        };
+        final Benchmark.Kernel arrays = new Benchmark.Kernel() {
+            @Override
+            public float run(final int iterations) {
+                float sum = 0;
+                for(int round = 0; round < iterations; round++) {
+                    buffer.multiply(inverse, relative);
+                    relative.normalise();
+                    relative.getYaws(yaws);
+                    sum += yaws[round % SIZE];
+                }
+                return sum;
+            }
+        };
+        // Every iteration computes the yaws of the whole buffer
+        final double[] nanos = Benchmark.compare(ROUNDS, 1, objects, arrays);
+        System.out.println(String.format(Locale.US, "Relative yaw of %d quaternions: objects %.1f us, buffer %.1f us",
+                SIZE, nanos[0] / 1000, nanos[1] / 1000));
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.example.federico.wearableui.representation;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link QuaternionBuffer}. Every bulk operation is compared with the corresponding {@link Quaternion}
+ * method called on every element. Their cost is compared by {@link QuaternionBufferBenchmark}.
+ */
+public class QuaternionBufferTest {
+
+    /** Number of quaternions in the buffers. */
+    private static final int SIZE = 1000;
+
+    static Quaternion[] randomQuaternions(final long seed, final int count) {
+        final Random random = new Random(seed);
+        final Quaternion[] quaternions = new Quaternion[count];
+        for(int i = 0; i < count; i++) {
+            quaternions[i] = new Quaternion();
+            quaternions[i].setXYZW((float) random.nextGaussian(), (float) random.nextGaussian(),
+                    (float) random.nextGaussian(), (float) random.nextGaussian());
+            quaternions[i].normalise();
+        }
+        return quaternions;
+    }
+
+    static QuaternionBuffer bufferOf(final Quaternion[] quaternions) {
+        final QuaternionBuffer buffer = new QuaternionBuffer(0);
+        for(final Quaternion q : quaternions) {
+            buffer.add(q);
+        }
+        return buffer;
+    }
+
+    private static void assertElementEquals(final Quaternion expected, final QuaternionBuffer buffer, final int index) {
+        final Quaternion actual = new Quaternion();
+        buffer.get(index, actual);
+        assertEquals(expected.getX(), actual.getX(), 0);
+        assertEquals(expected.getY(), actual.getY(), 0);
+        assertEquals(expected.getZ(), actual.getZ(), 0);
+        assertEquals(expected.getW(), actual.getW(), 0);
+    }
+
+    @Test
+    public void growsAndKeepsItsElements() {
+        final Quaternion[] quaternions = randomQuaternions(1, SIZE);
+        final QuaternionBuffer buffer = bufferOf(quaternions);
+        assertEquals(SIZE, buffer.size());
+        for(int i = 0; i < SIZE; i++) {
+            assertElementEquals(quaternions[i], buffer, i);
+        }
+        buffer.clear();
+        assertEquals(0, buffer.size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsIndicesOutOfTheBuffer() {
+        final QuaternionBuffer buffer = new QuaternionBuffer();
+        buffer.add(0, 0, 0, 1);
+        buffer.get(1, new Quaternion());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBuffersOfDifferentSizes() {
+        final QuaternionBuffer buffer = bufferOf(randomQuaternions(1, 3));
+        buffer.multiply(bufferOf(randomQuaternions(2, 2)), buffer);
+    }
+
+    @Test
+    public void multiplyMatchesMultiplyByQuat() {
+        final Quaternion[] a = randomQuaternions(2, SIZE);
+        final Quaternion[] b = randomQuaternions(3, SIZE);
+        final QuaternionBuffer buffer = bufferOf(a);
+        final QuaternionBuffer output = new QuaternionBuffer();
+        buffer.multiply(bufferOf(b), output);
+        // In place, by a single quaternion
+        buffer.multiply(b[0], buffer);
+        for(int i = 0; i < SIZE; i++) {
+            final Quaternion expected = new Quaternion();
+            a[i].multiplyByQuat(b[i], expected);
+            assertElementEquals(expected, output, i);
+            a[i].multiplyByQuat(b[0], expected);
+            assertElementEquals(expected, buffer, i);
+        }
+    }
+
+    @Test
+    public void slerpAndNormaliseMatchQuaternion() {
+        final Quaternion[] a = randomQuaternions(4, SIZE);
+        final Quaternion[] b = randomQuaternions(5, SIZE);
+        final QuaternionBuffer output = new QuaternionBuffer();
+        bufferOf(a).slerp(bufferOf(b), output, 0.3f);
+        output.normalise();
+        for(int i = 0; i < SIZE; i++) {
+            final Quaternion expected = new Quaternion();
+            a[i].slerp(b[i], expected, 0.3f);
+            expected.normalise();
+            assertElementEquals(expected, output, i);
+        }
+    }
+
+    @Test
+    public void anglesMatchQuaternion() {
+        final Quaternion[] a = randomQuaternions(6, SIZE);
+        final QuaternionBuffer buffer = bufferOf(a);
+        final float[] yaws = new float[SIZE];
+        final float[] pitches = new float[SIZE];
+        buffer.getYaws(yaws);
+        buffer.getPitches(pitches);
+        for(int i = 0; i < SIZE; i++) {
+            assertEquals(a[i].getYaw(), yaws[i], 0);
+            assertEquals(a[i].getPitch(), pitches[i], 0);
+        }
+    }
+
+}
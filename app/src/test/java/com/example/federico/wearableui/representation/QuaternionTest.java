@@ -0,0 +1,390 @@
+package com.example.federico.wearableui.representation;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the fused operations of {@link Quaternion}, compared with the clone, inverse and multiply sequence
+ * they replace. Their cost is compared by {@link QuaternionBenchmark}.
+ */
+public class QuaternionTest {
+
+    /** Number of random quaternions compared. */
+    private static final int SAMPLES = 1000;
+    /** Tolerance of the comparisons. */
+    private static final float DELTA = 1e-5f;
+    /**
+     * The quaternion (0.1, 0.2, 0.3, 0.9), as serialized by the original build, like the ones sent by a ring that hasn't
+     * been updated.
+     */
+    private static final String ORIGINAL_SERIALIZED_QUATERNION =
+            "aced000573720039636f6d2e6578616d706c652e666564657269636f2e7765617261626c6575692e726570726573656e"
+            + "746174696f6e2e5175617465726e696f6e9cca50d11eaa925f0200035a000564697274794c0010627566666572517561"
+            + "7465726e696f6e74003b4c636f6d2f6578616d706c652f666564657269636f2f7765617261626c6575692f7265707265"
+            + "73656e746174696f6e2f5175617465726e696f6e3b4c00066d617472697874003b4c636f6d2f6578616d706c652f6665"
+            + "64657269636f2f7765617261626c6575692f726570726573656e746174696f6e2f4d6174726978663478343b78720037"
+            + "636f6d2e6578616d706c652e666564657269636f2e7765617261626c6575692e726570726573656e746174696f6e2e56"
+            + "6563746f72346600000000000000010200015b0006706f696e74737400025b467870757200025b460b9c818922e00c42"
+            + "0200007870000000043dcccccd3e4ccccd3e99999a3f666666017073720039636f6d2e6578616d706c652e6665646572"
+            + "69636f2e7765617261626c6575692e726570726573656e746174696f6e2e4d61747269786634783426f74e37857dad07"
+            + "0200035a0006636f6c4d616a5a000b6d617472697856616c69645b00066d617472697871007e0004787001017571007e"
+            + "0006000000103f800000000000000000000000000000000000003f800000000000000000000000000000000000003f80"
+            + "0000000000000000000000000000000000003f800000";
+
+    static Quaternion randomQuaternion(final Random random, final boolean unit) {
+        final Quaternion q = new Quaternion();
+        q.setXYZW((float) random.nextGaussian(), (float) random.nextGaussian(), (float) random.nextGaussian(),
+                (float) random.nextGaussian());
+        if(unit) {
+            q.normalise();
+        }
+        return q;
+    }
+
+    /**
+     * The relative rotation as the models used to compute it.
+     */
+    private static Quaternion reference(final Quaternion q, final Quaternion calibration) {
+        final Quaternion startingDirection = calibration.clone();
+        startingDirection.inverse();
+        final Quaternion result = new Quaternion();
+        q.multiplyByQuat(startingDirection, result);
+        return result;
+    }
+
+    private static void assertQuaternionEquals(final Quaternion expected, final Quaternion actual, final float delta) {
+        assertEquals(expected.getX(), actual.getX(), delta);
+        assertEquals(expected.getY(), actual.getY(), delta);
+        assertEquals(expected.getZ(), actual.getZ(), delta);
+        assertEquals(expected.getW(), actual.getW(), delta);
+    }
+
+    @Test
+    public void inverseIntoOutputMatchesInPlaceInverse() {
+        final Random random = new Random(1);
+        for(int i = 0; i < SAMPLES; i++) {
+            final Quaternion q = randomQuaternion(random, false);
+            final Quaternion original = q.clone();
+            final Quaternion output = new Quaternion();
+            q.inverse(output);
+            assertQuaternionEquals(original, q, 0);
+            q.inverse();
+            assertQuaternionEquals(q, output, 0);
+        }
+    }
+
+    @Test
+    public void relativeToMatchesCloneInverseMultiply() {
+        final Random random = new Random(2);
+        for(int i = 0; i < SAMPLES; i++) {
+            final Quaternion q = randomQuaternion(random, false);
+            final Quaternion calibration = randomQuaternion(random, false);
+            final Quaternion output = new Quaternion();
+            q.relativeTo(calibration, output);
+            // Relative error, since the quaternions are not normalised
+            assertQuaternionEquals(reference(q, calibration), output, DELTA * 10 * q.dotProduct(q) / calibration.dotProduct(calibration));
+        }
+    }
+
+    @Test
+    public void multiplyByConjugateMatchesTheInverseOfUnitQuaternions() {
+        final Random random = new Random(3);
+        for(int i = 0; i < SAMPLES; i++) {
+            final Quaternion q = randomQuaternion(random, true);
+            final Quaternion calibration = randomQuaternion(random, true);
+            final Quaternion output = new Quaternion();
+            q.multiplyByConjugate(calibration, output);
+            assertQuaternionEquals(reference(q, calibration), output, DELTA);
+        }
+    }
+
+    @Test
+    public void fusedOperationsAllowAliasing() {
+        final Random random = new Random(4);
+        final Quaternion q = randomQuaternion(random, true);
+        final Quaternion calibration = randomQuaternion(random, true);
+        final Quaternion expected = reference(q, calibration);
+
+        final Quaternion intoThis = q.clone();
+        intoThis.relativeTo(calibration, intoThis);
+        assertQuaternionEquals(expected, intoThis, DELTA);
+
+        final Quaternion intoInput = calibration.clone();
+        q.multiplyByConjugate(intoInput, intoInput);
+        assertQuaternionEquals(expected, intoInput, DELTA);
+    }
+
+    @Test
+    public void yawOfProductMatchesTheYawOfTheStoredProduct() {
+        final Random random = new Random(5);
+        for(int i = 0; i < SAMPLES; i++) {
+            final Quaternion q = randomQuaternion(random, true);
+            final Quaternion calibration = randomQuaternion(random, true);
+            final Quaternion inverse = new Quaternion();
+            calibration.inverse(inverse);
+            assertEquals(reference(q, calibration).getYaw(), q.getYawOfProduct(inverse), DELTA);
+        }
+    }
+
+    @Test
+    public void cachedInverseMatchesTheRelativeRotation() {
+        final Random random = new Random(6);
+        final Quaternion calibration = randomQuaternion(random, true);
+        final Quaternion inverse = new Quaternion();
+        calibration.inverse(inverse);
+        for(int i = 0; i < SAMPLES; i++) {
+            final Quaternion q = randomQuaternion(random, true);
+            final Quaternion output = new Quaternion();
+            q.multiplyByQuat(inverse, output);
+            assertQuaternionEquals(reference(q, calibration), output, 0);
+        }
+    }
+
+    /**
+     * Distance between two quaternions on the same hemisphere, which is close to their half-angle when they're close.
+     */
+    private static float distance(final Quaternion a, final Quaternion b) {
+        final float sign = a.dotProduct(b) < 0 ? -1 : 1;
+        final float dx = a.getX() - sign * b.getX(), dy = a.getY() - sign * b.getY();
+        final float dz = a.getZ() - sign * b.getZ(), dw = a.getW() - sign * b.getW();
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz + dw * dw);
+    }
+
+    /**
+     * Returns a unit quaternion rotated from the passed one by a random rotation of the passed angle.
+     */
+    static Quaternion near(final Quaternion q, final Random random, final float angle) {
+        final Quaternion axis = randomQuaternion(random, false);
+        final float norm = (float) Math.sqrt(axis.getX() * axis.getX() + axis.getY() * axis.getY() + axis.getZ() * axis.getZ());
+        final float s = (float) Math.sin(angle / 2) / norm;
+        final Quaternion delta = new Quaternion();
+        delta.setXYZW(axis.getX() * s, axis.getY() * s, axis.getZ() * s, (float) Math.cos(angle / 2));
+        final Quaternion result = new Quaternion();
+        q.multiplyByQuat(delta, result);
+        result.normalise();
+        return result;
+    }
+
+    @Test
+    public void interpolateStaysCloseToSlerp() {
+        final Random random = new Random(7);
+        final float[] weights = { 0.005f, 0.05f, 0.21f, 0.5f, 0.8f };
+        for(int i = 0; i < SAMPLES; i++) {
+            final Quaternion q = randomQuaternion(random, true);
+            final Quaternion other = near(q, random, random.nextFloat() * (float) Math.PI);
+            if(random.nextBoolean()) {
+                other.setXYZW(-other.getX(), -other.getY(), -other.getZ(), -other.getW());
+            }
+            for(final float t : weights) {
+                final double[] expected = slerp(toDoubles(q), other.ToArray(), t);
+                final Quaternion actual = new Quaternion();
+                q.interpolate(other, actual, t);
+                // The documented bound plus the rounding errors of single precision
+                double distance = 0;
+                for(int j = 0; j < 4; j++) {
+                    distance += (expected[j] - actual.ToArray()[j]) * (expected[j] - actual.ToArray()[j]);
+                }
+                assertEquals(0, Math.sqrt(distance), 1e-5 + 2e-6);
+            }
+        }
+    }
+
+    @Test
+    public void nlerpIsUnitAndTakesTheShortestPath() {
+        final Random random = new Random(8);
+        for(int i = 0; i < SAMPLES; i++) {
+            final Quaternion q = randomQuaternion(random, true);
+            final Quaternion other = near(q, random, 0.1f);
+            other.setXYZW(-other.getX(), -other.getY(), -other.getZ(), -other.getW());
+            final Quaternion output = new Quaternion();
+            q.nlerp(other, output, 0.5f);
+            assertEquals(1, output.dotProduct(output), 1e-5f);
+            assertTrue(output.dotProduct(q) > 0.99f);
+        }
+    }
+
+    private static double[] toDoubles(final Quaternion q) {
+        return new double[] { q.getX(), q.getY(), q.getZ(), q.getW() };
+    }
+
+    /**
+     * Slerp of unit quaternions in double precision, used as the reference of the fusion test.
+     */
+    private static double[] slerp(final double[] a, final float[] b, final double t) {
+        double cos = a[0] * b[0] + a[1] * b[1] + a[2] * b[2] + a[3] * b[3];
+        final double sign = cos < 0 ? -1 : 1;
+        cos = Math.min(1, Math.abs(cos));
+        final double theta = Math.acos(cos);
+        final double ratioA = theta < 1e-12 ? 1 - t : Math.sin((1 - t) * theta) / Math.sin(theta);
+        final double ratioB = theta < 1e-12 ? t : Math.sin(t * theta) / Math.sin(theta);
+        final double[] result = new double[4];
+        double norm = 0;
+        for(int i = 0; i < 4; i++) {
+            result[i] = a[i] * ratioA + sign * b[i] * ratioB;
+            norm += result[i] * result[i];
+        }
+        for(int i = 0; i < 4; i++) {
+            result[i] /= Math.sqrt(norm);
+        }
+        return result;
+    }
+
+    @Test
+    public void fusionWithInterpolateDoesNotDivergeFromSlerp() {
+        // The complementary filter pulls the gyroscope orientation towards the rotation vector at every sample: the
+        // same sequence is fused with interpolate and with an exact slerp
+        final Random random = new Random(9);
+        final Quaternion withInterpolate = randomQuaternion(random, true);
+        double[] exact = toDoubles(withInterpolate);
+        final Quaternion output = new Quaternion();
+        double maxDistance = 0;
+        for(int i = 0; i < 20000; i++) {
+            final Quaternion rotationVector = near(withInterpolate, random, random.nextFloat() * 0.2f);
+            exact = slerp(exact, rotationVector.ToArray(), 0.005);
+            withInterpolate.interpolate(rotationVector, output, 0.005f);
+            withInterpolate.copyVec4(output);
+            double distance = 0;
+            for(int j = 0; j < 4; j++) {
+                distance += (exact[j] - withInterpolate.ToArray()[j]) * (exact[j] - withInterpolate.ToArray()[j]);
+            }
+            maxDistance = Math.max(maxDistance, Math.sqrt(distance));
+        }
+        assertTrue(String.valueOf(maxDistance), maxDistance < 1e-4);
+    }
+
+    /**
+     * Column major rotation matrix of a unit quaternion, built by rotating the three axes with q v q*.
+     */
+    private static float[] rotatedAxes(final Quaternion q) {
+        final Quaternion conjugate = new Quaternion();
+        conjugate.setXYZW(-q.getX(), -q.getY(), -q.getZ(), q.getW());
+        final float[] matrix = new float[16];
+        for(int axis = 0; axis < 3; axis++) {
+            final Quaternion v = new Quaternion();
+            v.setXYZW(axis == 0 ? 1 : 0, axis == 1 ? 1 : 0, axis == 2 ? 1 : 0, 0);
+            final Quaternion half = new Quaternion();
+            final Quaternion rotated = new Quaternion();
+            q.multiplyByQuat(v, half);
+            half.multiplyByQuat(conjugate, rotated);
+            matrix[axis * 4] = rotated.getX();
+            matrix[axis * 4 + 1] = rotated.getY();
+            matrix[axis * 4 + 2] = rotated.getZ();
+        }
+        matrix[15] = 1;
+        return matrix;
+    }
+
+    @Test
+    public void rotationMatrixRotatesTheAxes() {
+        final Random random = new Random(11);
+        final float[] columnMajor = new float[16];
+        final float[] rowMajor = new float[16];
+        final float[] columnMajor3 = new float[9];
+        final float[] rowMajor3 = new float[9];
+        for(int i = 0; i < SAMPLES; i++) {
+            final Quaternion q = randomQuaternion(random, true);
+            q.getRotationMatrix(columnMajor, true);
+            assertArrayEquals(rotatedAxes(q), columnMajor, DELTA);
+            assertArrayEquals(columnMajor, q.getMatrix4x4().getMatrix(), 0);
+
+            q.getRotationMatrix(rowMajor, false);
+            q.getRotationMatrix(columnMajor3, true);
+            q.getRotationMatrix(rowMajor3, false);
+            for(int row = 0; row < 4; row++) {
+                for(int col = 0; col < 4; col++) {
+                    assertEquals(columnMajor[col * 4 + row], rowMajor[row * 4 + col], 0);
+                    if(row < 3 && col < 3) {
+                        assertEquals(columnMajor[col * 4 + row], columnMajor3[col * 3 + row], 0);
+                        assertEquals(columnMajor[col * 4 + row], rowMajor3[row * 3 + col], 0);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rotationMatrixFollowsEveryChange() {
+        final Random random = new Random(12);
+        final Quaternion q = randomQuaternion(random, true);
+        final float[] matrix = new float[16];
+        q.getRotationMatrix(matrix, true);
+
+        // The setters of Vector4f don't raise the dirty flag
+        final Quaternion other = randomQuaternion(random, true);
+        q.setXYZW(other.getX(), other.getY(), other.getZ(), other.getW());
+        q.getRotationMatrix(matrix, true);
+        assertArrayEquals(rotatedAxes(other), matrix, DELTA);
+        assertArrayEquals(matrix, q.getMatrix4x4().getMatrix(), 0);
+
+        q.setX(-q.getX());
+        q.setW(-q.getW());
+        q.getRotationMatrix(matrix, true);
+        assertArrayEquals(rotatedAxes(q), matrix, DELTA);
+
+        // Neither does writing the result of a product
+        other.multiplyByQuat(randomQuaternion(random, true), q);
+        q.getRotationMatrix(matrix, true);
+        assertArrayEquals(rotatedAxes(q), matrix, DELTA);
+        assertArrayEquals(matrix, q.getMatrix4x4().getMatrix(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rotationMatrixRejectsOtherSizes() {
+        new Quaternion().getRotationMatrix(new float[12], true);
+    }
+
+    /**
+     * Serializes a Quaternion as the connections do.
+     */
+    private static byte[] serialize(final Quaternion q) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(q);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a Quaternion from its serialized form, given in hexadecimal.
+     */
+    private static Quaternion deserialize(final String hex) throws Exception {
+        final byte[] bytes = new byte[hex.length() / 2];
+        for(int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return (Quaternion) new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+    }
+
+    @Test
+    public void readsTheQuaternionsOfTheOriginalBuild() throws Exception {
+        final Quaternion q = deserialize(ORIGINAL_SERIALIZED_QUATERNION);
+        assertEquals(0.1f, q.getX(), 0);
+        assertEquals(0.2f, q.getY(), 0);
+        assertEquals(0.3f, q.getZ(), 0);
+        assertEquals(0.9f, q.getW(), 0);
+        // The rotation matrix cache isn't part of the stream
+        final Quaternion expected = new Quaternion();
+        expected.setXYZW(0.1f, 0.2f, 0.3f, 0.9f);
+        final float[] expectedMatrix = new float[16];
+        expected.getRotationMatrix(expectedMatrix, true);
+        final float[] matrix = new float[16];
+        q.getRotationMatrix(matrix, true);
+        assertArrayEquals(expectedMatrix, matrix, 0);
+    }
+
+    @Test
+    public void theRotationMatrixIsNotSerialized() throws Exception {
+        final Quaternion q = randomQuaternion(new Random(15), true);
+        final int before = serialize(q).length;
+        q.getRotationMatrix(new float[16], true);
+        assertEquals(before, serialize(q).length);
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.example.federico.wearableui.services.connection.connection_template;
+
+import com.example.federico.wearableui.representation.Quaternion;
+import com.example.federico.wearableui.representation.Vector3f;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link OrientationDeadBand}.
+ */
+public class OrientationDeadBandTest {
+
+    /**
+     * Returns an orientation rotated by the passed angle around the z axis.
+     */
+    private static Quaternion rotated(final float degrees) {
+        final Quaternion q = new Quaternion();
+        q.setAxisAngle(new Vector3f(0, 0, 1), degrees);
+        return q;
+    }
+
+    @Test
+    public void sendsEveryUpdateWhenDisabled() {
+        final OrientationDeadBand deadBand = new OrientationDeadBand();
+        final Quaternion still = rotated(10);
+        for(int i = 0; i < 10; i++) {
+            assertTrue(deadBand.accept(still, i));
+        }
+    }
+
+    @Test
+    public void suppressesRotationsBelowTheThreshold() {
+        final OrientationDeadBand deadBand = new OrientationDeadBand();
+        deadBand.setThreshold(0.5f);
+        assertTrue(deadBand.accept(rotated(10), 0));
+        assertFalse(deadBand.accept(rotated(10.3f), 10));
+        // The threshold is measured from the last update sent, so slow drifts are sent eventually
+        assertTrue(deadBand.accept(rotated(10.6f), 20));
+        assertFalse(deadBand.accept(rotated(10.2f), 30));
+        assertTrue(deadBand.accept(rotated(9.9f), 40));
+    }
+
+    @Test
+    public void sendsKeyframesWhileHeld() {
+        final OrientationDeadBand deadBand = new OrientationDeadBand();
+        deadBand.setThreshold(1);
+        deadBand.setKeyframeInterval(100);
+        final Quaternion still = rotated(10);
+        assertTrue(deadBand.accept(still, 0));
+        assertFalse(deadBand.accept(still, 99));
+        assertTrue(deadBand.accept(still, 100));
+        assertFalse(deadBand.accept(still, 150));
+
+        deadBand.requestKeyframe();
+        assertTrue(deadBand.accept(still, 160));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeThresholds() {
+        new OrientationDeadBand().setThreshold(-1);
+    }
+
+    @Test
+    public void cutsTheTrafficOfAHold() {
+        // The ring sends at 50Hz while the Finger is held still, with 0.01 degrees of sensor noise
+        final Random random = new Random(3);
+        final OrientationDeadBand deadBand = new OrientationDeadBand();
+        deadBand.setThreshold(1f / 24); // 960 pixels over 40 degrees
+        int sent = 0;
+        final int updates = 500;
+        for(int i = 0; i < updates; i++) {
+            if(deadBand.accept(rotated(30 + (float) random.nextGaussian() * 0.01f), i * 20)) {
+                sent++;
+            }
+        }
+        // Less than half of the updates of a 10s hold are sent, but no fewer than the keyframes
+        assertTrue(sent < updates / 2);
+        assertTrue(sent >= updates * 20 / OrientationDeadBand.DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+}
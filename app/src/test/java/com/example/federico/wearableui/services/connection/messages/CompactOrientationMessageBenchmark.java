@@ -0,0 +1,38 @@
+package com.example.federico.wearableui.services.connection.messages;
+
+import com.example.federico.wearableui.services.connection.messages.content.OrientationEncoding;
+
+import java.util.Locale;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Reports the round trip error and the traffic of every {@link OrientationEncoding}.
+ */
+public class CompactOrientationMessageBenchmark {
+
+    /**
+     * The rate the ring sends its orientation updates at, in Hz.
+     */
+    private static final int RATE = 50;
+
+    /**
+     * Runs the benchmark and prints its results.
+     * @param args not used.
+     * @throws Exception if the messages can't be written or read back.
+     */
+    public static void main(final String[] args) throws Exception {
+        for(final OrientationEncoding encoding : OrientationEncoding.values()) {
+            final int bytes = CompactOrientationMessageTest.bytesPerSecond(encoding, RATE);
+            if(encoding.isCompact()) {
+                System.out.println(String.format(Locale.US, "%s: max error %.5f degrees, %d B/s at %d Hz", encoding,
+                        CompactOrientationMessageTest.maxRoundTripError(encoding), bytes, RATE));
+            } else {
+                System.out.println(String.format(Locale.US, "%s: %d B/s at %d Hz", encoding, bytes, RATE));
+            }
+        }
+    }
+
+}
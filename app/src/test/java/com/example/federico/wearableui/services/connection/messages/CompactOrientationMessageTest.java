@@ -0,0 +1,195 @@
+package com.example.federico.wearableui.services.connection.messages;
+
+import com.example.federico.wearableui.representation.Quaternion;
+import com.example.federico.wearableui.services.connection.messages.content.Content;
+import com.example.federico.wearableui.services.connection.messages.content.OrientationEncoding;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.EnumSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CompactOrientationMessage} and the {@link OrientationEncoding}s it uses. The error and the
+ * traffic of each encoding are reported by {@link CompactOrientationMessageBenchmark}.
+ */
+public class CompactOrientationMessageTest {
+
+    /**
+     * Returns a random unit quaternion.
+     */
+    static Quaternion randomOrientation(final Random random) {
+        final Quaternion q = new Quaternion();
+        q.setXYZW((float) random.nextGaussian(), (float) random.nextGaussian(), (float) random.nextGaussian(),
+                (float) random.nextGaussian());
+        q.normalize();
+        return q;
+    }
+
+    /**
+     * Returns the angle, in degrees, of the rotation between two orientations. It's computed from the distance between
+     * the two quaternions, 2 sin(angle / 4), which unlike their dot product is accurate for tiny angles.
+     */
+    private static double angleBetween(final Quaternion a, final Quaternion b) {
+        double difference = 0, sum = 0;
+        final float[] first = { a.getX(), a.getY(), a.getZ(), a.getW() };
+        final float[] second = { b.getX(), b.getY(), b.getZ(), b.getW() };
+        for(int i = 0; i < 4; i++) {
+            difference += ((double) first[i] - second[i]) * ((double) first[i] - second[i]);
+            sum += ((double) first[i] + second[i]) * ((double) first[i] + second[i]);
+        }
+        return Math.toDegrees(4 * Math.asin(Math.min(1, Math.sqrt(Math.min(difference, sum)) / 2)));
+    }
+
+    /**
+     * Writes the passed messages through an object stream, as the connection does.
+     */
+    static byte[] write(final IMessage... messages) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        for(final IMessage message : messages) {
+            out.writeObject(message);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns the largest error of the passed encoding over random orientations sent through an object stream.
+     */
+    static double maxRoundTripError(final OrientationEncoding encoding) throws Exception {
+        final Random random = new Random(11);
+        final int count = 2000;
+        final Quaternion[] sent = new Quaternion[count];
+        final IMessage[] messages = new IMessage[count];
+        for(int i = 0; i < count; i++) {
+            sent[i] = randomOrientation(random);
+            messages[i] = new CompactOrientationMessage(encoding, i, sent[i]);
+        }
+
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(write(messages)));
+        double maxError = 0;
+        for(int i = 0; i < count; i++) {
+            final CompactOrientationMessage received = (CompactOrientationMessage) in.readObject();
+            assertEquals(Content.NEW_ORIENTATION, received.getContent());
+            assertEquals(encoding, received.getEncoding());
+            assertEquals(i, received.getSequence());
+            final Quaternion q = received.getOrientationUpdate();
+            final double length = Math.sqrt(q.getX() * q.getX() + q.getY() * q.getY() + q.getZ() * q.getZ()
+                    + q.getW() * q.getW());
+            assertEquals(1, length, 1e-3);
+            maxError = Math.max(maxError, angleBetween(sent[i], q));
+        }
+        return maxError;
+    }
+
+    /**
+     * Returns the bytes taken by one second of orientation updates with the passed encoding, after the stream header
+     * and the first message, which carry the class descriptions only once per connection.
+     */
+    static int bytesPerSecond(final OrientationEncoding encoding, final int rate) throws IOException {
+        final Random random = new Random(5);
+        final IMessage[] messages = new IMessage[rate + 1];
+        for(int i = 0; i <= rate; i++) {
+            final Quaternion q = randomOrientation(random);
+            messages[i] = encoding.isCompact() ? new CompactOrientationMessage(encoding, i, q)
+                    : new OrientationChangedMessage(q);
+        }
+        return write(messages).length - write(messages[0]).length;
+    }
+
+    @Test
+    public void roundTripErrorOf48Bits() throws Exception {
+        final double error = maxRoundTripError(OrientationEncoding.SMALLEST_THREE_48);
+        assertTrue(error < 0.01);
+    }
+
+    @Test
+    public void roundTripErrorOf32Bits() throws Exception {
+        final double error = maxRoundTripError(OrientationEncoding.SMALLEST_THREE_32);
+        assertTrue(error < 0.25);
+    }
+
+    @Test
+    public void encodesTheIdentityExactly() {
+        final Quaternion identity = new Quaternion();
+        final Quaternion decoded = OrientationEncoding.SMALLEST_THREE_48.decode(
+                OrientationEncoding.SMALLEST_THREE_48.encode(identity), new Quaternion());
+        assertEquals(0, angleBetween(identity, decoded), 1e-3);
+    }
+
+    @Test
+    public void sequenceNumbersWrapAround() {
+        assertTrue(CompactOrientationMessage.isNewer(1, 0));
+        assertFalse(CompactOrientationMessage.isNewer(0, 1));
+        assertFalse(CompactOrientationMessage.isNewer(5, 5));
+        assertTrue(CompactOrientationMessage.isNewer(2, 65535));
+        assertEquals(0, new CompactOrientationMessage(OrientationEncoding.SMALLEST_THREE_32, 65536, new Quaternion())
+                .getSequence());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTheSerializedEncoding() {
+        new CompactOrientationMessage(OrientationEncoding.SERIALIZED_QUATERNION, 0, new Quaternion());
+    }
+
+    @Test
+    public void negotiationMessagesKeepTheOrder() throws Exception {
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(write(new OrientationEncodingMessage(
+                OrientationEncoding.SMALLEST_THREE_48, OrientationEncoding.SERIALIZED_QUATERNION))));
+        final IOrientationEncodingMessage offer = (IOrientationEncodingMessage) in.readObject();
+        assertEquals(Content.ORIENTATION_ENCODING, offer.getContent());
+        assertEquals(2, offer.getEncodings().length);
+        assertEquals(OrientationEncoding.SMALLEST_THREE_48, offer.getEncodings()[0]);
+        assertEquals(OrientationEncoding.SERIALIZED_QUATERNION, offer.getEncodings()[1]);
+    }
+
+    @Test
+    public void compactEncodingsAreSmallerThanSerializedQuaternions() throws Exception {
+        final int rate = 50;
+        final int serializedBytes = bytesPerSecond(OrientationEncoding.SERIALIZED_QUATERNION, rate);
+        final int compact32Bytes = bytesPerSecond(OrientationEncoding.SMALLEST_THREE_32, rate);
+        final int compact48Bytes = bytesPerSecond(OrientationEncoding.SMALLEST_THREE_48, rate);
+        assertTrue(compact48Bytes * 4 < serializedBytes);
+        assertTrue(compact32Bytes < compact48Bytes);
+    }
+
+    @Test
+    public void onlyCompactEncodingsHaveAPayload() {
+        assertEquals(0, OrientationEncoding.SERIALIZED_QUATERNION.getPayloadBytes());
+        assertEquals(4, OrientationEncoding.SMALLEST_THREE_32.getPayloadBytes());
+        assertEquals(6, OrientationEncoding.SMALLEST_THREE_48.getPayloadBytes());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void serializedQuaternionsAreNotQuantized() {
+        OrientationEncoding.SERIALIZED_QUATERNION.encode(new Quaternion());
+    }
+
+    @Test
+    public void choosesTheFirstSupportedEncoding() {
+        final OrientationEncoding[] offered = { OrientationEncoding.SMALLEST_THREE_48,
+                OrientationEncoding.SMALLEST_THREE_32, OrientationEncoding.SERIALIZED_QUATERNION };
+        assertEquals(OrientationEncoding.SMALLEST_THREE_48,
+                OrientationEncoding.choose(offered, EnumSet.allOf(OrientationEncoding.class)));
+        assertEquals(OrientationEncoding.SMALLEST_THREE_32, OrientationEncoding.choose(offered,
+                EnumSet.of(OrientationEncoding.SMALLEST_THREE_32, OrientationEncoding.SERIALIZED_QUATERNION)));
+        // Nothing supported is offered
+        assertEquals(OrientationEncoding.SERIALIZED_QUATERNION, OrientationEncoding.choose(
+                new OrientationEncoding[] { OrientationEncoding.SMALLEST_THREE_48 },
+                EnumSet.of(OrientationEncoding.SMALLEST_THREE_32)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyOffers() {
+        OrientationEncoding.choose(new OrientationEncoding[0], EnumSet.allOf(OrientationEncoding.class));
+    }
+
+}
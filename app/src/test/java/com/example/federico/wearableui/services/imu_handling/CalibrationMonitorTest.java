@@ -0,0 +1,48 @@
+package com.example.federico.wearableui.services.imu_handling;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CalibrationMonitor}.
+ */
+public class CalibrationMonitorTest {
+
+    @Test
+    public void stableAgreement_converges() throws Exception {
+        final CalibrationMonitor monitor = new CalibrationMonitor();
+        for(int i = 0; i < 29; i++) {
+            monitor.addSample(0.9999f, 0.5);
+        }
+        // The window isn't full yet
+        assertFalse(monitor.hasConverged());
+        monitor.addSample(-0.9999f, 0.5);
+        assertTrue(monitor.hasConverged());
+        assertFalse(monitor.isStill());
+    }
+
+    @Test
+    public void unstableDrift_doesNotConverge() throws Exception {
+        final CalibrationMonitor monitor = new CalibrationMonitor();
+        for(int i = 0; i < 60; i++) {
+            monitor.addSample(i % 2 == 0 ? 1.0f : 0.998f, 0);
+        }
+        assertFalse(monitor.hasConverged());
+    }
+
+    @Test
+    public void stillness_requiresWholeWindow() throws Exception {
+        final CalibrationMonitor monitor = new CalibrationMonitor();
+        for(int i = 0; i < 30; i++) {
+            monitor.addSample(1.0f, 0.01);
+        }
+        assertTrue(monitor.isStill());
+        monitor.addSample(1.0f, 0.4);
+        assertFalse(monitor.isStill());
+        monitor.reset();
+        assertFalse(monitor.isStill());
+        assertFalse(monitor.hasConverged());
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.example.federico.wearableui.services.imu_handling;
+
+import com.example.federico.wearableui.representation.Quaternion;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link CalibrationSnapshot}.
+ */
+public class CalibrationSnapshotTest {
+
+    private static Quaternion quaternion(final float x, final float y, final float z, final float w) {
+        final Quaternion quaternion = new Quaternion();
+        quaternion.setXYZW(x, y, z, w);
+        quaternion.normalise();
+        return quaternion;
+    }
+
+    @Test
+    public void roundTrip_preservesState() throws Exception {
+        final Quaternion calibration = quaternion(0.1f, 0.2f, 0.3f, 0.9f);
+        final Quaternion orientation = quaternion(0.4f, 0.1f, 0.2f, -0.8f);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CalibrationSnapshot(calibration, orientation, 1234L).writeTo(out);
+
+        final CalibrationSnapshot read = CalibrationSnapshot.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(1234L, read.getSavedAt());
+        assertEquals(1.0f, read.getCalibration().dotProduct(calibration), 1e-6f);
+        assertEquals(1.0f, read.getOrientation().dotProduct(orientation), 1e-6f);
+    }
+
+    @Test(expected = IOException.class)
+    public void readFrom_rejectsUnknownFormat() throws Exception {
+        CalibrationSnapshot.readFrom(new ByteArrayInputStream(new byte[] { 0, 0, 0, 42, 1, 2, 3 }));
+    }
+
+    @Test
+    public void isUsable_checksAgeAndMotion() throws Exception {
+        final Quaternion orientation = quaternion(0, 0, 0, -1);
+        final CalibrationSnapshot snapshot = new CalibrationSnapshot(quaternion(0, 0, 0, 1), orientation, 1000L);
+
+        assertTrue(snapshot.isUsable(quaternion(0.05f, 0, 0, -1), 2000L));
+        // Too old, or saved in the future
+        assertFalse(snapshot.isUsable(orientation, 1000L + 31 * 60 * 1000));
+        assertFalse(snapshot.isUsable(orientation, 500L));
+        // The device has been turned by 90 degrees since the snapshot was saved
+        assertFalse(snapshot.isUsable(quaternion(0, 0, 0.7071f, -0.7071f), 2000L));
+    }
+
+    @Test
+    public void isUsable_rejectsCorruptedQuaternions() throws Exception {
+        final Quaternion corrupted = new Quaternion();
+        corrupted.setXYZW(Float.NaN, 0, 0, 1);
+        final CalibrationSnapshot snapshot = new CalibrationSnapshot(corrupted, quaternion(0, 0, 0, -1), 1000L);
+        assertFalse(snapshot.isUsable(quaternion(0, 0, 0, -1), 2000L));
+    }
+
+}
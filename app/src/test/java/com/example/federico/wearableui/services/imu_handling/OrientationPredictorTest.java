@@ -0,0 +1,102 @@
+package com.example.federico.wearableui.services.imu_handling;
+
+import com.example.federico.wearableui.representation.Quaternion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link OrientationPredictor}. The replay test integrates a recorded-like head motion at a fine time
+ * step to obtain the ground truth, samples it at the sensor rate and compares the error of the last sample and of the
+ * prediction against the orientation at display time.
+ */
+public class OrientationPredictorTest {
+
+    /** Sensor sampling period in seconds. */
+    private static final float SAMPLE_PERIOD = 0.033333f;
+    /** Time step used to integrate the ground truth, in seconds. */
+    private static final float TRUTH_STEP = 0.001f;
+    /** Prediction horizon in seconds. */
+    private static final float HORIZON = 0.05f;
+
+    /**
+     * Angular velocity of a head looking around: a sinusoidal yaw with a slower pitch oscillation.
+     */
+    private static float[] angularVelocity(final double t) {
+        return new float[] {
+                (float) (0.8 * Math.cos(2 * Math.PI * 0.3 * t)),
+                (float) (0.3 * Math.sin(2 * Math.PI * 0.2 * t)),
+                (float) (2.0 * Math.sin(2 * Math.PI * 0.5 * t))
+        };
+    }
+
+    /**
+     * Rotates the orientation by the angular velocity over dT, with the same convention of the SensorFusionService.
+     */
+    private static void integrate(final Quaternion orientation, final float[] w, final float dT) {
+        final double velocity = Math.sqrt(w[0] * w[0] + w[1] * w[1] + w[2] * w[2]);
+        final Quaternion delta = new Quaternion();
+        if(velocity > 0) {
+            final double sin = Math.sin(velocity * dT / 2.0) / velocity;
+            delta.setXYZW((float) (sin * w[0]), (float) (sin * w[1]), (float) (sin * w[2]), -(float) Math.cos(velocity * dT / 2.0));
+        }
+        delta.multiplyByQuat(orientation, orientation);
+    }
+
+    private static double angleBetween(final Quaternion a, final Quaternion b) {
+        return 2 * Math.acos(Math.min(1.0, Math.abs(a.dotProduct(b))));
+    }
+
+    @Test
+    public void replay_predictionReducesError() throws Exception {
+        final OrientationPredictor predictor = new OrientationPredictor();
+        final int stepsPerSample = Math.round(SAMPLE_PERIOD / TRUTH_STEP);
+        final int stepsPerHorizon = Math.round(HORIZON / TRUTH_STEP);
+        final int samples = 300;
+
+        // Ground truth trajectory at the fine time step
+        final Quaternion[] truth = new Quaternion[samples * stepsPerSample + stepsPerHorizon + 1];
+        final Quaternion current = new Quaternion();
+        current.setXYZW(0, 0, 0, -1);
+        for(int i = 0; i < truth.length; i++) {
+            truth[i] = current.clone();
+            integrate(current, angularVelocity(i * TRUTH_STEP), TRUTH_STEP);
+        }
+
+        double staleError = 0;
+        double predictedError = 0;
+        final Quaternion predicted = new Quaternion();
+        for(int k = 0; k < samples; k++) {
+            final int i = k * stepsPerSample;
+            final float[] w = angularVelocity(i * TRUTH_STEP);
+            predictor.predict(truth[i], w[0], w[1], w[2], HORIZON, predicted);
+            staleError += angleBetween(truth[i], truth[i + stepsPerHorizon]);
+            predictedError += angleBetween(predicted, truth[i + stepsPerHorizon]);
+        }
+
+        staleError /= samples;
+        predictedError /= samples;
+        assertTrue("stale " + staleError + ", predicted " + predictedError, predictedError < staleError * 0.25);
+    }
+
+    @Test
+    public void noHorizon_returnsSameOrientation() throws Exception {
+        final Quaternion orientation = new Quaternion();
+        orientation.setXYZW(0.1f, 0.2f, 0.3f, -0.927f);
+        orientation.normalise();
+        final Quaternion predicted = new Quaternion();
+        new OrientationPredictor().predict(orientation, 1, 2, 3, 0, predicted);
+        assertEquals(0, angleBetween(orientation, predicted), 1e-3);
+    }
+
+    @Test
+    public void slowRotation_isNotExtrapolated() throws Exception {
+        final Quaternion orientation = new Quaternion();
+        orientation.setXYZW(0, 0, 0, -1);
+        final Quaternion predicted = new Quaternion();
+        new OrientationPredictor().predict(orientation, 0.05f, 0, 0, 0.05f, predicted);
+        assertEquals(0, angleBetween(orientation, predicted), 1e-6);
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.example.federico.wearableui.services.imu_handling;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SamplingRateController}.
+ */
+public class SamplingRateControllerTest {
+
+    /** 33ms in nanoseconds. */
+    private static final long PERIOD = 33000000L;
+
+    private static long feed(final SamplingRateController controller, final double velocity, final boolean locked,
+                             final long from, final int samples) {
+        long timestamp = from;
+        for(int i = 0; i < samples; i++) {
+            timestamp += PERIOD;
+            controller.update(velocity, locked, timestamp);
+        }
+        return timestamp;
+    }
+
+    @Test
+    public void fastMotion_raisesRateImmediatelyAndReleasesWithHysteresis() throws Exception {
+        final SamplingRateController controller = new SamplingRateController();
+        assertEquals(SamplingRateController.Tier.FAST, controller.update(3.0, false, PERIOD));
+
+        // A velocity between the two thresholds keeps the FAST tier
+        long timestamp = feed(controller, 1.2, false, PERIOD, 30);
+        assertEquals(SamplingRateController.Tier.FAST, controller.getTier());
+
+        timestamp = feed(controller, 0.5, false, timestamp, 10);
+        assertEquals(SamplingRateController.Tier.FAST, controller.getTier());
+        feed(controller, 0.5, false, timestamp, 10);
+        assertEquals(SamplingRateController.Tier.NORMAL, controller.getTier());
+    }
+
+    @Test
+    public void stillHead_lowersRateAndWakesUpOnMotion() throws Exception {
+        final SamplingRateController controller = new SamplingRateController();
+        long timestamp = feed(controller, 0.05, false, 0, 30);
+        assertEquals(SamplingRateController.Tier.NORMAL, controller.getTier());
+        timestamp = feed(controller, 0.05, false, timestamp, 40);
+        assertEquals(SamplingRateController.Tier.IDLE, controller.getTier());
+        assertEquals(SamplingRateController.Tier.NORMAL, controller.update(0.4, false, timestamp + PERIOD));
+    }
+
+    @Test
+    public void lockedViewport_staysIdle() throws Exception {
+        final SamplingRateController controller = new SamplingRateController();
+        feed(controller, 3.0, true, 0, 5);
+        assertEquals(SamplingRateController.Tier.IDLE, controller.getTier());
+    }
+
+    @Test
+    public void timeInTier_isAccounted() throws Exception {
+        final SamplingRateController controller = new SamplingRateController();
+        long timestamp = feed(controller, 0.5, false, 0, 31);
+        timestamp = feed(controller, 3.0, false, timestamp, 1);
+        feed(controller, 3.0, false, timestamp, 30);
+        // The first sample only starts the accounting
+        assertEquals(30 * 33 + 33, controller.getTimeInTier(SamplingRateController.Tier.NORMAL));
+        assertEquals(30 * 33, controller.getTimeInTier(SamplingRateController.Tier.FAST));
+        assertEquals(0, controller.getTimeInTier(SamplingRateController.Tier.IDLE));
+
+        controller.restart();
+        assertEquals(SamplingRateController.Tier.NORMAL, controller.getTier());
+        assertEquals(30 * 33, controller.getTimeInTier(SamplingRateController.Tier.FAST));
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.example.federico.wearableui.services.imu_handling;
+
+import com.example.federico.wearableui.representation.Quaternion;
+import com.example.federico.wearableui.services.imu_handling.filter.IOrientationFilter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SensorFusion}, run on a filter that records the calls it receives.
+ */
+public class SensorFusionTest {
+
+    /**
+     * An {@link IOrientationFilter} that records the calls it receives, and diverges on demand.
+     */
+    private static class RecordingFilter implements IOrientationFilter {
+
+        private final List<String> calls = new ArrayList<>();
+        private boolean diverged;
+
+        @Override
+        public void reset(final Quaternion orientation) {
+            this.calls.add("reset " + orientation.getZ());
+            this.diverged = false;
+        }
+
+        @Override
+        public void updateGyroscope(final float x, final float y, final float z, final float dT) {
+            this.calls.add("gyroscope " + Math.round(dT * 1000));
+        }
+
+        @Override
+        public void updateAccelerometer(final float x, final float y, final float z) {
+            this.calls.add("accelerometer");
+        }
+
+        @Override
+        public void updateRotationVector(final Quaternion rotationVector) {
+            this.calls.add("rotation vector " + rotationVector.getZ());
+        }
+
+        @Override
+        public void getOrientation(final Quaternion output) {
+            output.setXYZW(0, 0, 0, -1);
+        }
+
+        @Override
+        public boolean usesAccelerometer() {
+            return false;
+        }
+
+        @Override
+        public boolean usesRotationVector() {
+            return true;
+        }
+
+        @Override
+        public boolean hasDiverged() {
+            return this.diverged;
+        }
+
+    }
+
+    /**
+     * A {@link SensorFusion.Listener} that counts the fused orientations and the panic resets.
+     */
+    private static class CountingListener implements SensorFusion.Listener {
+
+        private int started, orientations, resets;
+
+        @Override
+        public void onStarted(final Quaternion rotationVector, final long timestamp) {
+            this.started++;
+        }
+
+        @Override
+        public void onGyroscope(final long timestamp) { }
+
+        @Override
+        public void onAngularSpeed(final double angularSpeed, final long timestamp) { }
+
+        @Override
+        public void onOrientation(final Quaternion orientation, final long timestamp) {
+            this.orientations++;
+        }
+
+        @Override
+        public void onPanicReset(final long timestamp) {
+            this.resets++;
+        }
+
+    }
+
+    private static final long MS = 1000000L;
+
+    private static Quaternion rotationVector(final float z) {
+        final Quaternion quaternion = new Quaternion();
+        quaternion.setXYZW(0, 0, z, -1);
+        return quaternion;
+    }
+
+    @Test
+    public void holdsRotationVectorsBackUntilTheGyroscopeCatchesUp() {
+        final RecordingFilter filter = new RecordingFilter();
+        final SensorFusion fusion = new SensorFusion(filter, new CountingListener());
+        fusion.onRotationVector(rotationVector(0), 10 * MS);
+        fusion.onGyroscope(0, 0, 1, 10 * MS);
+        // Delivered before the gyroscope sample that precedes it
+        fusion.onRotationVector(rotationVector(0.1f), 25 * MS);
+        fusion.onGyroscope(0, 0, 1, 20 * MS);
+        assertEquals(2, filter.calls.size());
+        fusion.onGyroscope(0, 0, 1, 30 * MS);
+
+        assertEquals(4, filter.calls.size());
+        assertEquals("reset 0.0", filter.calls.get(0));
+        assertEquals("gyroscope 10", filter.calls.get(1));
+        assertTrue(filter.calls.get(2).startsWith("rotation vector 0.1"));
+        assertEquals("gyroscope 10", filter.calls.get(3));
+    }
+
+    @Test
+    public void dropsOutOfOrderGyroscopeSamples() {
+        final CountingListener listener = new CountingListener();
+        final SensorFusion fusion = new SensorFusion(new RecordingFilter(), listener);
+        // Gyroscope samples are ignored until the first rotation vector sample
+        assertFalse(fusion.onGyroscope(0, 0, 1, 5 * MS));
+        fusion.onRotationVector(rotationVector(0), 10 * MS);
+        assertFalse(fusion.onGyroscope(0, 0, 1, 10 * MS));
+        assertTrue(fusion.onGyroscope(0, 0, 1, 20 * MS));
+        assertFalse(fusion.onGyroscope(0, 0, 1, 20 * MS));
+        assertFalse(fusion.onGyroscope(0, 0, 1, 15 * MS));
+        assertEquals(1, listener.orientations);
+    }
+
+    @Test
+    public void panicResetWaitsForTheNextRotationVector() {
+        final RecordingFilter filter = new RecordingFilter();
+        final CountingListener listener = new CountingListener();
+        final SensorFusion fusion = new SensorFusion(filter, listener);
+        fusion.onRotationVector(rotationVector(0), 10 * MS);
+        fusion.onGyroscope(0, 0, 1, 10 * MS);
+        filter.diverged = true;
+        assertTrue(fusion.onGyroscope(0, 0, 1, 20 * MS));
+        assertEquals(1, listener.resets);
+        assertFalse(fusion.isStarted());
+
+        assertFalse(fusion.onGyroscope(0, 0, 1, 30 * MS));
+        fusion.onRotationVector(rotationVector(0.2f), 35 * MS);
+        assertEquals(2, listener.started);
+        // The time base is kept across the reset
+        assertTrue(fusion.onGyroscope(0, 0, 1, 40 * MS));
+        assertEquals("gyroscope 20", filter.calls.get(filter.calls.size() - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsANullFilter() {
+        new SensorFusion(null, new CountingListener());
+    }
+
+}
@@ -0,0 +1,347 @@
+package com.example.federico.wearableui.services.imu_handling.filter;
+
+import com.example.federico.wearableui.Benchmark;
+import com.example.federico.wearableui.representation.Quaternion;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * @author Federico Giannoni
+ */
+
+/**
+ * Harness that compares the {@link IOrientationFilter}s on the same sequence of sensor samples, measuring how long each
+ * filter takes to process a sample and how far its orientation is from the true one. The samples can either come from
+ * a recording or be synthesized, in which case the true orientation is known exactly.
+ *
+ * It lives with the unit tests, which use it to check the accuracy of the filters, while the timings are only reported
+ * by {@link #main(String[])}.
+ */
+public class FilterBenchmark {
+
+    /**
+     * Gravity, in m/s^2.
+     */
+    private static final float GRAVITY = 9.81f;
+
+    /**
+     * Number of samples processed before the errors are measured, so that the filters have converged.
+     */
+    private static final int WARMUP_SAMPLES = 200;
+
+    /**
+     * Number of times the trace is replayed by the measured rounds of {@link #main(String[])}.
+     */
+    private static final int ROUNDS = 5;
+
+    /**
+     * A sequence of sensor samples, all taken at the same instants, with the true orientation of the device.
+     */
+    public static class Trace {
+
+        /**
+         * Number of samples in the trace.
+         */
+        private final int length;
+
+        /**
+         * Time between two samples in seconds.
+         */
+        private final float period;
+
+        /**
+         * Gyroscope samples (x, y, z), in rad/s.
+         */
+        private final float[] gyroscope;
+
+        /**
+         * Accelerometer samples (x, y, z), in m/s^2.
+         */
+        private final float[] accelerometer;
+
+        /**
+         * Rotation vector samples (x, y, z, w), with the w component inverted.
+         */
+        private final float[] rotationVector;
+
+        /**
+         * True orientations (x, y, z, w), with the w component inverted.
+         */
+        private final float[] truth;
+
+        /**
+         * Constructor.
+         * @param length the number of samples.
+         * @param period the time between two samples in seconds.
+         * @throws IllegalArgumentException if the length or the period are not positive.
+         */
+        public Trace(final int length, final float period) {
+            if(length <= 0 || period <= 0) {
+                throw new IllegalArgumentException("The length and the period of a trace must be positive");
+            }
+            this.length = length;
+            this.period = period;
+            this.gyroscope = new float[length * 3];
+            this.accelerometer = new float[length * 3];
+            this.rotationVector = new float[length * 4];
+            this.truth = new float[length * 4];
+        }
+
+        /**
+         * Synthesizes a trace of a head that keeps turning, with smoothly varying angular velocities on all axes. The
+         * gyroscope samples are affected by a constant bias and by white noise, the accelerometer samples by white noise,
+         * and the rotation vector samples by a small random rotation.
+         * @param seconds the duration of the trace.
+         * @param rateHz the sampling rate.
+         * @param seed the seed of the noise, so that the same trace can be generated again.
+         * @return the synthesized {@link Trace}.
+         * @throws IllegalArgumentException if the duration or the rate are not positive.
+         */
+        public static Trace synthesize(final float seconds, final float rateHz, final long seed) {
+            if(seconds <= 0 || rateHz <= 0) {
+                throw new IllegalArgumentException("The duration and the rate of a trace must be positive");
+            }
+            final Trace trace = new Trace(Math.round(seconds * rateHz), 1 / rateHz);
+            final Random random = new Random(seed);
+            final float biasX = 0.003f, biasY = -0.002f, biasZ = 0.002f;
+            // Start from an arbitrary orientation, in the Hamilton convention
+            double q0 = 0.9, q1 = 0.1, q2 = -0.3, q3 = 0.3;
+            double norm = Math.sqrt(q0 * q0 + q1 * q1 + q2 * q2 + q3 * q3);
+            q0 /= norm;
+            q1 /= norm;
+            q2 /= norm;
+            q3 /= norm;
+            for(int i = 0; i < trace.length; i++) {
+                final double t = i * trace.period;
+                final double wx = 0.8 * Math.sin(2 * Math.PI * 0.3 * t);
+                final double wy = 1.2 * Math.sin(2 * Math.PI * 0.2 * t + 1);
+                final double wz = 0.5 * Math.sin(2 * Math.PI * 0.5 * t + 2);
+
+                // Integrate the true orientation over the previous period
+                if(i > 0) {
+                    final double angle = Math.sqrt(wx * wx + wy * wy + wz * wz) * trace.period;
+                    final double s = angle > 1e-9 ? Math.sin(angle / 2) * trace.period / angle : trace.period / 2;
+                    final double c = Math.cos(angle / 2);
+                    final double dx = wx * s, dy = wy * s, dz = wz * s;
+                    final double r0 = q0 * c - q1 * dx - q2 * dy - q3 * dz;
+                    final double r1 = q0 * dx + q1 * c + q2 * dz - q3 * dy;
+                    final double r2 = q0 * dy - q1 * dz + q2 * c + q3 * dx;
+                    final double r3 = q0 * dz + q1 * dy - q2 * dx + q3 * c;
+                    norm = Math.sqrt(r0 * r0 + r1 * r1 + r2 * r2 + r3 * r3);
+                    q0 = r0 / norm;
+                    q1 = r1 / norm;
+                    q2 = r2 / norm;
+                    q3 = r3 / norm;
+                }
+                trace.set(trace.truth, i, q0, q1, q2, q3);
+
+                trace.gyroscope[i * 3] = (float) (wx + biasX + random.nextGaussian() * 0.01);
+                trace.gyroscope[i * 3 + 1] = (float) (wy + biasY + random.nextGaussian() * 0.01);
+                trace.gyroscope[i * 3 + 2] = (float) (wz + biasZ + random.nextGaussian() * 0.01);
+
+                // Gravity seen from the device: the third row of the rotation matrix
+                trace.accelerometer[i * 3] = (float) (GRAVITY * 2 * (q1 * q3 - q0 * q2) + random.nextGaussian() * 0.05);
+                trace.accelerometer[i * 3 + 1] = (float) (GRAVITY * 2 * (q0 * q1 + q2 * q3) + random.nextGaussian() * 0.05);
+                trace.accelerometer[i * 3 + 2] = (float) (GRAVITY * (q0 * q0 - q1 * q1 - q2 * q2 + q3 * q3)
+                        + random.nextGaussian() * 0.05);
+
+                // The rotation vector is off by a small random rotation, of about one degree
+                final double ex = random.nextGaussian() * 0.01, ey = random.nextGaussian() * 0.01, ez = random.nextGaussian() * 0.01;
+                trace.set(trace.rotationVector, i, q0 - q1 * ex - q2 * ey - q3 * ez, q0 * ex + q1 + q2 * ez - q3 * ey,
+                        q0 * ey - q1 * ez + q2 + q3 * ex, q0 * ez + q1 * ey - q2 * ex + q3);
+            }
+            return trace;
+        }
+
+        /**
+         * Stores a Hamilton quaternion in one of the quaternion arrays, normalised and with the w component inverted.
+         */
+        private void set(final float[] array, final int index, final double q0, final double q1, final double q2,
+                         final double q3) {
+            final double norm = Math.sqrt(q0 * q0 + q1 * q1 + q2 * q2 + q3 * q3);
+            array[index * 4] = (float) (q1 / norm);
+            array[index * 4 + 1] = (float) (q2 / norm);
+            array[index * 4 + 2] = (float) (q3 / norm);
+            array[index * 4 + 3] = (float) (-q0 / norm);
+        }
+
+        /**
+         * Returns the number of samples in the trace.
+         * @return the length of the trace.
+         */
+        public int getLength() {
+            return this.length;
+        }
+
+    }
+
+    /**
+     * The outcome of running a filter on a {@link Trace}.
+     */
+    public static class Result {
+
+        private final OrientationFilterType type;
+        private final double meanError;
+        private final double maxError;
+
+        private Result(final OrientationFilterType type, final double meanError, final double maxError) {
+            this.type = type;
+            this.meanError = meanError;
+            this.maxError = maxError;
+        }
+
+        /**
+         * Returns the type of the filter.
+         * @return the {@link OrientationFilterType}.
+         */
+        public OrientationFilterType getType() {
+            return this.type;
+        }
+
+        /**
+         * Returns the average angle between the orientation of the filter and the true one.
+         * @return the mean error in degrees.
+         */
+        public double getMeanError() {
+            return this.meanError;
+        }
+
+        /**
+         * Returns the largest angle between the orientation of the filter and the true one.
+         * @return the maximum error in degrees.
+         */
+        public double getMaxError() {
+            return this.maxError;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-18s mean error %6.2f deg, max error %6.2f deg", this.type, this.meanError,
+                    this.maxError);
+        }
+
+    }
+
+    /**
+     * Returns the angle of the rotation between an orientation and the one stored in an array. Both are normalized
+     * first, so that a filter whose output drifts slightly off the unit length isn't charged for it: the norm doesn't
+     * change the rotation a quaternion represents.
+     * @param orientation the orientation estimated by a filter.
+     * @param truth the array that holds the other orientation, as x, y, z and w.
+     * @param offset the position of the x component of the other orientation in the array.
+     * @return the angle in degrees.
+     */
+    static double angleBetween(final Quaternion orientation, final float[] truth, final int offset) {
+        final double x1 = orientation.getX(), y1 = orientation.getY(), z1 = orientation.getZ(), w1 = orientation.getW();
+        final double x2 = truth[offset], y2 = truth[offset + 1], z2 = truth[offset + 2], w2 = truth[offset + 3];
+        final double norms = Math.sqrt((x1 * x1 + y1 * y1 + z1 * z1 + w1 * w1) * (x2 * x2 + y2 * y2 + z2 * z2 + w2 * w2));
+        final double dot = Math.abs(x1 * x2 + y1 * y2 + z1 * z2 + w1 * w2) / norms;
+        return Math.toDegrees(2 * Math.acos(Math.min(1, dot)));
+    }
+
+    /**
+     * Resets a filter to the first rotation vector sample of a trace.
+     */
+    private static void reset(final IOrientationFilter filter, final Trace trace, final Quaternion rotationVector) {
+        rotationVector.setXYZW(trace.rotationVector[0], trace.rotationVector[1], trace.rotationVector[2],
+                trace.rotationVector[3]);
+        filter.reset(rotationVector);
+    }
+
+    /**
+     * Feeds a sample of a trace to a filter the same way the
+     * {@link com.example.federico.wearableui.services.imu_handling.SensorFusionService} does: first the rotation vector
+     * and the accelerometer, then the gyroscope.
+     */
+    private static void feed(final IOrientationFilter filter, final Trace trace, final int i,
+                             final Quaternion rotationVector) {
+        rotationVector.setXYZW(trace.rotationVector[i * 4], trace.rotationVector[i * 4 + 1],
+                trace.rotationVector[i * 4 + 2], trace.rotationVector[i * 4 + 3]);
+        filter.updateRotationVector(rotationVector);
+        filter.updateAccelerometer(trace.accelerometer[i * 3], trace.accelerometer[i * 3 + 1],
+                trace.accelerometer[i * 3 + 2]);
+        filter.updateGyroscope(trace.gyroscope[i * 3], trace.gyroscope[i * 3 + 1], trace.gyroscope[i * 3 + 2],
+                trace.period);
+    }
+
+    /**
+     * Runs a filter of the passed type on a trace. The filter is reset to the first rotation vector sample, and then fed
+     * every other sample.
+     * @param type the {@link OrientationFilterType} of the filter to run.
+     * @param trace the {@link Trace} to process.
+     * @return the {@link Result} of the run.
+     */
+    public static Result run(final OrientationFilterType type, final Trace trace) {
+        final IOrientationFilter filter = type.create();
+        final Quaternion rotationVector = new Quaternion();
+        final Quaternion orientation = new Quaternion();
+        reset(filter, trace, rotationVector);
+
+        double errorSum = 0;
+        double maxError = 0;
+        int measured = 0;
+        for(int i = 1; i < trace.length; i++) {
+            feed(filter, trace, i, rotationVector);
+            if(i > WARMUP_SAMPLES) {
+                filter.getOrientation(orientation);
+                final double error = angleBetween(orientation, trace.truth, i * 4);
+                errorSum += error;
+                maxError = Math.max(maxError, error);
+                measured++;
+            }
+        }
+        if(measured == 0) {
+            throw new IllegalArgumentException("The trace is too short to be measured");
+        }
+        return new Result(type, errorSum / measured, maxError);
+    }
+
+    /**
+     * Returns a kernel that replays a trace on a filter of the passed type, one sample per iteration, starting over from
+     * the first sample when the trace ends.
+     */
+    private static Benchmark.Kernel replay(final OrientationFilterType type, final Trace trace) {
+        final IOrientationFilter filter = type.create();
+        final Quaternion rotationVector = new Quaternion();
+        final Quaternion orientation = new Quaternion();
+        return new Benchmark.Kernel() {
+            private int next = 0;
+
+            @Override
+            public float run(final int iterations) {
+                float sum = 0;
+                for(int i = 0; i < iterations; i++) {
+                    if(this.next == 0) {
+                        reset(filter, trace, rotationVector);
+                    } else {
+                        feed(filter, trace, this.next, rotationVector);
+                    }
+                    filter.getOrientation(orientation);
+                    sum += orientation.getW();
+                    this.next = (this.next + 1) % trace.length;
+                }
+                return sum;
+            }
+        };
+    }
+
+    /**
+     * Runs every filter on a synthesized trace of 30 seconds of head motion, sampled at 100Hz, and prints the time per
+     * sample and the errors of each one.
+     * @param args not used.
+     */
+    public static void main(final String[] args) {
+        final Trace trace = Trace.synthesize(30, 100, 42);
+        final OrientationFilterType[] types = OrientationFilterType.values();
+        final Benchmark.Kernel[] kernels = new Benchmark.Kernel[types.length];
+        for(int i = 0; i < types.length; i++) {
+            kernels[i] = replay(types[i], trace);
+        }
+        final double[] nanos = Benchmark.compare(ROUNDS, trace.length, kernels);
+        for(int i = 0; i < types.length; i++) {
+            System.out.println(String.format(Locale.US, "%s, %.1f ns/sample", run(types[i], trace), nanos[i]));
+        }
+    }
+
+}
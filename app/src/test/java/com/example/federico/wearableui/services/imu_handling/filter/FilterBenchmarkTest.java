@@ -0,0 +1,141 @@
+package com.example.federico.wearableui.services.imu_handling.filter;
+
+import com.example.federico.wearableui.representation.Quaternion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link IOrientationFilter}s, run through the {@link FilterBenchmark} on a synthesized trace whose
+ * true orientation is known. Only the accuracy is checked here; the cost of the filters is reported by
+ * {@link FilterBenchmark#main(String[])}.
+ */
+public class FilterBenchmarkTest {
+
+    /** The trace shared by the tests: 30 seconds of head motion sampled at 100Hz. */
+    private static final FilterBenchmark.Trace TRACE = FilterBenchmark.Trace.synthesize(30, 100, 42);
+
+    @Test
+    public void everyFilterFollowsTheTrace() {
+        for(final OrientationFilterType type : OrientationFilterType.values()) {
+            final FilterBenchmark.Result result = FilterBenchmark.run(type, TRACE);
+            assertTrue(result.toString(), result.getMeanError() < 3);
+            assertTrue(result.toString(), result.getMaxError() < 5);
+        }
+    }
+
+    @Test
+    public void errorIgnoresTheNorm() {
+        final Quaternion orientation = new Quaternion();
+        orientation.setXYZW(0.1f, -0.3f, 0.3f, -0.9f);
+        orientation.normalise();
+        final float[] truth = { orientation.getX(), orientation.getY(), orientation.getZ(), orientation.getW() };
+        // The same rotation, slightly off the unit length as the output of a filter can be
+        orientation.setXYZW(truth[0] * 0.9998f, truth[1] * 0.9998f, truth[2] * 0.9998f, truth[3] * 0.9998f);
+        assertEquals(0, FilterBenchmark.angleBetween(orientation, truth, 0), 1e-3);
+
+        // 2 degrees around the z axis
+        final Quaternion rotated = new Quaternion();
+        rotated.setXYZW(0, 0, (float) Math.sin(Math.toRadians(1)), (float) Math.cos(Math.toRadians(1)));
+        assertEquals(2, FilterBenchmark.angleBetween(rotated, new float[] { 0, 0, 0, 1 }, 0), 1e-3);
+    }
+
+    @Test
+    public void resetKeepsTheServiceConvention() {
+        final Quaternion orientation = new Quaternion();
+        orientation.setXYZW(0.1f, -0.3f, 0.3f, -0.9f);
+        orientation.normalise();
+        for(final OrientationFilterType type : OrientationFilterType.values()) {
+            final IOrientationFilter filter = type.create();
+            filter.reset(orientation);
+            final Quaternion output = new Quaternion();
+            filter.getOrientation(output);
+            assertEquals(type.toString(), 1, Math.abs(output.dotProduct(orientation)), 1e-5f);
+        }
+    }
+
+    @Test
+    public void kalmanRejectsRotationVectorJumps() {
+        // The divergence takes the same time at every sampling rate
+        for(final float rate : new float[] { 10, 30, 60 }) {
+            final Quaternion orientation = new Quaternion();
+            orientation.setXYZW(0, 0, 0, -1);
+            final Quaternion jump = new Quaternion();
+            // 90 degrees around the z axis
+            jump.setXYZW(0, 0, (float) Math.sqrt(0.5), (float) -Math.sqrt(0.5));
+            final ErrorStateKalmanFilter filter = new ErrorStateKalmanFilter();
+            filter.reset(orientation);
+
+            final Quaternion output = new Quaternion();
+            for(int i = 0; i < 1.9f * rate; i++) {
+                filter.updateRotationVector(jump);
+                filter.updateGyroscope(0, 0, 0, 1 / rate);
+                filter.getOrientation(output);
+                assertEquals(1, Math.abs(output.dotProduct(orientation)), 1e-4f);
+                assertFalse(filter.hasDiverged());
+            }
+            for(int i = 0; i < 0.2f * rate; i++) {
+                filter.updateRotationVector(jump);
+                filter.updateGyroscope(0, 0, 0, 1 / rate);
+            }
+            assertTrue("At " + rate + "Hz", filter.hasDiverged());
+
+            filter.reset(jump);
+            assertFalse(filter.hasDiverged());
+        }
+    }
+
+    @Test
+    public void complementaryPanicsAfterTheSameTimeAtEveryRate() {
+        for(final float rate : new float[] { 10, 30, 60 }) {
+            final Quaternion orientation = new Quaternion();
+            orientation.setXYZW(0, 0, 0, -1);
+            final Quaternion jump = new Quaternion();
+            // 120 degrees around the z axis
+            jump.setXYZW(0, 0, (float) Math.sin(Math.toRadians(60)), (float) -Math.cos(Math.toRadians(60)));
+            final ComplementaryFilter filter = new ComplementaryFilter();
+            filter.reset(orientation);
+            filter.updateRotationVector(jump);
+            for(int i = 0; i < 1.9f * rate; i++) {
+                filter.updateGyroscope(0, 0, 0, 1 / rate);
+                assertFalse(filter.hasDiverged());
+            }
+            for(int i = 0; i < 0.2f * rate; i++) {
+                filter.updateGyroscope(0, 0, 0, 1 / rate);
+            }
+            assertTrue("At " + rate + "Hz", filter.hasDiverged());
+        }
+    }
+
+    @Test
+    public void complementaryCorrectsAtTheSameSpeedAtEveryRate() {
+        final float[] corrections = new float[2];
+        final float[] rates = { 15, 60 };
+        for(int r = 0; r < rates.length; r++) {
+            final Quaternion orientation = new Quaternion();
+            orientation.setXYZW(0, 0, 0, -1);
+            final Quaternion measured = new Quaternion();
+            // 20 degrees around the z axis, close enough not to be an outlier
+            measured.setXYZW(0, 0, (float) Math.sin(Math.toRadians(10)), (float) -Math.cos(Math.toRadians(10)));
+            final ComplementaryFilter filter = new ComplementaryFilter();
+            filter.reset(orientation);
+            filter.updateRotationVector(measured);
+            // One second at the rate
+            for(int i = 0; i < rates[r]; i++) {
+                filter.updateGyroscope(0, 0, 0, 1 / rates[r]);
+            }
+            final Quaternion output = new Quaternion();
+            filter.getOrientation(output);
+            corrections[r] = (float) Math.toDegrees(2 * Math.acos(Math.min(1, Math.abs(output.dotProduct(orientation)))));
+        }
+        assertTrue(corrections[0] > 1);
+        assertEquals(corrections[0], corrections[1], 0.05f * corrections[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyTraces() {
+        FilterBenchmark.Trace.synthesize(0, 100, 0);
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.example.federico.wearableui.trace;
+
+import android.hardware.Sensor;
+
+import com.example.federico.wearableui.representation.Quaternion;
+import com.example.federico.wearableui.services.connection.messages.content.Content;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link TraceRecorder} and {@link TraceReader}.
+ */
+public class TraceRecorderTest {
+
+    @Test
+    public void recordsAreReadBackInOrder() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TraceRecorder recorder = new TraceRecorder();
+        recorder.start(out);
+        assertTrue(recorder.isRecording());
+        recorder.recordSensorEvent(Sensor.TYPE_GYROSCOPE, 1000L, new float[] { 0.1f, -0.2f, 0.3f });
+        final Quaternion payload = new Quaternion();
+        payload.setXYZW(0.5f, 0.5f, 0.5f, 0.5f);
+        recorder.recordMessage(Content.NEW_ORIENTATION, payload);
+        recorder.recordMessage(Content.CLICK, null);
+        recorder.stop();
+        assertFalse(recorder.isRecording());
+        // Nothing is written once stopped
+        recorder.recordSensorEvent(Sensor.TYPE_GYROSCOPE, 2000L, new float[] { 0, 0, 0 });
+
+        final TraceReader reader = new TraceReader(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(TraceReader.Kind.SESSION, reader.getKind());
+
+        assertTrue(reader.next());
+        assertEquals(TraceReader.Kind.SENSOR_EVENT, reader.getKind());
+        assertEquals(Sensor.TYPE_GYROSCOPE, reader.getSensorType());
+        assertEquals(1000L, reader.getTimestamp());
+        assertEquals(3, reader.getValueCount());
+        assertArrayEquals(new float[] { 0.1f, -0.2f, 0.3f }, Arrays.copyOf(reader.getValues(), 3), 0);
+
+        assertTrue(reader.next());
+        assertEquals(TraceReader.Kind.MESSAGE, reader.getKind());
+        assertEquals(Content.NEW_ORIENTATION, reader.getContent());
+        assertEquals(0.5f, reader.getPayload().getW(), 0);
+
+        assertTrue(reader.next());
+        assertEquals(Content.CLICK, reader.getContent());
+        assertNull(reader.getPayload());
+
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void appendedRecordingsStartNewSessions() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TraceRecorder recorder = new TraceRecorder();
+        recorder.start(out);
+        recorder.recordMessage(Content.LOCK_UNLOCK, null);
+        recorder.stop();
+        final byte[] first = out.toByteArray();
+        final ByteArrayOutputStream appended = new ByteArrayOutputStream();
+        appended.write(first);
+        recorder.start(appended);
+        recorder.recordMessage(Content.RESET_CURSOR_POSITION, null);
+        recorder.stop();
+
+        final TraceReader reader = new TraceReader(new ByteArrayInputStream(appended.toByteArray()));
+        assertTrue(reader.next());
+        assertEquals(Content.LOCK_UNLOCK, reader.getContent());
+        assertTrue(reader.next());
+        assertEquals(TraceReader.Kind.SESSION, reader.getKind());
+        assertTrue(reader.next());
+        assertEquals(Content.RESET_CURSOR_POSITION, reader.getContent());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void truncatedRecordEndsTheTrace() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TraceRecorder recorder = new TraceRecorder();
+        recorder.start(out);
+        recorder.recordSensorEvent(Sensor.TYPE_ROTATION_VECTOR, 1L, new float[] { 0, 0, 0, 1 });
+        recorder.recordSensorEvent(Sensor.TYPE_ROTATION_VECTOR, 2L, new float[] { 0, 0, 0, 1 });
+        recorder.stop();
+        final byte[] bytes = out.toByteArray();
+
+        final TraceReader reader = new TraceReader(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 5)));
+        assertTrue(reader.next());
+        assertEquals(1L, reader.getTimestamp());
+        assertFalse(reader.next());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsStreamsThatAreNotTraces() throws IOException {
+        new TraceReader(new ByteArrayInputStream(new byte[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14 }));
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.example.federico.wearableui.trace;
+
+import android.hardware.Sensor;
+
+import com.example.federico.wearableui.representation.Quaternion;
+import com.example.federico.wearableui.services.connection.messages.content.Content;
+import com.example.federico.wearableui.services.imu_handling.filter.OrientationFilterType;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link TraceReplayer}. A recording of a device turning around its z axis at a constant rate is
+ * replayed, and the fused orientations are compared with the expected ones.
+ */
+public class TraceReplayerTest {
+
+    /** Angular velocity of the recorded motion, in rad/s. */
+    private static final float VELOCITY = 1f;
+    /** Sampling period of the recording, in nanoseconds. */
+    private static final long PERIOD = 10000000L;
+    /** Timestamp of the first sample, in nanoseconds. */
+    private static final long START = 5000000000L;
+    /** Number of gyroscope samples in the recording. */
+    private static final int SAMPLES = 100;
+
+    /**
+     * Records the motion: a rotation vector sample every ten gyroscope samples, and a click halfway through.
+     */
+    private static byte[] record() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TraceRecorder recorder = new TraceRecorder();
+        recorder.start(out);
+        for(int i = 0; i <= SAMPLES; i++) {
+            final long timestamp = START + i * PERIOD;
+            if(i % 10 == 0) {
+                final double half = VELOCITY * i * PERIOD / 1e9 / 2;
+                recorder.recordSensorEvent(Sensor.TYPE_ROTATION_VECTOR, timestamp,
+                        new float[] { 0, 0, (float) Math.sin(half), (float) Math.cos(half) });
+            }
+            recorder.recordSensorEvent(Sensor.TYPE_GYROSCOPE, timestamp, new float[] { 0, 0, VELOCITY });
+            if(i == SAMPLES / 2) {
+                recorder.recordMessage(Content.CLICK, null);
+            }
+        }
+        recorder.stop();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void replayFollowsTheRecordedMotion() throws IOException {
+        final List<Content> messages = new ArrayList<>();
+        final Quaternion last = new Quaternion();
+        final TraceReplayer replayer = new TraceReplayer(OrientationFilterType.COMPLEMENTARY.create());
+        final int orientations = replayer.replay(new TraceReader(new ByteArrayInputStream(record())), new TraceReplayer.Listener() {
+            @Override
+            public void onOrientation(final Quaternion orientation, final long timestamp) {
+                last.copyVec4(orientation);
+            }
+
+            @Override
+            public void onMessage(final Content content, final Quaternion payload, final long recordedAt) {
+                messages.add(content);
+            }
+        });
+
+        // The first gyroscope sample only sets the time base
+        assertEquals(SAMPLES, orientations);
+        assertEquals(1, messages.size());
+        assertEquals(Content.CLICK, messages.get(0));
+        // One second at 1 rad/s around z, within a degree or two of the lag of the rotation vector correction
+        final double half = VELOCITY * SAMPLES * PERIOD / 1e9 / 2;
+        assertEquals(Math.sin(half), Math.abs(last.getZ()), 0.02);
+        assertEquals(Math.cos(half), Math.abs(last.getW()), 0.02);
+    }
+
+    @Test
+    public void replayIsDeterministic() throws IOException {
+        final byte[] trace = record();
+        final float[] first = replayLast(trace);
+        final float[] second = replayLast(trace);
+        assertArrayEquals(first, second, 0);
+    }
+
+    private static float[] replayLast(final byte[] trace) throws IOException {
+        final float[] last = new float[4];
+        new TraceReplayer(OrientationFilterType.ERROR_STATE_KALMAN.create()).replay(
+                new TraceReader(new ByteArrayInputStream(trace)), new TraceReplayer.Listener() {
+                    @Override
+                    public void onOrientation(final Quaternion orientation, final long timestamp) {
+                        last[0] = orientation.getX();
+                        last[1] = orientation.getY();
+                        last[2] = orientation.getZ();
+                        last[3] = orientation.getW();
+                    }
+
+                    @Override
+                    public void onMessage(final Content content, final Quaternion payload, final long recordedAt) { }
+                });
+        return last;
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.example.federico.wearableui.viewport.drawable_content.cursor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link DwellTimer}.
+ */
+public class DwellTimerTest {
+
+    /**
+     * A {@link DwellTimer.Scheduler} with a manual clock, that runs the tasks when the clock goes past their time.
+     */
+    private static class FakeScheduler implements DwellTimer.Scheduler {
+
+        private final List<Runnable> tasks = new ArrayList<>();
+        private final List<Long> times = new ArrayList<>();
+        private long now;
+
+        @Override
+        public boolean postDelayed(final Runnable action, final long delayMillis) {
+            this.tasks.add(action);
+            this.times.add(this.now + delayMillis);
+            return true;
+        }
+
+        @Override
+        public boolean removeCallbacks(final Runnable action) {
+            boolean removed = false;
+            for(int i = this.tasks.size() - 1; i >= 0; i--) {
+                if(this.tasks.get(i) == action) {
+                    this.tasks.remove(i);
+                    this.times.remove(i);
+                    removed = true;
+                }
+            }
+            return removed;
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return this.now;
+        }
+
+        /**
+         * Moves the clock forward, running the tasks that become due.
+         */
+        private void advanceTo(final long time) {
+            boolean ran = true;
+            while(ran) {
+                ran = false;
+                for(int i = 0; i < this.tasks.size(); i++) {
+                    if(this.times.get(i) <= time) {
+                        this.now = Math.max(this.now, this.times.get(i));
+                        final Runnable task = this.tasks.remove(i);
+                        this.times.remove(i);
+                        task.run();
+                        ran = true;
+                        break;
+                    }
+                }
+            }
+            this.now = time;
+        }
+
+    }
+
+    /**
+     * Counts how many times the dwell has elapsed.
+     */
+    private int clicks;
+
+    private final Runnable click = new Runnable() {
+        @Override
+        public void run() {
+            clicks++;
+        }
+    };
+
+    @Test
+    public void clicksWhileTheCursorStaysStill() {
+        final FakeScheduler scheduler = new FakeScheduler();
+        final DwellTimer timer = new DwellTimer(scheduler, this.click);
+        timer.setDwellTime(800);
+        // The Cursor enters a content and isn't moved anymore: only the scheduled checks run
+        timer.start();
+        scheduler.advanceTo(799);
+        assertEquals(0, this.clicks);
+        assertEquals(799f / 800, timer.getProgress(), 1e-6f);
+
+        scheduler.advanceTo(800);
+        assertEquals(1, this.clicks);
+        assertTrue(timer.hasElapsed());
+        assertEquals(1f, timer.getProgress(), 0);
+
+        // A content is clicked only once per hover
+        scheduler.advanceTo(5000);
+        assertEquals(1, this.clicks);
+    }
+
+    @Test
+    public void leavingTheContentCancelsTheClick() {
+        final FakeScheduler scheduler = new FakeScheduler();
+        final DwellTimer timer = new DwellTimer(scheduler, this.click);
+        timer.setDwellTime(800);
+        timer.start();
+        scheduler.advanceTo(500);
+        timer.stop();
+        scheduler.advanceTo(2000);
+        assertEquals(0, this.clicks);
+        assertEquals(0, timer.getDwell());
+    }
+
+    @Test
+    public void enteringAgainRestartsTheDwell() {
+        final FakeScheduler scheduler = new FakeScheduler();
+        final DwellTimer timer = new DwellTimer(scheduler, this.click);
+        timer.setDwellTime(800);
+        timer.start();
+        scheduler.advanceTo(1000);
+        timer.stop();
+        timer.start();
+        scheduler.advanceTo(1700);
+        assertEquals(1, this.clicks);
+        scheduler.advanceTo(1800);
+        assertEquals(2, this.clicks);
+    }
+
+    @Test
+    public void changingTheDwellTimeReschedulesTheClick() {
+        final FakeScheduler scheduler = new FakeScheduler();
+        final DwellTimer timer = new DwellTimer(scheduler, this.click);
+        timer.setDwellTime(800);
+        timer.start();
+        scheduler.advanceTo(300);
+        timer.setDwellTime(1000);
+        scheduler.advanceTo(999);
+        assertEquals(0, this.clicks);
+        scheduler.advanceTo(1000);
+        assertEquals(1, this.clicks);
+    }
+
+    @Test
+    public void neverClicksWhenDisabled() {
+        final FakeScheduler scheduler = new FakeScheduler();
+        final DwellTimer timer = new DwellTimer(scheduler, this.click);
+        timer.start();
+        scheduler.advanceTo(10000);
+        assertEquals(0, this.clicks);
+        assertEquals(0f, timer.getProgress(), 0);
+        assertEquals(10000, timer.getDwell());
+    }
+
+}